@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Simulates ten years of daily syncs, each revising every day of the forecast, once with the
+ * archive compacted every day like the sync job does and once without compaction. Logged for
+ * each: how long the syncs and compactions took, how many rows the archive ended up with and
+ * how big the database file got, and the median time to read a month and a year of the
+ * archive. With compaction, the archive should hold about one row per day.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestArchiveBenchmark {
+
+    private static final String TAG = TestArchiveBenchmark.class.getSimpleName();
+
+    /* The benchmark gets a database of its own, so it can simulate the passing of the days */
+    private static final String DATABASE_NAME = "archive_benchmark.db";
+
+    /* The number of days the weather server sends us */
+    private static final int FORECAST_DAYS = 14;
+
+    private static final int SIMULATED_DAYS = 10 * 365;
+
+    private static final int MEASURED_QUERIES = 51;
+
+    private static final long FIRST_DAY = TestUtilities.DATE_NORMALIZED;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Before
+    public void setUp() {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void testCompactedDaily() {
+        long archivedRows = simulate("compacted daily", true);
+
+        /*
+         * Every day is revised up to FORECAST_DAYS times before it goes by. Only the days that
+         * are still in the forecast, or aren't old enough to compact yet, keep every revision.
+         */
+        long recentRows =
+                (ForecastArchive.DEFAULT_COMPACT_AFTER_DAYS + FORECAST_DAYS) * FORECAST_DAYS;
+        assertTrue("The compacted archive holds " + archivedRows + " rows",
+                archivedRows <= SIMULATED_DAYS + recentRows);
+    }
+
+    @Test
+    public void testNeverCompacted() {
+        long archivedRows = simulate("never compacted", false);
+
+        /* Nothing was ever merged, so every revision of every day is still there */
+        assertEquals((long) SIMULATED_DAYS * FORECAST_DAYS, archivedRows);
+    }
+
+    /**
+     * Runs a daily sync for SIMULATED_DAYS and logs what it cost.
+     *
+     * @return The number of rows in the archive at the end
+     */
+    private long simulate(String scenario, boolean compact) {
+        WeatherDbHelper helper =
+                new WeatherDbHelper(mContext, DATABASE_NAME, WeatherDbHelper.Tuning.DEFAULT);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        try {
+            long syncNanos = 0;
+            long compactionNanos = 0;
+            long maxCompactionNanos = 0;
+            long rowsCompacted = 0;
+            long rowsArchived = 0;
+
+            for (int day = 0; day <= SIMULATED_DAYS; day++) {
+                long today = FIRST_DAY + day * SunshineDateUtils.DAY_IN_MILLIS;
+
+                long start = SystemClock.elapsedRealtimeNanos();
+                database.beginTransaction();
+                try {
+                    rowsArchived += ForecastDiff.apply(database, createForecast(today, day))
+                            .archived;
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+                syncNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+                if (compact) {
+                    start = SystemClock.elapsedRealtimeNanos();
+                    database.beginTransaction();
+                    try {
+                        rowsCompacted += ForecastArchive.compact(database, today,
+                                ForecastArchive.DEFAULT_COMPACT_AFTER_DAYS,
+                                ForecastArchive.DEFAULT_RETENTION_DAYS).rowsCompacted;
+                        database.setTransactionSuccessful();
+                    } finally {
+                        database.endTransaction();
+                    }
+                    long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+                    compactionNanos += elapsed;
+                    maxCompactionNanos = Math.max(maxCompactionNanos, elapsed);
+                }
+            }
+
+            long archivedRows = DatabaseUtils.queryNumEntries(database, ArchiveEntry.TABLE_NAME);
+            long fileBytes = DatabaseUtils.longForQuery(database, "PRAGMA page_count", null)
+                    * DatabaseUtils.longForQuery(database, "PRAGMA page_size", null);
+
+            long lastDay = FIRST_DAY + (SIMULATED_DAYS - 1) * SunshineDateUtils.DAY_IN_MILLIS;
+            long monthNanos = timeRangeQuery(database, lastDay, 30);
+            long yearNanos = timeRangeQuery(database, lastDay, 365);
+
+            Log.i(TAG, scenario + ": " + SIMULATED_DAYS + " daily syncs took "
+                    + syncNanos / 1000000 + " ms in all and archived " + rowsArchived + " rows. "
+                    + "Compaction took " + compactionNanos / 1000000 + " ms in all, at most "
+                    + maxCompactionNanos / 1000 + " us, and merged away " + rowsCompacted
+                    + " rows. The archive holds " + archivedRows + " rows in a "
+                    + fileBytes / 1024 + " KB database. Reading a month takes a median "
+                    + monthNanos / 1000 + " us, a year " + yearNanos / 1000 + " us");
+            return archivedRows;
+        } finally {
+            helper.close();
+        }
+    }
+
+    /**
+     * @return The median time it takes to read every revision of the given number of days up to
+     * lastDay, the way the provider's archive range query does
+     */
+    private static long timeRangeQuery(SQLiteDatabase database, long lastDay, int days) {
+        String[] range = {
+                Long.toString(lastDay - (days - 1) * SunshineDateUtils.DAY_IN_MILLIS),
+                Long.toString(lastDay)
+        };
+        long[] queryNanos = new long[MEASURED_QUERIES];
+        for (int i = 0; i < MEASURED_QUERIES; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            Cursor cursor = database.query(ArchiveEntry.TABLE_NAME, null,
+                    WeatherEntry.COLUMN_DATE + " >= ? AND " + WeatherEntry.COLUMN_DATE + " <= ?",
+                    range, null, null,
+                    WeatherEntry.COLUMN_DATE + " ASC, " + ArchiveEntry.COLUMN_ARCHIVED_AT + " ASC");
+            try {
+                while (cursor.moveToNext()) {
+                    cursor.getDouble(cursor.getColumnIndex(WeatherEntry.COLUMN_MAX_TEMP));
+                }
+            } finally {
+                cursor.close();
+            }
+            queryNanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(queryNanos);
+        return queryNanos[MEASURED_QUERIES / 2];
+    }
+
+    /**
+     * @param today The first day of the forecast
+     * @param sync  The number of the sync. Every sync's forecast differs from the last one's in
+     *              every day, so each sync archives every day it had.
+     */
+    private static ForecastBatch createForecast(long today, int sync) {
+        ForecastBatch forecast = new ForecastBatch(FORECAST_DAYS);
+        double revision = (sync & 1) * 0.5;
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            forecast.add(today + i * SunshineDateUtils.DAY_IN_MILLIS, 200 + i,
+                    10.25 + revision, 20.5 + i + revision, 50.0 + revision, 1013.5, 4.5, 180.0);
+        }
+        return forecast;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_DATE;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_DEGREES;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_HUMIDITY;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_MAX_TEMP;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_MIN_TEMP;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_PRESSURE;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_WEATHER_ID;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_WIND_SPEED;
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Times inserting 14 (one sync), 1,000 and 100,000 days of weather in three ways:
+ * <p>
+ *   1) SQLiteDatabase#insert with a ContentValues per row, which is what bulkInsert used to do
+ * <p>
+ *   2) WeatherProvider#bulkInsert, which binds the ContentValues to one compiled statement
+ * <p>
+ *   3) {@link WeatherContract#METHOD_BULK_INSERT_COLUMNS}, which binds primitive columns
+ * <p>
+ * The timings are logged so we can decide how much history we can afford to keep. Each run also
+ * checks that every row made it into the table with the right values.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestBulkInsertBenchmark {
+
+    private static final String TAG = TestBulkInsertBenchmark.class.getSimpleName();
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    @Before
+    public void setUp() {
+        deleteAllRecordsFromWeatherTable();
+    }
+
+    @After
+    public void tearDown() {
+        deleteAllRecordsFromWeatherTable();
+    }
+
+    @Test
+    public void testInsertOneSync() {
+        benchmarkInserts(14);
+    }
+
+    @Test
+    public void testInsertThousandDays() {
+        benchmarkInserts(1000);
+    }
+
+    @Test
+    public void testInsertHundredThousandDays() {
+        benchmarkInserts(100000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testColumnsMustHaveTheSameLength() {
+        Bundle columns = createColumns(14);
+        columns.putDoubleArray(COLUMN_PRESSURE, new double[13]);
+        mContentResolver.call(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_BULK_INSERT_COLUMNS, null, columns);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testColumnDatesMustBeNormalized() {
+        Bundle columns = createColumns(14);
+        columns.getLongArray(COLUMN_DATE)[5] += 1;
+        mContentResolver.call(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_BULK_INSERT_COLUMNS, null, columns);
+    }
+
+    private void benchmarkInserts(int rowCount) {
+        ContentValues[] rows = createRows(rowCount);
+        Bundle columns = createColumns(rowCount);
+
+        /* 1) One SQLiteDatabase#insert per row, as bulkInsert used to do it */
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        long start = SystemClock.elapsedRealtimeNanos();
+        database.beginTransaction();
+        try {
+            for (ContentValues row : rows) {
+                database.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, row);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        long insertNanos = SystemClock.elapsedRealtimeNanos() - start;
+        database.close();
+        ForecastCache.invalidate();
+        assertTableHolds(rowCount);
+        deleteAllRecordsFromWeatherTable();
+
+        /* 2) bulkInsert with ContentValues bound to a compiled statement */
+        start = SystemClock.elapsedRealtimeNanos();
+        int inserted = mContentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, rows);
+        long bulkInsertNanos = SystemClock.elapsedRealtimeNanos() - start;
+        assertEquals(rowCount, inserted);
+        assertTableHolds(rowCount);
+        deleteAllRecordsFromWeatherTable();
+
+        /* 3) Primitive columns bound to a compiled statement */
+        start = SystemClock.elapsedRealtimeNanos();
+        Bundle result = mContentResolver.call(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_BULK_INSERT_COLUMNS, null, columns);
+        long columnsNanos = SystemClock.elapsedRealtimeNanos() - start;
+        assertEquals(rowCount, result.getInt(WeatherContract.EXTRA_ROWS_INSERTED));
+        assertTableHolds(rowCount);
+
+        Log.i(TAG, "Inserting " + rowCount + " rows: db.insert " + insertNanos / 1000
+                + " us, bulkInsert " + bulkInsertNanos / 1000
+                + " us, bulkInsertColumns " + columnsNanos / 1000 + " us");
+    }
+
+    /*
+     * The values of row i of the weather data used by this test. Every value is exactly
+     * representable as a double, so it compares equal whichever way it was inserted.
+     */
+    private static long dateOf(int i) {
+        return TestUtilities.DATE_NORMALIZED + i * SunshineDateUtils.DAY_IN_MILLIS;
+    }
+
+    private static int weatherIdOf(int i) {
+        return 200 + i % 600;
+    }
+
+    private static double minTempOf(int i) {
+        return -20.5 + i % 40;
+    }
+
+    private static double maxTempOf(int i) {
+        return 10.25 + i % 30;
+    }
+
+    private static ContentValues[] createRows(int rowCount) {
+        ContentValues[] rows = new ContentValues[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(COLUMN_DATE, dateOf(i));
+            weatherValues.put(COLUMN_WEATHER_ID, weatherIdOf(i));
+            weatherValues.put(COLUMN_MIN_TEMP, minTempOf(i));
+            weatherValues.put(COLUMN_MAX_TEMP, maxTempOf(i));
+            weatherValues.put(COLUMN_HUMIDITY, 50.0);
+            weatherValues.put(COLUMN_PRESSURE, 1013.5);
+            weatherValues.put(COLUMN_WIND_SPEED, 4.5);
+            weatherValues.put(COLUMN_DEGREES, 180.0);
+            rows[i] = weatherValues;
+        }
+        return rows;
+    }
+
+    private static Bundle createColumns(int rowCount) {
+        long[] dates = new long[rowCount];
+        int[] weatherIds = new int[rowCount];
+        double[] minTemps = new double[rowCount];
+        double[] maxTemps = new double[rowCount];
+        double[] humidities = new double[rowCount];
+        double[] pressures = new double[rowCount];
+        double[] windSpeeds = new double[rowCount];
+        double[] degrees = new double[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            dates[i] = dateOf(i);
+            weatherIds[i] = weatherIdOf(i);
+            minTemps[i] = minTempOf(i);
+            maxTemps[i] = maxTempOf(i);
+            humidities[i] = 50.0;
+            pressures[i] = 1013.5;
+            windSpeeds[i] = 4.5;
+            degrees[i] = 180.0;
+        }
+
+        Bundle columns = new Bundle();
+        columns.putLongArray(COLUMN_DATE, dates);
+        columns.putIntArray(COLUMN_WEATHER_ID, weatherIds);
+        columns.putDoubleArray(COLUMN_MIN_TEMP, minTemps);
+        columns.putDoubleArray(COLUMN_MAX_TEMP, maxTemps);
+        columns.putDoubleArray(COLUMN_HUMIDITY, humidities);
+        columns.putDoubleArray(COLUMN_PRESSURE, pressures);
+        columns.putDoubleArray(COLUMN_WIND_SPEED, windSpeeds);
+        columns.putDoubleArray(COLUMN_DEGREES, degrees);
+        return columns;
+    }
+
+    private void assertTableHolds(int rowCount) {
+        Cursor cursor = mContentResolver.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                new String[]{COLUMN_DATE, COLUMN_WEATHER_ID, COLUMN_MIN_TEMP, COLUMN_MAX_TEMP,
+                        COLUMN_PRESSURE},
+                null, null, COLUMN_DATE + " ASC");
+        try {
+            assertEquals(rowCount, cursor.getCount());
+            for (int i = 0; cursor.moveToNext(); i++) {
+                assertEquals(dateOf(i), cursor.getLong(0));
+                assertEquals(weatherIdOf(i), cursor.getInt(1));
+                assertEquals(minTempOf(i), cursor.getDouble(2));
+                assertEquals(maxTempOf(i), cursor.getDouble(3));
+                assertEquals(1013.5, cursor.getDouble(4));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void deleteAllRecordsFromWeatherTable() {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.delete(WeatherContract.WeatherEntry.TABLE_NAME, null, null);
+        database.close();
+        ForecastCache.invalidate();
+    }
+}
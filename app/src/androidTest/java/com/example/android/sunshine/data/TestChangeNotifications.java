@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utils.PollingCheck;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests that WeatherProvider holds its change notifications back and sends them together, and
+ * that a sync which only changes a few days notifies those days rather than the whole table.
+ * The observers are registered the way the CursorLoaders of MainActivity and DetailActivity
+ * register theirs, so each notification they count is a reload.
+ * <p>
+ * Most tests hold notifications back for longer than any test takes and flush them by hand, so
+ * that how many were coalesced doesn't depend on how fast the device is.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestChangeNotifications {
+
+    private static final String TAG = TestChangeNotifications.class.getSimpleName();
+
+    /* The number of days the weather server sends us */
+    private static final int FORECAST_DAYS = 14;
+
+    private static final long TEST_DELAY_MILLIS = 60 * 1000;
+
+    /* As in TestForecastDiff, seeing a notification for this URI means the others were seen */
+    private static final Uri FENCE_URI =
+            Uri.parse("content://" + WeatherContract.CONTENT_AUTHORITY + ".test/fence");
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    private ChangeNotifier mChangeNotifier;
+
+    private HandlerThread mObserverThread;
+    /* MainActivity's list of the days from today */
+    private TestUtilities.CountingObserver mListObserver;
+    /* DetailActivity showing today */
+    private TestUtilities.CountingObserver mTodayObserver;
+    /* DetailActivity showing the day a sync changes */
+    private TestUtilities.CountingObserver mChangedDayObserver;
+    private TestUtilities.CountingObserver mArchiveObserver;
+    private TestUtilities.CountingObserver mFenceObserver;
+
+    @Before
+    public void setUp() {
+        mChangeNotifier = TestUtilities.getChangeNotifier(mContext);
+        mChangeNotifier.setDelayMillis(TEST_DELAY_MILLIS);
+
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+        mContentResolver.delete(WeatherContract.ArchiveEntry.CONTENT_URI, null, null);
+        replaceForecast(createForecast(0));
+
+        mObserverThread = new HandlerThread("ChangeNotificationObserver");
+        mObserverThread.start();
+        Handler handler = new Handler(mObserverThread.getLooper());
+
+        mListObserver = register(handler, WeatherEntry.buildWeatherUriFromToday());
+        mTodayObserver = register(handler, WeatherEntry.buildWeatherUriWithDate(mToday));
+        mChangedDayObserver = register(handler, WeatherEntry.buildWeatherUriWithDate(dateOf(3)));
+        mArchiveObserver = register(handler, WeatherContract.ArchiveEntry.CONTENT_URI);
+        mFenceObserver = new TestUtilities.CountingObserver(handler);
+        mContentResolver.registerContentObserver(FENCE_URI, false, mFenceObserver);
+
+        awaitNotifications();
+        resetObservers();
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.unregisterContentObserver(mListObserver);
+        mContentResolver.unregisterContentObserver(mTodayObserver);
+        mContentResolver.unregisterContentObserver(mChangedDayObserver);
+        mContentResolver.unregisterContentObserver(mArchiveObserver);
+        mContentResolver.unregisterContentObserver(mFenceObserver);
+        mObserverThread.quit();
+
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+        mContentResolver.delete(WeatherContract.ArchiveEntry.CONTENT_URI, null, null);
+        mChangeNotifier.flush();
+        mChangeNotifier.setDelayMillis(ChangeNotifier.DEFAULT_DELAY_MILLIS);
+    }
+
+    /**
+     * A sync that changes one day reloads the list once, and the detail of that day, but not the
+     * detail of a day that didn't change.
+     */
+    @Test
+    public void testSyncNotifiesTheDaysItChanged() {
+        replaceForecast(createForecastWithChangedDay(3));
+        awaitNotifications();
+
+        assertEquals(1, mListObserver.getCount());
+        assertEquals(1, mChangedDayObserver.getCount());
+        assertEquals(0, mTodayObserver.getCount());
+        assertEquals(1, mArchiveObserver.getCount());
+    }
+
+    /**
+     * A sync that changes every day notifies the whole table once, which reaches every observer
+     * of the weather exactly once.
+     */
+    @Test
+    public void testSyncThatChangesEveryDayNotifiesTheTable() {
+        TestUtilities.CountingObserver tableObserver =
+                new TestUtilities.CountingObserver(new Handler(mObserverThread.getLooper()));
+        mContentResolver.registerContentObserver(WeatherEntry.CONTENT_URI, true, tableObserver);
+        try {
+            replaceForecast(createForecast(1));
+            awaitNotifications();
+
+            assertEquals(1, tableObserver.getCount());
+            assertEquals(1, mListObserver.getCount());
+            assertEquals(1, mTodayObserver.getCount());
+            assertEquals(1, mChangedDayObserver.getCount());
+        } finally {
+            mContentResolver.unregisterContentObserver(tableObserver);
+        }
+    }
+
+    /**
+     * A units change that comes in while a sync is writing the weather shares its notification.
+     */
+    @Test
+    public void testUnitsChangeDuringSyncIsCoalesced() {
+        replaceForecast(createForecastWithChangedDay(3));
+        notifyUnitsChanged();
+        awaitNotifications();
+
+        assertEquals(1, mListObserver.getCount());
+        assertEquals(1, mChangedDayObserver.getCount());
+        assertEquals(1, mTodayObserver.getCount());
+    }
+
+    @Test
+    public void testNotificationsAreSentWithoutAFlush() {
+        mChangeNotifier.setDelayMillis(ChangeNotifier.DEFAULT_DELAY_MILLIS);
+
+        replaceForecast(createForecastWithChangedDay(3));
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return mListObserver.getCount() == 1;
+            }
+        }.run();
+    }
+
+    /**
+     * Logs how many times the list, the detail of an unchanged day and the archive would reload
+     * for one sync: first the way syncs used to be written and notified, by deleting and
+     * inserting the forecast with every notification sent right away, then by replacing the
+     * forecast with notifications held back. Both syncs change one day, and the user changes
+     * units while each of them runs.
+     */
+    @Test
+    public void testReloadsPerSync() {
+        mChangeNotifier.setDelayMillis(0);
+        int sentBefore = mChangeNotifier.getSentCount();
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+        mContentResolver.bulkInsert(WeatherEntry.CONTENT_URI,
+                createForecastWithChangedDay(3).toContentValuesArray());
+        compactArchive();
+        notifyUnitsChanged();
+        awaitNotifications();
+        int listBefore = mListObserver.getCount();
+        int todayBefore = mTodayObserver.getCount();
+        int archiveBefore = mArchiveObserver.getCount();
+        sentBefore = mChangeNotifier.getSentCount() - sentBefore;
+
+        resetObservers();
+        mChangeNotifier.setDelayMillis(TEST_DELAY_MILLIS);
+        int sentAfter = mChangeNotifier.getSentCount();
+        replaceForecast(createForecastWithChangedDay(4));
+        compactArchive();
+        notifyUnitsChanged();
+        awaitNotifications();
+        int listAfter = mListObserver.getCount();
+        int todayAfter = mTodayObserver.getCount();
+        int archiveAfter = mArchiveObserver.getCount();
+        sentAfter = mChangeNotifier.getSentCount() - sentAfter;
+
+        Log.i(TAG, "Reloads per sync before: list " + listBefore + ", detail " + todayBefore
+                + ", archive " + archiveBefore + " from " + sentBefore + " notifications. "
+                + "After: list " + listAfter + ", detail " + todayAfter + ", archive "
+                + archiveAfter + " from " + sentAfter + " notifications");
+
+        assertEquals(1, listAfter);
+        assertEquals(1, todayAfter);
+        assertTrue("The list reloaded " + listAfter + " times, and " + listBefore + " before",
+                listAfter < listBefore);
+    }
+
+    private TestUtilities.CountingObserver register(Handler handler, Uri uri) {
+        TestUtilities.CountingObserver observer = new TestUtilities.CountingObserver(handler);
+        /* CursorLoader's cursors register for the URI and everything under it */
+        mContentResolver.registerContentObserver(uri, true, observer);
+        return observer;
+    }
+
+    private void resetObservers() {
+        mListObserver.reset();
+        mTodayObserver.reset();
+        mChangedDayObserver.reset();
+        mArchiveObserver.reset();
+    }
+
+    /**
+     * Sends what the provider is holding back and waits until the observers have seen it.
+     */
+    private void awaitNotifications() {
+        mChangeNotifier.flush();
+        final int fences = mFenceObserver.getCount() + 1;
+        mContentResolver.notifyChange(FENCE_URI, null);
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return mFenceObserver.getCount() >= fences;
+            }
+        }.run();
+    }
+
+    /* What SettingsFragment does when the units change */
+    private void notifyUnitsChanged() {
+        mContentResolver.call(WeatherEntry.CONTENT_URI, WeatherContract.METHOD_NOTIFY_CHANGE,
+                WeatherEntry.CONTENT_URI.toString(), null);
+    }
+
+    private void compactArchive() {
+        mContentResolver.call(WeatherContract.ArchiveEntry.CONTENT_URI,
+                WeatherContract.METHOD_COMPACT_ARCHIVE, null, null);
+    }
+
+    private void replaceForecast(ForecastBatch forecast) {
+        mContentResolver.call(WeatherEntry.CONTENT_URI, WeatherContract.METHOD_REPLACE_COLUMNS,
+                null, forecast.toBundle());
+    }
+
+    /**
+     * @return The forecast createForecast(0) returns, with a higher high on the given day
+     */
+    private ForecastBatch createForecastWithChangedDay(int changedDay) {
+        ForecastBatch forecast = new ForecastBatch(FORECAST_DAYS);
+        for (int day = 0; day < FORECAST_DAYS; day++) {
+            forecast.add(dateOf(day), 200 + day, 10.25 - day,
+                    day == changedDay ? 99.5 : 20.5 + day, 50.0, 1013.5, 4.5, 180.0);
+        }
+        return forecast;
+    }
+
+    /**
+     * @param tempOffset Added to every temperature, to make a forecast that differs everywhere
+     */
+    private ForecastBatch createForecast(double tempOffset) {
+        ForecastBatch forecast = new ForecastBatch(FORECAST_DAYS);
+        for (int day = 0; day < FORECAST_DAYS; day++) {
+            forecast.add(dateOf(day), 200 + day, 10.25 - day + tempOffset,
+                    20.5 + day + tempOffset, 50.0, 1013.5, 4.5, 180.0);
+        }
+        return forecast;
+    }
+
+    private long dateOf(int day) {
+        return mToday + day * SunshineDateUtils.DAY_IN_MILLIS;
+    }
+}
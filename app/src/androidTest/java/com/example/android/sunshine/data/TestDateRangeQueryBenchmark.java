@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.MainActivity;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Times the forecast list's query, a 14 day range from today, with more and more history in the
+ * weather table: none, one year, ten years and fifty years. The range is read from the covering
+ * forecast index, so the query should take about as long with fifty years of weather as with
+ * none. The median of each is logged, and we check that SQLite really does answer the list's
+ * query from the index alone.
+ * <p>
+ * The shorter histories fit in {@link ForecastCache} and are answered from memory, so they set
+ * the bar that the index has to keep up with once the table is too big to cache.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestDateRangeQueryBenchmark {
+
+    private static final String TAG = TestDateRangeQueryBenchmark.class.getSimpleName();
+
+    /* The number of days the weather server sends us */
+    private static final int FORECAST_DAYS = 14;
+
+    private static final int[] HISTORY_YEARS = {0, 1, 10, 50};
+
+    private static final int WARMUP_QUERIES = 50;
+    private static final int MEASURED_QUERIES = 200;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    @Before
+    public void setUp() {
+        deleteAllRecordsFromWeatherTable();
+    }
+
+    @After
+    public void tearDown() {
+        deleteAllRecordsFromWeatherTable();
+    }
+
+    /**
+     * The forecast list's query must be answered from the forecast index without reading the
+     * table, or it would slow down as history piles up.
+     */
+    @Test
+    public void testForecastListIsAnIndexOnlyScan() {
+        assertIndexOnly(MainActivity.MAIN_FORECAST_PROJECTION);
+    }
+
+    @Test
+    public void testRangeQueryTimeStaysFlat() {
+        long[] medianNanos = new long[HISTORY_YEARS.length];
+        for (int i = 0; i < HISTORY_YEARS.length; i++) {
+            int historyDays = HISTORY_YEARS[i] * 365;
+            insertWeather(historyDays);
+            medianNanos[i] = timeForecastListQuery();
+            Log.i(TAG, HISTORY_YEARS[i] + " years of history (" + (historyDays + FORECAST_DAYS)
+                    + " rows): median " + medianNanos[i] / 1000 + " us per "
+                    + FORECAST_DAYS + " day range query");
+            deleteAllRecordsFromWeatherTable();
+        }
+
+        /*
+         * A range scan only reads the days in the range, so fifty years of history should cost
+         * no more than a small constant over none. Leave plenty of room for a noisy device.
+         */
+        long emptyHistory = medianNanos[0];
+        long longestHistory = medianNanos[HISTORY_YEARS.length - 1];
+        assertTrue("The query took " + longestHistory / 1000 + " us with "
+                        + HISTORY_YEARS[HISTORY_YEARS.length - 1] + " years of history, against "
+                        + emptyHistory / 1000 + " us with none",
+                longestHistory < emptyHistory * 4 + 2000000);
+    }
+
+    /**
+     * @return The median time it takes to run MainActivity's query and read every row of it
+     */
+    private long timeForecastListQuery() {
+        Uri forecastUri = WeatherEntry.buildWeatherUriFromToday();
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            assertEquals(FORECAST_DAYS, readAll(forecastUri));
+        }
+
+        long[] queryNanos = new long[MEASURED_QUERIES];
+        for (int i = 0; i < MEASURED_QUERIES; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            readAll(forecastUri);
+            queryNanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(queryNanos);
+        return queryNanos[MEASURED_QUERIES / 2];
+    }
+
+    private int readAll(Uri forecastUri) {
+        Cursor cursor = mContentResolver.query(forecastUri,
+                MainActivity.MAIN_FORECAST_PROJECTION, null, null, null);
+        try {
+            /* Read every column, as the adapter binding the list would */
+            int rows = 0;
+            while (cursor.moveToNext()) {
+                cursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+                cursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
+                cursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
+                cursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
+                rows++;
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Inserts historyDays of weather before today, followed by a forecast from today onwards.
+     */
+    private void insertWeather(int historyDays) {
+        ForecastBatch weather = new ForecastBatch(historyDays + FORECAST_DAYS);
+        for (int day = -historyDays; day < FORECAST_DAYS; day++) {
+            weather.add(mToday + day * SunshineDateUtils.DAY_IN_MILLIS,
+                    200 + (day & 511), -20.5 + (day & 31), 10.25 + (day & 15),
+                    50.0, 1013.5, 4.5, 180.0);
+        }
+        Bundle result = mContentResolver.call(WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_BULK_INSERT_COLUMNS, null, weather.toBundle());
+        assertEquals(historyDays + FORECAST_DAYS,
+                result.getInt(WeatherContract.EXTRA_ROWS_INSERTED));
+    }
+
+    /**
+     * Asks SQLite how it would run the provider's range query with the given projection, and
+     * checks that it would only read the forecast index.
+     */
+    private void assertIndexOnly(String[] projection) {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getReadableDatabase();
+        Cursor plan = database.rawQuery("EXPLAIN QUERY PLAN SELECT "
+                        + Arrays.toString(projection).replaceAll("[\\[\\]]", "")
+                        + " FROM " + WeatherEntry.TABLE_NAME
+                        + " WHERE " + WeatherEntry.COLUMN_DATE + " >= ? AND "
+                        + WeatherEntry.COLUMN_DATE + " <= ?"
+                        + " ORDER BY " + WeatherEntry.COLUMN_DATE + " ASC",
+                new String[]{Long.toString(mToday), Long.toString(Long.MAX_VALUE)});
+        try {
+            StringBuilder details = new StringBuilder();
+            int detailIndex = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                details.append(plan.getString(detailIndex)).append('\n');
+            }
+            assertTrue("The query isn't an index-only scan:\n" + details,
+                    details.toString().contains(
+                            "COVERING INDEX " + WeatherDbHelper.FORECAST_INDEX_NAME));
+        } finally {
+            plan.close();
+            database.close();
+        }
+    }
+
+    private void deleteAllRecordsFromWeatherTable() {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.delete(WeatherEntry.TABLE_NAME, null, null);
+        database.close();
+        ForecastCache.invalidate();
+    }
+}
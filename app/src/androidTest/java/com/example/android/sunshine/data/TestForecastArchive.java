@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests the archive of past forecasts: that a sync archives the days it revises or drops, that
+ * compaction merges the revisions of old days into one row with the right values, that days
+ * older than the retention window are deleted, and that compacting again changes nothing.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastArchive {
+
+    /* The tests get a database of their own, so they can pick what "today" is */
+    private static final String DATABASE_NAME = "forecast_archive_test.db";
+
+    /* The number of days the weather server sends us */
+    private static final int FORECAST_DAYS = 14;
+
+    private static final long TODAY = TestUtilities.DATE_NORMALIZED;
+
+    /* A day old enough to be compacted, and one too recent to be */
+    private static final long OLD_DAY = TODAY - 30 * SunshineDateUtils.DAY_IN_MILLIS;
+    private static final long RECENT_DAY = TODAY - 2 * SunshineDateUtils.DAY_IN_MILLIS;
+
+    private static final int COMPACT_AFTER_DAYS = 7;
+    private static final int RETENTION_DAYS = 365;
+
+    private static final String[] ARCHIVE_PROJECTION = {
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES,
+            ArchiveEntry.COLUMN_ARCHIVED_AT,
+            ArchiveEntry.COLUMN_REVISIONS
+    };
+
+    private static final int INDEX_WEATHER_ID = 0;
+    private static final int INDEX_MIN_TEMP = 1;
+    private static final int INDEX_MAX_TEMP = 2;
+    private static final int INDEX_HUMIDITY = 3;
+    private static final int INDEX_PRESSURE = 4;
+    private static final int INDEX_WIND_SPEED = 5;
+    private static final int INDEX_DEGREES = 6;
+    private static final int INDEX_ARCHIVED_AT = 7;
+    private static final int INDEX_REVISIONS = 8;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private WeatherDbHelper mHelper;
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new WeatherDbHelper(mContext, DATABASE_NAME, WeatherDbHelper.Tuning.DEFAULT);
+        mDatabase = mHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void testUnchangedForecastArchivesNothing() {
+        applyForecast(createForecast(0, 0));
+
+        ForecastDiff diff = applyForecast(createForecast(0, 0));
+
+        assertEquals(0, diff.archived);
+        assertEquals(0, countArchivedRows());
+    }
+
+    @Test
+    public void testRevisedDayIsArchived() {
+        ForecastBatch original = createForecast(0, 0);
+        applyForecast(original);
+
+        /* The server revises the fourth day */
+        ForecastBatch revised = new ForecastBatch(FORECAST_DAYS);
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            revised.add(original.getDate(i), original.getWeatherId(i), original.getMinTemp(i),
+                    i == 3 ? 99.5 : original.getMaxTemp(i), original.getHumidity(i),
+                    original.getPressure(i), original.getWindSpeed(i), original.getDegrees(i));
+        }
+        ForecastDiff diff = applyForecast(revised);
+
+        assertEquals(1, diff.updated);
+        assertEquals(1, diff.archived);
+        Cursor cursor = queryArchivedDay(original.getDate(3));
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            /* The archive holds what the day was before the revision */
+            assertEquals(original.getMaxTemp(3), cursor.getDouble(INDEX_MAX_TEMP));
+            assertEquals(original.getMinTemp(3), cursor.getDouble(INDEX_MIN_TEMP));
+            assertEquals(1, cursor.getInt(INDEX_REVISIONS));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testDroppedDayIsArchived() {
+        ForecastBatch original = createForecast(0, 0);
+        applyForecast(original);
+
+        /* A day later, the first day has dropped off and a new one has been added at the end */
+        ForecastDiff diff = applyForecast(createForecast(1, 0));
+
+        assertEquals(1, diff.deleted);
+        assertEquals(1, diff.archived);
+        /* Archiving isn't counted as a write to the forecast */
+        assertEquals(2, diff.getRowsWritten());
+        Cursor cursor = queryArchivedDay(original.getDate(0));
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(original.getWeatherId(0), cursor.getInt(INDEX_WEATHER_ID));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testCompactionMergesRevisions() {
+        insertRevision(OLD_DAY, 500, 10.0, 20.0, 40.0, 1000.0, 2.0, 90.0, 1000);
+        insertRevision(OLD_DAY, 501, 8.0, 22.0, 50.0, 1010.0, 4.0, 180.0, 2000);
+        insertRevision(OLD_DAY, 800, 12.0, 18.0, 60.0, 1020.0, 6.0, 270.0, 3000);
+
+        ForecastArchive compaction = compact();
+
+        assertEquals(1, compaction.daysCompacted);
+        assertEquals(2, compaction.rowsCompacted);
+        assertEquals(0, compaction.rowsExpired);
+
+        Cursor cursor = queryArchivedDay(OLD_DAY);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            /* The weather and the wind direction of the last revision */
+            assertEquals(800, cursor.getInt(INDEX_WEATHER_ID));
+            assertEquals(270.0, cursor.getDouble(INDEX_DEGREES));
+            /* The extremes of every revision */
+            assertEquals(8.0, cursor.getDouble(INDEX_MIN_TEMP));
+            assertEquals(22.0, cursor.getDouble(INDEX_MAX_TEMP));
+            /* The averages of every revision */
+            assertEquals(50.0, cursor.getDouble(INDEX_HUMIDITY));
+            assertEquals(1010.0, cursor.getDouble(INDEX_PRESSURE));
+            assertEquals(4.0, cursor.getDouble(INDEX_WIND_SPEED));
+            assertEquals(3000, cursor.getLong(INDEX_ARCHIVED_AT));
+            assertEquals(3, cursor.getInt(INDEX_REVISIONS));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsRecentRevisions() {
+        insertRevision(RECENT_DAY, 500, 10.0, 20.0, 40.0, 1000.0, 2.0, 90.0, 1000);
+        insertRevision(RECENT_DAY, 501, 8.0, 22.0, 50.0, 1010.0, 4.0, 180.0, 2000);
+
+        ForecastArchive compaction = compact();
+
+        assertEquals(0, compaction.getRowsWritten());
+        assertEquals(2, countArchivedRows());
+    }
+
+    @Test
+    public void testCompactionIsIdempotent() {
+        insertRevision(OLD_DAY, 500, 10.0, 20.0, 40.0, 1000.0, 2.0, 90.0, 1000);
+        insertRevision(OLD_DAY, 501, 8.0, 22.0, 50.0, 1010.0, 4.0, 180.0, 2000);
+        insertRevision(OLD_DAY, 800, 12.0, 18.0, 60.0, 1020.0, 6.0, 270.0, 3000);
+        compact();
+
+        ForecastArchive again = compact();
+
+        assertEquals(0, again.getRowsWritten());
+        assertEquals(1, countArchivedRows());
+    }
+
+    /**
+     * A day that was already compacted and then gets another revision ends up as if all of its
+     * revisions had been compacted at once.
+     */
+    @Test
+    public void testCompactingACompactedDayWeighsItsRevisions() {
+        insertRevision(OLD_DAY, 500, 10.0, 20.0, 40.0, 1000.0, 2.0, 90.0, 1000);
+        insertRevision(OLD_DAY, 501, 8.0, 22.0, 50.0, 1010.0, 4.0, 180.0, 2000);
+        insertRevision(OLD_DAY, 800, 12.0, 18.0, 60.0, 1020.0, 6.0, 270.0, 3000);
+        compact();
+
+        insertRevision(OLD_DAY, 300, 5.0, 15.0, 90.0, 1030.0, 8.0, 0.0, 4000);
+        ForecastArchive compaction = compact();
+
+        assertEquals(1, compaction.daysCompacted);
+        assertEquals(1, compaction.rowsCompacted);
+        Cursor cursor = queryArchivedDay(OLD_DAY);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(300, cursor.getInt(INDEX_WEATHER_ID));
+            assertEquals(5.0, cursor.getDouble(INDEX_MIN_TEMP));
+            assertEquals(22.0, cursor.getDouble(INDEX_MAX_TEMP));
+            /* (40 + 50 + 60 + 90) / 4, not (50 + 90) / 2 */
+            assertEquals(60.0, cursor.getDouble(INDEX_HUMIDITY));
+            assertEquals(1015.0, cursor.getDouble(INDEX_PRESSURE));
+            assertEquals(5.0, cursor.getDouble(INDEX_WIND_SPEED));
+            assertEquals(4, cursor.getInt(INDEX_REVISIONS));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testRetentionDeletesOldDays() {
+        long expiredDay = TODAY - (RETENTION_DAYS + 1) * SunshineDateUtils.DAY_IN_MILLIS;
+        insertRevision(expiredDay, 500, 10.0, 20.0, 40.0, 1000.0, 2.0, 90.0, 1000);
+        insertRevision(expiredDay, 501, 8.0, 22.0, 50.0, 1010.0, 4.0, 180.0, 2000);
+        insertRevision(OLD_DAY, 500, 10.0, 20.0, 40.0, 1000.0, 2.0, 90.0, 1000);
+
+        ForecastArchive compaction = compact();
+
+        assertEquals(2, compaction.rowsExpired);
+        assertEquals(0, compaction.daysCompacted);
+        assertEquals(0, queryArchivedDayCount(expiredDay));
+        assertEquals(1, queryArchivedDayCount(OLD_DAY));
+    }
+
+    /**
+     * Compacts the app's own archive through the ContentProvider, which counts days from the
+     * real today.
+     */
+    @Test
+    public void testCompactArchiveMethod() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        contentResolver.delete(ArchiveEntry.CONTENT_URI, null, null);
+
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        long oldDay = today - 30 * SunshineDateUtils.DAY_IN_MILLIS;
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        try {
+            insertRevision(database, oldDay, 500, 10.0, 20.0, 40.0, 1000.0, 2.0, 90.0, 1000);
+            insertRevision(database, oldDay, 501, 8.0, 22.0, 50.0, 1010.0, 4.0, 180.0, 2000);
+        } finally {
+            database.close();
+        }
+
+        Bundle extras = new Bundle();
+        extras.putInt(WeatherContract.EXTRA_COMPACT_AFTER_DAYS, COMPACT_AFTER_DAYS);
+        Bundle result = contentResolver.call(ArchiveEntry.CONTENT_URI,
+                WeatherContract.METHOD_COMPACT_ARCHIVE, null, extras);
+
+        assertEquals(1, result.getInt(WeatherContract.EXTRA_ROWS_COMPACTED));
+        assertEquals(0, result.getInt(WeatherContract.EXTRA_ROWS_EXPIRED));
+        Cursor cursor = contentResolver.query(ArchiveEntry.buildArchiveRangeUri(oldDay, oldDay),
+                null, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+        } finally {
+            cursor.close();
+            contentResolver.delete(ArchiveEntry.CONTENT_URI, null, null);
+        }
+    }
+
+    private ForecastDiff applyForecast(ForecastBatch forecast) {
+        mDatabase.beginTransaction();
+        try {
+            ForecastDiff diff = ForecastDiff.apply(mDatabase, forecast);
+            mDatabase.setTransactionSuccessful();
+            return diff;
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    private ForecastArchive compact() {
+        mDatabase.beginTransaction();
+        try {
+            ForecastArchive compaction = ForecastArchive.compact(
+                    mDatabase, TODAY, COMPACT_AFTER_DAYS, RETENTION_DAYS);
+            mDatabase.setTransactionSuccessful();
+            return compaction;
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    private void insertRevision(long date, int weatherId, double minTemp, double maxTemp,
+                                double humidity, double pressure, double windSpeed,
+                                double degrees, long archivedAt) {
+        insertRevision(mDatabase, date, weatherId, minTemp, maxTemp, humidity, pressure,
+                windSpeed, degrees, archivedAt);
+    }
+
+    private static void insertRevision(SQLiteDatabase database, long date, int weatherId,
+                                       double minTemp, double maxTemp, double humidity,
+                                       double pressure, double windSpeed, double degrees,
+                                       long archivedAt) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, date);
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, minTemp);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
+        values.put(WeatherEntry.COLUMN_HUMIDITY, humidity);
+        values.put(WeatherEntry.COLUMN_PRESSURE, pressure);
+        values.put(WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
+        values.put(WeatherEntry.COLUMN_DEGREES, degrees);
+        values.put(ArchiveEntry.COLUMN_ARCHIVED_AT, archivedAt);
+        assertTrue(database.insert(ArchiveEntry.TABLE_NAME, null, values) != -1);
+    }
+
+    private Cursor queryArchivedDay(long date) {
+        return mDatabase.query(ArchiveEntry.TABLE_NAME, ARCHIVE_PROJECTION,
+                WeatherEntry.COLUMN_DATE + " = ?", new String[]{Long.toString(date)},
+                null, null, ArchiveEntry.COLUMN_ARCHIVED_AT + " ASC");
+    }
+
+    private int queryArchivedDayCount(long date) {
+        Cursor cursor = queryArchivedDay(date);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long countArchivedRows() {
+        return DatabaseUtils.queryNumEntries(mDatabase, ArchiveEntry.TABLE_NAME);
+    }
+
+    /**
+     * @param firstDay   Index of the first day of the forecast, counted from TODAY
+     * @param tempOffset Added to every temperature, to make a forecast that differs everywhere
+     * @return A forecast of FORECAST_DAYS days
+     */
+    private static ForecastBatch createForecast(int firstDay, double tempOffset) {
+        ForecastBatch forecast = new ForecastBatch(FORECAST_DAYS);
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            int day = firstDay + i;
+            forecast.add(TODAY + day * SunshineDateUtils.DAY_IN_MILLIS, 200 + day,
+                    10.25 + tempOffset, 20.5 + day + tempOffset, 50.0, 1013.5, 4.5, 180.0);
+        }
+        return forecast;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.MainActivity;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests that WeatherProvider answers forecast queries from {@link ForecastCache} between syncs
+ * without going to the database, that a write swaps in a new snapshot, and that the cached
+ * cursors hold exactly what SQLite would have returned. Also logs the median time of the
+ * forecast list's query from the cache and from SQLite.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastCache {
+
+    private static final String TAG = TestForecastCache.class.getSimpleName();
+
+    /* The number of days the weather server sends us */
+    private static final int FORECAST_DAYS = 14;
+
+    private static final int WARMUP_QUERIES = 50;
+    private static final int MEASURED_QUERIES = 500;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    @Before
+    public void setUp() {
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    /**
+     * Once a snapshot is loaded, the queries of MainActivity, DetailActivity and the sync are
+     * all answered without loading another one.
+     */
+    @Test
+    public void testQueriesBetweenSyncsDontLoadFromTheDatabase() {
+        replaceForecast(createForecast(0));
+        assertEquals(FORECAST_DAYS, countRows(WeatherEntry.buildWeatherUriFromToday(), null));
+
+        long loadCount = ForecastCache.getLoadCount();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(FORECAST_DAYS, countRows(WeatherEntry.buildWeatherUriFromToday(),
+                    MainActivity.MAIN_FORECAST_PROJECTION));
+            assertEquals(1, countRows(WeatherEntry.buildWeatherUriWithDate(mToday),
+                    ForecastRepository.DAY_PROJECTION));
+            assertEquals(1, countRows(
+                    WeatherEntry.buildWeatherRangeUri(mToday, Long.MAX_VALUE, 1), null));
+            assertEquals(FORECAST_DAYS, countRows(WeatherEntry.CONTENT_URI, null));
+        }
+
+        assertEquals(loadCount, ForecastCache.getLoadCount());
+    }
+
+    @Test
+    public void testWriteSwapsTheSnapshot() {
+        replaceForecast(createForecast(0));
+        Cursor before = queryToday();
+
+        ForecastBatch revised = createForecast(0);
+        ForecastBatch forecast = new ForecastBatch(FORECAST_DAYS);
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            forecast.add(revised.getDate(i), revised.getWeatherId(i), revised.getMinTemp(i),
+                    i == 0 ? 99.5 : revised.getMaxTemp(i), revised.getHumidity(i),
+                    revised.getPressure(i), revised.getWindSpeed(i), revised.getDegrees(i));
+        }
+        replaceForecast(forecast);
+        Cursor after = queryToday();
+
+        try {
+            assertTrue(after.moveToFirst());
+            assertEquals(99.5, after.getDouble(after.getColumnIndex(WeatherEntry.COLUMN_MAX_TEMP)));
+
+            /* A cursor taken before the write still reads the snapshot it was taken from */
+            assertTrue(before.moveToFirst());
+            assertEquals(revised.getMaxTemp(0),
+                    before.getDouble(before.getColumnIndex(WeatherEntry.COLUMN_MAX_TEMP)));
+        } finally {
+            before.close();
+            after.close();
+        }
+    }
+
+    @Test
+    public void testDeleteSwapsTheSnapshot() {
+        replaceForecast(createForecast(0));
+        assertEquals(FORECAST_DAYS, countRows(WeatherEntry.CONTENT_URI, null));
+
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+
+        assertEquals(0, countRows(WeatherEntry.CONTENT_URI, null));
+    }
+
+    /**
+     * Every row and every column of a cached range reads back just like it does from SQLite.
+     */
+    @Test
+    public void testCachedCursorMatchesTheDatabase() {
+        replaceForecast(createForecast(-3));
+        Uri range = WeatherEntry.buildWeatherRangeUri(mToday - SunshineDateUtils.DAY_IN_MILLIS,
+                mToday + 5 * SunshineDateUtils.DAY_IN_MILLIS);
+
+        Cursor cached = mContentResolver.query(range, null, null, null, null);
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getReadableDatabase();
+        Cursor stored = database.query(WeatherEntry.TABLE_NAME, cached.getColumnNames(),
+                WeatherEntry.COLUMN_DATE + " >= ? AND " + WeatherEntry.COLUMN_DATE + " <= ?",
+                new String[]{range.getPathSegments().get(2), range.getPathSegments().get(3)},
+                null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        try {
+            assertEquals(7, cached.getCount());
+            assertEquals(stored.getCount(), cached.getCount());
+            while (stored.moveToNext()) {
+                assertTrue(cached.moveToNext());
+                for (int column = 0; column < stored.getColumnCount(); column++) {
+                    String name = stored.getColumnName(column);
+                    assertEquals(name, stored.getType(column), cached.getType(column));
+                    assertEquals(name, stored.getLong(column), cached.getLong(column));
+                    assertEquals(name, stored.getDouble(column), cached.getDouble(column));
+                }
+            }
+        } finally {
+            cached.close();
+            stored.close();
+            database.close();
+        }
+    }
+
+    /**
+     * Queries the snapshot can't answer like SQLite would still work, by going to SQLite.
+     */
+    @Test
+    public void testSelectionIsAnsweredByTheDatabase() {
+        replaceForecast(createForecast(0));
+
+        Cursor cursor = mContentResolver.query(WeatherEntry.CONTENT_URI, null,
+                WeatherEntry.COLUMN_MAX_TEMP + " > ?", new String[]{"25"}, null);
+        try {
+            /* The highs go from 20.5 up by a degree a day */
+            assertEquals(FORECAST_DAYS - 5, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testTooManyDaysAreNotCached() {
+        replaceForecast(createForecast(-ForecastCache.MAX_CACHED_DAYS));
+
+        assertEquals(FORECAST_DAYS, countRows(WeatherEntry.buildWeatherUriFromToday(), null));
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getReadableDatabase();
+        try {
+            assertNull(ForecastCache.get(database));
+        } finally {
+            database.close();
+        }
+    }
+
+    /**
+     * Logs how long the forecast list's query takes from the cache, and from SQLite by dropping
+     * the snapshot before each query. Between syncs, the query should take well under a
+     * millisecond.
+     */
+    @Test
+    public void testForecastReadLatency() {
+        replaceForecast(createForecast(0));
+        Uri forecastUri = WeatherEntry.buildWeatherUriFromToday();
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getReadableDatabase();
+        try {
+            assertNotNull(ForecastCache.get(database));
+        } finally {
+            database.close();
+        }
+
+        long cachedNanos = timeQuery(forecastUri, false);
+        long uncachedNanos = timeQuery(forecastUri, true);
+
+        Log.i(TAG, FORECAST_DAYS + " day forecast list query: median " + cachedNanos / 1000
+                + " us from the cache, " + uncachedNanos / 1000 + " us from SQLite");
+        assertTrue("Reading the cached forecast took " + cachedNanos / 1000 + " us",
+                cachedNanos < 1000000);
+    }
+
+    /**
+     * @param invalidate true to drop the snapshot before each query, so every query loads one
+     * @return The median time it takes to run MainActivity's query and read every row of it
+     */
+    private long timeQuery(Uri forecastUri, boolean invalidate) {
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            readAll(forecastUri);
+        }
+
+        long[] queryNanos = new long[MEASURED_QUERIES];
+        for (int i = 0; i < MEASURED_QUERIES; i++) {
+            if (invalidate) {
+                ForecastCache.invalidate();
+            }
+            long start = SystemClock.elapsedRealtimeNanos();
+            assertEquals(FORECAST_DAYS, readAll(forecastUri));
+            queryNanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(queryNanos);
+        return queryNanos[MEASURED_QUERIES / 2];
+    }
+
+    private int readAll(Uri forecastUri) {
+        Cursor cursor = mContentResolver.query(forecastUri,
+                MainActivity.MAIN_FORECAST_PROJECTION, null, null, null);
+        try {
+            int rows = 0;
+            while (cursor.moveToNext()) {
+                cursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+                cursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
+                cursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
+                cursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
+                rows++;
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Cursor queryToday() {
+        return mContentResolver.query(WeatherEntry.buildWeatherUriWithDate(mToday),
+                null, null, null, null);
+    }
+
+    private int countRows(Uri uri, String[] projection) {
+        Cursor cursor = mContentResolver.query(uri, projection, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void replaceForecast(ForecastBatch forecast) {
+        mContentResolver.call(WeatherEntry.CONTENT_URI, WeatherContract.METHOD_REPLACE_COLUMNS,
+                null, forecast.toBundle());
+    }
+
+    /**
+     * @param firstDay Index of the first day, counted from today. The forecast runs from there
+     *                 to FORECAST_DAYS days after today.
+     */
+    private ForecastBatch createForecast(int firstDay) {
+        ForecastBatch forecast = new ForecastBatch(FORECAST_DAYS - firstDay);
+        for (int day = firstDay; day < FORECAST_DAYS; day++) {
+            forecast.add(mToday + day * SunshineDateUtils.DAY_IN_MILLIS, 200 + day,
+                    10.25 - day, 20.5 + day, 50.0, 1013.5, 4.5, 180.0);
+        }
+        return forecast;
+    }
+}
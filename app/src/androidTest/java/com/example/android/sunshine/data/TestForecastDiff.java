@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utils.PollingCheck;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_DATE;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_DEGREES;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_HUMIDITY;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_MAX_TEMP;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_MIN_TEMP;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_PRESSURE;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_WEATHER_ID;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_WIND_SPEED;
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Tests bulkInserting forecasts into {@link WeatherContract.WeatherEntry#CONTENT_URI_REPLACE}.
+ * For an unchanged, a partially changed, a rolled over and a fully changed forecast, we check
+ * that the table ends up holding exactly the new forecast, and count the rows written and the
+ * change notifications a CursorLoader would have requeried for. The same counts for the old
+ * delete-then-bulkInsert approach are logged alongside for comparison.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastDiff {
+
+    private static final String TAG = TestForecastDiff.class.getSimpleName();
+
+    /* The number of days the weather server sends us */
+    private static final int FORECAST_DAYS = 14;
+
+    /*
+     * Notifications for this URI are sent after each operation. Once an observer has seen it,
+     * it has also seen every notification sent before it.
+     */
+    private static final Uri FENCE_URI =
+            Uri.parse("content://" + WeatherContract.CONTENT_AUTHORITY + ".test/fence");
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    private HandlerThread mObserverThread;
+    private TestUtilities.CountingObserver mForecastObserver;
+    private TestUtilities.CountingObserver mFenceObserver;
+
+    @Before
+    public void setUp() {
+        deleteAllRecordsFromWeatherTable();
+
+        mObserverThread = new HandlerThread("ForecastDiffObserver");
+        mObserverThread.start();
+        Handler handler = new Handler(mObserverThread.getLooper());
+
+        /*
+         * Registered the same way a CursorLoader over CONTENT_URI registers its observer. The
+         * provider's cursors over the whole table watch the range URI.
+         */
+        mForecastObserver = new TestUtilities.CountingObserver(handler);
+        mContentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI_RANGE, true, mForecastObserver);
+
+        mFenceObserver = new TestUtilities.CountingObserver(handler);
+        mContentResolver.registerContentObserver(FENCE_URI, false, mFenceObserver);
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.unregisterContentObserver(mForecastObserver);
+        mContentResolver.unregisterContentObserver(mFenceObserver);
+        mObserverThread.quit();
+    }
+
+    @Test
+    public void testUnchangedForecast() {
+        ContentValues[] forecast = createForecast(0, 0);
+        replaceForecast(forecast);
+
+        assertSyncCost("unchanged", forecast, 0, 0);
+    }
+
+    @Test
+    public void testPartiallyChangedForecast() {
+        replaceForecast(createForecast(0, 0));
+
+        ContentValues[] forecast = createForecast(0, 0);
+        forecast[3].put(COLUMN_MAX_TEMP, 99.5);
+
+        assertSyncCost("partially changed", forecast, 1, 1);
+    }
+
+    @Test
+    public void testRolledOverForecast() {
+        replaceForecast(createForecast(0, 0));
+
+        /* A day later, the first day has dropped off and a new one has been added at the end */
+        assertSyncCost("rolled over", createForecast(1, 0), 2, 1);
+    }
+
+    @Test
+    public void testFullyChangedForecast() {
+        replaceForecast(createForecast(0, 0));
+
+        assertSyncCost("fully changed", createForecast(0, 1.5), FORECAST_DAYS, 1);
+    }
+
+    @Test
+    public void testReplaceIntoEmptyTable() {
+        assertSyncCost("empty table", createForecast(0, 0), FORECAST_DAYS, 1);
+    }
+
+    @Test
+    public void testReplaceColumns() {
+        replaceForecast(createForecast(0, 0));
+
+        /*
+         * A batch with room to spare, so its arrays are longer than the forecast and the
+         * provider has to honour the row count that comes with them.
+         */
+        ForecastBatch batch = new ForecastBatch();
+        ContentValues[] forecast = createForecast(1, 0);
+        batch.addAll(forecast);
+
+        awaitNotifications();
+        mForecastObserver.reset();
+        Bundle result = mContentResolver.call(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_REPLACE_COLUMNS, null, batch.toBundle());
+
+        assertEquals("Rows written for a rolled over forecast",
+                2, result.getInt(WeatherContract.EXTRA_ROWS_INSERTED));
+        assertEquals("Change notifications for a rolled over forecast",
+                1, awaitNotifications());
+        assertTableHolds(forecast);
+    }
+
+    /**
+     * Applies the forecast through CONTENT_URI_REPLACE, checks the table holds exactly that
+     * forecast and that the expected number of rows and notifications were written, then logs
+     * what the same sync would have cost using delete and bulkInsert.
+     */
+    private void assertSyncCost(String scenario, ContentValues[] forecast,
+                                int expectedRowsWritten, int expectedNotifications) {
+        /* Start from the same table contents for both approaches */
+        ContentValues[] previous = readForecast();
+
+        /* Don't count notifications left over from setting up the table */
+        awaitNotifications();
+        mForecastObserver.reset();
+        int rowsWritten = replaceForecast(forecast);
+        int notifications = awaitNotifications();
+
+        assertEquals("Rows written for a " + scenario + " forecast",
+                expectedRowsWritten, rowsWritten);
+        assertEquals("Change notifications for a " + scenario + " forecast",
+                expectedNotifications, notifications);
+        assertTableHolds(forecast);
+
+        /* Now measure the old way of doing the same sync */
+        deleteAllRecordsFromWeatherTable();
+        mContentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, previous);
+        awaitNotifications();
+
+        mForecastObserver.reset();
+        int oldRowsWritten = mContentResolver.delete(
+                WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        oldRowsWritten += mContentResolver.bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI, forecast);
+        int oldNotifications = awaitNotifications();
+        assertTableHolds(forecast);
+
+        Log.i(TAG, scenario + " forecast: diff wrote " + rowsWritten + " rows and caused "
+                + notifications + " requeries; delete + bulkInsert wrote " + oldRowsWritten
+                + " rows and caused " + oldNotifications + " requeries");
+    }
+
+    private int replaceForecast(ContentValues[] forecast) {
+        return mContentResolver.bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI_REPLACE, forecast);
+    }
+
+    /**
+     * @return The number of notifications the forecast observer has received since it was last
+     * reset, once every notification sent so far has been delivered
+     */
+    private int awaitNotifications() {
+        /* Send what the provider is holding back first, so the fence comes after it */
+        TestUtilities.getChangeNotifier(mContext).flush();
+        final int fences = mFenceObserver.getCount() + 1;
+        mContentResolver.notifyChange(FENCE_URI, null);
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return mFenceObserver.getCount() >= fences;
+            }
+        }.run();
+        return mForecastObserver.getCount();
+    }
+
+    /**
+     * @param firstDay   Index of the first day of the forecast, counted from DATE_NORMALIZED
+     * @param tempOffset Added to every temperature, to make a forecast that differs everywhere
+     * @return A forecast of FORECAST_DAYS days
+     */
+    private static ContentValues[] createForecast(int firstDay, double tempOffset) {
+        ContentValues[] forecast = new ContentValues[FORECAST_DAYS];
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            int day = firstDay + i;
+
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(COLUMN_DATE,
+                    TestUtilities.DATE_NORMALIZED + day * SunshineDateUtils.DAY_IN_MILLIS);
+            weatherValues.put(COLUMN_DEGREES, 1.1);
+            /*
+             * Every value is exactly representable as a double, so it reads back from the
+             * database as the same String that validateCurrentRecord expects.
+             */
+            weatherValues.put(COLUMN_HUMIDITY, 50.25 + 0.25 * day);
+            weatherValues.put(COLUMN_PRESSURE, 1000.5 - day);
+            weatherValues.put(COLUMN_MAX_TEMP, 75.0 + day + tempOffset);
+            weatherValues.put(COLUMN_MIN_TEMP, 65.0 - day + tempOffset);
+            weatherValues.put(COLUMN_WIND_SPEED, 5.5 + 0.5 * day);
+            weatherValues.put(COLUMN_WEATHER_ID, 321);
+
+            forecast[i] = weatherValues;
+        }
+        return forecast;
+    }
+
+    /**
+     * @return Every row in the weather table, in date order
+     */
+    private ContentValues[] readForecast() {
+        Cursor cursor = mContentResolver.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                null, null, null, COLUMN_DATE + " ASC");
+        try {
+            ContentValues[] forecast = new ContentValues[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ContentValues weatherValues = new ContentValues();
+                weatherValues.put(COLUMN_DATE, cursor.getLong(cursor.getColumnIndex(COLUMN_DATE)));
+                for (String column : new String[]{COLUMN_DEGREES, COLUMN_HUMIDITY,
+                        COLUMN_PRESSURE, COLUMN_MAX_TEMP, COLUMN_MIN_TEMP, COLUMN_WIND_SPEED}) {
+                    weatherValues.put(column, cursor.getDouble(cursor.getColumnIndex(column)));
+                }
+                weatherValues.put(COLUMN_WEATHER_ID,
+                        cursor.getInt(cursor.getColumnIndex(COLUMN_WEATHER_ID)));
+                forecast[i] = weatherValues;
+            }
+            return forecast;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void assertTableHolds(ContentValues[] forecast) {
+        Cursor cursor = mContentResolver.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                null, null, null, COLUMN_DATE + " ASC");
+        assertEquals(forecast.length, cursor.getCount());
+        cursor.moveToFirst();
+        for (int i = 0; i < forecast.length; i++, cursor.moveToNext()) {
+            TestUtilities.validateCurrentRecord("Error validating day " + i, cursor, forecast[i]);
+        }
+        cursor.close();
+    }
+
+    private void deleteAllRecordsFromWeatherTable() {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.delete(WeatherContract.WeatherEntry.TABLE_NAME, null, null);
+        database.close();
+        ForecastCache.invalidate();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.shared.ForecastDay;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Tests that {@link ForecastRepository} reads the same days a query through the ContentResolver
+ * returns, both from the in-memory snapshot and from SQLite, and that reading it between syncs
+ * doesn't go to the database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastRepository {
+
+    /* The number of days the weather server sends us */
+    private static final int FORECAST_DAYS = 14;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    @Before
+    public void setUp() {
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void testDaysMatchTheQuery() {
+        replaceForecast(createForecast(-3));
+
+        assertSameDays(mToday, Long.MAX_VALUE, 0);
+        assertSameDays(mToday - SunshineDateUtils.DAY_IN_MILLIS,
+                mToday + 5 * SunshineDateUtils.DAY_IN_MILLIS, 0);
+        assertSameDays(mToday, Long.MAX_VALUE, 1);
+    }
+
+    /**
+     * A table too big to cache is read from SQLite, and still gives the same days.
+     */
+    @Test
+    public void testDaysMatchTheQueryWithoutTheCache() {
+        replaceForecast(createForecast(-ForecastCache.MAX_CACHED_DAYS));
+
+        assertSameDays(mToday, Long.MAX_VALUE, 0);
+        assertSameDays(mToday, Long.MAX_VALUE, 1);
+    }
+
+    @Test
+    public void testGetDay() {
+        replaceForecast(createForecast(0));
+
+        ForecastDay today = ForecastRepository.getDay(mContext, mToday);
+        assertEquals(mToday, today.getDate());
+        assertEquals(200, today.getWeatherId());
+        assertEquals(20.5, today.getMaxTemp());
+
+        assertNull(ForecastRepository.getDay(mContext, mToday - SunshineDateUtils.DAY_IN_MILLIS));
+    }
+
+    @Test
+    public void testGetFirstDayFrom() {
+        replaceForecast(createForecast(2));
+
+        ForecastDay first = ForecastRepository.getFirstDayFrom(mContext, mToday);
+        assertEquals(mToday + 2 * SunshineDateUtils.DAY_IN_MILLIS, first.getDate());
+
+        assertNull(ForecastRepository.getFirstDayFrom(mContext,
+                mToday + FORECAST_DAYS * SunshineDateUtils.DAY_IN_MILLIS));
+    }
+
+    @Test
+    public void testReadsBetweenSyncsDontLoadFromTheDatabase() {
+        replaceForecast(createForecast(0));
+        assertEquals(FORECAST_DAYS,
+                ForecastRepository.getDays(mContext, mToday, Long.MAX_VALUE, 0).length);
+
+        long loadCount = ForecastCache.getLoadCount();
+        for (int i = 0; i < 100; i++) {
+            ForecastRepository.getDay(mContext, mToday);
+            ForecastRepository.getFirstDayFrom(mContext, mToday);
+        }
+
+        assertEquals(loadCount, ForecastCache.getLoadCount());
+    }
+
+    /**
+     * Checks that the repository and a query of the range URI with DAY_PROJECTION give the same
+     * days.
+     */
+    private void assertSameDays(long fromDate, long toDate, int limit) {
+        ForecastDay[] days = ForecastRepository.getDays(mContext, fromDate, toDate, limit);
+
+        Cursor cursor = mContentResolver.query(limit == 0
+                        ? WeatherEntry.buildWeatherRangeUri(fromDate, toDate)
+                        : WeatherEntry.buildWeatherRangeUri(fromDate, toDate, limit),
+                ForecastRepository.DAY_PROJECTION, null, null, null);
+        try {
+            assertEquals(cursor.getCount(), days.length);
+            for (int i = 0; cursor.moveToNext(); i++) {
+                assertEquals(ForecastRepository.readDay(cursor), days[i]);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void replaceForecast(ForecastBatch forecast) {
+        mContentResolver.call(WeatherEntry.CONTENT_URI, WeatherContract.METHOD_REPLACE_COLUMNS,
+                null, forecast.toBundle());
+    }
+
+    /**
+     * @param firstDay Index of the first day, counted from today. The forecast runs from there
+     *                 to FORECAST_DAYS days after today.
+     */
+    private ForecastBatch createForecast(int firstDay) {
+        ForecastBatch forecast = new ForecastBatch(FORECAST_DAYS - firstDay);
+        for (int day = firstDay; day < FORECAST_DAYS; day++) {
+            forecast.add(mToday + day * SunshineDateUtils.DAY_IN_MILLIS, 200 + day,
+                    10.25 - day, 20.5 + day, 50.0, 1013.5, 4.5, 180.0);
+        }
+        return forecast;
+    }
+}
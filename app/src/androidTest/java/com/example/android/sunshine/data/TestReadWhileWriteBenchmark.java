@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Measures how long the queries behind MainActivity and DetailActivity take while a sync is
+ * writing to the database, with write-ahead logging and with the rollback journal the database
+ * used before. With the rollback journal, a reader has to wait for the whole write transaction to
+ * commit; with WAL it reads the last committed forecast straight away.
+ * <p>
+ * The latencies are logged so the two modes can be compared. The tests also check that readers
+ * only ever see whole forecasts, never one that a sync is halfway through.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestReadWhileWriteBenchmark {
+
+    private static final String TAG = TestReadWhileWriteBenchmark.class.getSimpleName();
+
+    /* The benchmark gets a database of its own, so it can switch journal modes freely */
+    private static final String DATABASE_NAME = "read_while_write_test.db";
+
+    /* A long history makes every sync a transaction that takes a noticeable while */
+    private static final int FORECAST_DAYS = 2000;
+
+    private static final int SYNC_COUNT = 20;
+
+    /* The columns MainActivity shows */
+    private static final String[] FORECAST_PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_WEATHER_ID
+    };
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Before
+    public void setUp() {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void testReadWhileSyncingWithWriteAheadLogging() throws Exception {
+        benchmarkReadsDuringSync("WAL", WeatherDbHelper.Tuning.DEFAULT);
+    }
+
+    @Test
+    public void testReadWhileSyncingWithRollbackJournal() throws Exception {
+        benchmarkReadsDuringSync("rollback journal", WeatherDbHelper.Tuning.ROLLBACK_JOURNAL);
+    }
+
+    /**
+     * With write-ahead logging, a reader gets the last committed forecast while a write
+     * transaction is still open, rather than waiting for it.
+     */
+    @Test
+    public void testReaderDoesNotWaitForAnOpenTransaction() throws Exception {
+        WeatherDbHelper helper =
+                new WeatherDbHelper(mContext, DATABASE_NAME, WeatherDbHelper.Tuning.DEFAULT);
+        final SQLiteDatabase database = helper.getWritableDatabase();
+        try {
+            applyForecast(database, createForecast(0));
+
+            database.beginTransaction();
+            try {
+                database.delete(WeatherEntry.TABLE_NAME, null, null);
+
+                final AtomicInteger rowsRead = new AtomicInteger(-1);
+                final CountDownLatch readDone = new CountDownLatch(1);
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        rowsRead.set(queryForecast(database));
+                        readDone.countDown();
+                    }
+                }).start();
+
+                assertTrue("The reader waited for the write transaction",
+                        readDone.await(5, TimeUnit.SECONDS));
+                assertEquals(FORECAST_DAYS, rowsRead.get());
+            } finally {
+                database.endTransaction();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    private void benchmarkReadsDuringSync(String mode, WeatherDbHelper.Tuning tuning)
+            throws Exception {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext, DATABASE_NAME, tuning);
+        final SQLiteDatabase database = helper.getWritableDatabase();
+        try {
+            final ForecastBatch[] forecasts = {createForecast(0), createForecast(1)};
+            applyForecast(database, forecasts[1]);
+
+            /* The sync: replace every day of the forecast, SYNC_COUNT times over */
+            final long[] syncNanos = new long[SYNC_COUNT];
+            final AtomicReference<Throwable> syncError = new AtomicReference<>();
+            Thread sync = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < SYNC_COUNT; i++) {
+                            long start = SystemClock.elapsedRealtimeNanos();
+                            applyForecast(database, forecasts[i % 2]);
+                            syncNanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+                        }
+                    } catch (Throwable t) {
+                        syncError.set(t);
+                    }
+                }
+            });
+
+            /* Meanwhile, the UI: query the forecast over and over until the sync is done */
+            long[] readNanos = new long[1024];
+            int readCount = 0;
+            sync.start();
+            while (sync.isAlive()) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                int rowCount = queryForecast(database);
+                long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+
+                assertEquals("A reader saw a forecast that was being written",
+                        FORECAST_DAYS, rowCount);
+                if (readCount == readNanos.length) {
+                    readNanos = Arrays.copyOf(readNanos, readCount * 2);
+                }
+                readNanos[readCount++] = elapsed;
+            }
+            sync.join();
+            if (syncError.get() != null) {
+                throw new AssertionError(syncError.get());
+            }
+
+            Arrays.sort(syncNanos);
+            Arrays.sort(readNanos, 0, readCount);
+            Log.i(TAG, mode + ": " + readCount + " reads during " + SYNC_COUNT + " syncs of "
+                    + FORECAST_DAYS + " days. Sync median " + syncNanos[SYNC_COUNT / 2] / 1000
+                    + " us. Read latency median " + percentile(readNanos, readCount, 50) / 1000
+                    + " us, 99th percentile " + percentile(readNanos, readCount, 99) / 1000
+                    + " us, max " + readNanos[readCount - 1] / 1000 + " us");
+            assertTrue("No reads happened during the sync", readCount > 0);
+        } finally {
+            helper.close();
+        }
+    }
+
+    private static long percentile(long[] sorted, int count, int percentile) {
+        return sorted[Math.min(count - 1, count * percentile / 100)];
+    }
+
+    /**
+     * Replaces the weather table with the forecast in one transaction, the way a sync does.
+     */
+    private static void applyForecast(SQLiteDatabase database, ForecastBatch forecast) {
+        database.beginTransaction();
+        try {
+            ForecastDiff.apply(database, forecast);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Runs the query MainActivity's loader runs, reading every row of it.
+     *
+     * @return The number of days read
+     */
+    private static int queryForecast(SQLiteDatabase database) {
+        Cursor cursor = database.query(WeatherEntry.TABLE_NAME, FORECAST_PROJECTION,
+                WeatherEntry.COLUMN_DATE + " >= ?",
+                new String[]{Long.toString(TestUtilities.DATE_NORMALIZED)},
+                null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @param revision Forecasts with a different revision differ in every day, so applying one
+     *                 after the other rewrites every row
+     */
+    private static ForecastBatch createForecast(int revision) {
+        ForecastBatch forecast = new ForecastBatch(FORECAST_DAYS);
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            forecast.add(TestUtilities.DATE_NORMALIZED + i * SunshineDateUtils.DAY_IN_MILLIS,
+                    200 + i % 600, -20.5 + i % 40 + revision, 10.25 + i % 30 + revision,
+                    50.0, 1013.5, 4.5, 180.0);
+        }
+        return forecast;
+    }
+}
@@ -31,7 +31,9 @@ import org.junit.runner.RunWith;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static com.example.android.sunshine.data.TestUtilities.getConstantNameByStringValue;
@@ -56,7 +58,7 @@ import static junit.framework.Assert.fail;
  * with the same date will overwrite that record.
  * 4) Verify that NON NULL constraints are working properly on record inserts
  * 5) Verify auto increment is working with the ID
- * 6) Test the onUpgrade functionality of the WeatherDbHelper
+ * 6) Test the onUpgrade functionality of the WeatherDbHelper, from every version we know of
  */
 @RunWith(AndroidJUnit4.class)
 public class TestSunshineDatabase {
@@ -122,6 +124,71 @@ public class TestSunshineDatabase {
     private SQLiteDatabase database;
     private SQLiteOpenHelper dbHelper;
 
+    /* The migration matrix builds its old databases under a name of its own */
+    private static final String MIGRATION_DATABASE_NAME = "migration_test.db";
+
+    private static final int SCHEMA_HISTORY_OLDEST_VERSION = 2;
+
+    private static final String WEATHER_TABLE_VERSION_3 =
+            "CREATE TABLE weather (_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "date INTEGER NOT NULL, weather_id INTEGER NOT NULL,min REAL NOT NULL, "
+                    + "max REAL NOT NULL, humidity REAL NOT NULL, pressure REAL NOT NULL, "
+                    + "wind REAL NOT NULL, degrees REAL NOT NULL, "
+                    + " UNIQUE (date) ON CONFLICT REPLACE);";
+
+    private static final String LOCATION_TABLE_VERSION_4 =
+            "CREATE TABLE location (_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "location_setting TEXT NOT NULL, coord_lat REAL, coord_long REAL, "
+                    + "UNIQUE (location_setting) ON CONFLICT IGNORE);";
+
+    private static final String LOCATION_WEATHER_TABLE_VERSION_4 =
+            "CREATE TABLE location_weather (_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "location_id INTEGER NOT NULL, date INTEGER NOT NULL, "
+                    + "weather_id INTEGER NOT NULL,min REAL NOT NULL, "
+                    + "max REAL NOT NULL, humidity REAL NOT NULL, "
+                    + "pressure REAL NOT NULL, wind REAL NOT NULL, "
+                    + "degrees REAL NOT NULL, "
+                    + "UNIQUE (location_id, date) ON CONFLICT REPLACE);";
+
+    /*
+     * The statements that created a new database at each version, starting at
+     * SCHEMA_HISTORY_OLDEST_VERSION. Whenever DATABASE_VERSION is incremented, append the new
+     * version's schema here, written out as SQL so it stays the way it was.
+     */
+    private static final String[][] SCHEMA_HISTORY = {
+            /* 2: the Sunshine of an earlier course, which we no longer know how to migrate */
+            {
+                    "CREATE TABLE location (_id INTEGER PRIMARY KEY, "
+                            + "location_setting TEXT UNIQUE NOT NULL, city_name TEXT NOT NULL, "
+                            + "coord_lat REAL NOT NULL, coord_long REAL NOT NULL);",
+                    "CREATE TABLE weather (_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + "location_id INTEGER NOT NULL, date INTEGER NOT NULL, "
+                            + "short_desc TEXT NOT NULL, weather_id INTEGER NOT NULL, "
+                            + "min REAL NOT NULL, max REAL NOT NULL, humidity REAL NOT NULL, "
+                            + "pressure REAL NOT NULL, wind REAL NOT NULL, "
+                            + "degrees REAL NOT NULL, "
+                            + "FOREIGN KEY (location_id) REFERENCES location (_id), "
+                            + "UNIQUE (date, location_id) ON CONFLICT REPLACE);"
+            },
+            /* 3: the weather table */
+            {
+                    WEATHER_TABLE_VERSION_3
+            },
+            /* 4: the location table and the forecasts of those locations */
+            {
+                    WEATHER_TABLE_VERSION_3,
+                    LOCATION_TABLE_VERSION_4,
+                    LOCATION_WEATHER_TABLE_VERSION_4
+            },
+            /* 5: the index covering the forecast list */
+            {
+                    WEATHER_TABLE_VERSION_3,
+                    LOCATION_TABLE_VERSION_4,
+                    LOCATION_WEATHER_TABLE_VERSION_4,
+                    "CREATE INDEX weather_date_forecast ON weather (date, max, min, weather_id);"
+            }
+    };
+
     @Before
     public void before() {
         try {
@@ -193,7 +260,7 @@ public class TestSunshineDatabase {
 
     @Test
     public void testDatabaseVersionWasIncremented() {
-        int expectedDatabaseVersion = 3;
+        int expectedDatabaseVersion = 5;
         String databaseVersionShouldBe1 = "Database version should be "
                 + expectedDatabaseVersion + " but isn't."
                 + "\n Database version: ";
@@ -383,8 +450,13 @@ public class TestSunshineDatabase {
 
     /**
      * This method tests the {@link WeatherDbHelper#onUpgrade(SQLiteDatabase, int, int)}. The proper
-     * behavior for this method in our case is to simply DROP (or delete) the weather table from
-     * the database and then have the table recreated.
+     * behavior for this method in our case is to keep the weather table, and the weather it
+     * holds, so the app still has a forecast to show right after an update.
+     * <p>
+     * Besides upgrading the current database, we build a database at every version in
+     * SCHEMA_HISTORY, put some weather in it and let WeatherDbHelper open it. Each one has to end
+     * up with exactly the schema of a brand new database, with its weather still there. Versions
+     * older than the ones we can migrate are recreated, so their weather is gone.
      */
     @Test
     public void testOnUpgradeBehavesCorrectly() {
@@ -414,7 +486,7 @@ public class TestSunshineDatabase {
         /* We are done verifying our table names, so we can close this cursor */
         tableNameCursor.close();
 
-        Cursor shouldBeEmptyWeatherCursor = database.query(
+        Cursor weatherCursor = database.query(
                 REFLECTED_TABLE_NAME,
                 null,
                 null,
@@ -423,16 +495,168 @@ public class TestSunshineDatabase {
                 null,
                 null);
 
-        int expectedRecordCountAfterUpgrade = 0;
-        /* We will finally verify that our weather table is empty after */
-        String weatherTableShouldBeEmpty =
-                "Weather table should be empty after upgrade, but wasn't."
+        int expectedRecordCountAfterUpgrade = 1;
+        /* We will verify that the weather we inserted survived the upgrade */
+        String weatherTableShouldBeKept =
+                "Weather table should keep its records after upgrade, but didn't."
                         + "\nNumber of records: ";
-        assertEquals(weatherTableShouldBeEmpty,
+        assertEquals(weatherTableShouldBeKept,
                 expectedRecordCountAfterUpgrade,
-                shouldBeEmptyWeatherCursor.getCount());
+                weatherCursor.getCount());
+
+        weatherCursor.close();
+        database.close();
+
+        /* And finally, the migration matrix: upgrade from every version we know of */
+        List<String> currentSchema = createDatabaseAndReadSchema(REFLECTED_DATABASE_VERSION);
+        for (int version = SCHEMA_HISTORY_OLDEST_VERSION;
+             version < REFLECTED_DATABASE_VERSION;
+             version++) {
+            assertUpgradeFrom(version, currentSchema);
+        }
+    }
+
+    /**
+     * A new database must have exactly the schema recorded for the current version in
+     * SCHEMA_HISTORY. If this fails, the schema changed without the history (and most likely a
+     * migration step) being added for it.
+     */
+    @Test
+    public void testSchemaHistoryIsUpToDate() {
+        String historyMissesCurrentVersion = "SCHEMA_HISTORY should end at the current database "
+                + "version, " + REFLECTED_DATABASE_VERSION;
+        assertEquals(historyMissesCurrentVersion,
+                REFLECTED_DATABASE_VERSION,
+                SCHEMA_HISTORY_OLDEST_VERSION + SCHEMA_HISTORY.length - 1);
+
+        assertEquals("A new database doesn't match the current version in SCHEMA_HISTORY",
+                createDatabaseAndReadSchema(REFLECTED_DATABASE_VERSION),
+                readSchema(database));
+        database.close();
+    }
+
+    /**
+     * Every migration step must start where the previous one ended, and together they must
+     * reach the current version.
+     */
+    @Test
+    public void testMigrationStepsAreContiguous() {
+        int version = WeatherDbMigrations.OLDEST_MIGRATABLE_VERSION;
+        for (WeatherDbMigrations.Step step : WeatherDbMigrations.STEPS) {
+            assertEquals("Migration step " + step.getClass().getSimpleName()
+                            + " starts at the wrong version",
+                    version,
+                    step.fromVersion);
+            version = step.getToVersion();
+        }
+        assertEquals("The migration steps don't reach the current database version",
+                REFLECTED_DATABASE_VERSION,
+                version);
+        database.close();
+    }
 
-        /* Test is over, close the cursor */
+    /**
+     * Builds a database at the given version of SCHEMA_HISTORY, with one day of weather in it if
+     * that version has a weather table we know, and opens it with WeatherDbHelper.
+     */
+    private void assertUpgradeFrom(int version, List<String> currentSchema) {
+        String upgradeName = "upgrade from version " + version;
+        ContentValues testWeatherValues = TestUtilities.createTestWeatherContentValues();
+        boolean canMigrate = version >= WeatherDbMigrations.OLDEST_MIGRATABLE_VERSION;
+
+        context.deleteDatabase(MIGRATION_DATABASE_NAME);
+        SQLiteDatabase oldDatabase =
+                context.openOrCreateDatabase(MIGRATION_DATABASE_NAME, Context.MODE_PRIVATE, null);
+        for (String statement : SCHEMA_HISTORY[version - SCHEMA_HISTORY_OLDEST_VERSION]) {
+            oldDatabase.execSQL(statement);
+        }
+        if (canMigrate) {
+            oldDatabase.insert(REFLECTED_TABLE_NAME, null, testWeatherValues);
+        }
+        oldDatabase.setVersion(version);
+        oldDatabase.close();
+
+        WeatherDbHelper helper = new WeatherDbHelper(
+                context, MIGRATION_DATABASE_NAME, WeatherDbHelper.Tuning.DEFAULT);
+        SQLiteDatabase upgradedDatabase = helper.getWritableDatabase();
+        try {
+            assertEquals(upgradeName + ": wrong database version",
+                    REFLECTED_DATABASE_VERSION,
+                    upgradedDatabase.getVersion());
+            assertEquals(upgradeName + ": schema doesn't match a new database",
+                    currentSchema,
+                    readSchema(upgradedDatabase));
+
+            Cursor weatherCursor = upgradedDatabase.query(REFLECTED_TABLE_NAME,
+                    null, null, null, null, null, null);
+            if (canMigrate) {
+                assertTrue(upgradeName + ": the weather was lost", weatherCursor.moveToFirst());
+                TestUtilities.validateCurrentRecord(upgradeName + ": the weather changed",
+                        weatherCursor, testWeatherValues);
+                assertFalse(upgradeName + ": more weather than we put in",
+                        weatherCursor.moveToNext());
+            } else {
+                assertEquals(upgradeName + ": an unknown database should be recreated",
+                        0,
+                        weatherCursor.getCount());
+            }
+            weatherCursor.close();
+        } finally {
+            helper.close();
+            context.deleteDatabase(MIGRATION_DATABASE_NAME);
+        }
+    }
+
+    /**
+     * @return The schema of a database created with the statements SCHEMA_HISTORY has for the
+     * given version
+     */
+    private List<String> createDatabaseAndReadSchema(int version) {
+        context.deleteDatabase(MIGRATION_DATABASE_NAME);
+        SQLiteDatabase historicDatabase =
+                context.openOrCreateDatabase(MIGRATION_DATABASE_NAME, Context.MODE_PRIVATE, null);
+        try {
+            for (String statement : SCHEMA_HISTORY[version - SCHEMA_HISTORY_OLDEST_VERSION]) {
+                historicDatabase.execSQL(statement);
+            }
+            return readSchema(historicDatabase);
+        } finally {
+            historicDatabase.close();
+            context.deleteDatabase(MIGRATION_DATABASE_NAME);
+        }
+    }
+
+    /**
+     * @return Every table and index in the database with the SQL that created it, whitespace
+     * collapsed, in a stable order
+     */
+    private static List<String> readSchema(SQLiteDatabase db) {
+        List<String> schema = new ArrayList<>();
+        Cursor schemaCursor = db.rawQuery("SELECT type, name, sql FROM sqlite_master"
+                + " WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata'"
+                + " ORDER BY type, name", null);
+        try {
+            while (schemaCursor.moveToNext()) {
+                String sql = schemaCursor.getString(2).replaceAll("\\s+", " ").trim();
+                schema.add(schemaCursor.getString(0) + " " + schemaCursor.getString(1)
+                        + ": " + sql);
+            }
+        } finally {
+            schemaCursor.close();
+        }
+        return schema;
+    }
+
+    /**
+     * The database should be in write-ahead logging mode, so that readers don't have to wait
+     * for a sync to commit.
+     */
+    @Test
+    public void testDatabaseUsesWriteAheadLogging() {
+        Cursor journalModeCursor = database.rawQuery("PRAGMA journal_mode", null);
+        assertTrue(journalModeCursor.moveToFirst());
+        assertEquals("wal", journalModeCursor.getString(0).toLowerCase());
+        journalModeCursor.close();
         database.close();
     }
 
@@ -456,6 +680,9 @@ public class TestSunshineDatabase {
 
         /* Here, we add the name of our only table in this particular database */
         tableNameHashSet.add(REFLECTED_TABLE_NAME);
+        /* The locations we keep a forecast for besides the preferred one, and their forecasts */
+        tableNameHashSet.add(WeatherContract.LocationEntry.TABLE_NAME);
+        tableNameHashSet.add(WeatherContract.LocationEntry.FORECAST_TABLE_NAME);
         /* Students, here is where you would add any other table names if you had them */
 //        tableNameHashSet.add(MyAwesomeSuperCoolTableName);
 //        tableNameHashSet.add(MyOtherCoolTableNameThatContainsOtherCoolData);
@@ -37,6 +37,20 @@ public class TestUriMatcher {
     private static final Uri TEST_WEATHER_DIR = WeatherContract.WeatherEntry.CONTENT_URI;
     private static final Uri TEST_WEATHER_WITH_DATE_DIR = WeatherContract.WeatherEntry
             .buildWeatherUriWithDate(TestUtilities.DATE_NORMALIZED);
+    private static final Uri TEST_WEATHER_REPLACE_DIR =
+            WeatherContract.WeatherEntry.CONTENT_URI_REPLACE;
+
+    private static final Uri TEST_WEATHER_RANGE_DIR = WeatherContract.WeatherEntry
+            .buildWeatherRangeUri(TestUtilities.DATE_NORMALIZED, Long.MAX_VALUE, 14);
+
+    private static final long TEST_LOCATION_ID = 7;
+    private static final Uri TEST_LOCATION_DIR = WeatherContract.LocationEntry.CONTENT_URI;
+    private static final Uri TEST_LOCATION_WITH_ID_DIR =
+            WeatherContract.LocationEntry.buildLocationUri(TEST_LOCATION_ID);
+    private static final Uri TEST_LOCATION_WEATHER_DIR =
+            WeatherContract.LocationEntry.buildLocationWeatherUri(TEST_LOCATION_ID);
+    private static final Uri TEST_LOCATION_WEATHER_WITH_DATE_DIR = WeatherContract.LocationEntry
+            .buildLocationWeatherUriWithDate(TEST_LOCATION_ID, TestUtilities.DATE_NORMALIZED);
 
     private static final String weatherCodeVariableName = "CODE_WEATHER";
     private static int REFLECTED_WEATHER_CODE;
@@ -101,5 +115,31 @@ public class TestUriMatcher {
         assertEquals(weatherWithDateUriCodeDoesNotMatch,
                 expectedWeatherWithDateCode,
                 actualWeatherWithDateCode);
+
+        /* Test that the replace URI isn't mistaken for a date */
+        String weatherReplaceUriCodeDoesNotMatch =
+                "Error: The CODE_WEATHER_REPLACE URI was matched incorrectly.";
+        assertEquals(weatherReplaceUriCodeDoesNotMatch,
+                WeatherProvider.CODE_WEATHER_REPLACE,
+                testMatcher.match(TEST_WEATHER_REPLACE_DIR));
+
+        /* Test that a range of dates isn't mistaken for a single date */
+        assertEquals("Error: The CODE_WEATHER_RANGE URI was matched incorrectly.",
+                WeatherProvider.CODE_WEATHER_RANGE,
+                testMatcher.match(TEST_WEATHER_RANGE_DIR));
+
+        /* Test the URIs of the other locations and of their forecasts */
+        assertEquals("Error: The CODE_LOCATION URI was matched incorrectly.",
+                WeatherProvider.CODE_LOCATION,
+                testMatcher.match(TEST_LOCATION_DIR));
+        assertEquals("Error: The CODE_LOCATION_WITH_ID URI was matched incorrectly.",
+                WeatherProvider.CODE_LOCATION_WITH_ID,
+                testMatcher.match(TEST_LOCATION_WITH_ID_DIR));
+        assertEquals("Error: The CODE_LOCATION_WEATHER URI was matched incorrectly.",
+                WeatherProvider.CODE_LOCATION_WEATHER,
+                testMatcher.match(TEST_LOCATION_WEATHER_DIR));
+        assertEquals("Error: The CODE_LOCATION_WEATHER_WITH_DATE URI was matched incorrectly.",
+                WeatherProvider.CODE_LOCATION_WEATHER_WITH_DATE,
+                testMatcher.match(TEST_LOCATION_WEATHER_WITH_DATE_DIR));
     }
 }
@@ -15,7 +15,9 @@
  */
 package com.example.android.sunshine.data;
 
+import android.content.ContentProviderClient;
 import android.content.ContentValues;
+import android.content.Context;
 import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
@@ -177,6 +179,21 @@ class TestUtilities {
         return TestContentObserver.getTestContentObserver();
     }
 
+    /**
+     * The tests run in the app's own process, so they can reach the WeatherProvider instance
+     * that the ContentResolver calls, and the notifier that holds back its change notifications.
+     */
+    static ChangeNotifier getChangeNotifier(Context context) {
+        ContentProviderClient client = context.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        assertNotNull("WeatherProvider isn't registered", client);
+        try {
+            return ((WeatherProvider) client.getLocalContentProvider()).getChangeNotifier();
+        } finally {
+            client.release();
+        }
+    }
+
     /**
      * Students: The functions we provide inside of TestWeatherProvider use TestContentObserver to test
      * the ContentObserver callbacks using the PollingCheck class from the Android Compatibility
@@ -313,4 +330,35 @@ class TestUtilities {
             return e.getMessage();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Counts the change notifications it receives, for tests that care how many times an
+     * observer would have requeried rather than whether it was notified at all.
+     */
+    static class CountingObserver extends ContentObserver {
+
+        private volatile int mCount;
+
+        CountingObserver(Handler handler) {
+            super(handler);
+        }
+
+        int getCount() {
+            return mCount;
+        }
+
+        void reset() {
+            mCount = 0;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            mCount++;
+        }
+    }
+}
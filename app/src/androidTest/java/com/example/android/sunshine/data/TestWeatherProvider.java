@@ -185,6 +185,9 @@ public class TestWeatherProvider {
         /* We are done with the database, close it now. */
         database.close();
 
+        /* We wrote around WeatherProvider, so tell its cache the table has changed */
+        ForecastCache.invalidate();
+
         /*
          * Perform our ContentProvider query. We expect the cursor that is returned will contain
          * the exact same data that is in testWeatherValues and we will validate that in the next
@@ -326,6 +329,77 @@ public class TestWeatherProvider {
         cursor.close();
     }
 
+    /**
+     * Inserts a row whose weather ID is a Double and checks that it is stored as given, the way
+     * SQLiteDatabase#insert stores it, rather than cut down to a whole number.
+     */
+    @Test
+    public void testBulkInsertKeepsTheTypeOfTheWeatherId() {
+        ContentValues weatherValues = TestUtilities.createTestWeatherContentValues();
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800.5);
+
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                new ContentValues[]{weatherValues});
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                new String[]{WeatherContract.WeatherEntry.COLUMN_WEATHER_ID},
+                null,
+                null,
+                null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(800.5, cursor.getDouble(0), 0);
+        cursor.close();
+    }
+
+    /**
+     * Queries a range of dates, with and without a limit, and checks that exactly the days in
+     * the range come back, in date order.
+     */
+    @Test
+    public void testDateRangeQuery() {
+        ContentValues[] bulkInsertTestContentValues = createBulkInsertTestWeatherValues();
+        ContentResolver contentResolver = mContext.getContentResolver();
+        contentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                bulkInsertTestContentValues);
+
+        /* Days 2 to 5 of the test weather, both included */
+        long fromDate = bulkInsertTestContentValues[2]
+                .getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+        long toDate = bulkInsertTestContentValues[5]
+                .getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+
+        Cursor cursor = contentResolver.query(
+                WeatherContract.WeatherEntry.buildWeatherRangeUri(fromDate, toDate),
+                null, null, null, null);
+        assertEquals("Wrong number of days in the range", 4, cursor.getCount());
+        for (int i = 2; cursor.moveToNext(); i++) {
+            TestUtilities.validateCurrentRecord("testDateRangeQuery. Error validating day " + i,
+                    cursor,
+                    bulkInsertTestContentValues[i]);
+        }
+        cursor.close();
+
+        /* The same range, limited to its first two days */
+        cursor = contentResolver.query(
+                WeatherContract.WeatherEntry.buildWeatherRangeUri(fromDate, toDate, 2),
+                null, null, null, null);
+        assertEquals("The limit wasn't applied", 2, cursor.getCount());
+        for (int i = 2; cursor.moveToNext(); i++) {
+            TestUtilities.validateCurrentRecord("testDateRangeQuery. Error validating day " + i,
+                    cursor,
+                    bulkInsertTestContentValues[i]);
+        }
+        cursor.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDateRangeQueryRejectsInvalidLimit() {
+        mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherRangeUri(0, Long.MAX_VALUE, 0),
+                null, null, null, null);
+    }
+
     /**
      * This test deletes all records from the weather table using the ContentProvider. It also
      * verifies that registered ContentObservers receive onChange callbacks when data is deleted.
@@ -445,5 +519,8 @@ public class TestWeatherProvider {
 
         /* Always close the database when you're through with it */
         database.close();
+
+        /* WeatherProvider's cache of the weather table has to find out it was emptied */
+        ForecastCache.invalidate();
     }
 }
\ No newline at end of file
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.utilities.TestOpenWeatherJsonUtils;
+import com.example.android.sunshine.utils.LocalHttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.Charset;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests {@link LocationSyncTask} against a local stand-in for the weather server that takes a
+ * little while to answer, like a real one would. We check that every location ends up with its
+ * own forecast, that a sync that changes nothing writes nothing, and log how many locations per
+ * second a serial and a parallel sync get through, and how many rows they write per day of
+ * weather received.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestLocationSync {
+
+    private static final String TAG = TestLocationSync.class.getSimpleName();
+
+    /* The number of days the weather server sends us */
+    private static final int FORECAST_DAYS = 14;
+
+    /* How long the stand-in server takes to answer each request */
+    private static final long SERVER_LATENCY_MILLIS = 50;
+
+    /* Asking for this location makes the stand-in server reply with 404 Not Found */
+    private static final String UNKNOWN_LOCATION = "Nowhere";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    private LocalHttpServer mServer;
+    private String mForecastBaseUrl;
+
+    /* The number of days the stand-in server currently puts in each forecast */
+    private volatile int mForecastDays = FORECAST_DAYS;
+
+    @Before
+    public void setUp() throws Exception {
+        mContentResolver.delete(LocationEntry.CONTENT_URI, null, null);
+
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) {
+                try {
+                    Thread.sleep(SERVER_LATENCY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (request.path.contains("q=" + UNKNOWN_LOCATION)) {
+                    return new LocalHttpServer.Response(404, new byte[0]);
+                }
+                String forecastJson =
+                        TestOpenWeatherJsonUtils.createForecastJson(mForecastDays, "200", true);
+                return new LocalHttpServer.Response(200, forecastJson.getBytes(UTF_8))
+                        .header("Content-Type", "application/json; charset=utf-8");
+            }
+        });
+        mForecastBaseUrl = mServer.url("/weather").toString();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        mContentResolver.delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void testSyncStoresEveryLocation() {
+        long[] locationIds = addLocations(20);
+
+        LocationSyncTask.SyncStats stats =
+                LocationSyncTask.syncLocations(mContext, mForecastBaseUrl, 4);
+
+        assertEquals(20, stats.locationsSynced);
+        assertEquals(0, stats.locationsFailed);
+        assertEquals(20 * FORECAST_DAYS, stats.rowsReceived);
+        /* Every day of every location is new, and so are the coordinates of every location */
+        assertEquals(20 * FORECAST_DAYS + 20, stats.rowsWritten);
+        /* 20 locations, 8 per transaction */
+        assertEquals(3, stats.transactions);
+        /* Every forecast downloaded is counted */
+        assertTrue(stats.wireBytes > 0);
+        assertTrue(stats.decodedBytes >= stats.wireBytes);
+
+        for (long locationId : locationIds) {
+            assertEquals(FORECAST_DAYS,
+                    countRows(LocationEntry.buildLocationWeatherUri(locationId)));
+
+            Cursor cursor = mContentResolver.query(LocationEntry.buildLocationUri(locationId),
+                    new String[]{LocationEntry.COLUMN_COORD_LAT, LocationEntry.COLUMN_COORD_LONG},
+                    null, null, null);
+            assertTrue(cursor.moveToFirst());
+            assertEquals(37.3861, cursor.getDouble(0));
+            assertEquals(-122.0838, cursor.getDouble(1));
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testUnchangedForecastsWriteNothing() {
+        addLocations(10);
+        LocationSyncTask.syncLocations(mContext, mForecastBaseUrl, 4);
+
+        LocationSyncTask.SyncStats stats =
+                LocationSyncTask.syncLocations(mContext, mForecastBaseUrl, 4);
+
+        assertEquals(10, stats.locationsSynced);
+        assertEquals(0, stats.rowsWritten);
+        assertEquals(0.0, stats.getWriteAmplification());
+    }
+
+    @Test
+    public void testChangedForecastsOnlyWriteTheChanges() {
+        addLocations(10);
+        LocationSyncTask.syncLocations(mContext, mForecastBaseUrl, 4);
+
+        /* One more day at the end of every forecast */
+        mForecastDays = FORECAST_DAYS + 1;
+        LocationSyncTask.SyncStats stats =
+                LocationSyncTask.syncLocations(mContext, mForecastBaseUrl, 4);
+
+        assertEquals(10, stats.rowsWritten);
+    }
+
+    @Test
+    public void testFailedLocationDoesNotStopTheSync() {
+        long[] locationIds = addLocations(5);
+        long unknownLocationId = addLocation(UNKNOWN_LOCATION);
+
+        LocationSyncTask.SyncStats stats =
+                LocationSyncTask.syncLocations(mContext, mForecastBaseUrl, 4);
+
+        assertEquals(5, stats.locationsSynced);
+        assertEquals(1, stats.locationsFailed);
+        for (long locationId : locationIds) {
+            assertEquals(FORECAST_DAYS,
+                    countRows(LocationEntry.buildLocationWeatherUri(locationId)));
+        }
+        assertEquals(0, countRows(LocationEntry.buildLocationWeatherUri(unknownLocationId)));
+    }
+
+    @Test
+    public void testDeletingALocationDeletesItsForecast() {
+        long[] locationIds = addLocations(2);
+        LocationSyncTask.syncLocations(mContext, mForecastBaseUrl, 2);
+
+        mContentResolver.delete(LocationEntry.buildLocationUri(locationIds[0]), null, null);
+
+        assertEquals(0, countRows(LocationEntry.buildLocationWeatherUri(locationIds[0])));
+        assertEquals(FORECAST_DAYS,
+                countRows(LocationEntry.buildLocationWeatherUri(locationIds[1])));
+    }
+
+    @Test
+    public void testAddingALocationTwiceKeepsOneLocation() {
+        long first = addLocation("Mountain View, CA");
+        long second = addLocation("Mountain View, CA");
+
+        assertEquals(first, second);
+        assertEquals(1, countRows(LocationEntry.CONTENT_URI));
+    }
+
+    /**
+     * Logs the throughput of a serial sync next to that of a parallel one, for a first sync and
+     * for one where nothing has changed. With the server taking SERVER_LATENCY_MILLIS to answer,
+     * the parallel sync should get through the locations several times faster.
+     */
+    @Test
+    public void testParallelSyncThroughput() {
+        int locationCount = 24;
+        addLocations(locationCount);
+
+        LocationSyncTask.SyncStats serial =
+                LocationSyncTask.syncLocations(mContext, mForecastBaseUrl, 1);
+        LocationSyncTask.SyncStats serialUnchanged =
+                LocationSyncTask.syncLocations(mContext, mForecastBaseUrl, 1);
+
+        mContentResolver.delete(LocationEntry.CONTENT_URI, null, null);
+        addLocations(locationCount);
+
+        LocationSyncTask.SyncStats parallel = LocationSyncTask.syncLocations(
+                mContext, mForecastBaseUrl, LocationSyncTask.DEFAULT_PARALLELISM);
+        LocationSyncTask.SyncStats parallelUnchanged = LocationSyncTask.syncLocations(
+                mContext, mForecastBaseUrl, LocationSyncTask.DEFAULT_PARALLELISM);
+
+        logStats("serial, first sync", serial);
+        logStats("serial, unchanged", serialUnchanged);
+        logStats("parallel, first sync", parallel);
+        logStats("parallel, unchanged", parallelUnchanged);
+
+        assertEquals(locationCount, serial.locationsSynced);
+        assertEquals(locationCount, parallel.locationsSynced);
+        assertEquals(serial.rowsWritten, parallel.rowsWritten);
+        assertTrue("A parallel sync should be faster than a serial one",
+                parallel.elapsedMillis < serial.elapsedMillis);
+    }
+
+    private static void logStats(String scenario, LocationSyncTask.SyncStats stats) {
+        Log.i(TAG, scenario + ": " + stats + ", "
+                + String.format("%.1f", stats.getLocationsPerSecond()) + " locations/s, "
+                + String.format("%.3f", stats.getWriteAmplification()) + " rows written per row"
+                + " received");
+    }
+
+    private long[] addLocations(int count) {
+        long[] locationIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            locationIds[i] = addLocation("Site " + i);
+        }
+        return locationIds;
+    }
+
+    private long addLocation(String locationSetting) {
+        ContentValues locationValues = new ContentValues();
+        locationValues.put(LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        Uri locationUri = mContentResolver.insert(LocationEntry.CONTENT_URI, locationValues);
+        return ContentUris.parseId(locationUri);
+    }
+
+    private int countRows(Uri uri) {
+        Cursor cursor = mContentResolver.query(uri, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.utils.LocalHttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests the way NetworkUtils reads response bodies, using a local stand-in for the weather
+ * server. We also log how many bytes each way of reading the body allocates per sync, check
+ * that requests made with a ForecastResponseCache are answered with 304 Not Modified when the
+ * forecast hasn't changed since validators were last stored, and check that compressed responses are decoded and counted in
+ * NetworkMetrics.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestNetworkUtils {
+
+    private static final String TAG = TestNetworkUtils.class.getSimpleName();
+
+    /* Number of simulated syncs to average the allocation counts over */
+    private static final int SYNC_ITERATIONS = 20;
+
+    private final String mForecastJson = TestOpenWeatherJsonUtils.createForecastJson(14, "200", true);
+
+    private LocalHttpServer mServer;
+    private boolean mChunked;
+
+    /* The ETag the server gives the current forecast. Change it to simulate a new forecast. */
+    private volatile String mETag = "\"forecast-1\"";
+    /* The If-None-Match header of the last request the server received, if it had one */
+    private volatile String mLastIfNoneMatch;
+
+    /* The Content-Encoding the server uses when the client accepts it, null for none */
+    private volatile String mContentEncoding;
+
+    private File mCacheDirectory;
+    private ForecastResponseCache mResponseCache;
+
+    @Before
+    public void setUp() throws Exception {
+        mCacheDirectory = new File(
+                InstrumentationRegistry.getTargetContext().getCacheDir(), "test_forecast_cache");
+        deleteCacheDirectory();
+        mResponseCache = new ForecastResponseCache(mCacheDirectory);
+
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) {
+                try {
+                    mLastIfNoneMatch = request.headers.get("if-none-match");
+                    if (mETag.equals(mLastIfNoneMatch)) {
+                        return new LocalHttpServer.Response(
+                                HttpURLConnection.HTTP_NOT_MODIFIED, null).header("ETag", mETag);
+                    }
+
+                    byte[] body = mForecastJson.getBytes("UTF-8");
+                    String acceptEncoding = request.headers.get("accept-encoding");
+                    boolean compress = mContentEncoding != null && acceptEncoding != null
+                            && acceptEncoding.contains(mContentEncoding);
+                    if (compress) {
+                        body = compress(body, mContentEncoding);
+                    }
+
+                    LocalHttpServer.Response response = new LocalHttpServer.Response(
+                            HttpURLConnection.HTTP_OK, body).header("ETag", mETag);
+                    if (compress) {
+                        response.header("Content-Encoding", mContentEncoding);
+                    }
+                    response.chunked = mChunked;
+                    return response;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        deleteCacheDirectory();
+    }
+
+    @Test
+    public void testResponseBufferWithContentLength() throws Exception {
+        mChunked = false;
+        assertBufferHoldsForecast(mServer.url("/weather"));
+    }
+
+    @Test
+    public void testResponseBufferWithoutContentLength() throws Exception {
+        mChunked = true;
+        assertBufferHoldsForecast(mServer.url("/weather"));
+    }
+
+    @Test
+    public void testResponseString() throws Exception {
+        assertEquals(mForecastJson, NetworkUtils.getResponseFromHttpUrl(mServer.url("/weather")));
+    }
+
+    @Test
+    public void testConditionalRequestNotModified() throws Exception {
+        URL url = mServer.url("/weather");
+
+        /* The first request has nothing to validate against, so it downloads the forecast */
+        HttpResponseBuffer buffer = NetworkUtils.getResponseBufferFromHttpUrl(url, mResponseCache);
+        assertNotNull("First request should download the forecast", buffer);
+        assertEquals(mForecastJson, buffer.toString("UTF-8"));
+        mResponseCache.store(buffer.getValidators());
+        buffer.release();
+        assertNull("First request shouldn't be conditional", mLastIfNoneMatch);
+
+        /* The second request sends the stored ETag back and is told nothing has changed */
+        assertNull("Unchanged forecast should not be downloaded again",
+                NetworkUtils.getResponseBufferFromHttpUrl(url, mResponseCache));
+        assertEquals(mETag, mLastIfNoneMatch);
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void testValidatorsAreOnlyStoredWhenAskedTo() throws Exception {
+        URL url = mServer.url("/weather");
+
+        /* As when sync fails to parse or save the forecast it downloaded */
+        HttpResponseBuffer buffer = NetworkUtils.getResponseBufferFromHttpUrl(url, mResponseCache);
+        assertNotNull(buffer.getValidators());
+        buffer.release();
+
+        buffer = NetworkUtils.getResponseBufferFromHttpUrl(url, mResponseCache);
+        assertNotNull("Forecast that wasn't saved should be downloaded again", buffer);
+        buffer.release();
+        assertNull(mLastIfNoneMatch);
+    }
+
+    @Test
+    public void testConditionalRequestModified() throws Exception {
+        URL url = mServer.url("/weather");
+        downloadAndStore(url);
+
+        /* The server now has a new forecast, so the old ETag no longer matches */
+        String oldETag = mETag;
+        mETag = "\"forecast-2\"";
+
+        HttpResponseBuffer buffer = NetworkUtils.getResponseBufferFromHttpUrl(url, mResponseCache);
+        assertNotNull("Changed forecast should be downloaded", buffer);
+        assertEquals(mForecastJson, buffer.toString("UTF-8"));
+        mResponseCache.store(buffer.getValidators());
+        buffer.release();
+        assertEquals(oldETag, mLastIfNoneMatch);
+
+        /* The new ETag should have replaced the old one in the cache */
+        assertNull(NetworkUtils.getResponseBufferFromHttpUrl(url, mResponseCache));
+        assertEquals(mETag, mLastIfNoneMatch);
+    }
+
+    @Test
+    public void testRemovedValidatorsAreNotSent() throws Exception {
+        URL url = mServer.url("/weather");
+        downloadAndStore(url);
+
+        mResponseCache.remove(url);
+
+        HttpResponseBuffer buffer = NetworkUtils.getResponseBufferFromHttpUrl(url, mResponseCache);
+        assertNotNull("Request without validators should download the forecast", buffer);
+        buffer.release();
+        assertNull(mLastIfNoneMatch);
+    }
+
+    @Test
+    public void testIdentityResponseMetrics() throws Exception {
+        mContentEncoding = null;
+        NetworkMetrics.Snapshot metrics = downloadAndMeasure(mServer.url("/weather"));
+
+        int jsonLength = mForecastJson.getBytes("UTF-8").length;
+        assertEquals(1, metrics.responseCount);
+        assertEquals(jsonLength, metrics.wireBytes);
+        assertEquals(jsonLength, metrics.decodedBytes);
+    }
+
+    @Test
+    public void testGzipResponse() throws Exception {
+        assertCompressedResponseDecoded("gzip");
+    }
+
+    @Test
+    public void testDeflateResponse() throws Exception {
+        assertCompressedResponseDecoded("deflate");
+    }
+
+    @Test
+    public void testChunkedGzipResponse() throws Exception {
+        mChunked = true;
+        assertCompressedResponseDecoded("gzip");
+    }
+
+    @Test
+    public void testNotModifiedResponseMetrics() throws Exception {
+        URL url = mServer.url("/weather");
+        downloadAndStore(url);
+
+        NetworkMetrics.beginSync();
+        assertNull(NetworkUtils.getResponseBufferFromHttpUrl(url, mResponseCache));
+        NetworkMetrics.Snapshot metrics = NetworkMetrics.endSync();
+
+        assertEquals(1, metrics.responseCount);
+        assertEquals(0, metrics.wireBytes);
+        assertEquals(0, metrics.decodedBytes);
+    }
+
+    @Test
+    public void testBytesAllocatedPerSync() throws Exception {
+        URL url = mServer.url("/weather");
+
+        /* Warm up the connection code and the buffer pool before counting */
+        NetworkUtils.getResponseBufferFromHttpUrl(url).release();
+
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocSize();
+            for (int i = 0; i < SYNC_ITERATIONS; i++) {
+                HttpResponseBuffer buffer = NetworkUtils.getResponseBufferFromHttpUrl(url);
+                buffer.release();
+            }
+            long bufferBytes = Debug.getThreadAllocSize() / SYNC_ITERATIONS;
+
+            Debug.resetThreadAllocSize();
+            for (int i = 0; i < SYNC_ITERATIONS; i++) {
+                NetworkUtils.getResponseFromHttpUrl(url);
+            }
+            long stringBytes = Debug.getThreadAllocSize() / SYNC_ITERATIONS;
+
+            Log.i(TAG, "Bytes allocated per sync for a " + mForecastJson.length()
+                    + " byte body: pooled buffer " + bufferBytes + ", String " + stringBytes);
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    private void assertBufferHoldsForecast(URL url) throws Exception {
+        /* Run twice so that the second read reuses the pooled buffer */
+        for (int i = 0; i < 2; i++) {
+            HttpResponseBuffer buffer = NetworkUtils.getResponseBufferFromHttpUrl(url);
+            try {
+                assertEquals(mForecastJson, buffer.toString("UTF-8"));
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    private void assertCompressedResponseDecoded(String contentEncoding) throws Exception {
+        mContentEncoding = contentEncoding;
+        NetworkMetrics.Snapshot metrics = downloadAndMeasure(mServer.url("/weather"));
+
+        assertEquals(1, metrics.responseCount);
+        assertEquals(mForecastJson.getBytes("UTF-8").length, metrics.decodedBytes);
+        assertTrue(contentEncoding + " should have shrunk the body",
+                metrics.wireBytes < metrics.decodedBytes);
+        Log.i(TAG, contentEncoding + ": " + metrics);
+    }
+
+    /**
+     * Downloads the forecast as one sync, checking that it decodes to the JSON the server holds.
+     *
+     * @return The metrics recorded for the sync
+     */
+    /* Downloads the forecast and stores its validators, as a sync that saved it does */
+    private void downloadAndStore(URL url) throws Exception {
+        HttpResponseBuffer buffer = NetworkUtils.getResponseBufferFromHttpUrl(url, mResponseCache);
+        mResponseCache.store(buffer.getValidators());
+        buffer.release();
+    }
+
+    private NetworkMetrics.Snapshot downloadAndMeasure(URL url) throws Exception {
+        NetworkMetrics.beginSync();
+        HttpResponseBuffer buffer = NetworkUtils.getResponseBufferFromHttpUrl(url);
+        try {
+            assertEquals(mForecastJson, buffer.toString("UTF-8"));
+        } finally {
+            buffer.release();
+        }
+        NetworkMetrics.Snapshot metrics = NetworkMetrics.endSync();
+        assertEquals(metrics.toString(), NetworkMetrics.getLastSync().toString());
+        return metrics;
+    }
+
+    private static byte[] compress(byte[] body, String contentEncoding) throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        OutputStream out = "gzip".equals(contentEncoding)
+                ? new GZIPOutputStream(compressed)
+                : new DeflaterOutputStream(compressed);
+        out.write(body);
+        out.close();
+        return compressed.toByteArray();
+    }
+
+    private void deleteCacheDirectory() {
+        File[] files = mCacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue("Unable to delete " + file, file.delete());
+            }
+        }
+        mCacheDirectory.delete();
+        assertFalse(mCacheDirectory.exists());
+    }
+}
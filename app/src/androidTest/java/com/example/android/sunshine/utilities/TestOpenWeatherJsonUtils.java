@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Compares the streaming forecast parser with the original JSONObject based parser. Both parsers
+ * must produce exactly the same ContentValues for the same response. We also log how long each
+ * parser takes for 14, 16 and 200 day payloads so the two can be compared on a real device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestOpenWeatherJsonUtils {
+
+    private static final String TAG = TestOpenWeatherJsonUtils.class.getSimpleName();
+
+    /* Number of times each parser is run over a payload when timing it */
+    private static final int TIMING_ITERATIONS = 50;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Test
+    public void testStreamingParserMatchesJsonObjectParser() throws Exception {
+        int[] dayCounts = {14, 16, 200};
+        for (int dayCount : dayCounts) {
+            String forecastJson = createForecastJson(dayCount, "200", true);
+
+            ContentValues[] expected =
+                    OpenWeatherJsonUtils.getWeatherContentValuesFromJson(mContext, forecastJson);
+            ContentValues[] actual = parseStreaming(forecastJson);
+
+            assertNotNull(actual);
+            assertEquals("Wrong number of days for a " + dayCount + " day forecast",
+                    expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertValuesEqual("Day " + i + " of " + dayCount, expected[i], actual[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testStreamingParserHandlesErrorCode() throws Exception {
+        /* "cod" is deliberately placed after "list" to make sure it is still honoured */
+        String forecastJson = createForecastJson(14, "404", false);
+
+        assertNull(OpenWeatherJsonUtils.getWeatherContentValuesFromJson(mContext, forecastJson));
+        assertNull(parseStreaming(forecastJson));
+    }
+
+    @Test
+    public void testParserTimings() throws Exception {
+        int[] dayCounts = {14, 16, 200};
+        for (int dayCount : dayCounts) {
+            String forecastJson = createForecastJson(dayCount, "200", true);
+
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < TIMING_ITERATIONS; i++) {
+                OpenWeatherJsonUtils.getWeatherContentValuesFromJson(mContext, forecastJson);
+            }
+            long jsonObjectNanos = (System.nanoTime() - startNanos) / TIMING_ITERATIONS;
+
+            startNanos = System.nanoTime();
+            for (int i = 0; i < TIMING_ITERATIONS; i++) {
+                parseStreaming(forecastJson);
+            }
+            long streamingNanos = (System.nanoTime() - startNanos) / TIMING_ITERATIONS;
+
+            Log.i(TAG, dayCount + " days: JSONObject " + jsonObjectNanos / 1000 + "us, streaming "
+                    + streamingNanos / 1000 + "us");
+        }
+    }
+
+    private ContentValues[] parseStreaming(String forecastJson) throws Exception {
+        InputStream forecastStream = new ByteArrayInputStream(forecastJson.getBytes("UTF-8"));
+        try {
+            return OpenWeatherJsonUtils.getWeatherContentValuesFromJson(mContext, forecastStream);
+        } finally {
+            forecastStream.close();
+        }
+    }
+
+    private static void assertValuesEqual(String error, ContentValues expected,
+            ContentValues actual) {
+        assertEquals(error, expected.size(), actual.size());
+        for (Map.Entry<String, Object> entry : expected.valueSet()) {
+            Object expectedValue = entry.getValue();
+            Object actualValue = actual.get(entry.getKey());
+            /*
+             * The streaming parser goes through a ForecastBatch, which keeps every number but the
+             * date and weather ID as a double, so compare numbers by value rather than by type.
+             */
+            if (expectedValue instanceof Number && actualValue instanceof Number) {
+                assertEquals(error + ", column " + entry.getKey(),
+                        ((Number) expectedValue).doubleValue(),
+                        ((Number) actualValue).doubleValue());
+            } else {
+                assertEquals(error + ", column " + entry.getKey(), expectedValue, actualValue);
+            }
+        }
+    }
+
+    /**
+     * Builds a response shaped like the one returned by the forecast server.
+     *
+     * @param dayCount  Number of days in the "list" array
+     * @param code      Value of the "cod" field
+     * @param codeFirst Whether "cod" appears before or after "list"
+     * @return The JSON response
+     */
+    public static String createForecastJson(int dayCount, String code, boolean codeFirst) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"city\":{\"id\":5375480,\"name\":\"Mountain View\",")
+                .append("\"coord\":{\"lon\":-122.0838,\"lat\":37.3861},")
+                .append("\"country\":\"US\",\"population\":0},");
+        if (codeFirst) {
+            json.append("\"cod\":\"").append(code).append("\",");
+        }
+        json.append("\"message\":0.0032,\"cnt\":").append(dayCount).append(",\"list\":[");
+        for (int i = 0; i < dayCount; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"dt\":").append(1475280000L + i * 86400L)
+                    .append(",\"temp\":{\"day\":20.5,\"min\":").append(10 + i % 7)
+                    .append(".25,\"max\":").append(20 + i % 9)
+                    .append(".75,\"night\":11.2,\"eve\":18.1,\"morn\":12.4},")
+                    .append("\"pressure\":").append(1010 + i % 5).append(".5,")
+                    .append("\"humidity\":").append(50 + i % 40).append(',')
+                    .append("\"weather\":[{\"id\":").append(800 + i % 5)
+                    .append(",\"main\":\"Clouds\",\"description\":\"few clouds\",")
+                    .append("\"icon\":\"02d\"}],")
+                    .append("\"speed\":").append(1 + i % 6).append(".4,")
+                    .append("\"deg\":").append(i * 17 % 360).append(",")
+                    .append("\"clouds\":12}");
+        }
+        json.append(']');
+        if (!codeFirst) {
+            json.append(",\"cod\":\"").append(code).append('"');
+        }
+        json.append('}');
+        return json.toString();
+    }
+}
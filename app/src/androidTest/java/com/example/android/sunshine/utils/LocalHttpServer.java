@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A tiny HTTP/1.1 server listening on the loopback interface. It stands in for the weather
+ * server in tests so they run offline and can control exactly what the app receives. Every
+ * connection is answered on a thread of its own by the {@link Handler} given to the constructor
+ * and then closed, so the handler must be thread safe.
+ */
+public class LocalHttpServer {
+
+    /**
+     * Decides how the server answers a request.
+     */
+    public interface Handler {
+        Response handle(Request request);
+    }
+
+    /**
+     * A request received by the server. Header names are lower case.
+     */
+    public static class Request {
+        public final String method;
+        public final String path;
+        public final Map<String, String> headers;
+
+        Request(String method, String path, Map<String, String> headers) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+        }
+    }
+
+    /**
+     * The response the server sends back. Content-Length is added automatically unless
+     * {@link #chunked} is set, in which case the body is sent with chunked transfer encoding.
+     */
+    public static class Response {
+        public final int code;
+        public final Map<String, String> headers = new LinkedHashMap<>();
+        public final byte[] body;
+        public boolean chunked;
+
+        public Response(int code, byte[] body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        public Response header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+    }
+
+    private final ServerSocket mServerSocket;
+    private final Handler mHandler;
+    private final Thread mThread;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    public LocalHttpServer(Handler handler) throws IOException {
+        mHandler = handler;
+        mServerSocket = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1"));
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        serveInBackground(mServerSocket.accept());
+                    } catch (IOException e) {
+                        /* The server socket was closed by shutdown() */
+                    }
+                }
+            }
+        }, "LocalHttpServer");
+        mThread.start();
+    }
+
+    /**
+     * @param path The path part of the URL, starting with a "/"
+     * @return A URL pointing to this server
+     */
+    public URL url(String path) throws MalformedURLException {
+        return new URL("http", "127.0.0.1", mServerSocket.getLocalPort(), path);
+    }
+
+    /**
+     * @return The number of requests this server has answered so far
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public void shutdown() throws IOException {
+        mServerSocket.close();
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serveInBackground(final Socket socket) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    serve(socket);
+                } catch (IOException e) {
+                    /* The client went away, there is nobody to tell */
+                } finally {
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                        /* Nothing more we can do */
+                    }
+                }
+            }
+        }, "LocalHttpServerConnection").start();
+    }
+
+    private void serve(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+
+        String requestLine = reader.readLine();
+        if (requestLine == null) return;
+        String[] requestParts = requestLine.split(" ");
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                        line.substring(colon + 1).trim());
+            }
+        }
+
+        Response response = mHandler.handle(
+                new Request(requestParts[0], requestParts[1], headers));
+        mRequestCount.incrementAndGet();
+
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(response.code).append(" X\r\n");
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        byte[] body = response.body == null ? new byte[0] : response.body;
+        if (response.chunked) {
+            head.append("Transfer-Encoding: chunked\r\n");
+        } else {
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        head.append("Connection: close\r\n\r\n");
+
+        OutputStream out = socket.getOutputStream();
+        out.write(head.toString().getBytes("ISO-8859-1"));
+        if (response.chunked && body.length > 0) {
+            out.write((Integer.toHexString(body.length) + "\r\n").getBytes("ISO-8859-1"));
+            out.write(body);
+            out.write("\r\n".getBytes("ISO-8859-1"));
+        }
+        if (response.chunked) {
+            out.write("0\r\n\r\n".getBytes("ISO-8859-1"));
+        } else {
+            out.write(body);
+        }
+        out.flush();
+    }
+}
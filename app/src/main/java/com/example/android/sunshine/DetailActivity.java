@@ -29,8 +29,9 @@ import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 
-import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.ForecastRepository;
 import com.example.android.sunshine.databinding.ActivityDetailBinding;
+import com.example.android.sunshine.shared.ForecastDay;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 import com.example.android.sunshine.utilities.SunshineWeatherUtils;
 
@@ -43,35 +44,6 @@ public class DetailActivity extends AppCompatActivity implements
      */
     private static final String FORECAST_SHARE_HASHTAG = " #SunshineApp";
 
-    /*
-     * The columns of data that we are interested in displaying within our DetailActivity's
-     * weather display.
-     */
-    public static final String[] WEATHER_DETAIL_PROJECTION = {
-            WeatherContract.WeatherEntry.COLUMN_DATE,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
-            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
-            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
-            WeatherContract.WeatherEntry.COLUMN_DEGREES,
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID
-    };
-
-    /*
-     * We store the indices of the values in the array of Strings above to more quickly be able
-     * to access the data from our query. If the order of the Strings above changes, these
-     * indices must be adjusted to match the order of the Strings.
-     */
-    public static final int INDEX_WEATHER_DATE = 0;
-    public static final int INDEX_WEATHER_MAX_TEMP = 1;
-    public static final int INDEX_WEATHER_MIN_TEMP = 2;
-    public static final int INDEX_WEATHER_HUMIDITY = 3;
-    public static final int INDEX_WEATHER_PRESSURE = 4;
-    public static final int INDEX_WEATHER_WIND_SPEED = 5;
-    public static final int INDEX_WEATHER_DEGREES = 6;
-    public static final int INDEX_WEATHER_CONDITION_ID = 7;
-
     /*
      * This ID will be used to identify the Loader responsible for loading the weather details
      * for a particular day. In some cases, one Activity can deal with many Loaders. However, in
@@ -195,7 +167,7 @@ public class DetailActivity extends AppCompatActivity implements
 
                 return new CursorLoader(this,
                         mUri,
-                        WEATHER_DETAIL_PROJECTION,
+                        ForecastRepository.DAY_PROJECTION,
                         null,
                         null,
                         null);
@@ -239,11 +211,14 @@ public class DetailActivity extends AppCompatActivity implements
             return;
         }
 
+        /* Read the day out of the cursor once, using the projection we queried with */
+        ForecastDay forecast = ForecastRepository.readDay(data);
+
         /****************
          * Weather Icon *
          ****************/
-        /* Read weather condition ID from the cursor (ID provided by Open Weather Map) */
-        int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
+        /* Read weather condition ID from the forecast (ID provided by Open Weather Map) */
+        int weatherId = forecast.getWeatherId();
         /* Use our utility method to determine the resource ID for the proper art */
         int weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
 
@@ -254,7 +229,7 @@ public class DetailActivity extends AppCompatActivity implements
          * Weather Date *
          ****************/
         /*
-         * Read the date from the cursor. It is important to note that the date from the cursor
+         * Read the date from the forecast. It is important to note that the date from the cursor
          * is the same date from the weather SQL table. The date that is stored is a GMT
          * representation at midnight of the date when the weather information was loaded for.
          *
@@ -262,7 +237,7 @@ public class DetailActivity extends AppCompatActivity implements
          * the date representation for the local date in local time.
          * SunshineDateUtils#getFriendlyDateString takes care of this for us.
          */
-        long localDateMidnightGmt = data.getLong(INDEX_WEATHER_DATE);
+        long localDateMidnightGmt = forecast.getDate();
         String dateText = SunshineDateUtils.getFriendlyDateString(this, localDateMidnightGmt, true);
 
         mDetailBinding.primaryInfo.date.setText(dateText);
@@ -286,8 +261,8 @@ public class DetailActivity extends AppCompatActivity implements
         /**************************
          * High (max) temperature *
          **************************/
-        /* Read high temperature from the cursor (in degrees celsius) */
-        double highInCelsius = data.getDouble(INDEX_WEATHER_MAX_TEMP);
+        /* Read high temperature from the forecast (in degrees celsius) */
+        double highInCelsius = forecast.getMaxTemp();
         /*
          * If the user's preference for weather is fahrenheit, formatTemperature will convert
          * the temperature. This method will also append either °C or °F to the temperature
@@ -305,8 +280,8 @@ public class DetailActivity extends AppCompatActivity implements
         /*************************
          * Low (min) temperature *
          *************************/
-        /* Read low temperature from the cursor (in degrees celsius) */
-        double lowInCelsius = data.getDouble(INDEX_WEATHER_MIN_TEMP);
+        /* Read low temperature from the forecast (in degrees celsius) */
+        double lowInCelsius = forecast.getMinTemp();
         /*
          * If the user's preference for weather is fahrenheit, formatTemperature will convert
          * the temperature. This method will also append either °C or °F to the temperature
@@ -323,8 +298,8 @@ public class DetailActivity extends AppCompatActivity implements
         /************
          * Humidity *
          ************/
-        /* Read humidity from the cursor */
-        float humidity = data.getFloat(INDEX_WEATHER_HUMIDITY);
+        /* Read humidity from the forecast */
+        float humidity = (float) forecast.getHumidity();
         String humidityString = getString(R.string.format_humidity, humidity);
 
         String humidityA11y = getString(R.string.a11y_humidity, humidityString);
@@ -338,9 +313,9 @@ public class DetailActivity extends AppCompatActivity implements
         /****************************
          * Wind speed and direction *
          ****************************/
-        /* Read wind speed (in MPH) and direction (in compass degrees) from the cursor  */
-        float windSpeed = data.getFloat(INDEX_WEATHER_WIND_SPEED);
-        float windDirection = data.getFloat(INDEX_WEATHER_DEGREES);
+        /* Read wind speed (in MPH) and direction (in compass degrees) from the forecast  */
+        float windSpeed = (float) forecast.getWindSpeed();
+        float windDirection = (float) forecast.getDegrees();
         String windString = SunshineWeatherUtils.getFormattedWind(this, windSpeed, windDirection);
 
         String windA11y = getString(R.string.a11y_wind, windString);
@@ -354,8 +329,8 @@ public class DetailActivity extends AppCompatActivity implements
         /************
          * Pressure *
          ************/
-        /* Read pressure from the cursor */
-        float pressure = data.getFloat(INDEX_WEATHER_PRESSURE);
+        /* Read pressure from the forecast */
+        float pressure = (float) forecast.getPressure();
 
         /*
          * Format the pressure text using string resources. The reason we directly access
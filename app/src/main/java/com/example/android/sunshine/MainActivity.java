@@ -198,21 +198,21 @@ public class MainActivity extends AppCompatActivity implements
         switch (loaderId) {
 
             case ID_FORECAST_LOADER:
-                /* URI for all rows of weather data in our weather table */
-                Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
-                /* Sort order: Ascending by date */
-                String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
                 /*
-                 * A SELECTION in SQL declares which rows you'd like to return. In our case, we
-                 * want all weather data from today onwards that is stored in our weather table.
-                 * We created a handy method to do that in our WeatherEntry class.
+                 * URI for all weather data from today onwards that is stored in our weather
+                 * table. We created a handy method to build it in our WeatherEntry class. Since
+                 * MAIN_FORECAST_PROJECTION only holds columns of the forecast index, the
+                 * provider reads the whole list from the index, however much history the table
+                 * keeps.
                  */
-                String selection = WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards();
+                Uri forecastQueryUri = WeatherContract.WeatherEntry.buildWeatherUriFromToday();
+                /* Sort order: Ascending by date */
+                String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
 
                 return new CursorLoader(this,
                         forecastQueryUri,
                         MAIN_FORECAST_PROJECTION,
-                        selection,
+                        null,
                         null,
                         sortOrder);
 
@@ -100,8 +100,12 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
             SunshinePreferences.resetLocationCoordinates(activity);
             SunshineSyncUtils.startImmediateSync(activity);
         } else if (key.equals(getString(R.string.pref_units_key))) {
-            // units have changed. update lists of weather entries accordingly
-            activity.getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+            // units have changed. update lists of weather entries accordingly. Going through the
+            // provider means a sync that is writing the weather right now only reloads them once.
+            activity.getContentResolver().call(WeatherContract.WeatherEntry.CONTENT_URI,
+                    WeatherContract.METHOD_NOTIFY_CHANGE,
+                    WeatherContract.WeatherEntry.CONTENT_URI.toString(),
+                    null);
         }
         Preference preference = findPreference(key);
         if (null != preference) {
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds WeatherProvider's change notifications back for a moment and sends them together. Every
+ * notification makes each observer of the URI requery, so a sync that writes the forecast,
+ * archives the days it replaced and compacts the archive would otherwise have the same loaders
+ * reload several times in a row, as would a units change that comes in during a sync.
+ * <p>
+ * A URI waits at most the delay after the first notification of a batch, and is sent once no
+ * matter how often it was notified in the meantime. A URI is dropped if one of its ancestors is
+ * also waiting, since notifying the ancestor reaches the observers of every URI under it.
+ */
+final class ChangeNotifier {
+
+    /* Long enough to catch the writes of one sync, short enough that nobody sees the lag */
+    static final long DEFAULT_DELAY_MILLIS = 100;
+
+    private final ContentResolver mContentResolver;
+    private final Handler mHandler;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /* The URIs waiting to be notified, none of which is an ancestor of another. Guarded by this. */
+    private final List<Uri> mPending = new ArrayList<>();
+
+    /* Whether a flush has been posted for the URIs that are waiting. Guarded by this. */
+    private boolean mFlushPosted;
+
+    private long mDelayMillis = DEFAULT_DELAY_MILLIS;
+
+    /* The number of notifications actually sent, for tests */
+    private int mSentCount;
+
+    ChangeNotifier(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+        mHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Notifies the observers of the URI once the delay has passed, together with every other URI
+     * notified until then.
+     */
+    void notifyChange(Uri uri) {
+        boolean sendNow;
+        synchronized (this) {
+            if (!addPending(uri)) {
+                return;
+            }
+            sendNow = mDelayMillis == 0;
+            if (!sendNow && !mFlushPosted) {
+                mHandler.postDelayed(mFlush, mDelayMillis);
+                mFlushPosted = true;
+            }
+        }
+        if (sendNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends every notification that is waiting right away.
+     */
+    void flush() {
+        Uri[] uris;
+        synchronized (this) {
+            mHandler.removeCallbacks(mFlush);
+            mFlushPosted = false;
+            uris = mPending.toArray(new Uri[mPending.size()]);
+            mPending.clear();
+            mSentCount += uris.length;
+        }
+        for (Uri uri : uris) {
+            mContentResolver.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Changes how long notifications are held back. With a delay of 0, every notification is
+     * sent as soon as it is made, and nothing is coalesced.
+     */
+    synchronized void setDelayMillis(long delayMillis) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("Invalid delay " + delayMillis);
+        }
+        mDelayMillis = delayMillis;
+    }
+
+    /**
+     * @return The number of notifications sent so far
+     */
+    synchronized int getSentCount() {
+        return mSentCount;
+    }
+
+    /**
+     * @return false if the URI or one of its ancestors is already waiting
+     */
+    private boolean addPending(Uri uri) {
+        for (int i = mPending.size() - 1; i >= 0; i--) {
+            Uri pending = mPending.get(i);
+            if (isAncestorOrSelf(pending, uri)) {
+                return false;
+            }
+            if (isAncestorOrSelf(uri, pending)) {
+                mPending.remove(i);
+            }
+        }
+        mPending.add(uri);
+        return true;
+    }
+
+    /**
+     * Observers are matched on the authority and the path alone, so that is all we compare.
+     *
+     * @return true if notifying ancestor reaches every observer of uri
+     */
+    private static boolean isAncestorOrSelf(Uri ancestor, Uri uri) {
+        if (!equal(ancestor.getAuthority(), uri.getAuthority())) {
+            return false;
+        }
+        List<String> ancestorSegments = ancestor.getPathSegments();
+        List<String> segments = uri.getPathSegments();
+        if (ancestorSegments.size() > segments.size()) {
+            return false;
+        }
+        for (int i = 0; i < ancestorSegments.size(); i++) {
+            if (!ancestorSegments.get(i).equals(segments.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
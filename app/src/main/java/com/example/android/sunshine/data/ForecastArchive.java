@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+/**
+ * Keeps the archive of past forecasts from growing without bounds. With a sync every few hours,
+ * each day of the forecast is revised dozens of times before it goes by, and every revision is
+ * archived. Compacting merges the revisions of each day that is old enough into a single row,
+ * and drops the days that are older than we want to keep at all.
+ * <p>
+ * SQLite reuses the pages freed by compaction for the revisions archived afterwards, so the
+ * database file stays about the size the retention window needs rather than growing forever.
+ */
+final class ForecastArchive {
+
+    /* Revisions are kept as they are for a week, so recent forecasts can be compared in full */
+    static final int DEFAULT_COMPACT_AFTER_DAYS = 7;
+
+    /* Ten years of one row per day is under 4000 rows */
+    static final int DEFAULT_RETENTION_DAYS = 10 * 365;
+
+    /*
+     * Merges the revisions of every day before the cutoff date that has more than one row. The
+     * revision counts weigh the averages, so merging a day that was already merged once gives
+     * the same result as merging all of its revisions at the same time.
+     */
+    private static final String SQL_AGGREGATE = "INSERT INTO " + ArchiveEntry.TABLE_NAME + " ("
+            + WeatherEntry.COLUMN_DATE + ", "
+            + WeatherEntry.COLUMN_WEATHER_ID + ", "
+            + WeatherEntry.COLUMN_MIN_TEMP + ", "
+            + WeatherEntry.COLUMN_MAX_TEMP + ", "
+            + WeatherEntry.COLUMN_HUMIDITY + ", "
+            + WeatherEntry.COLUMN_PRESSURE + ", "
+            + WeatherEntry.COLUMN_WIND_SPEED + ", "
+            + WeatherEntry.COLUMN_DEGREES + ", "
+            + ArchiveEntry.COLUMN_ARCHIVED_AT + ", "
+            + ArchiveEntry.COLUMN_REVISIONS + ") "
+            + "SELECT day." + WeatherEntry.COLUMN_DATE + ", "
+            + latestOf(WeatherEntry.COLUMN_WEATHER_ID) + ", "
+            + "MIN(" + WeatherEntry.COLUMN_MIN_TEMP + "), "
+            + "MAX(" + WeatherEntry.COLUMN_MAX_TEMP + "), "
+            + weightedAverageOf(WeatherEntry.COLUMN_HUMIDITY) + ", "
+            + weightedAverageOf(WeatherEntry.COLUMN_PRESSURE) + ", "
+            + weightedAverageOf(WeatherEntry.COLUMN_WIND_SPEED) + ", "
+            /* Averaging 350° and 10° would give 180°, so keep the last direction instead */
+            + latestOf(WeatherEntry.COLUMN_DEGREES) + ", "
+            + "MAX(" + ArchiveEntry.COLUMN_ARCHIVED_AT + "), "
+            + "SUM(" + ArchiveEntry.COLUMN_REVISIONS + ") "
+            + "FROM " + ArchiveEntry.TABLE_NAME + " AS day "
+            + "WHERE day." + WeatherEntry.COLUMN_DATE + " < ? "
+            + "GROUP BY day." + WeatherEntry.COLUMN_DATE + " "
+            + "HAVING COUNT(*) > 1";
+
+    /* Deletes the rows that were merged: the old rows of every day that got a merged row */
+    private static final String SQL_DELETE_MERGED = "DELETE FROM " + ArchiveEntry.TABLE_NAME
+            + " WHERE " + ArchiveEntry._ID + " <= ? AND " + WeatherEntry.COLUMN_DATE + " IN ("
+            + "SELECT " + WeatherEntry.COLUMN_DATE + " FROM " + ArchiveEntry.TABLE_NAME
+            + " WHERE " + ArchiveEntry._ID + " > ?)";
+
+    private static final String SQL_DELETE_EXPIRED = "DELETE FROM " + ArchiveEntry.TABLE_NAME
+            + " WHERE " + WeatherEntry.COLUMN_DATE + " < ?";
+
+    /* The number of days that were merged into one row each */
+    int daysCompacted;
+    /* The number of rows that were merged away */
+    int rowsCompacted;
+    /* The number of rows that were deleted for being older than the retention window */
+    int rowsExpired;
+
+    private ForecastArchive() {
+    }
+
+    private static String latestOf(String column) {
+        return "(SELECT latest." + column + " FROM " + ArchiveEntry.TABLE_NAME + " AS latest"
+                + " WHERE latest." + WeatherEntry.COLUMN_DATE + " = day." + WeatherEntry.COLUMN_DATE
+                + " ORDER BY latest." + ArchiveEntry.COLUMN_ARCHIVED_AT + " DESC, "
+                + "latest." + ArchiveEntry._ID + " DESC LIMIT 1)";
+    }
+
+    private static String weightedAverageOf(String column) {
+        return "SUM(" + column + " * " + ArchiveEntry.COLUMN_REVISIONS + ") / "
+                + "SUM(" + ArchiveEntry.COLUMN_REVISIONS + ")";
+    }
+
+    /**
+     * Compacts the archive.
+     *
+     * @param db               The database to compact. The caller should hold a transaction
+     *                         on it.
+     * @param today            Today's normalized date
+     * @param compactAfterDays Days at least this many days before today are merged into one row
+     * @param retentionDays    Days at least this many days before today are deleted
+     * @return What was changed
+     */
+    static ForecastArchive compact(SQLiteDatabase db, long today, int compactAfterDays,
+                                   int retentionDays) {
+        if (!SunshineDateUtils.isDateNormalized(today)) {
+            throw new IllegalArgumentException("Today's date must be normalized");
+        }
+        if (compactAfterDays < 0 || retentionDays < 0) {
+            throw new IllegalArgumentException("Compaction and retention can't be negative");
+        }
+        ForecastArchive result = new ForecastArchive();
+
+        /* Drop what we no longer keep first, so we don't merge days only to delete them */
+        SQLiteStatement deleteExpired = db.compileStatement(SQL_DELETE_EXPIRED);
+        try {
+            deleteExpired.bindLong(1, today - retentionDays * SunshineDateUtils.DAY_IN_MILLIS);
+            result.rowsExpired = deleteExpired.executeUpdateDelete();
+        } finally {
+            deleteExpired.close();
+        }
+
+        /*
+         * Every row we are about to add gets an _ID above the highest one now in the table,
+         * which tells the merged rows apart from the ones they replace.
+         */
+        long lastIdBefore = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX("
+                + ArchiveEntry._ID + "), 0) FROM " + ArchiveEntry.TABLE_NAME, null);
+
+        SQLiteStatement aggregate = db.compileStatement(SQL_AGGREGATE);
+        try {
+            aggregate.bindLong(1, today - compactAfterDays * SunshineDateUtils.DAY_IN_MILLIS);
+            result.daysCompacted = aggregate.executeUpdateDelete();
+        } finally {
+            aggregate.close();
+        }
+
+        if (result.daysCompacted > 0) {
+            SQLiteStatement deleteMerged = db.compileStatement(SQL_DELETE_MERGED);
+            try {
+                deleteMerged.bindLong(1, lastIdBefore);
+                deleteMerged.bindLong(2, lastIdBefore);
+                /* Each merged day lost all of its rows and gained one */
+                result.rowsCompacted =
+                        deleteMerged.executeUpdateDelete() - result.daysCompacted;
+            } finally {
+                deleteMerged.close();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The number of rows that were actually written to the database
+     */
+    int getRowsWritten() {
+        return rowsExpired + rowsCompacted + daysCompacted * 2;
+    }
+}
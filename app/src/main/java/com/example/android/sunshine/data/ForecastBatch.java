@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.os.Bundle;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+
+/**
+ * A forecast held as one primitive array per column of the weather table, rather than as a
+ * ContentValues per day. A ContentValues is a HashMap that boxes every number put into it; a
+ * ForecastBatch stores day i's values at index i of each array, so adding a day allocates
+ * nothing once the arrays are big enough. Batches are meant to be cleared and refilled on every
+ * sync instead of being thrown away.
+ * <p>
+ * A batch is not thread safe.
+ */
+public final class ForecastBatch {
+
+    /* Enough for the 14 day forecast we ask the server for, and a couple of days to spare */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /* Put in a Bundle by toBundle when the arrays are longer than the batch */
+    private static final String EXTRA_ROW_COUNT = "row_count";
+
+    private int mSize;
+
+    private long[] mDates;
+    private int[] mWeatherIds;
+    private double[] mMinTemps;
+    private double[] mMaxTemps;
+    private double[] mHumidities;
+    private double[] mPressures;
+    private double[] mWindSpeeds;
+    private double[] mDegrees;
+
+    public ForecastBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of days the batch can hold before its arrays have to grow
+     */
+    public ForecastBatch(int capacity) {
+        mDates = new long[capacity];
+        mWeatherIds = new int[capacity];
+        mMinTemps = new double[capacity];
+        mMaxTemps = new double[capacity];
+        mHumidities = new double[capacity];
+        mPressures = new double[capacity];
+        mWindSpeeds = new double[capacity];
+        mDegrees = new double[capacity];
+    }
+
+    /**
+     * @return The number of days in the batch
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Empties the batch, keeping its arrays so it can be refilled without allocating.
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Appends one day to the batch.
+     *
+     * @return The index of the day that was added
+     */
+    public int add(long date, int weatherId, double minTemp, double maxTemp, double humidity,
+                   double pressure, double windSpeed, double degrees) {
+        if (mSize == mDates.length) {
+            grow(Math.max(mSize * 2, DEFAULT_CAPACITY));
+        }
+
+        int index = mSize++;
+        mDates[index] = date;
+        mWeatherIds[index] = weatherId;
+        mMinTemps[index] = minTemp;
+        mMaxTemps[index] = maxTemp;
+        mHumidities[index] = humidity;
+        mPressures[index] = pressure;
+        mWindSpeeds[index] = windSpeed;
+        mDegrees[index] = degrees;
+        return index;
+    }
+
+    public long getDate(int index) {
+        checkIndex(index);
+        return mDates[index];
+    }
+
+    public int getWeatherId(int index) {
+        checkIndex(index);
+        return mWeatherIds[index];
+    }
+
+    public double getMinTemp(int index) {
+        checkIndex(index);
+        return mMinTemps[index];
+    }
+
+    public double getMaxTemp(int index) {
+        checkIndex(index);
+        return mMaxTemps[index];
+    }
+
+    public double getHumidity(int index) {
+        checkIndex(index);
+        return mHumidities[index];
+    }
+
+    public double getPressure(int index) {
+        checkIndex(index);
+        return mPressures[index];
+    }
+
+    public double getWindSpeed(int index) {
+        checkIndex(index);
+        return mWindSpeeds[index];
+    }
+
+    public double getDegrees(int index) {
+        checkIndex(index);
+        return mDegrees[index];
+    }
+
+    /**
+     * Appends days given as ContentValues, for callers that haven't moved to batches yet.
+     * Every day must have a value for each column of the weather table.
+     *
+     * @param values One set of values per day
+     * @throws IllegalArgumentException If a day is missing a column
+     */
+    public void addAll(ContentValues[] values) {
+        if (mDates.length < mSize + values.length) {
+            grow(mSize + values.length);
+        }
+        for (ContentValues day : values) {
+            add(getRequiredNumber(day, WeatherEntry.COLUMN_DATE).longValue(),
+                    getRequiredNumber(day, WeatherEntry.COLUMN_WEATHER_ID).intValue(),
+                    getRequiredNumber(day, WeatherEntry.COLUMN_MIN_TEMP).doubleValue(),
+                    getRequiredNumber(day, WeatherEntry.COLUMN_MAX_TEMP).doubleValue(),
+                    getRequiredNumber(day, WeatherEntry.COLUMN_HUMIDITY).doubleValue(),
+                    getRequiredNumber(day, WeatherEntry.COLUMN_PRESSURE).doubleValue(),
+                    getRequiredNumber(day, WeatherEntry.COLUMN_WIND_SPEED).doubleValue(),
+                    getRequiredNumber(day, WeatherEntry.COLUMN_DEGREES).doubleValue());
+        }
+    }
+
+    /**
+     * @param index The day to convert
+     * @return A ContentValues holding the day, for callers that haven't moved to batches yet
+     */
+    public ContentValues toContentValues(int index) {
+        checkIndex(index);
+        ContentValues weatherValues = new ContentValues();
+        weatherValues.put(WeatherEntry.COLUMN_DATE, mDates[index]);
+        weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, mHumidities[index]);
+        weatherValues.put(WeatherEntry.COLUMN_PRESSURE, mPressures[index]);
+        weatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, mWindSpeeds[index]);
+        weatherValues.put(WeatherEntry.COLUMN_DEGREES, mDegrees[index]);
+        weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, mMaxTemps[index]);
+        weatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, mMinTemps[index]);
+        weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, mWeatherIds[index]);
+        return weatherValues;
+    }
+
+    /**
+     * @return One ContentValues per day, in order
+     */
+    public ContentValues[] toContentValuesArray() {
+        ContentValues[] weatherContentValues = new ContentValues[mSize];
+        for (int i = 0; i < mSize; i++) {
+            weatherContentValues[i] = toContentValues(i);
+        }
+        return weatherContentValues;
+    }
+
+    /**
+     * Puts the batch's arrays into a Bundle in the form that
+     * {@link WeatherContract#METHOD_BULK_INSERT_COLUMNS} expects. The arrays are not copied, so
+     * the batch must not be changed until the provider has returned.
+     *
+     * @return A Bundle holding the batch
+     */
+    public Bundle toBundle() {
+        Bundle columns = new Bundle();
+        columns.putLongArray(WeatherEntry.COLUMN_DATE, mDates);
+        columns.putIntArray(WeatherEntry.COLUMN_WEATHER_ID, mWeatherIds);
+        columns.putDoubleArray(WeatherEntry.COLUMN_MIN_TEMP, mMinTemps);
+        columns.putDoubleArray(WeatherEntry.COLUMN_MAX_TEMP, mMaxTemps);
+        columns.putDoubleArray(WeatherEntry.COLUMN_HUMIDITY, mHumidities);
+        columns.putDoubleArray(WeatherEntry.COLUMN_PRESSURE, mPressures);
+        columns.putDoubleArray(WeatherEntry.COLUMN_WIND_SPEED, mWindSpeeds);
+        columns.putDoubleArray(WeatherEntry.COLUMN_DEGREES, mDegrees);
+        if (mSize != mDates.length) {
+            columns.putInt(EXTRA_ROW_COUNT, mSize);
+        }
+        return columns;
+    }
+
+    /**
+     * Wraps the arrays in a Bundle made by {@link #toBundle()}, or built by hand as described
+     * for {@link WeatherContract#METHOD_BULK_INSERT_COLUMNS}. The arrays are not copied.
+     *
+     * @param columns The Bundle holding the arrays
+     * @return A batch over the arrays
+     * @throws IllegalArgumentException If a column is missing or shorter than the batch
+     */
+    public static ForecastBatch fromBundle(Bundle columns) {
+        if (columns == null) {
+            throw new IllegalArgumentException("The forecast columns must be given");
+        }
+
+        long[] dates = columns.getLongArray(WeatherEntry.COLUMN_DATE);
+        if (dates == null) {
+            throw new IllegalArgumentException(
+                    "Column " + WeatherEntry.COLUMN_DATE + " is missing");
+        }
+        int size = columns.getInt(EXTRA_ROW_COUNT, dates.length);
+        if (size < 0 || size > dates.length) {
+            throw new IllegalArgumentException(
+                    "Column " + WeatherEntry.COLUMN_DATE + " is too short");
+        }
+
+        ForecastBatch batch = new ForecastBatch(0);
+        batch.mSize = size;
+        batch.mDates = dates;
+        batch.mWeatherIds = columns.getIntArray(WeatherEntry.COLUMN_WEATHER_ID);
+        checkColumn(WeatherEntry.COLUMN_WEATHER_ID,
+                batch.mWeatherIds == null ? -1 : batch.mWeatherIds.length, size);
+        batch.mMinTemps = getDoubleColumn(columns, WeatherEntry.COLUMN_MIN_TEMP, size);
+        batch.mMaxTemps = getDoubleColumn(columns, WeatherEntry.COLUMN_MAX_TEMP, size);
+        batch.mHumidities = getDoubleColumn(columns, WeatherEntry.COLUMN_HUMIDITY, size);
+        batch.mPressures = getDoubleColumn(columns, WeatherEntry.COLUMN_PRESSURE, size);
+        batch.mWindSpeeds = getDoubleColumn(columns, WeatherEntry.COLUMN_WIND_SPEED, size);
+        batch.mDegrees = getDoubleColumn(columns, WeatherEntry.COLUMN_DEGREES, size);
+        return batch;
+    }
+
+    private static double[] getDoubleColumn(Bundle columns, String column, int size) {
+        double[] values = columns.getDoubleArray(column);
+        checkColumn(column, values == null ? -1 : values.length, size);
+        return values;
+    }
+
+    private static void checkColumn(String column, int length, int size) {
+        if (length < size) {
+            throw new IllegalArgumentException("Column " + column + " is missing or too short");
+        }
+    }
+
+    private static Number getRequiredNumber(ContentValues day, String column) {
+        Object value = day.get(column);
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        if (value instanceof String) {
+            /* ContentValues#getAsDouble would accept a String too, so do the same */
+            try {
+                return Double.valueOf((String) value);
+            } catch (NumberFormatException e) {
+                /* Reported below */
+            }
+        }
+        throw new IllegalArgumentException("Column " + column + " is missing or not a number");
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        }
+    }
+
+    private void grow(int capacity) {
+        mDates = Arrays.copyOf(mDates, capacity);
+        mWeatherIds = Arrays.copyOf(mWeatherIds, capacity);
+        mMinTemps = Arrays.copyOf(mMinTemps, capacity);
+        mMaxTemps = Arrays.copyOf(mMaxTemps, capacity);
+        mHumidities = Arrays.copyOf(mHumidities, capacity);
+        mPressures = Arrays.copyOf(mPressures, capacity);
+        mWindSpeeds = Arrays.copyOf(mWindSpeeds, capacity);
+        mDegrees = Arrays.copyOf(mDegrees, capacity);
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.CursorIndexOutOfBoundsException;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.shared.ForecastDay;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A process-wide copy of the weather table, held in memory so that reading the forecast doesn't
+ * have to go to SQLite. The table only changes when a sync writes to it, yet MainActivity,
+ * DetailActivity, the notification and the watch face all query it again and again in between.
+ * <p>
+ * The copy is an immutable {@link Snapshot}. WeatherProvider calls {@link #invalidate()} after
+ * every write to the weather table commits, and the next read loads a new snapshot and swaps it
+ * in. Readers that already hold the old snapshot keep reading it safely, since it never changes.
+ * <p>
+ * Anything that writes to the weather table without going through WeatherProvider must call
+ * invalidate() as well, or the provider will keep serving what was there before.
+ */
+final class ForecastCache {
+
+    /*
+     * The weather table normally holds the two weeks the server sends us. If it holds a lot
+     * more than that, there is history in it that we'd rather not keep in memory, and queries
+     * go to SQLite, which answers them from the forecast index.
+     */
+    static final int MAX_CACHED_DAYS = 1024;
+
+    /* The columns a snapshot holds, which are every column of the weather table */
+    private static final String[] COLUMNS = {
+            WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    private static final int COLUMN_INDEX_ID = 0;
+    private static final int COLUMN_INDEX_DATE = 1;
+    private static final int COLUMN_INDEX_WEATHER_ID = 2;
+    private static final int COLUMN_INDEX_MIN_TEMP = 3;
+    private static final int COLUMN_INDEX_MAX_TEMP = 4;
+    private static final int COLUMN_INDEX_HUMIDITY = 5;
+    private static final int COLUMN_INDEX_PRESSURE = 6;
+    private static final int COLUMN_INDEX_WIND_SPEED = 7;
+    private static final int COLUMN_INDEX_DEGREES = 8;
+
+    /* Incremented by every invalidate. A snapshot is current while it has the same generation. */
+    private static final AtomicLong sGeneration = new AtomicLong();
+
+    private static volatile Snapshot sSnapshot;
+
+    /* The number of snapshots loaded from the database, so tests can tell a read hit SQLite */
+    private static final AtomicLong sLoadCount = new AtomicLong();
+
+    private ForecastCache() {
+    }
+
+    /**
+     * Drops the current snapshot. Call it once a write to the weather table has committed.
+     */
+    static void invalidate() {
+        sGeneration.incrementAndGet();
+    }
+
+    /**
+     * @return The number of times a snapshot was loaded from the database
+     */
+    static long getLoadCount() {
+        return sLoadCount.get();
+    }
+
+    /**
+     * Returns the current snapshot, loading a new one from the database if the weather table
+     * changed since the last one was taken.
+     *
+     * @param db The database to load a snapshot from, if there is no current one
+     * @return The snapshot, or null if the weather table holds too many days to cache
+     */
+    static Snapshot get(SQLiteDatabase db) {
+        Snapshot snapshot = sSnapshot;
+        if (snapshot == null || snapshot.generation != sGeneration.get()) {
+            snapshot = load(db);
+        }
+        return snapshot.cacheable ? snapshot : null;
+    }
+
+    /**
+     * Reads the whole weather table into a new snapshot and publishes it. If the table changes
+     * while we read it, the snapshot still goes out, but marked with the generation from before
+     * the change, so the next read loads another one instead of using it.
+     */
+    private static Snapshot load(SQLiteDatabase db) {
+        long generation = sGeneration.get();
+        sLoadCount.incrementAndGet();
+
+        Snapshot snapshot;
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, COLUMNS, null, null, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC", Integer.toString(MAX_CACHED_DAYS + 1));
+        try {
+            snapshot = new Snapshot(generation, cursor);
+        } finally {
+            cursor.close();
+        }
+
+        sSnapshot = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Every row of the weather table at one point in time, in date order, held as one primitive
+     * array per column. A snapshot never changes once it is built, so any number of threads can
+     * read it without locking.
+     */
+    static final class Snapshot {
+
+        final long generation;
+
+        /* false if the table held more than MAX_CACHED_DAYS, in which case nothing is held */
+        final boolean cacheable;
+
+        private final long[] mIds;
+        private final long[] mDates;
+        private final int[] mWeatherIds;
+        private final double[] mMinTemps;
+        private final double[] mMaxTemps;
+        private final double[] mHumidities;
+        private final double[] mPressures;
+        private final double[] mWindSpeeds;
+        private final double[] mDegrees;
+
+        /**
+         * @param cursor A cursor over COLUMNS, sorted by date
+         */
+        private Snapshot(long generation, Cursor cursor) {
+            this.generation = generation;
+
+            int size = cursor.getCount();
+            cacheable = size <= MAX_CACHED_DAYS;
+            if (!cacheable) {
+                size = 0;
+            }
+
+            mIds = new long[size];
+            mDates = new long[size];
+            mWeatherIds = new int[size];
+            mMinTemps = new double[size];
+            mMaxTemps = new double[size];
+            mHumidities = new double[size];
+            mPressures = new double[size];
+            mWindSpeeds = new double[size];
+            mDegrees = new double[size];
+
+            for (int i = 0; i < size && cursor.moveToNext(); i++) {
+                mIds[i] = cursor.getLong(COLUMN_INDEX_ID);
+                mDates[i] = cursor.getLong(COLUMN_INDEX_DATE);
+                mWeatherIds[i] = cursor.getInt(COLUMN_INDEX_WEATHER_ID);
+                mMinTemps[i] = cursor.getDouble(COLUMN_INDEX_MIN_TEMP);
+                mMaxTemps[i] = cursor.getDouble(COLUMN_INDEX_MAX_TEMP);
+                mHumidities[i] = cursor.getDouble(COLUMN_INDEX_HUMIDITY);
+                mPressures[i] = cursor.getDouble(COLUMN_INDEX_PRESSURE);
+                mWindSpeeds[i] = cursor.getDouble(COLUMN_INDEX_WIND_SPEED);
+                mDegrees[i] = cursor.getDouble(COLUMN_INDEX_DEGREES);
+            }
+        }
+
+        /**
+         * Builds a snapshot of a forecast that was never written to the database, numbering the
+         * days from 1 as their ids. It belongs to no generation, so ForecastCache never serves it;
+         * it lets the JVM tests read a forecast the way the provider does, without SQLite.
+         *
+         * @param forecast The days, sorted by date
+         */
+        Snapshot(ForecastBatch forecast) {
+            generation = -1;
+            cacheable = true;
+
+            int size = forecast.size();
+            mIds = new long[size];
+            mDates = new long[size];
+            mWeatherIds = new int[size];
+            mMinTemps = new double[size];
+            mMaxTemps = new double[size];
+            mHumidities = new double[size];
+            mPressures = new double[size];
+            mWindSpeeds = new double[size];
+            mDegrees = new double[size];
+
+            for (int i = 0; i < size; i++) {
+                mIds[i] = i + 1;
+                mDates[i] = forecast.getDate(i);
+                mWeatherIds[i] = forecast.getWeatherId(i);
+                mMinTemps[i] = forecast.getMinTemp(i);
+                mMaxTemps[i] = forecast.getMaxTemp(i);
+                mHumidities[i] = forecast.getHumidity(i);
+                mPressures[i] = forecast.getPressure(i);
+                mWindSpeeds[i] = forecast.getWindSpeed(i);
+                mDegrees[i] = forecast.getDegrees(i);
+            }
+        }
+
+        /**
+         * @return The number of days in the snapshot
+         */
+        int size() {
+            return mDates.length;
+        }
+
+        /**
+         * @return The index of the first day on or after the given date
+         */
+        int indexOfDate(long date) {
+            int index = Arrays.binarySearch(mDates, date);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        long getDate(int index) {
+            return mDates[index];
+        }
+
+        int getWeatherId(int index) {
+            return mWeatherIds[index];
+        }
+
+        double getMinTemp(int index) {
+            return mMinTemps[index];
+        }
+
+        double getMaxTemp(int index) {
+            return mMaxTemps[index];
+        }
+
+        double getHumidity(int index) {
+            return mHumidities[index];
+        }
+
+        double getPressure(int index) {
+            return mPressures[index];
+        }
+
+        double getWindSpeed(int index) {
+            return mWindSpeeds[index];
+        }
+
+        double getDegrees(int index) {
+            return mDegrees[index];
+        }
+
+        /**
+         * Returns a cursor over the days from fromDate to toDate, both included, in date order,
+         * just like the provider's range query would. The cursor reads the snapshot's arrays
+         * directly, so building it copies nothing.
+         *
+         * @param projection The columns to return, or null for every column
+         * @param fromDate   The first date
+         * @param toDate     The last date
+         * @param limit      The maximum number of days, or 0 for no limit
+         * @return The cursor, or null if the projection asks for a column the snapshot doesn't
+         * have, in which case the query has to go to SQLite
+         */
+        Cursor query(String[] projection, long fromDate, long toDate, int limit) {
+            if (projection == null) {
+                projection = COLUMNS;
+            }
+            int[] columns = new int[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                columns[i] = indexOfColumn(projection[i]);
+                if (columns[i] < 0) {
+                    return null;
+                }
+            }
+
+            int from = indexOfDate(fromDate);
+            return new SnapshotCursor(this, projection, columns, from,
+                    endOfRange(from, toDate, limit));
+        }
+
+        /**
+         * Reads the days from fromDate to toDate, both included, in date order, just like
+         * {@link #query(String[], long, long, int)} would, but as ForecastDays rather than a
+         * cursor, so nothing has to look the columns up by index.
+         *
+         * @param fromDate The first date
+         * @param toDate   The last date
+         * @param limit    The maximum number of days, or 0 for no limit
+         * @return The days, which may be none
+         */
+        ForecastDay[] toForecastDays(long fromDate, long toDate, int limit) {
+            int from = indexOfDate(fromDate);
+            int to = endOfRange(from, toDate, limit);
+
+            ForecastDay[] days = new ForecastDay[to - from];
+            for (int i = from; i < to; i++) {
+                days[i - from] = new ForecastDay(mDates[i], mWeatherIds[i], mMinTemps[i],
+                        mMaxTemps[i], mHumidities[i], mPressures[i], mWindSpeeds[i],
+                        mDegrees[i]);
+            }
+            return days;
+        }
+
+        /**
+         * @param from The index of the first day of the range
+         * @return The index just past the last day of the range
+         */
+        private int endOfRange(int from, long toDate, int limit) {
+            int to = toDate == Long.MAX_VALUE ? size() : indexOfDate(toDate + 1);
+            if (to < from) {
+                to = from;
+            }
+            if (limit > 0 && to - from > limit) {
+                to = from + limit;
+            }
+            return to;
+        }
+
+        private static int indexOfColumn(String column) {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (COLUMNS[i].equals(column)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A read-only cursor over a range of the days in a snapshot.
+     */
+    private static final class SnapshotCursor extends AbstractCursor {
+
+        private final Snapshot mSnapshot;
+        private final String[] mColumnNames;
+        /* For each column of the cursor, the index of the snapshot's column it shows */
+        private final int[] mColumns;
+        private final int mFrom;
+        private final int mCount;
+
+        SnapshotCursor(Snapshot snapshot, String[] columnNames, int[] columns, int from, int to) {
+            mSnapshot = snapshot;
+            mColumnNames = columnNames;
+            mColumns = columns;
+            mFrom = from;
+            mCount = to - from;
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return mColumnNames;
+        }
+
+        @Override
+        public int getType(int column) {
+            return isInteger(column) ? FIELD_TYPE_INTEGER : FIELD_TYPE_FLOAT;
+        }
+
+        @Override
+        public String getString(int column) {
+            return isInteger(column)
+                    ? Long.toString(getLong(column))
+                    : Double.toString(getDouble(column));
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public long getLong(int column) {
+            int day = getDay();
+            switch (mColumns[column]) {
+                case COLUMN_INDEX_ID:
+                    return mSnapshot.mIds[day];
+                case COLUMN_INDEX_DATE:
+                    return mSnapshot.mDates[day];
+                case COLUMN_INDEX_WEATHER_ID:
+                    return mSnapshot.mWeatherIds[day];
+                default:
+                    return (long) getDouble(column);
+            }
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return (float) getDouble(column);
+        }
+
+        @Override
+        public double getDouble(int column) {
+            int day = getDay();
+            switch (mColumns[column]) {
+                case COLUMN_INDEX_MIN_TEMP:
+                    return mSnapshot.mMinTemps[day];
+                case COLUMN_INDEX_MAX_TEMP:
+                    return mSnapshot.mMaxTemps[day];
+                case COLUMN_INDEX_HUMIDITY:
+                    return mSnapshot.mHumidities[day];
+                case COLUMN_INDEX_PRESSURE:
+                    return mSnapshot.mPressures[day];
+                case COLUMN_INDEX_WIND_SPEED:
+                    return mSnapshot.mWindSpeeds[day];
+                case COLUMN_INDEX_DEGREES:
+                    return mSnapshot.mDegrees[day];
+                default:
+                    return getLong(column);
+            }
+        }
+
+        /* Every column of the weather table is NOT NULL */
+        @Override
+        public boolean isNull(int column) {
+            getDay();
+            return false;
+        }
+
+        private boolean isInteger(int column) {
+            int snapshotColumn = mColumns[column];
+            return snapshotColumn == COLUMN_INDEX_ID
+                    || snapshotColumn == COLUMN_INDEX_DATE
+                    || snapshotColumn == COLUMN_INDEX_WEATHER_ID;
+        }
+
+        /**
+         * @return The index in the snapshot of the day the cursor is on
+         */
+        private int getDay() {
+            int position = getPosition();
+            if (position < 0 || position >= mCount) {
+                throw new CursorIndexOutOfBoundsException(position, mCount);
+            }
+            return mFrom + position;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.LongSparseArray;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+/**
+ * Brings the weather table, or the forecast of one of the other locations, in line with a
+ * freshly downloaded forecast while writing as few rows as possible. Rows are matched by
+ * {@link WeatherEntry#COLUMN_DATE}:
+ * <p>
+ *   - days that are new in the forecast are inserted,
+ * <p>
+ *   - days whose values changed are updated,
+ * <p>
+ *   - days that are no longer in the forecast are deleted,
+ * <p>
+ *   - and days that are exactly the same are left alone.
+ * <p>
+ * Most of the time the server only revises a day or two, so this saves rewriting the whole table
+ * (and waking up every CursorLoader) on each sync. The caller is expected to hold a transaction
+ * on the database so that the whole diff is applied atomically.
+ * <p>
+ * In the weather table, the stored row of every day that is updated or deleted is copied to the
+ * archive first, so past forecasts stay available after the server revises or drops them. The
+ * forecasts of the other locations aren't archived.
+ */
+final class ForecastDiff {
+
+    /* The columns read back from the table, in the order they are compared */
+    private static final String[] STORED_COLUMNS = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    private static final int STORED_INDEX_DATE = 0;
+    private static final int STORED_INDEX_WEATHER_ID = 1;
+    private static final int STORED_INDEX_MIN_TEMP = 2;
+    private static final int STORED_INDEX_MAX_TEMP = 3;
+    private static final int STORED_INDEX_HUMIDITY = 4;
+    private static final int STORED_INDEX_PRESSURE = 5;
+    private static final int STORED_INDEX_WIND_SPEED = 6;
+    private static final int STORED_INDEX_DEGREES = 7;
+
+    /* Narrows the statements below down to the rows of one location */
+    private static final String LOCATION_CLAUSE =
+            " AND " + LocationEntry.COLUMN_LOCATION_ID + " = ?";
+
+    private static final String SQL_UPDATE = buildUpdateSql(WeatherEntry.TABLE_NAME);
+    private static final String SQL_UPDATE_LOCATION =
+            buildUpdateSql(LocationEntry.FORECAST_TABLE_NAME) + LOCATION_CLAUSE;
+
+    private static final String SQL_DELETE = buildDeleteSql(WeatherEntry.TABLE_NAME);
+    private static final String SQL_DELETE_LOCATION =
+            buildDeleteSql(LocationEntry.FORECAST_TABLE_NAME) + LOCATION_CLAUSE;
+
+    /* Copies the stored row of one date to the archive, as one revision archived at a given time */
+    private static final String SQL_ARCHIVE = "INSERT INTO " + ArchiveEntry.TABLE_NAME + " ("
+            + WeatherEntry.COLUMN_DATE + ", "
+            + WeatherEntry.COLUMN_WEATHER_ID + ", "
+            + WeatherEntry.COLUMN_MIN_TEMP + ", "
+            + WeatherEntry.COLUMN_MAX_TEMP + ", "
+            + WeatherEntry.COLUMN_HUMIDITY + ", "
+            + WeatherEntry.COLUMN_PRESSURE + ", "
+            + WeatherEntry.COLUMN_WIND_SPEED + ", "
+            + WeatherEntry.COLUMN_DEGREES + ", "
+            + ArchiveEntry.COLUMN_ARCHIVED_AT + ", "
+            + ArchiveEntry.COLUMN_REVISIONS + ") "
+            + "SELECT "
+            + WeatherEntry.COLUMN_DATE + ", "
+            + WeatherEntry.COLUMN_WEATHER_ID + ", "
+            + WeatherEntry.COLUMN_MIN_TEMP + ", "
+            + WeatherEntry.COLUMN_MAX_TEMP + ", "
+            + WeatherEntry.COLUMN_HUMIDITY + ", "
+            + WeatherEntry.COLUMN_PRESSURE + ", "
+            + WeatherEntry.COLUMN_WIND_SPEED + ", "
+            + WeatherEntry.COLUMN_DEGREES + ", ?, 1 "
+            + "FROM " + WeatherEntry.TABLE_NAME + " WHERE " + WeatherEntry.COLUMN_DATE + " = ?";
+
+    /* Bind indices of the location in the statements above */
+    private static final int UPDATE_INDEX_LOCATION_ID = 9;
+    private static final int DELETE_INDEX_LOCATION_ID = 2;
+
+    /* Used instead of a location's _ID for the weather table of the preferred location */
+    private static final long NO_LOCATION = -1;
+
+    /* The number of rows that were inserted, updated, deleted and left alone */
+    int inserted;
+    int updated;
+    int deleted;
+    int unchanged;
+
+    /* The number of stored rows that were copied to the archive before being replaced */
+    int archived;
+
+    /* The dates of the days that were inserted, updated or deleted, in no particular order */
+    long[] datesWritten;
+
+    private ForecastDiff() {
+    }
+
+    /**
+     * @return The number of forecast rows that were actually written to the database, not
+     * counting the copies made in the archive
+     */
+    int getRowsWritten() {
+        return inserted + updated + deleted;
+    }
+
+    private static String buildUpdateSql(String table) {
+        return "UPDATE " + table + " SET "
+                + WeatherEntry.COLUMN_WEATHER_ID + " = ?, "
+                + WeatherEntry.COLUMN_MIN_TEMP + " = ?, "
+                + WeatherEntry.COLUMN_MAX_TEMP + " = ?, "
+                + WeatherEntry.COLUMN_HUMIDITY + " = ?, "
+                + WeatherEntry.COLUMN_PRESSURE + " = ?, "
+                + WeatherEntry.COLUMN_WIND_SPEED + " = ?, "
+                + WeatherEntry.COLUMN_DEGREES + " = ? "
+                + "WHERE " + WeatherEntry.COLUMN_DATE + " = ?";
+    }
+
+    private static String buildDeleteSql(String table) {
+        return "DELETE FROM " + table + " WHERE " + WeatherEntry.COLUMN_DATE + " = ?";
+    }
+
+    /**
+     * Replaces the contents of the weather table with the given forecast, only touching the rows
+     * that differ.
+     *
+     * @param db       The database to write to. The caller should hold a transaction on it.
+     * @param forecast The new forecast. Every date must be normalized.
+     * @return What was changed
+     */
+    static ForecastDiff apply(SQLiteDatabase db, ForecastBatch forecast) {
+        return apply(db, NO_LOCATION, forecast);
+    }
+
+    /**
+     * Replaces the forecast of one of the other locations with the given forecast, only touching
+     * the rows that differ. The forecasts of all other locations are left alone.
+     *
+     * @param db         The database to write to. The caller should hold a transaction on it.
+     * @param locationId The _ID of the location in the location table
+     * @param forecast   The new forecast. Every date must be normalized.
+     * @return What was changed
+     */
+    static ForecastDiff applyToLocation(SQLiteDatabase db, long locationId,
+                                        ForecastBatch forecast) {
+        if (locationId < 0) {
+            throw new IllegalArgumentException("Invalid location ID " + locationId);
+        }
+        return apply(db, locationId, forecast);
+    }
+
+    private static ForecastDiff apply(SQLiteDatabase db, long locationId,
+                                      ForecastBatch forecast) {
+        boolean forLocation = locationId != NO_LOCATION;
+        ForecastDiff diff = new ForecastDiff();
+        int size = forecast.size();
+
+        /* Index the incoming days by date. As with ON CONFLICT REPLACE, the last one wins. */
+        LongSparseArray<Integer> incoming = new LongSparseArray<>(size);
+        for (int i = 0; i < size; i++) {
+            long weatherDate = forecast.getDate(i);
+            if (!SunshineDateUtils.isDateNormalized(weatherDate)) {
+                throw new IllegalArgumentException("Date must be normalized to insert");
+            }
+            incoming.put(weatherDate, i);
+        }
+
+        /* Days that matched a stored row, so they aren't inserted again */
+        boolean[] matched = new boolean[size];
+
+        /*
+         * Walk the rows we already have and work out what to do with each of them. We remember
+         * the changes and make them once the cursor is closed, rather than writing to the table
+         * while we are still reading from it.
+         */
+        long[] datesToDelete = new long[0];
+        int deleteCount = 0;
+        int[] daysToUpdate = new int[0];
+        int updateCount = 0;
+
+        Cursor cursor;
+        if (forLocation) {
+            cursor = db.query(LocationEntry.FORECAST_TABLE_NAME, STORED_COLUMNS,
+                    LocationEntry.COLUMN_LOCATION_ID + " = ?",
+                    new String[]{Long.toString(locationId)}, null, null, null);
+        } else {
+            cursor = db.query(WeatherEntry.TABLE_NAME, STORED_COLUMNS,
+                    null, null, null, null, null);
+        }
+        try {
+            while (cursor.moveToNext()) {
+                long storedDate = cursor.getLong(STORED_INDEX_DATE);
+                Integer day = incoming.get(storedDate);
+                if (day == null || matched[day]) {
+                    if (deleteCount == datesToDelete.length) {
+                        datesToDelete = grow(datesToDelete);
+                    }
+                    datesToDelete[deleteCount++] = storedDate;
+                    continue;
+                }
+
+                matched[day] = true;
+                if (rowMatches(cursor, forecast, day)) {
+                    diff.unchanged++;
+                } else {
+                    if (updateCount == daysToUpdate.length) {
+                        daysToUpdate = grow(daysToUpdate);
+                    }
+                    daysToUpdate[updateCount++] = day;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (!forLocation && deleteCount + updateCount > 0) {
+            archive(db, diff, datesToDelete, deleteCount, forecast, daysToUpdate, updateCount);
+        }
+
+        if (deleteCount > 0) {
+            SQLiteStatement delete = db.compileStatement(
+                    forLocation ? SQL_DELETE_LOCATION : SQL_DELETE);
+            if (forLocation) {
+                delete.bindLong(DELETE_INDEX_LOCATION_ID, locationId);
+            }
+            try {
+                for (int i = 0; i < deleteCount; i++) {
+                    delete.bindLong(1, datesToDelete[i]);
+                    diff.deleted += delete.executeUpdateDelete();
+                }
+            } finally {
+                delete.close();
+            }
+        }
+
+        if (updateCount > 0) {
+            SQLiteStatement update = db.compileStatement(
+                    forLocation ? SQL_UPDATE_LOCATION : SQL_UPDATE);
+            if (forLocation) {
+                update.bindLong(UPDATE_INDEX_LOCATION_ID, locationId);
+            }
+            try {
+                for (int i = 0; i < updateCount; i++) {
+                    int day = daysToUpdate[i];
+                    update.bindLong(1, forecast.getWeatherId(day));
+                    update.bindDouble(2, forecast.getMinTemp(day));
+                    update.bindDouble(3, forecast.getMaxTemp(day));
+                    update.bindDouble(4, forecast.getHumidity(day));
+                    update.bindDouble(5, forecast.getPressure(day));
+                    update.bindDouble(6, forecast.getWindSpeed(day));
+                    update.bindDouble(7, forecast.getDegrees(day));
+                    update.bindLong(8, forecast.getDate(day));
+                    diff.updated += update.executeUpdateDelete();
+                }
+            } finally {
+                update.close();
+            }
+        }
+
+        /* Whatever is left over is a day we didn't have yet */
+        ForecastInsertStatement insert = null;
+        try {
+            for (int i = 0; i < incoming.size(); i++) {
+                int day = incoming.valueAt(i);
+                if (matched[day]) continue;
+
+                if (insert == null) {
+                    insert = forLocation
+                            ? new ForecastInsertStatement(db, locationId)
+                            : new ForecastInsertStatement(db);
+                }
+                insert.insert(forecast.getDate(day), forecast.getWeatherId(day),
+                        forecast.getMinTemp(day), forecast.getMaxTemp(day),
+                        forecast.getHumidity(day), forecast.getPressure(day),
+                        forecast.getWindSpeed(day), forecast.getDegrees(day));
+                diff.inserted++;
+            }
+        } finally {
+            if (insert != null) {
+                insert.close();
+            }
+        }
+
+        long[] datesWritten = new long[deleteCount + updateCount + diff.inserted];
+        System.arraycopy(datesToDelete, 0, datesWritten, 0, deleteCount);
+        int written = deleteCount;
+        for (int i = 0; i < updateCount; i++) {
+            datesWritten[written++] = forecast.getDate(daysToUpdate[i]);
+        }
+        for (int i = 0; i < incoming.size(); i++) {
+            if (!matched[incoming.valueAt(i)]) {
+                datesWritten[written++] = incoming.keyAt(i);
+            }
+        }
+        diff.datesWritten = datesWritten;
+
+        return diff;
+    }
+
+    /**
+     * Copies the stored rows that are about to be deleted or updated to the archive. Every copy
+     * made by one sync gets the same archive time.
+     */
+    private static void archive(SQLiteDatabase db, ForecastDiff diff,
+                                long[] datesToDelete, int deleteCount,
+                                ForecastBatch forecast, int[] daysToUpdate, int updateCount) {
+        SQLiteStatement archive = db.compileStatement(SQL_ARCHIVE);
+        try {
+            archive.bindLong(1, System.currentTimeMillis());
+            for (int i = 0; i < deleteCount; i++) {
+                archive.bindLong(2, datesToDelete[i]);
+                diff.archived += archive.executeUpdateDelete();
+            }
+            for (int i = 0; i < updateCount; i++) {
+                archive.bindLong(2, forecast.getDate(daysToUpdate[i]));
+                diff.archived += archive.executeUpdateDelete();
+            }
+        } finally {
+            archive.close();
+        }
+    }
+
+    /**
+     * @param cursor   A cursor over STORED_COLUMNS positioned on a stored row
+     * @param forecast The new forecast
+     * @param day      The index of the day in the forecast with the same date as the row
+     * @return true if every value of the day is equal to the one already stored
+     */
+    private static boolean rowMatches(Cursor cursor, ForecastBatch forecast, int day) {
+        return cursor.getLong(STORED_INDEX_WEATHER_ID) == forecast.getWeatherId(day)
+                && cursor.getDouble(STORED_INDEX_MIN_TEMP) == forecast.getMinTemp(day)
+                && cursor.getDouble(STORED_INDEX_MAX_TEMP) == forecast.getMaxTemp(day)
+                && cursor.getDouble(STORED_INDEX_HUMIDITY) == forecast.getHumidity(day)
+                && cursor.getDouble(STORED_INDEX_PRESSURE) == forecast.getPressure(day)
+                && cursor.getDouble(STORED_INDEX_WIND_SPEED) == forecast.getWindSpeed(day)
+                && cursor.getDouble(STORED_INDEX_DEGREES) == forecast.getDegrees(day);
+    }
+
+    private static long[] grow(long[] array) {
+        long[] grown = new long[Math.max(array.length * 2, 8)];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[Math.max(array.length * 2, 8)];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
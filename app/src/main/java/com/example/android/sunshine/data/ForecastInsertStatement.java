@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+/**
+ * A compiled INSERT OR REPLACE statement for the weather table. SQLiteDatabase#insert builds a
+ * new SQL string from the ContentValues and compiles it for every single row. When we insert a
+ * whole forecast, we compile this statement once per transaction instead and just bind each
+ * row's values to it, straight from primitives where we have them.
+ * <p>
+ * Statements are not thread safe and belong to the connection they were compiled on, so create
+ * one inside the transaction that uses it and close it before the transaction ends.
+ */
+final class ForecastInsertStatement {
+
+    /* The columns of the statement, in the order their values are bound */
+    private static final String[] COLUMNS = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    /* Bind indices of the columns above. SQLite counts from 1. */
+    private static final int INDEX_DATE = 1;
+    private static final int INDEX_WEATHER_ID = 2;
+    private static final int INDEX_MIN_TEMP = 3;
+    private static final int INDEX_MAX_TEMP = 4;
+    private static final int INDEX_HUMIDITY = 5;
+    private static final int INDEX_PRESSURE = 6;
+    private static final int INDEX_WIND_SPEED = 7;
+    private static final int INDEX_DEGREES = 8;
+
+    /* The forecast table of the other locations has one more column, bound just once */
+    private static final int INDEX_LOCATION_ID = 9;
+
+    private static final String SQL_INSERT = buildInsertSql(WeatherEntry.TABLE_NAME, null);
+
+    private static final String SQL_INSERT_LOCATION = buildInsertSql(
+            WeatherContract.LocationEntry.FORECAST_TABLE_NAME,
+            WeatherContract.LocationEntry.COLUMN_LOCATION_ID);
+
+    private final SQLiteStatement mStatement;
+
+    /**
+     * Compiles a statement that inserts into the weather table of the preferred location.
+     */
+    ForecastInsertStatement(SQLiteDatabase db) {
+        mStatement = db.compileStatement(SQL_INSERT);
+    }
+
+    /**
+     * Compiles a statement that inserts into the forecast of one of the other locations.
+     *
+     * @param locationId The _ID of the location every row belongs to
+     */
+    ForecastInsertStatement(SQLiteDatabase db, long locationId) {
+        mStatement = db.compileStatement(SQL_INSERT_LOCATION);
+        /* Bindings stay in place from one execution to the next, so this only happens once */
+        mStatement.bindLong(INDEX_LOCATION_ID, locationId);
+    }
+
+    private static String buildInsertSql(String table, String locationColumn) {
+        StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ")
+                .append(table)
+                .append(" (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(COLUMNS[i]);
+        }
+        if (locationColumn != null) {
+            sql.append(", ").append(locationColumn);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        if (locationColumn != null) {
+            sql.append(", ?");
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * Rows that don't have exactly the columns of this statement with numeric values (say, a
+     * caller leaving out the wind direction) have to go through SQLiteDatabase#insert so they
+     * behave as they always have.
+     *
+     * @param values The values of one row
+     * @return true if the row can be inserted with {@link #insert(ContentValues)}
+     */
+    static boolean canInsert(ContentValues values) {
+        if (values.size() != COLUMNS.length) return false;
+        for (String column : COLUMNS) {
+            if (!(values.get(column) instanceof Number)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Inserts one row. The row must pass {@link #canInsert(ContentValues)}.
+     * <p>
+     * The integer columns are bound with the type of the value they are given, as
+     * SQLiteDatabase#insert does, so that a weather ID given as 800.5 is stored as 800.5 rather
+     * than cut down to 800. The other columns are REAL, where binding a double stores the same
+     * value an integer would.
+     *
+     * @param values The values of the row
+     * @return The row ID of the inserted row
+     */
+    long insert(ContentValues values) {
+        bindNumber(INDEX_DATE, (Number) values.get(WeatherEntry.COLUMN_DATE));
+        bindNumber(INDEX_WEATHER_ID, (Number) values.get(WeatherEntry.COLUMN_WEATHER_ID));
+        mStatement.bindDouble(INDEX_MIN_TEMP, values.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP));
+        mStatement.bindDouble(INDEX_MAX_TEMP, values.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP));
+        mStatement.bindDouble(INDEX_HUMIDITY, values.getAsDouble(WeatherEntry.COLUMN_HUMIDITY));
+        mStatement.bindDouble(INDEX_PRESSURE, values.getAsDouble(WeatherEntry.COLUMN_PRESSURE));
+        mStatement.bindDouble(INDEX_WIND_SPEED,
+                values.getAsDouble(WeatherEntry.COLUMN_WIND_SPEED));
+        mStatement.bindDouble(INDEX_DEGREES, values.getAsDouble(WeatherEntry.COLUMN_DEGREES));
+        return mStatement.executeInsert();
+    }
+
+    /**
+     * Inserts one row from primitive values, without boxing any of them.
+     *
+     * @return The row ID of the inserted row
+     */
+    long insert(long date, int weatherId, double minTemp, double maxTemp, double humidity,
+                double pressure, double windSpeed, double degrees) {
+        mStatement.bindLong(INDEX_DATE, date);
+        mStatement.bindLong(INDEX_WEATHER_ID, weatherId);
+        mStatement.bindDouble(INDEX_MIN_TEMP, minTemp);
+        mStatement.bindDouble(INDEX_MAX_TEMP, maxTemp);
+        mStatement.bindDouble(INDEX_HUMIDITY, humidity);
+        mStatement.bindDouble(INDEX_PRESSURE, pressure);
+        mStatement.bindDouble(INDEX_WIND_SPEED, windSpeed);
+        mStatement.bindDouble(INDEX_DEGREES, degrees);
+        return mStatement.executeInsert();
+    }
+
+    /**
+     * Binds a number as a double if it is a floating point value, and as a long otherwise.
+     */
+    private void bindNumber(int index, Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            mStatement.bindDouble(index, value.doubleValue());
+        } else {
+            mStatement.bindLong(index, value.longValue());
+        }
+    }
+
+    void close() {
+        mStatement.close();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentProvider;
+import android.content.ContentProviderClient;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.shared.ForecastDay;
+
+/**
+ * Reads the forecast as {@link ForecastDay}s instead of through a Cursor, for code that wants a
+ * day or two of weather rather than something to bind to a list, like the notification and the
+ * watch face sync.
+ * <p>
+ * WeatherProvider runs in our own process, so the days come straight from it: between syncs they
+ * are built from its in-memory copy of the weather table, without a query, a CursorWindow or a
+ * column lookup. Should the provider ever live in another process, the days are read through the
+ * ContentResolver instead, which gives the same answer the slow way.
+ * <p>
+ * None of these methods should be called on the main thread, since they may have to go to the
+ * database.
+ * <p>
+ * Code that still loads a Cursor, such as DetailActivity's CursorLoader, can query with
+ * {@link #DAY_PROJECTION} and turn each row into a ForecastDay with {@link #readDay(Cursor)},
+ * rather than keeping a projection and a set of column indices of its own.
+ */
+public final class ForecastRepository {
+
+    /*
+     * Every column of the weather table but _ID. Nobody reads the _ID of a day, since the date
+     * identifies it.
+     */
+    public static final String[] DAY_PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    /*
+     * The indices of the columns in DAY_PROJECTION. If the order of the Strings above changes,
+     * these indices must be adjusted to match the order of the Strings.
+     */
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_MIN_TEMP = 2;
+    private static final int INDEX_MAX_TEMP = 3;
+    private static final int INDEX_HUMIDITY = 4;
+    private static final int INDEX_PRESSURE = 5;
+    private static final int INDEX_WIND_SPEED = 6;
+    private static final int INDEX_DEGREES = 7;
+
+    private ForecastRepository() {
+    }
+
+    /**
+     * @param context Used to reach WeatherProvider
+     * @param date    The normalized date of the day
+     * @return The forecast for that day, or null if we have none
+     */
+    public static ForecastDay getDay(Context context, long date) {
+        ForecastDay[] days = getDays(context, date, date, 0);
+        return days.length == 0 ? null : days[0];
+    }
+
+    /**
+     * @param context Used to reach WeatherProvider
+     * @param date    A normalized date, usually today's
+     * @return The forecast for the first day on or after that date, or null if we have none
+     */
+    public static ForecastDay getFirstDayFrom(Context context, long date) {
+        ForecastDay[] days = getDays(context, date, Long.MAX_VALUE, 1);
+        return days.length == 0 ? null : days[0];
+    }
+
+    /**
+     * Reads the days from fromDate to toDate, both included, in date order.
+     *
+     * @param context  Used to reach WeatherProvider
+     * @param fromDate The first normalized date
+     * @param toDate   The last normalized date, or Long.MAX_VALUE for every day from fromDate
+     * @param limit    The maximum number of days, or 0 for no limit
+     * @return The days, which may be none
+     */
+    public static ForecastDay[] getDays(Context context, long fromDate, long toDate, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit " + limit);
+        }
+
+        ContentProviderClient client = context.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        if (client != null) {
+            try {
+                /* Null if the provider runs in another process */
+                ContentProvider provider = client.getLocalContentProvider();
+                if (provider instanceof WeatherProvider) {
+                    return ((WeatherProvider) provider).readForecast(fromDate, toDate, limit);
+                }
+            } finally {
+                closeClient(client);
+            }
+        }
+
+        return queryDays(context, fromDate, toDate, limit);
+    }
+
+    /* release() is deprecated from API 24, but close() doesn't exist before it */
+    @SuppressWarnings("deprecation")
+    private static void closeClient(ContentProviderClient client) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            client.close();
+        } else {
+            client.release();
+        }
+    }
+
+    /**
+     * Reads the row the cursor is on.
+     *
+     * @param cursor A cursor over {@link #DAY_PROJECTION}, positioned on a row
+     * @return The day in that row
+     */
+    public static ForecastDay readDay(Cursor cursor) {
+        return new ForecastDay(
+                cursor.getLong(INDEX_DATE),
+                cursor.getInt(INDEX_WEATHER_ID),
+                cursor.getDouble(INDEX_MIN_TEMP),
+                cursor.getDouble(INDEX_MAX_TEMP),
+                cursor.getDouble(INDEX_HUMIDITY),
+                cursor.getDouble(INDEX_PRESSURE),
+                cursor.getDouble(INDEX_WIND_SPEED),
+                cursor.getDouble(INDEX_DEGREES));
+    }
+
+    private static ForecastDay[] queryDays(Context context, long fromDate, long toDate,
+                                           int limit) {
+        Uri rangeUri = limit == 0
+                ? WeatherEntry.buildWeatherRangeUri(fromDate, toDate)
+                : WeatherEntry.buildWeatherRangeUri(fromDate, toDate, limit);
+        Cursor cursor = context.getContentResolver()
+                .query(rangeUri, DAY_PROJECTION, null, null, null);
+        if (cursor == null) {
+            return new ForecastDay[0];
+        }
+        try {
+            ForecastDay[] days = new ForecastDay[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                days[i] = readDay(cursor);
+            }
+            return days;
+        } finally {
+            cursor.close();
+        }
+    }
+}
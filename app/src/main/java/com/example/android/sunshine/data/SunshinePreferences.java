@@ -242,4 +242,30 @@ public final class SunshinePreferences {
         editor.putLong(lastNotificationKey, timeOfNotification);
         editor.apply();
     }
+
+    /**
+     * Returns the last time that the archive of past forecasts was compacted (in UNIX time)
+     *
+     * @param context Used to access SharedPreferences
+     * @return UNIX time of the last compaction, or 0 if the archive was never compacted
+     */
+    public static long getLastArchiveCompactionTimeInMillis(Context context) {
+        String lastCompactionKey = context.getString(R.string.pref_last_archive_compaction);
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(lastCompactionKey, 0);
+    }
+
+    /**
+     * Saves the time that the archive of past forecasts was compacted.
+     *
+     * @param context Used to access SharedPreferences
+     * @param timeOfCompaction Time of the compaction to save (in UNIX time)
+     */
+    public static void saveLastArchiveCompactionTime(Context context, long timeOfCompaction) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        String lastCompactionKey = context.getString(R.string.pref_last_archive_compaction);
+        editor.putLong(lastCompactionKey, timeOfCompaction);
+        editor.apply();
+    }
 }
\ No newline at end of file
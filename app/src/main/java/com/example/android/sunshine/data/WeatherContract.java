@@ -15,6 +15,7 @@
  */
 package com.example.android.sunshine.data;
 
+import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
@@ -56,6 +57,220 @@ public class WeatherContract {
      */
     public static final String PATH_WEATHER = "weather";
 
+    /*
+     * Appended to PATH_WEATHER to form the URI that a freshly downloaded forecast is bulkInserted
+     * into. See WeatherEntry.CONTENT_URI_REPLACE.
+     */
+    public static final String PATH_REPLACE = "replace";
+
+    /*
+     * Appended to PATH_WEATHER, followed by two normalized dates, to form the URI of every day of
+     * weather from the first date to the second, both included:
+     *
+     *     content://com.example.android.sunshine/weather/range/1472169600000/1473379200000
+     *
+     * See WeatherEntry.buildWeatherRangeUri.
+     */
+    public static final String PATH_RANGE = "range";
+
+    /*
+     * An optional query parameter of a range URI that caps the number of days returned, the
+     * first days of the range being returned first.
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    /*
+     * The locations we keep a forecast for besides the preferred one, as in
+     *
+     *     content://com.example.android.sunshine/location/
+     *
+     * A single location's forecast lives under its ID, followed by PATH_WEATHER:
+     *
+     *     content://com.example.android.sunshine/location/3/weather/
+     */
+    public static final String PATH_LOCATION = "location";
+
+    /*
+     * The archive of past forecasts, as in
+     *
+     *     content://com.example.android.sunshine/archive/
+     *
+     * A range of dates of it is PATH_ARCHIVE followed by PATH_RANGE and two dates, just like
+     * the weather. See ArchiveEntry.
+     */
+    public static final String PATH_ARCHIVE = "archive";
+
+    /*
+     * Passed to ContentResolver#call to insert many days of weather at once without building a
+     * ContentValues per day. The extras hold one array per column, keyed by the column name:
+     * a long[] for COLUMN_DATE, an int[] for COLUMN_WEATHER_ID and a double[] for each of the
+     * other columns. Element i of every array belongs to day i. If the arrays are longer than
+     * the forecast, an int under "row_count" says how many days there are. ForecastBatch#toBundle
+     * builds these extras. The returned Bundle holds the number of rows inserted under
+     * EXTRA_ROWS_INSERTED.
+     */
+    public static final String METHOD_BULK_INSERT_COLUMNS = "bulkInsertColumns";
+
+    /*
+     * Like METHOD_BULK_INSERT_COLUMNS, but the columns hold a complete forecast that replaces
+     * what is in the table, the same way a bulkInsert into WeatherEntry.CONTENT_URI_REPLACE
+     * does. The returned Bundle holds the number of rows written under EXTRA_ROWS_INSERTED.
+     */
+    public static final String METHOD_REPLACE_COLUMNS = "replaceColumns";
+    public static final String EXTRA_ROWS_INSERTED = "rows_inserted";
+
+    /*
+     * Passed to ContentResolver#call to replace the forecasts of many locations in a single
+     * transaction. The extras hold the IDs of the locations under EXTRA_LOCATION_IDS and, at the
+     * same index under EXTRA_FORECASTS, a Bundle holding each location's forecast in the form
+     * METHOD_BULK_INSERT_COLUMNS expects. If that Bundle also holds a double under
+     * LocationEntry.COLUMN_COORD_LAT and LocationEntry.COLUMN_COORD_LONG, the location's
+     * coordinates are updated too. The returned Bundle holds the number of rows written under
+     * EXTRA_ROWS_INSERTED.
+     */
+    public static final String METHOD_REPLACE_LOCATION_FORECASTS = "replaceLocationForecasts";
+    public static final String EXTRA_LOCATION_IDS = "location_ids";
+    public static final String EXTRA_FORECASTS = "forecasts";
+
+    /*
+     * Passed to ContentResolver#call to compact the archive. Revisions of a day older than
+     * EXTRA_COMPACT_AFTER_DAYS are merged into a single row for that day, and days older than
+     * EXTRA_RETENTION_DAYS are deleted. Both extras are optional ints, and the extras may be null
+     * to use the defaults: compacting after a week and keeping ten years. The returned Bundle
+     * holds the number of rows merged away under EXTRA_ROWS_COMPACTED and the number of rows
+     * deleted for being too old under EXTRA_ROWS_EXPIRED.
+     */
+    public static final String METHOD_COMPACT_ARCHIVE = "compactArchive";
+    public static final String EXTRA_COMPACT_AFTER_DAYS = "compact_after_days";
+    public static final String EXTRA_RETENTION_DAYS = "retention_days";
+    public static final String EXTRA_ROWS_COMPACTED = "rows_compacted";
+    public static final String EXTRA_ROWS_EXPIRED = "rows_expired";
+
+    /*
+     * Passed to ContentResolver#call, with one of our URIs as a string for the arg, to notify
+     * the observers of that URI. Unlike ContentResolver#notifyChange, the notification goes out
+     * together with the provider's own, so an observer that a sync is about to notify anyway is
+     * only notified once. The extras are not used, and nothing is returned.
+     */
+    public static final String METHOD_NOTIFY_CHANGE = "notifyChange";
+
+    /* Inner class that defines the table contents of the location table */
+    public static final class LocationEntry implements BaseColumns {
+
+        /* The base CONTENT_URI used to query the location table from the content provider */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_LOCATION)
+                .build();
+
+        /* Used internally as the name of our location table. */
+        public static final String TABLE_NAME = "location";
+
+        /*
+         * Used internally as the name of the table holding the forecasts of these locations. It
+         * has the same columns as the weather table, plus COLUMN_LOCATION_ID.
+         */
+        public static final String FORECAST_TABLE_NAME = "location_weather";
+
+        /*
+         * The location as the user entered it, such as "Mountain View, CA". This is what we send
+         * to the weather server if we don't know the location's coordinates yet. Each location
+         * can only be added once.
+         */
+        public static final String COLUMN_LOCATION_SETTING = "location_setting";
+
+        /*
+         * The coordinates of the location, as returned by the weather server. They are null
+         * until the location has been synced for the first time.
+         */
+        public static final String COLUMN_COORD_LAT = "coord_lat";
+        public static final String COLUMN_COORD_LONG = "coord_long";
+
+        /* In the forecast table, the _ID of the location each day's weather belongs to */
+        public static final String COLUMN_LOCATION_ID = "location_id";
+
+        /**
+         * Builds a URI for a single location.
+         *
+         * @param locationId The _ID of the location
+         * @return Uri to query or delete the location
+         */
+        public static Uri buildLocationUri(long locationId) {
+            return ContentUris.withAppendedId(CONTENT_URI, locationId);
+        }
+
+        /**
+         * Builds a URI for the forecast of a single location. Querying it works just like
+         * querying WeatherEntry.CONTENT_URI does for the preferred location.
+         *
+         * @param locationId The _ID of the location
+         * @return Uri to query the location's forecast
+         */
+        public static Uri buildLocationWeatherUri(long locationId) {
+            return buildLocationUri(locationId).buildUpon()
+                    .appendPath(PATH_WEATHER)
+                    .build();
+        }
+
+        /**
+         * Builds a URI for one day of a single location's forecast.
+         *
+         * @param locationId The _ID of the location
+         * @param date       Normalized date in milliseconds
+         * @return Uri to query the location's weather on that day
+         */
+        public static Uri buildLocationWeatherUriWithDate(long locationId, long date) {
+            return buildLocationWeatherUri(locationId).buildUpon()
+                    .appendPath(Long.toString(date))
+                    .build();
+        }
+    }
+
+    /*
+     * Inner class that defines the table contents of the archive table. Whenever a sync changes
+     * or drops a day of the preferred location's forecast, the values we had for it until then
+     * are copied here with the time they were replaced, so we keep every revision of every day,
+     * up to the last one before the day went by. Besides the columns below, the archive has
+     * every column of the weather table, and uses the same names for them.
+     */
+    public static final class ArchiveEntry implements BaseColumns {
+
+        /* The base CONTENT_URI used to query the archive from the content provider */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_ARCHIVE)
+                .build();
+
+        /* Used internally as the name of our archive table. */
+        public static final String TABLE_NAME = "archive";
+
+        /* When the revision was replaced by a newer one, in milliseconds since the epoch */
+        public static final String COLUMN_ARCHIVED_AT = "archived_at";
+
+        /*
+         * The number of revisions the row stands for. A revision is archived on its own, with
+         * a count of 1. Once compacted, each day is a single row holding the lowest low and the
+         * highest high of all its revisions, the averages of their humidity, pressure and wind
+         * speed, and the weather ID and wind direction of the last revision.
+         */
+        public static final String COLUMN_REVISIONS = "revisions";
+
+        /**
+         * Builds a URI for the archived revisions of every day from fromDate to toDate, both
+         * included, sorted by date and then by the time they were archived unless the query asks
+         * for another order.
+         *
+         * @param fromDate Normalized date of the first day
+         * @param toDate   Normalized date of the last day. Long.MAX_VALUE leaves the range open.
+         * @return Uri to query the archive in the range
+         */
+        public static Uri buildArchiveRangeUri(long fromDate, long toDate) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(PATH_RANGE)
+                    .appendPath(Long.toString(fromDate))
+                    .appendPath(Long.toString(toDate))
+                    .build();
+        }
+    }
+
     /* Inner class that defines the table contents of the weather table */
     public static final class WeatherEntry implements BaseColumns {
 
@@ -64,6 +279,29 @@ public class WeatherContract {
                 .appendPath(PATH_WEATHER)
                 .build();
 
+        /*
+         * bulkInserting a forecast into this URI replaces the contents of the weather table with
+         * it. Only the days that are new, changed or gone are written, all in one transaction,
+         * and observers are notified once if anything changed at all, as CONTENT_URI_RANGE
+         * describes. bulkInsert returns the
+         * number of rows that were written, which is 0 if the forecast hasn't changed.
+         */
+        public static final Uri CONTENT_URI_REPLACE = CONTENT_URI.buildUpon()
+                .appendPath(PATH_REPLACE)
+                .build();
+
+        /*
+         * Every range URI is under this one, and so are the cursors over the whole table, which
+         * is a range with no bounds: their change notifications are registered here. When a sync
+         * only changes a few days, the provider notifies the URI of each of those dates and this
+         * URI, rather than CONTENT_URI, so that a list of days reloads once and a single day only
+         * reloads if it changed. Anything else that changes the weather notifies CONTENT_URI,
+         * which reaches every observer of the weather.
+         */
+        public static final Uri CONTENT_URI_RANGE = CONTENT_URI.buildUpon()
+                .appendPath(PATH_RANGE)
+                .build();
+
         /* Used internally as the name of our weather table. */
         public static final String TABLE_NAME = "weather";
 
@@ -123,6 +361,51 @@ public class WeatherContract {
                     .build();
         }
 
+        /**
+         * Builds a URI for every day of weather from fromDate to toDate, both included, sorted by
+         * date unless the query asks for another order. Range queries are answered from an index
+         * that holds the columns of MainActivity's forecast list, so they take about as long with
+         * years of weather in the table as they do with a single forecast.
+         *
+         * @param fromDate Normalized date of the first day
+         * @param toDate   Normalized date of the last day. Long.MAX_VALUE leaves the range open.
+         * @return Uri to query the weather in the range
+         */
+        public static Uri buildWeatherRangeUri(long fromDate, long toDate) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(PATH_RANGE)
+                    .appendPath(Long.toString(fromDate))
+                    .appendPath(Long.toString(toDate))
+                    .build();
+        }
+
+        /**
+         * Like {@link #buildWeatherRangeUri(long, long)}, but returns at most limit days, starting
+         * with the first days of the range.
+         *
+         * @param fromDate Normalized date of the first day
+         * @param toDate   Normalized date of the last day. Long.MAX_VALUE leaves the range open.
+         * @param limit    The greatest number of days to return
+         * @return Uri to query the weather in the range
+         */
+        public static Uri buildWeatherRangeUri(long fromDate, long toDate, int limit) {
+            return buildWeatherRangeUri(fromDate, toDate).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, Integer.toString(limit))
+                    .build();
+        }
+
+        /**
+         * Builds a URI for the weather from today onwards, which is what the forecast list shows.
+         * Today is the day in the local time zone, as it is for the dates the forecast is stored
+         * with and for the forecast sent to the watch.
+         *
+         * @return Uri to query the weather from today onwards
+         */
+        public static Uri buildWeatherUriFromToday() {
+            long normalizedToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+            return buildWeatherRangeUri(normalizedToday, Long.MAX_VALUE);
+        }
+
         /**
          * Returns just the selection part of the weather query from a normalized today value.
          * This is used to get a weather forecast from today's date. To make this easy to use
@@ -131,8 +414,8 @@ public class WeatherContract {
          * @return The selection part of the weather query for today onwards
          */
         public static String getSqlSelectForTodayOnwards() {
-            long normalizedUtcNow = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
-            return WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + normalizedUtcNow;
+            long normalizedToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+            return WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + normalizedToday;
         }
     }
 }
\ No newline at end of file
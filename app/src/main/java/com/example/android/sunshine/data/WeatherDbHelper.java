@@ -16,9 +16,14 @@
 package com.example.android.sunshine.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
 
 /**
@@ -26,6 +31,8 @@ import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
  */
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
+    private static final String TAG = WeatherDbHelper.class.getSimpleName();
+
     /*
      * This is the name of our database. Database names should be descriptive and end with the
      * .db extension.
@@ -42,11 +49,137 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      * versions of Sunshine could cause everything to break. Although that is certainly a rare
      * use-case, we wanted to watch out for it and warn you what could happen if you mistakenly
      * version your databases.
+     *
+     * Version 4 added the location table and the forecasts of those locations.
+     * Version 5 added FORECAST_INDEX_NAME.
+     * Version 6 added the archive of past forecasts.
+     *
+     * Every time you increment it, add a step to WeatherDbMigrations as well.
+     */
+    private static final int DATABASE_VERSION = 6;
+
+    /*
+     * The index on the weather table that covers MainActivity.MAIN_FORECAST_PROJECTION: the
+     * date, then the high, the low and the weather ID. A range of dates is a contiguous run of
+     * this index, and every column the forecast list and the notification show is right there
+     * in it, so SQLite never has to look at the table itself to answer them.
      */
-    private static final int DATABASE_VERSION = 3;
+    static final String FORECAST_INDEX_NAME = "weather_date_forecast";
+
+    /* The index on the archive by date, then by the time each revision was archived */
+    static final String ARCHIVE_INDEX_NAME = "archive_date";
+
+    /**
+     * How the database connection is set up: which journal SQLite keeps, how often it waits for
+     * the disk, and how big its pages and its page cache are.
+     */
+    public static final class Tuning {
+
+        /* Values of PRAGMA synchronous. See https://www.sqlite.org/pragma.html#pragma_synchronous */
+        public static final int SYNCHRONOUS_DEFAULT = -1;
+        public static final int SYNCHRONOUS_OFF = 0;
+        public static final int SYNCHRONOUS_NORMAL = 1;
+        public static final int SYNCHRONOUS_FULL = 2;
+
+        /**
+         * Write-ahead logging, so the ContentProvider's readers don't wait for a sync to commit.
+         * <p>
+         * In WAL mode, synchronous=NORMAL only syncs the log at checkpoints. A power cut may lose
+         * the last sync, but never corrupts the database, and the next sync brings the lost days
+         * back. 4 KB pages match the block size of the flash in most phones, and a 1 MB cache
+         * holds a few years of forecasts.
+         */
+        public static final Tuning DEFAULT =
+                new Tuning(true, SYNCHRONOUS_NORMAL, 4096, 1024);
+
+        /**
+         * The rollback journal and SQLite's own defaults, which is how the database was set up
+         * before WAL. Readers wait for any write transaction to finish.
+         */
+        public static final Tuning ROLLBACK_JOURNAL =
+                new Tuning(false, SYNCHRONOUS_DEFAULT, 0, 0);
+
+        final boolean writeAheadLogging;
+        final int synchronous;
+        final int pageSize;
+        final int cacheSizeKb;
+
+        /**
+         * @param writeAheadLogging true to use a write-ahead log instead of a rollback journal
+         * @param synchronous       One of the SYNCHRONOUS constants
+         * @param pageSize          Page size in bytes, a power of two between 512 and 65536, or
+         *                          0 for SQLite's default. It only applies to a database that is
+         *                          created with this tuning.
+         * @param cacheSizeKb       The size of the page cache in KB, or 0 for SQLite's default
+         */
+        public Tuning(boolean writeAheadLogging, int synchronous, int pageSize, int cacheSizeKb) {
+            if (synchronous < SYNCHRONOUS_DEFAULT || synchronous > SYNCHRONOUS_FULL) {
+                throw new IllegalArgumentException("Unknown synchronous level " + synchronous);
+            }
+            if (pageSize != 0
+                    && (pageSize < 512 || pageSize > 65536 || Integer.bitCount(pageSize) != 1)) {
+                throw new IllegalArgumentException("Invalid page size " + pageSize);
+            }
+            if (cacheSizeKb < 0) {
+                throw new IllegalArgumentException("Invalid cache size " + cacheSizeKb);
+            }
+            this.writeAheadLogging = writeAheadLogging;
+            this.synchronous = synchronous;
+            this.pageSize = pageSize;
+            this.cacheSizeKb = cacheSizeKb;
+        }
+    }
+
+    private final Tuning mTuning;
 
     public WeatherDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, Tuning.DEFAULT);
+    }
+
+    public WeatherDbHelper(Context context, Tuning tuning) {
+        this(context, DATABASE_NAME, tuning);
+    }
+
+    /**
+     * @param name The name of the database file, so tests can use one of their own
+     */
+    WeatherDbHelper(Context context, String name, Tuning tuning) {
+        super(context, name, null, DATABASE_VERSION);
+        mTuning = tuning;
+    }
+
+    /**
+     * Applies the {@link Tuning} every time the database is opened, before it is created or
+     * upgraded.
+     * <p>
+     * The page size has to be set before the journal mode: SQLite can't change the page size of
+     * a database that is already in WAL mode. The synchronous level and the cache size are
+     * properties of the connection rather than of the file, and only apply to the connection we
+     * write through. Android opens extra connections for readers in WAL mode, and those keep
+     * the platform defaults, which is fine since they never write.
+     *
+     * @param db The database being opened
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        if (mTuning.pageSize != 0) {
+            db.execSQL("PRAGMA page_size = " + mTuning.pageSize);
+        }
+
+        if (mTuning.writeAheadLogging) {
+            db.enableWriteAheadLogging();
+        } else {
+            db.disableWriteAheadLogging();
+        }
+
+        /* Switching the journal mode resets the synchronous level, so set it afterwards */
+        if (mTuning.synchronous != Tuning.SYNCHRONOUS_DEFAULT) {
+            db.execSQL("PRAGMA synchronous = " + mTuning.synchronous);
+        }
+        if (mTuning.cacheSizeKb != 0) {
+            /* A negative cache size is in KB rather than in pages */
+            db.execSQL("PRAGMA cache_size = -" + mTuning.cacheSizeKb);
+        }
     }
 
     /**
@@ -57,6 +190,12 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
+        createWeatherTable(sqLiteDatabase);
+        createLocationTables(sqLiteDatabase);
+        createArchiveTable(sqLiteDatabase);
+    }
+
+    private static void createWeatherTable(SQLiteDatabase sqLiteDatabase) {
 
         /*
          * This String will contain a simple SQL statement that will create a table that will
@@ -99,15 +238,123 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
          * that SQL with the execSQL method of our SQLite database object.
          */
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+
+        sqLiteDatabase.execSQL("CREATE INDEX " + FORECAST_INDEX_NAME
+                + " ON " + WeatherEntry.TABLE_NAME + " ("
+                + WeatherEntry.COLUMN_DATE + ", "
+                + WeatherEntry.COLUMN_MAX_TEMP + ", "
+                + WeatherEntry.COLUMN_MIN_TEMP + ", "
+                + WeatherEntry.COLUMN_WEATHER_ID + ");");
+    }
+
+    /**
+     * Creates the tables added in version 4.
+     */
+    private static void createLocationTables(SQLiteDatabase sqLiteDatabase) {
+
+        /* The locations we keep a forecast for besides the preferred one */
+        final String SQL_CREATE_LOCATION_TABLE =
+
+                "CREATE TABLE " + LocationEntry.TABLE_NAME + " (" +
+
+                LocationEntry._ID                     + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                LocationEntry.COLUMN_LOCATION_SETTING + " TEXT NOT NULL, "                     +
+
+                LocationEntry.COLUMN_COORD_LAT        + " REAL, "                              +
+                LocationEntry.COLUMN_COORD_LONG       + " REAL, "                              +
+
+                /* Adding a location that is already there just leaves the existing row alone */
+                " UNIQUE (" + LocationEntry.COLUMN_LOCATION_SETTING + ") ON CONFLICT IGNORE);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
+
+        /*
+         * The forecasts of those locations. This is the weather table with a location column, and
+         * one weather entry per date and location rather than per date. The UNIQUE constraint
+         * also gives us an index that finds all of a location's days, in date order.
+         */
+        final String SQL_CREATE_LOCATION_WEATHER_TABLE =
+
+                "CREATE TABLE " + LocationEntry.FORECAST_TABLE_NAME + " (" +
+
+                WeatherEntry._ID                  + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                LocationEntry.COLUMN_LOCATION_ID  + " INTEGER NOT NULL, "                 +
+
+                WeatherEntry.COLUMN_DATE          + " INTEGER NOT NULL, "                 +
+
+                WeatherEntry.COLUMN_WEATHER_ID    + " INTEGER NOT NULL,"                  +
+
+                WeatherEntry.COLUMN_MIN_TEMP      + " REAL NOT NULL, "                    +
+                WeatherEntry.COLUMN_MAX_TEMP      + " REAL NOT NULL, "                    +
+
+                WeatherEntry.COLUMN_HUMIDITY      + " REAL NOT NULL, "                    +
+                WeatherEntry.COLUMN_PRESSURE      + " REAL NOT NULL, "                    +
+
+                WeatherEntry.COLUMN_WIND_SPEED    + " REAL NOT NULL, "                    +
+                WeatherEntry.COLUMN_DEGREES       + " REAL NOT NULL, "                    +
+
+                " UNIQUE (" + LocationEntry.COLUMN_LOCATION_ID + ", "
+                        + WeatherEntry.COLUMN_DATE + ") ON CONFLICT REPLACE);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_WEATHER_TABLE);
+    }
+
+    /**
+     * Creates the archive added in version 6.
+     */
+    private static void createArchiveTable(SQLiteDatabase sqLiteDatabase) {
+
+        /*
+         * Every revision of a day's forecast that a sync replaced or dropped. There is no UNIQUE
+         * constraint on the date: a day has as many rows as it had revisions, until
+         * ForecastArchive merges them.
+         */
+        final String SQL_CREATE_ARCHIVE_TABLE =
+
+                "CREATE TABLE " + ArchiveEntry.TABLE_NAME + " (" +
+
+                ArchiveEntry._ID                 + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                WeatherEntry.COLUMN_DATE         + " INTEGER NOT NULL, "                 +
+
+                WeatherEntry.COLUMN_WEATHER_ID   + " INTEGER NOT NULL, "                 +
+
+                WeatherEntry.COLUMN_MIN_TEMP     + " REAL NOT NULL, "                    +
+                WeatherEntry.COLUMN_MAX_TEMP     + " REAL NOT NULL, "                    +
+
+                WeatherEntry.COLUMN_HUMIDITY     + " REAL NOT NULL, "                    +
+                WeatherEntry.COLUMN_PRESSURE     + " REAL NOT NULL, "                    +
+
+                WeatherEntry.COLUMN_WIND_SPEED   + " REAL NOT NULL, "                    +
+                WeatherEntry.COLUMN_DEGREES      + " REAL NOT NULL, "                    +
+
+                ArchiveEntry.COLUMN_ARCHIVED_AT  + " INTEGER NOT NULL, "                 +
+                ArchiveEntry.COLUMN_REVISIONS    + " INTEGER NOT NULL DEFAULT 1);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_ARCHIVE_TABLE);
+
+        /*
+         * Date range queries, and compaction grouping the rows by date, both walk this index in
+         * order. The revisions of a day come out oldest first.
+         */
+        sqLiteDatabase.execSQL("CREATE INDEX " + ARCHIVE_INDEX_NAME
+                + " ON " + ArchiveEntry.TABLE_NAME + " ("
+                + WeatherEntry.COLUMN_DATE + ", "
+                + ArchiveEntry.COLUMN_ARCHIVED_AT + ");");
     }
 
     /**
-     * This database is only a cache for online data, so its upgrade policy is simply to discard
-     * the data and call through to onCreate to recreate the table. Note that this only fires if
-     * you change the version number for your database (in our case, DATABASE_VERSION). It does NOT
-     * depend on the version number for your application found in your app/build.gradle file. If
-     * you want to update the schema without wiping data, commenting out the current body of this
-     * method should be your top priority before modifying this method.
+     * Brings a database created by an older version of Sunshine up to date, keeping the
+     * forecasts it holds so the app has something to show before the first sync after an
+     * update. Note that this only fires if you change the version number for your database (in
+     * our case, DATABASE_VERSION). It does NOT depend on the version number for your application
+     * found in your app/build.gradle file.
+     * <p>
+     * The schema changes themselves are the steps in {@link WeatherDbMigrations}. A database we
+     * have no steps for, or one whose migration fails, is only a cache for online data, so it is
+     * dropped and recreated instead.
      *
      * @param sqLiteDatabase Database that is being upgraded
      * @param oldVersion     The old database version
@@ -115,7 +362,45 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        if (WeatherDbMigrations.canMigrate(oldVersion, newVersion)) {
+            try {
+                WeatherDbMigrations.migrate(sqLiteDatabase, oldVersion, newVersion);
+                return;
+            } catch (SQLException e) {
+                Log.e(TAG, "Migrating from version " + oldVersion + " to " + newVersion
+                        + " failed, recreating the database", e);
+            }
+        }
+        recreate(sqLiteDatabase);
+    }
+
+    /**
+     * Going back to an older version of Sunshine leaves a database newer than it knows about,
+     * and there are no steps that undo a migration, so the database is recreated.
+     *
+     * @param sqLiteDatabase Database that is being downgraded
+     * @param oldVersion     The old database version
+     * @param newVersion     The new database version
+     */
+    @Override
+    public void onDowngrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        recreate(sqLiteDatabase);
+    }
+
+    /**
+     * Drops every table, whatever version of Sunshine created it, and creates the current ones.
+     */
+    private void recreate(SQLiteDatabase sqLiteDatabase) {
+        Cursor tables = sqLiteDatabase.rawQuery("SELECT name FROM sqlite_master"
+                + " WHERE type = 'table' AND name NOT LIKE 'sqlite_%'"
+                + " AND name != 'android_metadata'", null);
+        try {
+            while (tables.moveToNext()) {
+                sqLiteDatabase.execSQL("DROP TABLE IF EXISTS \"" + tables.getString(0) + "\"");
+            }
+        } finally {
+            tables.close();
+        }
         onCreate(sqLiteDatabase);
     }
-}
\ No newline at end of file
+}
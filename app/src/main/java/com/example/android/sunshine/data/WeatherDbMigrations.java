@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * The steps that bring a weather database from one version to the next, without losing the
+ * forecasts it holds. If every phone threw its forecast away on upgrade, an app update would have
+ * every one of them asking the weather server for a new forecast at the same time.
+ * <p>
+ * Each step takes the database from one version to the one after it, and {@link #STEPS} lists
+ * them in order. To change the schema:
+ * <p>
+ *   1) change {@link WeatherDbHelper#onCreate(SQLiteDatabase)} so new databases get the new
+ *      schema, and increment WeatherDbHelper's DATABASE_VERSION,
+ * <p>
+ *   2) add a step here from the previous version to the new one, and append it to STEPS,
+ * <p>
+ *   3) add the new version's schema to the history in TestSunshineDatabase, which upgrades a
+ *      database from every version and checks it ends up just like a new one.
+ * <p>
+ * A step spells out its own SQL rather than calling into WeatherDbHelper. onCreate always
+ * describes the latest schema, and a step has to keep doing exactly what it did when it was
+ * written, however the schema changes afterwards.
+ */
+final class WeatherDbMigrations {
+
+    /*
+     * The oldest version we can migrate from. Anything older is from a Sunshine we don't know
+     * the layout of, so it is thrown away and recreated instead.
+     */
+    static final int OLDEST_MIGRATABLE_VERSION = 3;
+
+    /**
+     * One step of an upgrade, from {@link #fromVersion} to the version right after it. Steps run
+     * inside the transaction SQLiteOpenHelper holds during onUpgrade, so a step that fails
+     * leaves nothing half done.
+     */
+    abstract static class Step {
+
+        final int fromVersion;
+
+        Step(int fromVersion) {
+            this.fromVersion = fromVersion;
+        }
+
+        int getToVersion() {
+            return fromVersion + 1;
+        }
+
+        abstract void migrate(SQLiteDatabase db);
+    }
+
+    /* Every step, in version order, starting at OLDEST_MIGRATABLE_VERSION */
+    static final Step[] STEPS = {
+            new AddLocationTables(),
+            new AddForecastIndex(),
+            new AddArchiveTable()
+    };
+
+    private WeatherDbMigrations() {
+    }
+
+    /**
+     * @return true if there are steps from oldVersion all the way up to newVersion
+     */
+    static boolean canMigrate(int oldVersion, int newVersion) {
+        if (oldVersion < OLDEST_MIGRATABLE_VERSION || oldVersion > newVersion) {
+            return false;
+        }
+        int lastVersion = OLDEST_MIGRATABLE_VERSION + STEPS.length;
+        return newVersion <= lastVersion;
+    }
+
+    /**
+     * Runs every step from oldVersion up to newVersion, in order.
+     *
+     * @param db         The database to upgrade. The caller should hold a transaction on it.
+     * @param oldVersion The version the database is at
+     * @param newVersion The version to upgrade it to
+     * @throws IllegalArgumentException If there is no way from oldVersion to newVersion. Check
+     *                                  with {@link #canMigrate(int, int)} first.
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (!canMigrate(oldVersion, newVersion)) {
+            throw new IllegalArgumentException(
+                    "Can't migrate from version " + oldVersion + " to " + newVersion);
+        }
+        for (int version = oldVersion; version < newVersion; version++) {
+            Step step = STEPS[version - OLDEST_MIGRATABLE_VERSION];
+            if (step.fromVersion != version) {
+                throw new IllegalStateException("Migration steps are out of order at version "
+                        + version + ": found a step from " + step.fromVersion);
+            }
+            step.migrate(db);
+        }
+    }
+
+    /**
+     * Version 4 added the locations we keep a forecast for besides the preferred one, and the
+     * forecasts of those locations. The weather table is left as it was.
+     */
+    static final class AddLocationTables extends Step {
+
+        AddLocationTables() {
+            super(3);
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE location ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "location_setting TEXT NOT NULL, "
+                    + "coord_lat REAL, "
+                    + "coord_long REAL, "
+                    + " UNIQUE (location_setting) ON CONFLICT IGNORE);");
+
+            db.execSQL("CREATE TABLE location_weather ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "location_id INTEGER NOT NULL, "
+                    + "date INTEGER NOT NULL, "
+                    + "weather_id INTEGER NOT NULL,"
+                    + "min REAL NOT NULL, "
+                    + "max REAL NOT NULL, "
+                    + "humidity REAL NOT NULL, "
+                    + "pressure REAL NOT NULL, "
+                    + "wind REAL NOT NULL, "
+                    + "degrees REAL NOT NULL, "
+                    + " UNIQUE (location_id, date) ON CONFLICT REPLACE);");
+        }
+    }
+
+    /**
+     * Version 5 added an index on the weather table that covers the columns of the forecast
+     * list, so date range queries don't have to read the table.
+     */
+    static final class AddForecastIndex extends Step {
+
+        AddForecastIndex() {
+            super(4);
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX weather_date_forecast "
+                    + "ON weather (date, max, min, weather_id);");
+        }
+    }
+
+    /**
+     * Version 6 added the archive of past forecasts. It starts out empty: the revisions a
+     * database replaced before it had an archive are gone.
+     */
+    static final class AddArchiveTable extends Step {
+
+        AddArchiveTable() {
+            super(5);
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE archive ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "date INTEGER NOT NULL, "
+                    + "weather_id INTEGER NOT NULL, "
+                    + "min REAL NOT NULL, "
+                    + "max REAL NOT NULL, "
+                    + "humidity REAL NOT NULL, "
+                    + "pressure REAL NOT NULL, "
+                    + "wind REAL NOT NULL, "
+                    + "degrees REAL NOT NULL, "
+                    + "archived_at INTEGER NOT NULL, "
+                    + "revisions INTEGER NOT NULL DEFAULT 1);");
+
+            db.execSQL("CREATE INDEX archive_date ON archive (date, archived_at);");
+        }
+    }
+}
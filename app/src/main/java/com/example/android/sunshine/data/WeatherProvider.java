@@ -20,12 +20,21 @@ import android.content.ContentProvider;
 import android.content.ContentValues;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Parcelable;
 import android.support.annotation.NonNull;
+import android.util.Log;
 
+import com.example.android.sunshine.shared.ForecastDay;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 
+import java.util.List;
+
 /**
  * This class serves as the ContentProvider for all of Sunshine's data. This class allows us to
  * bulkInsert data, query data, and delete data.
@@ -38,6 +47,8 @@ import com.example.android.sunshine.utilities.SunshineDateUtils;
  */
 public class WeatherProvider extends ContentProvider {
 
+    private static final String TAG = WeatherProvider.class.getSimpleName();
+
     /*
      * These constant will be used to match URIs with the data they are looking for. We will take
      * advantage of the UriMatcher class to make that matching MUCH easier than doing something
@@ -45,6 +56,16 @@ public class WeatherProvider extends ContentProvider {
      */
     public static final int CODE_WEATHER = 100;
     public static final int CODE_WEATHER_WITH_DATE = 101;
+    public static final int CODE_WEATHER_REPLACE = 102;
+    public static final int CODE_WEATHER_RANGE = 103;
+
+    public static final int CODE_LOCATION = 200;
+    public static final int CODE_LOCATION_WITH_ID = 201;
+    public static final int CODE_LOCATION_WEATHER = 202;
+    public static final int CODE_LOCATION_WEATHER_WITH_DATE = 203;
+
+    public static final int CODE_ARCHIVE = 300;
+    public static final int CODE_ARCHIVE_RANGE = 301;
 
     /*
      * The URI Matcher used by this content provider. The leading "s" in this variable name
@@ -52,8 +73,33 @@ public class WeatherProvider extends ContentProvider {
      * common convention in Android programming.
      */
     private static final UriMatcher sUriMatcher = buildUriMatcher();
+
+    /* Only writes the coordinates of a location if they are new or have changed */
+    private static final String SQL_UPDATE_LOCATION_COORDINATES =
+            "UPDATE " + WeatherContract.LocationEntry.TABLE_NAME + " SET "
+                    + WeatherContract.LocationEntry.COLUMN_COORD_LAT + " = ?, "
+                    + WeatherContract.LocationEntry.COLUMN_COORD_LONG + " = ? "
+                    + "WHERE " + WeatherContract.LocationEntry._ID + " = ? AND ("
+                    + WeatherContract.LocationEntry.COLUMN_COORD_LAT + " IS NOT ? OR "
+                    + WeatherContract.LocationEntry.COLUMN_COORD_LONG + " IS NOT ?)";
+
+    /* Removes the forecasts of locations that have been deleted */
+    private static final String SQL_DELETE_ORPHANED_FORECASTS =
+            "DELETE FROM " + WeatherContract.LocationEntry.FORECAST_TABLE_NAME + " WHERE "
+                    + WeatherContract.LocationEntry.COLUMN_LOCATION_ID + " NOT IN (SELECT "
+                    + WeatherContract.LocationEntry._ID + " FROM "
+                    + WeatherContract.LocationEntry.TABLE_NAME + ")";
+    /*
+     * A sync that changes more days than this notifies CONTENT_URI once instead of each date.
+     * Every one of the date notifications reaches observers of CONTENT_URI itself, so beyond a
+     * handful of days they would cost more requeries than they save.
+     */
+    private static final int MAX_DATE_NOTIFICATIONS = 3;
+
     private WeatherDbHelper mOpenHelper;
 
+    private ChangeNotifier mChangeNotifier;
+
     /**
      * Creates the UriMatcher that will match each URI to the CODE_WEATHER and
      * CODE_WEATHER_WITH_DATE constants defined above.
@@ -96,6 +142,40 @@ public class WeatherProvider extends ContentProvider {
          */
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/#", CODE_WEATHER_WITH_DATE);
 
+        /* This URI is content://com.example.android.sunshine/weather/replace */
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_REPLACE,
+                CODE_WEATHER_REPLACE);
+
+        /* content://com.example.android.sunshine/weather/range/1472169600000/1473379200000 */
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_RANGE + "/#/#",
+                CODE_WEATHER_RANGE);
+
+        /* This URI is content://com.example.android.sunshine/location/ */
+        matcher.addURI(authority, WeatherContract.PATH_LOCATION, CODE_LOCATION);
+
+        /* This URI would look something like content://com.example.android.sunshine/location/3 */
+        matcher.addURI(authority, WeatherContract.PATH_LOCATION + "/#", CODE_LOCATION_WITH_ID);
+
+        /* content://com.example.android.sunshine/location/3/weather is location 3's forecast */
+        matcher.addURI(authority,
+                WeatherContract.PATH_LOCATION + "/#/" + WeatherContract.PATH_WEATHER,
+                CODE_LOCATION_WEATHER);
+
+        /* content://com.example.android.sunshine/location/3/weather/1472214172 is one day of it */
+        matcher.addURI(authority,
+                WeatherContract.PATH_LOCATION + "/#/" + WeatherContract.PATH_WEATHER + "/#",
+                CODE_LOCATION_WEATHER_WITH_DATE);
+
+        /* This URI is content://com.example.android.sunshine/archive/ */
+        matcher.addURI(authority, WeatherContract.PATH_ARCHIVE, CODE_ARCHIVE);
+
+        /* content://com.example.android.sunshine/archive/range/1472169600000/1473379200000 */
+        matcher.addURI(authority,
+                WeatherContract.PATH_ARCHIVE + "/" + WeatherContract.PATH_RANGE + "/#/#",
+                CODE_ARCHIVE_RANGE);
+
         return matcher;
     }
 
@@ -122,6 +202,7 @@ public class WeatherProvider extends ContentProvider {
          * very lightweight, we are safe to perform that initialization here.
          */
         mOpenHelper = new WeatherDbHelper(getContext());
+        mChangeNotifier = new ChangeNotifier(getContext().getContentResolver());
         return true;
     }
 
@@ -131,12 +212,16 @@ public class WeatherProvider extends ContentProvider {
      * for inserting a single row of data into our ContentProvider, and so we are only going to
      * implement bulkInsert. In a normal ContentProvider's implementation, you will probably want
      * to provide proper functionality for the insert method as well.
+     * <p>
+     * When the URI is {@link WeatherContract.WeatherEntry#CONTENT_URI_REPLACE}, the values are
+     * a complete forecast that replaces what is in the table. See {@link ForecastDiff}.
      *
      * @param uri    The content:// URI of the insertion request.
      * @param values An array of sets of column_name/value pairs to add to the database.
      *               This must not be {@code null}.
      *
-     * @return The number of values that were inserted.
+     * @return The number of values that were inserted, or for CONTENT_URI_REPLACE, the number
+     * of rows that were inserted, updated or deleted.
      */
     @Override
     public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
@@ -147,6 +232,11 @@ public class WeatherProvider extends ContentProvider {
             case CODE_WEATHER:
                 db.beginTransaction();
                 int rowsInserted = 0;
+                /*
+                 * Compile the INSERT once for the whole transaction rather than letting
+                 * db.insert build and compile it again for every row.
+                 */
+                ForecastInsertStatement insertStatement = new ForecastInsertStatement(db);
                 try {
                     for (ContentValues value : values) {
                         long weatherDate =
@@ -155,27 +245,317 @@ public class WeatherProvider extends ContentProvider {
                             throw new IllegalArgumentException("Date must be normalized to insert");
                         }
 
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        long _id;
+                        if (ForecastInsertStatement.canInsert(value)) {
+                            _id = executeInsert(insertStatement, value);
+                        } else {
+                            _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        }
                         if (_id != -1) {
                             rowsInserted++;
                         }
                     }
                     db.setTransactionSuccessful();
                 } finally {
+                    insertStatement.close();
                     db.endTransaction();
                 }
 
                 if (rowsInserted > 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    ForecastCache.invalidate();
+                    mChangeNotifier.notifyChange(uri);
                 }
 
                 return rowsInserted;
 
+            case CODE_WEATHER_REPLACE:
+                ForecastBatch forecast = new ForecastBatch(values.length);
+                forecast.addAll(values);
+                return replaceForecast(forecast);
+
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /**
+     * Inserts a row with the compiled statement. Like SQLiteDatabase#insert, a row that can't be
+     * inserted is logged and skipped rather than failing the whole batch.
+     *
+     * @return The row ID of the inserted row, or -1 if it couldn't be inserted
+     */
+    private static long executeInsert(ForecastInsertStatement insertStatement,
+                                      ContentValues value) {
+        try {
+            return insertStatement.insert(value);
+        } catch (SQLException e) {
+            Log.e(TAG, "Error inserting " + value, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Handles {@link WeatherContract#METHOD_BULK_INSERT_COLUMNS} and
+     * {@link WeatherContract#METHOD_REPLACE_COLUMNS}, which insert or replace a forecast that is
+     * given as one primitive array per column, and
+     * {@link WeatherContract#METHOD_REPLACE_LOCATION_FORECASTS}, which does the same for many
+     * locations at once. Nothing is boxed and no ContentValues are
+     * created, which matters once the forecast runs to thousands of rows.
+     * <p>
+     * Also handles {@link WeatherContract#METHOD_COMPACT_ARCHIVE}, which compacts the archive,
+     * and {@link WeatherContract#METHOD_NOTIFY_CHANGE}.
+     *
+     * @param method The method to call
+     * @param arg    The URI to notify for METHOD_NOTIFY_CHANGE, and not used otherwise
+     * @param extras The column arrays, keyed by column name
+     * @return A Bundle holding the number of rows inserted or written
+     */
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        if (WeatherContract.METHOD_REPLACE_LOCATION_FORECASTS.equals(method)) {
+            return replaceLocationForecasts(extras);
+        }
+        if (WeatherContract.METHOD_COMPACT_ARCHIVE.equals(method)) {
+            return compactArchive(extras);
+        }
+        if (WeatherContract.METHOD_NOTIFY_CHANGE.equals(method)) {
+            notifyChange(arg);
+            return null;
+        }
+
+        int rowsWritten;
+        switch (method) {
+            case WeatherContract.METHOD_BULK_INSERT_COLUMNS:
+                rowsWritten = insertForecast(ForecastBatch.fromBundle(extras));
+                /* As for bulkInsert, one notification covers every row we wrote */
+                if (rowsWritten > 0) {
+                    mChangeNotifier.notifyChange(WeatherContract.WeatherEntry.CONTENT_URI);
+                }
+                break;
+
+            case WeatherContract.METHOD_REPLACE_COLUMNS:
+                rowsWritten = replaceForecast(ForecastBatch.fromBundle(extras));
+                break;
+
+            default:
+                return super.call(method, arg, extras);
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(WeatherContract.EXTRA_ROWS_INSERTED, rowsWritten);
+        return result;
+    }
+
+    /**
+     * Inserts every day of the forecast with one compiled statement, in one transaction.
+     *
+     * @return The number of rows inserted
+     */
+    private int insertForecast(ForecastBatch forecast) {
+        int rowCount = forecast.size();
+        for (int i = 0; i < rowCount; i++) {
+            if (!SunshineDateUtils.isDateNormalized(forecast.getDate(i))) {
+                throw new IllegalArgumentException("Date must be normalized to insert");
+            }
+        }
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+        int rowsInserted = 0;
+        ForecastInsertStatement insertStatement = new ForecastInsertStatement(db);
+        try {
+            for (int i = 0; i < rowCount; i++) {
+                try {
+                    insertStatement.insert(forecast.getDate(i), forecast.getWeatherId(i),
+                            forecast.getMinTemp(i), forecast.getMaxTemp(i),
+                            forecast.getHumidity(i), forecast.getPressure(i),
+                            forecast.getWindSpeed(i), forecast.getDegrees(i));
+                    rowsInserted++;
+                } catch (SQLException e) {
+                    Log.e(TAG, "Error inserting weather for " + forecast.getDate(i), e);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insertStatement.close();
+            db.endTransaction();
+        }
+
+        if (rowsInserted > 0) {
+            ForecastCache.invalidate();
+        }
+        return rowsInserted;
+    }
+
+    /**
+     * Replaces the contents of the weather table with the forecast. See {@link ForecastDiff}.
+     * Observers of the days that changed are notified, and so are observers of the archive if
+     * any of the replaced rows were archived. If the forecast hasn't changed, nobody needs to
+     * requery at all.
+     *
+     * @return The number of rows written
+     */
+    private int replaceForecast(ForecastBatch forecast) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        ForecastDiff diff;
+        db.beginTransaction();
+        try {
+            diff = ForecastDiff.apply(db, forecast);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (diff.getRowsWritten() > 0) {
+            ForecastCache.invalidate();
+            notifyDatesChanged(diff.datesWritten);
+        }
+        if (diff.archived > 0) {
+            mChangeNotifier.notifyChange(WeatherContract.ArchiveEntry.CONTENT_URI);
+        }
+        return diff.getRowsWritten();
+    }
+
+    /**
+     * Notifies the observers of the weather on the given dates, and the observers of every
+     * range, which may hold any of them. See WeatherEntry.CONTENT_URI_RANGE.
+     */
+    private void notifyDatesChanged(long[] dates) {
+        if (dates.length > MAX_DATE_NOTIFICATIONS) {
+            mChangeNotifier.notifyChange(WeatherContract.WeatherEntry.CONTENT_URI);
+            return;
+        }
+        for (long date : dates) {
+            mChangeNotifier.notifyChange(
+                    WeatherContract.WeatherEntry.buildWeatherUriWithDate(date));
+        }
+        mChangeNotifier.notifyChange(WeatherContract.WeatherEntry.CONTENT_URI_RANGE);
+    }
+
+    /**
+     * Handles {@link WeatherContract#METHOD_NOTIFY_CHANGE}.
+     *
+     * @param uriString The URI to notify, which must be one of ours
+     */
+    private void notifyChange(String uriString) {
+        Uri uri = uriString == null ? null : Uri.parse(uriString);
+        if (uri == null
+                || !WeatherContract.CONTENT_AUTHORITY.equals(uri.getAuthority())) {
+            throw new IllegalArgumentException("Not a URI of ours: " + uriString);
+        }
+        mChangeNotifier.notifyChange(uri);
+    }
+
+    /**
+     * @return The notifier that sends this provider's change notifications, for tests
+     */
+    ChangeNotifier getChangeNotifier() {
+        return mChangeNotifier;
+    }
+
+    /**
+     * Compacts the archive in one transaction. See {@link ForecastArchive}.
+     *
+     * @param extras The optional compaction and retention periods, in days
+     * @return A Bundle holding the number of rows compacted and expired
+     */
+    private Bundle compactArchive(Bundle extras) {
+        int compactAfterDays = ForecastArchive.DEFAULT_COMPACT_AFTER_DAYS;
+        int retentionDays = ForecastArchive.DEFAULT_RETENTION_DAYS;
+        if (extras != null) {
+            compactAfterDays = extras.getInt(WeatherContract.EXTRA_COMPACT_AFTER_DAYS,
+                    compactAfterDays);
+            retentionDays = extras.getInt(WeatherContract.EXTRA_RETENTION_DAYS, retentionDays);
+        }
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        ForecastArchive compaction;
+        db.beginTransaction();
+        try {
+            compaction = ForecastArchive.compact(db, today, compactAfterDays, retentionDays);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (compaction.getRowsWritten() > 0) {
+            mChangeNotifier.notifyChange(WeatherContract.ArchiveEntry.CONTENT_URI);
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(WeatherContract.EXTRA_ROWS_COMPACTED, compaction.rowsCompacted);
+        result.putInt(WeatherContract.EXTRA_ROWS_EXPIRED, compaction.rowsExpired);
+        return result;
+    }
+
+    /**
+     * Replaces the forecasts of the locations given to
+     * {@link WeatherContract#METHOD_REPLACE_LOCATION_FORECASTS}, all in one transaction. Each
+     * forecast is diffed against what we already have for its location, so a location whose
+     * forecast hasn't changed costs us a read and no writes at all. Observers of the locations
+     * are notified once, and only if something was written.
+     *
+     * @param extras The location IDs and their forecasts
+     * @return A Bundle holding the number of rows written
+     */
+    private Bundle replaceLocationForecasts(Bundle extras) {
+        if (extras == null) {
+            throw new IllegalArgumentException("The location forecasts must be given as extras");
+        }
+        long[] locationIds = extras.getLongArray(WeatherContract.EXTRA_LOCATION_IDS);
+        Parcelable[] forecasts = extras.getParcelableArray(WeatherContract.EXTRA_FORECASTS);
+        if (locationIds == null || forecasts == null
+                || locationIds.length != forecasts.length) {
+            throw new IllegalArgumentException(
+                    "There must be one forecast for each location, and no more");
+        }
+
+        /* Check every forecast before writing anything */
+        ForecastBatch[] batches = new ForecastBatch[forecasts.length];
+        for (int i = 0; i < forecasts.length; i++) {
+            batches[i] = ForecastBatch.fromBundle((Bundle) forecasts[i]);
+        }
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        int rowsWritten = 0;
+        db.beginTransaction();
+        SQLiteStatement updateCoordinates = db.compileStatement(SQL_UPDATE_LOCATION_COORDINATES);
+        try {
+            for (int i = 0; i < locationIds.length; i++) {
+                rowsWritten += ForecastDiff.applyToLocation(db, locationIds[i], batches[i])
+                        .getRowsWritten();
+
+                Bundle forecast = (Bundle) forecasts[i];
+                if (forecast.containsKey(WeatherContract.LocationEntry.COLUMN_COORD_LAT)
+                        && forecast.containsKey(WeatherContract.LocationEntry.COLUMN_COORD_LONG)) {
+                    double latitude =
+                            forecast.getDouble(WeatherContract.LocationEntry.COLUMN_COORD_LAT);
+                    double longitude =
+                            forecast.getDouble(WeatherContract.LocationEntry.COLUMN_COORD_LONG);
+                    updateCoordinates.bindDouble(1, latitude);
+                    updateCoordinates.bindDouble(2, longitude);
+                    updateCoordinates.bindLong(3, locationIds[i]);
+                    updateCoordinates.bindDouble(4, latitude);
+                    updateCoordinates.bindDouble(5, longitude);
+                    rowsWritten += updateCoordinates.executeUpdateDelete();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            updateCoordinates.close();
+            db.endTransaction();
+        }
+
+        if (rowsWritten > 0) {
+            mChangeNotifier.notifyChange(WeatherContract.LocationEntry.CONTENT_URI);
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(WeatherContract.EXTRA_ROWS_INSERTED, rowsWritten);
+        return result;
+    }
+
     /**
      * Handles query requests from clients. We will use this method in Sunshine to query for all
      * of our weather data as well as to query for the weather on a particular day.
@@ -225,6 +605,13 @@ public class WeatherProvider extends ContentProvider {
                  */
                 String normalizedUtcDateString = uri.getLastPathSegment();
 
+                /* The day is most likely in memory already. See ForecastCache. */
+                cursor = queryForecastCache(projection, normalizedUtcDateString,
+                        normalizedUtcDateString, null, selection, sortOrder);
+                if (cursor != null) {
+                    break;
+                }
+
                 /*
                  * The query method accepts a string array of arguments, as there may be more
                  * than one "?" in the selection statement. Even though in our case, we only have
@@ -273,9 +660,64 @@ public class WeatherProvider extends ContentProvider {
              * in our weather table.
              */
             case CODE_WEATHER: {
+                cursor = queryForecastCache(projection, Long.toString(Long.MIN_VALUE),
+                        Long.toString(Long.MAX_VALUE), null, selection, sortOrder);
+                if (cursor != null) {
+                    break;
+                }
+
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.WeatherEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            /*
+             * Every day from the first date in the URI to the second, as in
+             *
+             *      content://com.example.android.sunshine/weather/range/1472169600000/1473379200000
+             *
+             * optionally limited to the first few days with ?limit=. Between syncs, the range
+             * comes straight out of ForecastCache. When the table is too big to cache, sorting by
+             * date (the default) and projecting no more than
+             * MainActivity.MAIN_FORECAST_PROJECTION lets SQLite answer straight from the
+             * forecast index, without reading the table at all.
+             */
+            case CODE_WEATHER_RANGE: {
+                List<String> segments = uri.getPathSegments();
+                cursor = queryForecastCache(projection, segments.get(2), segments.get(3),
+                        getLimit(uri), selection, sortOrder);
+                if (cursor != null) {
+                    break;
+                }
+
                 cursor = mOpenHelper.getReadableDatabase().query(
                         WeatherContract.WeatherEntry.TABLE_NAME,
                         projection,
+                        appendSelection(WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? AND "
+                                + WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?", selection),
+                        appendSelectionArgs(new String[]{segments.get(2), segments.get(3)},
+                                selectionArgs),
+                        null,
+                        null,
+                        sortOrder == null
+                                ? WeatherContract.WeatherEntry.COLUMN_DATE + " ASC"
+                                : sortOrder,
+                        getLimit(uri));
+
+                break;
+            }
+
+            case CODE_LOCATION: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.LocationEntry.TABLE_NAME,
+                        projection,
                         selection,
                         selectionArgs,
                         null,
@@ -285,11 +727,104 @@ public class WeatherProvider extends ContentProvider {
                 break;
             }
 
+            case CODE_LOCATION_WITH_ID: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.LocationEntry.TABLE_NAME,
+                        projection,
+                        WeatherContract.LocationEntry._ID + " = ? ",
+                        new String[]{uri.getLastPathSegment()},
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            /*
+             * A location's forecast is queried just like the weather of the preferred location,
+             * except that only that location's rows are returned. The location's _ID is the
+             * second path segment, as in content://com.example.android.sunshine/location/3/weather
+             */
+            case CODE_LOCATION_WEATHER: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.LocationEntry.FORECAST_TABLE_NAME,
+                        projection,
+                        appendSelection(WeatherContract.LocationEntry.COLUMN_LOCATION_ID + " = ?",
+                                selection),
+                        appendSelectionArgs(new String[]{uri.getPathSegments().get(1)},
+                                selectionArgs),
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            case CODE_LOCATION_WEATHER_WITH_DATE: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.LocationEntry.FORECAST_TABLE_NAME,
+                        projection,
+                        WeatherContract.LocationEntry.COLUMN_LOCATION_ID + " = ? AND "
+                                + WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ",
+                        new String[]{uri.getPathSegments().get(1), uri.getLastPathSegment()},
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            case CODE_ARCHIVE: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.ArchiveEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            /*
+             * Every archived revision of every day from the first date in the URI to the
+             * second, oldest day and oldest revision first unless asked otherwise. Like the
+             * weather range, it may be limited with ?limit=.
+             */
+            case CODE_ARCHIVE_RANGE: {
+                List<String> segments = uri.getPathSegments();
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.ArchiveEntry.TABLE_NAME,
+                        projection,
+                        appendSelection(WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? AND "
+                                + WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?", selection),
+                        appendSelectionArgs(new String[]{segments.get(2), segments.get(3)},
+                                selectionArgs),
+                        null,
+                        null,
+                        sortOrder == null
+                                ? WeatherContract.WeatherEntry.COLUMN_DATE + " ASC, "
+                                        + WeatherContract.ArchiveEntry.COLUMN_ARCHIVED_AT + " ASC"
+                                : sortOrder,
+                        getLimit(uri));
+
+                break;
+            }
+
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        /*
+         * A cursor over the whole table is a range with no bounds, so it watches the range URI
+         * with the other ranges. A sync that changes a few days notifies each of those dates and
+         * the range URI once, rather than every observer of the weather.
+         */
+        Uri notificationUri = sUriMatcher.match(uri) == CODE_WEATHER
+                ? WeatherContract.WeatherEntry.CONTENT_URI_RANGE
+                : uri;
+        cursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
         return cursor;
     }
 
@@ -323,8 +858,49 @@ public class WeatherProvider extends ContentProvider {
                         WeatherContract.WeatherEntry.TABLE_NAME,
                         selection,
                         selectionArgs);
+                if (numRowsDeleted != 0) {
+                    ForecastCache.invalidate();
+                }
+
+                break;
+
+            case CODE_ARCHIVE:
+                numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
+                        WeatherContract.ArchiveEntry.TABLE_NAME,
+                        selection,
+                        selectionArgs);
+
+                break;
+
+            /*
+             * Deleting locations also deletes their forecasts. Rather than working out which
+             * locations the selection matched, we simply remove every forecast that no longer
+             * has a location afterwards.
+             */
+            case CODE_LOCATION:
+            case CODE_LOCATION_WITH_ID: {
+                if (sUriMatcher.match(uri) == CODE_LOCATION_WITH_ID) {
+                    selection = WeatherContract.LocationEntry._ID + " = ?";
+                    selectionArgs = new String[]{uri.getLastPathSegment()};
+                }
+
+                final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    numRowsDeleted = db.delete(
+                            WeatherContract.LocationEntry.TABLE_NAME,
+                            selection,
+                            selectionArgs);
+                    if (numRowsDeleted != 0) {
+                        db.execSQL(SQL_DELETE_ORPHANED_FORECASTS);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
 
                 break;
+            }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -332,7 +908,7 @@ public class WeatherProvider extends ContentProvider {
 
         /* If we actually deleted any rows, notify that a change has occurred to this URI */
         if (numRowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            mChangeNotifier.notifyChange(uri);
         }
 
         return numRowsDeleted;
@@ -354,20 +930,43 @@ public class WeatherProvider extends ContentProvider {
     }
 
     /**
-     * In Sunshine, we aren't going to do anything with this method. However, we are required to
-     * override it as WeatherProvider extends ContentProvider and insert is an abstract method in
-     * ContentProvider. Rather than the single insert method, we are only going to implement
-     * {@link WeatherProvider#bulkInsert}.
+     * Weather is only ever inserted a whole forecast at a time, with
+     * {@link WeatherProvider#bulkInsert}. The one thing that is inserted on its own is a location
+     * we should keep a forecast for. Adding a location that is already there returns the URI of
+     * the existing location.
      *
      * @param uri    The URI of the insertion request. This must not be null.
      * @param values A set of column_name/value pairs to add to the database.
      *               This must not be null
-     * @return nothing in Sunshine, but normally the URI for the newly inserted item.
+     * @return The URI of the location
      */
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
-        throw new RuntimeException(
-                "We are not implementing insert in Sunshine. Use bulkInsert instead");
+        if (sUriMatcher.match(uri) != CODE_LOCATION) {
+            throw new RuntimeException(
+                    "We are not implementing insert in Sunshine. Use bulkInsert instead");
+        }
+
+        String locationSetting =
+                values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+        if (locationSetting == null) {
+            throw new IllegalArgumentException("A location needs a location setting");
+        }
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        long locationId = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
+        if (locationId == -1) {
+            /* ON CONFLICT IGNORE left the location we already had in place */
+            locationId = DatabaseUtils.longForQuery(db,
+                    "SELECT " + WeatherContract.LocationEntry._ID + " FROM "
+                            + WeatherContract.LocationEntry.TABLE_NAME + " WHERE "
+                            + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                    new String[]{locationSetting});
+        } else {
+            mChangeNotifier.notifyChange(uri);
+        }
+
+        return WeatherContract.LocationEntry.buildLocationUri(locationId);
     }
 
     @Override
@@ -375,6 +974,129 @@ public class WeatherProvider extends ContentProvider {
         throw new RuntimeException("We are not implementing update in Sunshine");
     }
 
+    /**
+     * Answers a query on the weather table from the in-memory snapshot in {@link ForecastCache},
+     * without touching the database unless the table has changed since the snapshot was taken.
+     * Only queries the snapshot can answer exactly like SQLite are served from it: no selection
+     * of the caller's, rows in date order, and columns of the weather table.
+     *
+     * @param fromDate The first date, as it appears in the URI
+     * @param toDate   The last date, as it appears in the URI
+     * @param limit    The maximum number of days, or null for no limit
+     * @return A cursor over the days, or null if the query has to go to SQLite
+     */
+    private Cursor queryForecastCache(String[] projection, String fromDate, String toDate,
+                                      String limit, String selection, String sortOrder) {
+        if (selection != null && !selection.isEmpty()) {
+            return null;
+        }
+        if (sortOrder != null && !sortOrder.trim().equalsIgnoreCase(
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC")) {
+            return null;
+        }
+
+        long from;
+        long to;
+        try {
+            from = Long.parseLong(fromDate);
+            to = Long.parseLong(toDate);
+        } catch (NumberFormatException e) {
+            /* Too many digits for a long. SQLite compares it as text, so let SQLite have it. */
+            return null;
+        }
+
+        ForecastCache.Snapshot snapshot =
+                ForecastCache.get(mOpenHelper.getReadableDatabase());
+        if (snapshot == null) {
+            return null;
+        }
+        int maxDays = limit == null ? 0 : Integer.parseInt(limit);
+        return snapshot.query(projection, from, to, maxDays);
+    }
+
+    /**
+     * Reads the days from fromDate to toDate, both included, in date order. This is the typed
+     * read path behind {@link ForecastRepository}: between syncs, the days come straight out of
+     * the {@link ForecastCache} snapshot, and no cursor is built at all.
+     *
+     * @param fromDate The first normalized date
+     * @param toDate   The last normalized date, or Long.MAX_VALUE for every day from fromDate
+     * @param limit    The maximum number of days, or 0 for no limit
+     * @return The days, which may be none
+     */
+    ForecastDay[] readForecast(long fromDate, long toDate, int limit) {
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        ForecastCache.Snapshot snapshot = ForecastCache.get(db);
+        if (snapshot != null) {
+            return snapshot.toForecastDays(fromDate, toDate, limit);
+        }
+
+        /* The table holds too many days to cache, so read them through the forecast index */
+        Cursor cursor = db.query(
+                WeatherContract.WeatherEntry.TABLE_NAME,
+                ForecastRepository.DAY_PROJECTION,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? AND "
+                        + WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                new String[]{Long.toString(fromDate), Long.toString(toDate)},
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC",
+                limit > 0 ? Integer.toString(limit) : null);
+        try {
+            ForecastDay[] days = new ForecastDay[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                days[i] = ForecastRepository.readDay(cursor);
+            }
+            return days;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return The selection, ANDed with the caller's selection if there is one
+     */
+    private static String appendSelection(String selection, String callerSelection) {
+        if (callerSelection == null || callerSelection.isEmpty()) {
+            return selection;
+        }
+        return selection + " AND (" + callerSelection + ")";
+    }
+
+    /**
+     * @return The URI's limit query parameter, or null if it has none
+     * @throws IllegalArgumentException If the limit isn't a positive number
+     */
+    private static String getLimit(Uri uri) {
+        String limit = uri.getQueryParameter(WeatherContract.QUERY_PARAMETER_LIMIT);
+        if (limit == null) {
+            return null;
+        }
+        try {
+            if (Integer.parseInt(limit) > 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            /* Reported below */
+        }
+        throw new IllegalArgumentException("Invalid limit " + limit + " in " + uri);
+    }
+
+    /**
+     * @return The selection arguments, followed by the caller's if there are any
+     */
+    private static String[] appendSelectionArgs(String[] selectionArgs,
+                                                String[] callerSelectionArgs) {
+        if (callerSelectionArgs == null || callerSelectionArgs.length == 0) {
+            return selectionArgs;
+        }
+        String[] combined = new String[selectionArgs.length + callerSelectionArgs.length];
+        System.arraycopy(selectionArgs, 0, combined, 0, selectionArgs.length);
+        System.arraycopy(callerSelectionArgs, 0, combined, selectionArgs.length,
+                callerSelectionArgs.length);
+        return combined;
+    }
+
     /**
      * You do not need to call this method. This is a method specifically to assist the testing
      * framework in running smoothly. You can read more at:
@@ -383,6 +1105,7 @@ public class WeatherProvider extends ContentProvider {
     @Override
     @TargetApi(11)
     public void shutdown() {
+        mChangeNotifier.flush();
         mOpenHelper.close();
         super.shutdown();
     }
@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.data.ForecastBatch;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.utilities.HttpResponseBuffer;
+import com.example.android.sunshine.utilities.NetworkMetrics;
+import com.example.android.sunshine.utilities.NetworkUtils;
+import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Syncs the forecasts of the locations in {@link LocationEntry}, the ones we keep a forecast for
+ * besides the preferred location. With dozens of locations, fetching them one after the other
+ * means waiting for dozens of round trips in a row, so the forecasts are downloaded and parsed
+ * on a small pool of threads instead.
+ * <p>
+ * Writing is left to the thread that started the sync. It collects the forecasts as they come
+ * in and hands them to the ContentProvider a few locations at a time, so that each database
+ * transaction (and each change notification) covers many locations rather than one.
+ */
+public class LocationSyncTask {
+
+    private static final String TAG = "sunshine.sync.location";
+
+    /*
+     * The number of forecasts downloaded at the same time. Most of a request is spent waiting on
+     * the network, so a few more threads than cores are fine, but we don't want to open dozens of
+     * connections at once on a phone either.
+     */
+    static final int DEFAULT_PARALLELISM = 4;
+
+    /* The number of locations whose forecasts are written in one transaction */
+    static final int LOCATIONS_PER_TRANSACTION = 8;
+
+    private static final String[] LOCATION_PROJECTION = {
+            LocationEntry._ID,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+
+    private static final int INDEX_LOCATION_ID = 0;
+    private static final int INDEX_LOCATION_SETTING = 1;
+    private static final int INDEX_COORD_LAT = 2;
+    private static final int INDEX_COORD_LONG = 3;
+
+    /**
+     * What a location sync did, for logging and for measuring how the sync performs.
+     */
+    public static final class SyncStats {
+
+        /* Number of locations there were to sync */
+        public final int locationCount;
+        /* Number of locations whose forecast was downloaded and stored */
+        public int locationsSynced;
+        /* Number of locations whose forecast couldn't be downloaded, read or written */
+        public int locationsFailed;
+        /* Number of days of weather received from the server */
+        public int rowsReceived;
+        /* Number of rows the ContentProvider actually wrote */
+        public int rowsWritten;
+        /* Number of transactions the forecasts were written in */
+        public int transactions;
+        /* Number of body bytes the forecasts took on the wire, before decompression */
+        public long wireBytes;
+        /* Number of body bytes the forecasts decoded to */
+        public long decodedBytes;
+        /* How long the whole sync took */
+        public long elapsedMillis;
+
+        SyncStats(int locationCount) {
+            this.locationCount = locationCount;
+        }
+
+        /**
+         * @return The number of locations synced per second of the whole sync
+         */
+        public double getLocationsPerSecond() {
+            return elapsedMillis == 0 ? 0 : locationsSynced * 1000.0 / elapsedMillis;
+        }
+
+        /**
+         * @return The number of rows written per day of weather received. A sync that changes
+         * nothing writes nothing, and a sync that rewrote every forecast would come out at 1.
+         */
+        public double getWriteAmplification() {
+            return rowsReceived == 0 ? 0 : (double) rowsWritten / rowsReceived;
+        }
+
+        @Override
+        public String toString() {
+            return locationsSynced + " of " + locationCount + " locations synced ("
+                    + locationsFailed + " failed) in " + elapsedMillis + " ms, "
+                    + rowsWritten + " of " + rowsReceived + " rows written in "
+                    + transactions + " transactions, " + wireBytes + " bytes on the wire ("
+                    + decodedBytes + " decoded)";
+        }
+    }
+
+    /**
+     * Syncs the forecast of every location in the location table.
+     *
+     * @param context Used to access the ContentResolver
+     * @return What the sync did
+     */
+    public static SyncStats syncLocations(Context context) {
+        return syncLocations(context, null, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Syncs the forecast of every location in the location table. This never throws: a location
+     * whose forecast can't be downloaded, read or written is counted as failed and the others
+     * are synced anyway, just as {@link SunshineSyncTask#syncWeather(Context)} carries on after
+     * a failure.
+     *
+     * @param context         Used to access the ContentResolver
+     * @param forecastBaseUrl The weather server to ask, or null for the usual one
+     * @param parallelism     The number of forecasts to download at the same time
+     * @return What the sync did
+     */
+    synchronized static SyncStats syncLocations(Context context, String forecastBaseUrl,
+                                                int parallelism) {
+        long start = SystemClock.elapsedRealtime();
+
+        List<TrackedLocation> locations;
+        try {
+            locations = loadLocations(context);
+        } catch (RuntimeException e) {
+            /* The location table couldn't be read, so there is nothing we can sync */
+            Log.e(TAG, "Error reading the locations to sync", e);
+            return new SyncStats(0);
+        }
+        SyncStats stats = new SyncStats(locations.size());
+        if (locations.isEmpty()) {
+            return stats;
+        }
+
+        /* The forecasts are measured on their own, apart from the preferred location's sync */
+        NetworkMetrics.beginSync();
+
+        int threadCount = Math.min(parallelism, locations.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CompletionService<LocationForecast> completionService =
+                new ExecutorCompletionService<>(executor);
+
+        try {
+            /*
+             * Only keep a couple of requests per thread queued up. Each finished request holds
+             * a whole forecast in memory until it is written, so we don't want to run far ahead
+             * of the writes with hundreds of locations.
+             */
+            int maxInFlight = threadCount * 2;
+            int submitted = 0;
+            while (submitted < locations.size() && submitted < maxInFlight) {
+                completionService.submit(
+                        new FetchForecast(locations.get(submitted++), forecastBaseUrl));
+            }
+
+            List<LocationForecast> unwritten = new ArrayList<>(LOCATIONS_PER_TRANSACTION);
+            for (int completed = 0; completed < locations.size(); completed++) {
+                Future<LocationForecast> done = completionService.take();
+                if (submitted < locations.size()) {
+                    completionService.submit(
+                            new FetchForecast(locations.get(submitted++), forecastBaseUrl));
+                }
+
+                LocationForecast forecast;
+                try {
+                    forecast = done.get();
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Error fetching a location's forecast", e.getCause());
+                    forecast = null;
+                }
+                if (forecast == null) {
+                    stats.locationsFailed++;
+                    continue;
+                }
+
+                unwritten.add(forecast);
+                stats.rowsReceived += forecast.days.size();
+                if (unwritten.size() == LOCATIONS_PER_TRANSACTION) {
+                    writeForecasts(context, unwritten, stats);
+                }
+            }
+            if (!unwritten.isEmpty()) {
+                writeForecasts(context, unwritten, stats);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            NetworkMetrics.Snapshot metrics = NetworkMetrics.endSync();
+            stats.wireBytes = metrics.wireBytes;
+            stats.decodedBytes = metrics.decodedBytes;
+        }
+
+        stats.elapsedMillis = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, "Location sync: " + stats);
+        return stats;
+    }
+
+    /**
+     * @return Every location in the location table
+     */
+    private static List<TrackedLocation> loadLocations(Context context) {
+        List<TrackedLocation> locations = new ArrayList<>();
+        Cursor cursor = context.getContentResolver().query(
+                LocationEntry.CONTENT_URI, LOCATION_PROJECTION, null, null, null);
+        if (cursor == null) return locations;
+        try {
+            while (cursor.moveToNext()) {
+                double[] coordinates = null;
+                if (!cursor.isNull(INDEX_COORD_LAT) && !cursor.isNull(INDEX_COORD_LONG)) {
+                    coordinates = new double[]{
+                            cursor.getDouble(INDEX_COORD_LAT),
+                            cursor.getDouble(INDEX_COORD_LONG)};
+                }
+                locations.add(new TrackedLocation(cursor.getLong(INDEX_LOCATION_ID),
+                        cursor.getString(INDEX_LOCATION_SETTING), coordinates));
+            }
+        } finally {
+            cursor.close();
+        }
+        return locations;
+    }
+
+    /**
+     * Hands the forecasts to the ContentProvider, which writes them all in one transaction, and
+     * empties the list. If the ContentProvider can't be reached or fails to write them, the
+     * forecasts are counted as failed; the transaction is rolled back, so none of them is
+     * half written.
+     */
+    private static void writeForecasts(Context context, List<LocationForecast> forecasts,
+                                       SyncStats stats) {
+        long[] locationIds = new long[forecasts.size()];
+        Bundle[] forecastBundles = new Bundle[forecasts.size()];
+        for (int i = 0; i < forecasts.size(); i++) {
+            LocationForecast forecast = forecasts.get(i);
+            locationIds[i] = forecast.locationId;
+            forecastBundles[i] = forecast.days.toBundle();
+            forecastBundles[i].putDouble(LocationEntry.COLUMN_COORD_LAT, forecast.coordinates[0]);
+            forecastBundles[i].putDouble(LocationEntry.COLUMN_COORD_LONG, forecast.coordinates[1]);
+        }
+
+        Bundle extras = new Bundle();
+        extras.putLongArray(WeatherContract.EXTRA_LOCATION_IDS, locationIds);
+        extras.putParcelableArray(WeatherContract.EXTRA_FORECASTS, forecastBundles);
+
+        Bundle result;
+        try {
+            result = context.getContentResolver().call(LocationEntry.CONTENT_URI,
+                    WeatherContract.METHOD_REPLACE_LOCATION_FORECASTS, null, extras);
+        } catch (RuntimeException e) {
+            /* SQLiteException or IllegalArgumentException, thrown through from the provider */
+            Log.e(TAG, "Error writing the forecasts of " + forecasts.size() + " locations", e);
+            result = null;
+        }
+
+        if (result == null) {
+            stats.locationsFailed += forecasts.size();
+        } else {
+            stats.rowsWritten += result.getInt(WeatherContract.EXTRA_ROWS_INSERTED);
+            stats.locationsSynced += forecasts.size();
+            stats.transactions++;
+        }
+        forecasts.clear();
+    }
+
+    /**
+     * A location as it is stored in the location table.
+     */
+    private static final class TrackedLocation {
+        final long id;
+        final String setting;
+        final double[] coordinates;
+
+        TrackedLocation(long id, String setting, double[] coordinates) {
+            this.id = id;
+            this.setting = setting;
+            this.coordinates = coordinates;
+        }
+    }
+
+    /**
+     * A freshly downloaded forecast and the coordinates the server gave for its location.
+     */
+    private static final class LocationForecast {
+        final long locationId;
+        final ForecastBatch days;
+        final double[] coordinates;
+
+        LocationForecast(long locationId, ForecastBatch days, double[] coordinates) {
+            this.locationId = locationId;
+            this.days = days;
+            this.coordinates = coordinates;
+        }
+    }
+
+    /**
+     * Downloads and parses one location's forecast on a thread of the pool.
+     */
+    private static final class FetchForecast implements Callable<LocationForecast> {
+
+        private final TrackedLocation mLocation;
+        private final String mForecastBaseUrl;
+
+        FetchForecast(TrackedLocation location, String forecastBaseUrl) {
+            mLocation = location;
+            mForecastBaseUrl = forecastBaseUrl;
+        }
+
+        /**
+         * @return The forecast, or null if the server replied with an error code
+         */
+        @Override
+        public LocationForecast call() throws Exception {
+            URL weatherRequestUrl = NetworkUtils.getUrlForLocation(
+                    mForecastBaseUrl, mLocation.setting, mLocation.coordinates);
+
+            HttpResponseBuffer jsonWeatherResponse =
+                    NetworkUtils.getResponseBufferFromHttpUrl(weatherRequestUrl);
+
+            ForecastBatch days = new ForecastBatch();
+            double[] coordinates = new double[2];
+            boolean hasForecast;
+            try {
+                hasForecast = OpenWeatherJsonUtils.getForecastFromJson(
+                        jsonWeatherResponse.asInputStream(), days, coordinates);
+            } finally {
+                jsonWeatherResponse.release();
+            }
+
+            if (!hasForecast) {
+                Log.w(TAG, "No forecast for " + mLocation.setting);
+                return null;
+            }
+            return new LocationForecast(mLocation.id, days, coordinates);
+        }
+    }
+}
@@ -45,8 +45,13 @@ public class SunshineFirebaseJobService extends JobService {
             @Override
             protected Void doInBackground(Void... voids) {
                 Context context = getApplicationContext();
-                SunshineSyncTask.syncWeather(context);
-                jobFinished(jobParameters, false);
+                try {
+                    SunshineSyncTask.syncWeather(context);
+                    LocationSyncTask.syncLocations(context);
+                } finally {
+                    /* Even if a sync fails, the job must not be left running */
+                    jobFinished(jobParameters, false);
+                }
                 return null;
             }
 
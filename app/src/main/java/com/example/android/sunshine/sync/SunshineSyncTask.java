@@ -16,49 +16,63 @@
 package com.example.android.sunshine.sync;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
 import android.text.format.DateUtils;
 import android.util.Log;
 
+import com.example.android.sunshine.data.ForecastBatch;
+import com.example.android.sunshine.data.ForecastRepository;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.shared.ForecastDay;
+import com.example.android.sunshine.shared.WatchContract;
+import com.example.android.sunshine.shared.WatchForecast;
+import com.example.android.sunshine.shared.WatchPayload;
+import com.example.android.sunshine.utilities.ForecastResponseCache;
+import com.example.android.sunshine.utilities.HttpResponseBuffer;
+import com.example.android.sunshine.utilities.NetworkMetrics;
 import com.example.android.sunshine.utilities.NetworkUtils;
 import com.example.android.sunshine.utilities.NotificationUtils;
 import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.PendingResult;
-import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
+import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SunshineSyncTask {
 
     private static final String TAG = "sunshine.sync.task";
 
-    private static final String KEY_HIGH_TEMP = "max_temp";
-    private static final String KEY_LOW_TEMP = "min_temp";
-    private static final String KEY_WEATHER_ID = "weather_id";
-    private static final String KEY_PATH = "/wearable";
-    private static final String KEY_TIME = "current_time";
+    /* Refilled by every sync. syncWeather is synchronized, so only one sync uses it at a time. */
+    private static final ForecastBatch sForecast = new ForecastBatch();
 
     /**
      * Performs the network request for updated weather, parses the JSON from that request, and
      * inserts the new weather information into our ContentProvider. Will notify the user that new
      * weather has been loaded if the user hasn't been notified of the weather within the last day
      * AND they haven't disabled notifications in the preferences screen.
+     * <p>
+     * The request is conditional: if the server tells us the forecast hasn't changed since the
+     * last sync, we keep the data we already have and only bring the watch face up to date.
      *
      * @param context Used to access utility methods and the ContentResolver
      */
     synchronized public static void syncWeather(Context context) {
 
+        /* Count the bytes this sync downloads, so we can see what compression is saving us */
+        NetworkMetrics.beginSync();
         try {
             /*
              * The getUrl method will return the URL that we need to get the forecast JSON for the
@@ -67,121 +81,276 @@ public class SunshineSyncTask {
              */
             URL weatherRequestUrl = NetworkUtils.getUrl(context);
 
-            /* Use the URL to retrieve the JSON */
-            String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
+            /*
+             * A 304 only helps if we still have the forecast it refers to. If our data has been
+             * deleted (or has all gone stale), forget the validators so that the server sends us
+             * the whole forecast again.
+             */
+            ForecastResponseCache responseCache = ForecastResponseCache.getInstance(context);
+            if (!hasForecastFromToday(context)) {
+                responseCache.remove(weatherRequestUrl);
+            }
 
-            /* Parse the JSON into a list of weather values */
-            ContentValues[] weatherValues = OpenWeatherJsonUtils
-                    .getWeatherContentValuesFromJson(context, jsonWeatherResponse);
+            /*
+             * Use the URL to retrieve the JSON into a pooled buffer. The connection is closed as
+             * soon as the body has been read, before we spend any time parsing it.
+             */
+            HttpResponseBuffer jsonWeatherResponse =
+                    NetworkUtils.getResponseBufferFromHttpUrl(weatherRequestUrl, responseCache);
 
             /*
-             * In cases where our JSON contained an error code, getWeatherContentValuesFromJson
-             * would have returned null. We need to check for those cases here to prevent any
-             * NullPointerExceptions being thrown. We also have no reason to insert fresh data if
-             * there isn't any to insert.
+             * A null buffer means the forecast hasn't changed since the last sync, so there is
+             * nothing to parse or insert. The watch may be asking for data, though, so still send
+             * it what we have.
              */
-            if (weatherValues != null && weatherValues.length != 0) {
-                /* Get a handle on the ContentResolver to delete and insert data */
+            if (jsonWeatherResponse == null) {
+                Log.d(TAG, "Forecast not modified since the last sync");
+                sendForecastToWatch(context);
+                return;
+            }
+
+            /*
+             * Parse the JSON straight out of the buffer into the batch we kept from the last
+             * sync, so that none of the weather values get boxed along the way.
+             */
+            ForecastBatch forecast = sForecast;
+            forecast.clear();
+            ForecastResponseCache.Validators validators = jsonWeatherResponse.getValidators();
+            boolean hasForecast;
+            try {
+                hasForecast = OpenWeatherJsonUtils.getForecastFromJson(
+                        context, jsonWeatherResponse.asInputStream(), forecast);
+            } finally {
+                jsonWeatherResponse.release();
+            }
+
+            /*
+             * In cases where our JSON contained an error code, getForecastFromJson would have
+             * returned false. We have no reason to insert fresh data if there isn't any to
+             * insert.
+             */
+            if (hasForecast && forecast.size() != 0) {
+                /* Get a handle on the ContentResolver to insert data */
                 ContentResolver sunshineContentResolver = context.getContentResolver();
 
-                /* Delete old weather data because we don't need to keep multiple days' data */
-                sunshineContentResolver.delete(
+                /*
+                 * Replace our old weather data with the new forecast. Only the days that changed
+                 * are written, and days that have dropped out of the forecast are deleted, since
+                 * we don't need to keep multiple days' data.
+                 */
+                Bundle result = sunshineContentResolver.call(
                         WeatherContract.WeatherEntry.CONTENT_URI,
+                        WeatherContract.METHOD_REPLACE_COLUMNS,
                         null,
-                        null);
+                        forecast.toBundle());
+                int rowsWritten = result.getInt(WeatherContract.EXTRA_ROWS_INSERTED);
+                Log.d(TAG, "Forecast sync wrote " + rowsWritten + " rows");
 
-                /* Insert our new weather data into Sunshine's ContentProvider */
-                sunshineContentResolver.bulkInsert(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        weatherValues);
+                /*
+                 * Only now that the forecast is saved may the next sync be told it hasn't
+                 * changed; a response we failed to parse or save must be downloaded again.
+                 */
+                responseCache.store(validators);
 
                 //Sync with the watch face
-                GoogleApiClient apiClient=new GoogleApiClient.Builder(context).addApi(Wearable.API).build();
+                sendForecastToWatch(context);
 
-                Cursor cursor=context.getContentResolver()
-                        .query(WeatherContract.WeatherEntry.CONTENT_URI,
-                                new String[]{WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-                                        WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-                                        WeatherContract.WeatherEntry.COLUMN_WEATHER_ID},null,null,null);
+                /*
+                 * Finally, after we insert data into the ContentProvider, determine whether or not
+                 * we should notify the user that the weather has been refreshed.
+                 */
+                notifyUserIfNeeded(context);
 
-                if(cursor!=null) {
-                    cursor.moveToFirst();
-                    ConnectionResult result = apiClient.blockingConnect();
+                compactArchiveIfNeeded(context);
 
-                    if(result.isSuccess()) {
-                        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(KEY_PATH);
-                        DataMap dataMap = putDataMapRequest.getDataMap();
+            /* If the code reaches this point, we have successfully performed our sync */
 
-                        dataMap.putString(KEY_HIGH_TEMP, cursor.getString(cursor
-                                .getColumnIndex(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP)));
+            }
 
-                        dataMap.putString(KEY_LOW_TEMP, cursor.getString(cursor.
-                                getColumnIndex(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP)));
+        } catch (Exception e) {
+            /* Server probably invalid */
+            e.printStackTrace();
+        } finally {
+            Log.d(TAG, "Sync downloaded " + NetworkMetrics.endSync());
+        }
+    }
 
-                        dataMap.putInt(KEY_WEATHER_ID, Integer.parseInt(cursor.getString
-                                (cursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID))));
+    /**
+     * Compacts the archive of past forecasts if it hasn't been compacted for a day. Every sync
+     * archives the days it revised, and a day only becomes old enough to compact once a day, so
+     * there is no point in compacting more often than that.
+     *
+     * @param context Used to access SunshinePreferences and the ContentResolver
+     */
+    private static void compactArchiveIfNeeded(Context context) {
+        long timeSinceLastCompaction = System.currentTimeMillis()
+                - SunshinePreferences.getLastArchiveCompactionTimeInMillis(context);
+        if (timeSinceLastCompaction < DateUtils.DAY_IN_MILLIS) {
+            return;
+        }
 
-                        dataMap.putLong(KEY_TIME, System.currentTimeMillis());
+        Bundle result = context.getContentResolver().call(
+                WeatherContract.ArchiveEntry.CONTENT_URI,
+                WeatherContract.METHOD_COMPACT_ARCHIVE,
+                null,
+                null);
+        Log.d(TAG, "Archive compaction merged "
+                + result.getInt(WeatherContract.EXTRA_ROWS_COMPACTED) + " rows and expired "
+                + result.getInt(WeatherContract.EXTRA_ROWS_EXPIRED));
+        SunshinePreferences.saveLastArchiveCompactionTime(context, System.currentTimeMillis());
+    }
 
-                        PutDataRequest putDataRequest = putDataMapRequest.asPutDataRequest();
-                        Wearable.DataApi.putDataItem(apiClient, putDataRequest);
+    /**
+     * @param context Used to read the forecast
+     * @return true if our ContentProvider holds weather for today or later
+     */
+    private static boolean hasForecastFromToday(Context context) {
+        return ForecastRepository.getFirstDayFrom(context,
+                SunshineDateUtils.getNormalizedUtcDateForToday()) != null;
+    }
 
-                        PendingResult<DataApi.DataItemResult> pendingResult = Wearable.DataApi
-                                .putDataItem(apiClient, putDataRequest);
+    /**
+     * Sends the forecast in our ContentProvider, from today on, to the watch face. Every day has
+     * a data item of its own; only the days that changed since the last sync are put, and the
+     * items of the days that are over are deleted, so the Data Layer has as little as possible
+     * to carry to the watch.
+     *
+     * @param context Used to access the ContentResolver and connect to the Wearable API
+     */
+    private static void sendForecastToWatch(Context context) {
+        GoogleApiClient apiClient=new GoogleApiClient.Builder(context).addApi(Wearable.API).build();
 
-                        pendingResult.setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-                            @Override
-                            public void onResult(final DataApi.DataItemResult Result) {
-                                if(Result.getStatus().isSuccess()) {
-                                    Log.d(TAG, "Data item set: " + Result.getDataItem().getUri());
-                                }
-                            }
-                        });
-                    }
+        ForecastDay[] days = ForecastRepository.getDays(context,
+                SunshineDateUtils.getNormalizedUtcDateForToday(), Long.MAX_VALUE,
+                WatchForecast.MAX_DAYS);
 
-                    else {
-                         Log.e(TAG, result.getErrorMessage());
-                    }
-                }
-                else {
-                    Log.e(TAG, " Cursor crash ");
-                }
+        if (days.length == 0) {
+            /* Nothing to put, but the items of the days that are over must still go */
+            Log.d(TAG, "No forecast from today to send to the watch");
+        }
 
-                /*
-                 * Finally, after we insert data into the ContentProvider, determine whether or not
-                 * we should notify the user that the weather has been refreshed.
-                 */
-                boolean notificationsEnabled = SunshinePreferences.areNotificationsEnabled(context);
+        ConnectionResult result = apiClient.blockingConnect();
 
-                /*
-                 * If the last notification was shown was more than 1 day ago, we want to send
-                 * another notification to the user that the weather has been updated. Remember,
-                 * it's important that you shouldn't spam your users with notifications.
-                 */
-                long timeSinceLastNotification = SunshinePreferences
-                        .getEllapsedTimeSinceLastNotification(context);
+        if(result.isSuccess()) {
+            WatchForecast forecast = new WatchForecast();
+            for (ForecastDay day : days) {
+                forecast.add(day.getDate(), day.getWeatherId(), day.getMaxTemp(),
+                        day.getMinTemp());
+            }
 
-                boolean oneDayPassedSinceLastNotification = false;
+            try {
+                putChangedDays(apiClient, forecast);
+            } finally {
+                apiClient.disconnect();
+            }
+        }
 
-                if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
-                    oneDayPassedSinceLastNotification = true;
-                }
+        else {
+            Log.e(TAG, result.getErrorMessage());
+        }
+    }
 
-                /*
-                 * We only want to show the notification if the user wants them shown and we
-                 * haven't shown a notification in the past day.
-                 */
-                if (notificationsEnabled && oneDayPassedSinceLastNotification) {
-                    NotificationUtils.notifyUserOfNewWeather(context);
+    /**
+     * Puts the days of the forecast that the Data Layer doesn't hold yet, or holds with other
+     * values, and deletes every other weather item. An empty forecast deletes them all. Blocks until the Data
+     * Layer is done.
+     *
+     * @param apiClient A connected client of the Wearable API
+     * @param forecast  The forecast the watch should have
+     */
+    private static void putChangedDays(GoogleApiClient apiClient, WatchForecast forecast) {
+        Uri weatherUri = new Uri.Builder()
+                .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                .path(WatchContract.PATH_WEATHER)
+                .build();
+
+        /* What the previous syncs put, from the Data Layer's copy on this phone */
+        WatchForecast sent = new WatchForecast();
+        WatchForecast day = new WatchForecast();
+        List<Uri> staleItems = new ArrayList<>();
+        DataItemBuffer items = Wearable.DataApi
+                .getDataItems(apiClient, weatherUri, DataApi.FILTER_PREFIX).await();
+        try {
+            for (DataItem item : items) {
+                long date = WatchContract.getDateOfDayPath(item.getUri().getPath());
+                byte[] payload = DataMapItem.fromDataItem(item).getDataMap()
+                        .getByteArray(WatchContract.KEY_FORECAST);
+                if (forecast.indexOf(date) != -1 && WatchPayload.decode(payload, day)
+                        && day.size() == 1 && day.getDate(0) == date) {
+                    sent.putAll(day);
+                } else {
+                    /* A day that is over, or an item from an older version of the app */
+                    staleItems.add(item.getUri());
                 }
+            }
+        } finally {
+            items.release();
+        }
 
-            /* If the code reaches this point, we have successfully performed our sync */
+        long now = System.currentTimeMillis();
+        int daysPut = 0;
+        for (int i = 0; i < forecast.size(); i++) {
+            int sentIndex = sent.indexOf(forecast.getDate(i));
+            if (sentIndex != -1 && forecast.isSameDay(i, sent, sentIndex)) {
+                continue;
+            }
 
+            day.clear();
+            day.setSentAt(now);
+            day.add(forecast.getDate(i), forecast.getWeatherId(i), forecast.getHighTemp(i),
+                    forecast.getLowTemp(i));
+
+            PutDataMapRequest putDataMapRequest =
+                    PutDataMapRequest.create(WatchContract.getDayPath(forecast.getDate(i)));
+            putDataMapRequest.getDataMap()
+                    .putByteArray(WatchContract.KEY_FORECAST, WatchPayload.encode(day));
+            PutDataRequest putDataRequest = putDataMapRequest.asPutDataRequest();
+            DataApi.DataItemResult result =
+                    Wearable.DataApi.putDataItem(apiClient, putDataRequest).await();
+            if (result.getStatus().isSuccess()) {
+                daysPut++;
+            } else {
+                Log.e(TAG, "Could not put " + putDataRequest.getUri());
             }
+        }
 
-        } catch (Exception e) {
-            /* Server probably invalid */
-            e.printStackTrace();
+        for (Uri staleItem : staleItems) {
+            Wearable.DataApi.deleteDataItems(apiClient, staleItem).await();
+        }
+
+        Log.d(TAG, "Put " + daysPut + " of " + forecast.size() + " days for the watch, deleted "
+                + staleItems.size() + " items");
+    }
+
+    /**
+     * Notifies the user that the weather has been refreshed, unless they have disabled
+     * notifications or we have already notified them within the last day.
+     *
+     * @param context Used to access SunshinePreferences and show the notification
+     */
+    private static void notifyUserIfNeeded(Context context) {
+        boolean notificationsEnabled = SunshinePreferences.areNotificationsEnabled(context);
+
+        /*
+         * If the last notification was shown was more than 1 day ago, we want to send
+         * another notification to the user that the weather has been updated. Remember,
+         * it's important that you shouldn't spam your users with notifications.
+         */
+        long timeSinceLastNotification = SunshinePreferences
+                .getEllapsedTimeSinceLastNotification(context);
+
+        boolean oneDayPassedSinceLastNotification = false;
+
+        if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
+            oneDayPassedSinceLastNotification = true;
+        }
+
+        /*
+         * We only want to show the notification if the user wants them shown and we
+         * haven't shown a notification in the past day.
+         */
+        if (notificationsEnabled && oneDayPassedSinceLastNotification) {
+            NotificationUtils.notifyUserOfNewWeather(context);
         }
     }
-}
\ No newline at end of file
+}
@@ -22,6 +22,7 @@ import android.net.Uri;
 import android.support.annotation.NonNull;
 
 import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
 import com.firebase.jobdispatcher.Constraint;
 import com.firebase.jobdispatcher.Driver;
 import com.firebase.jobdispatcher.FirebaseJobDispatcher;
@@ -132,8 +133,14 @@ public class SunshineSyncUtils {
             @Override
             public void run() {
 
-                /* URI for every row of weather data in our weather table*/
-                Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
+                /*
+                 * URI for the first day of weather from today onwards. We only need to know if
+                 * there is one, and a range URI with a limit lets the provider stop right there.
+                 */
+                Uri forecastQueryUri = WeatherContract.WeatherEntry.buildWeatherRangeUri(
+                        SunshineDateUtils.getNormalizedUtcDateForToday(),
+                        Long.MAX_VALUE,
+                        1);
 
                 /*
                  * Since this query is going to be used only as a check to see if we have any
@@ -142,14 +149,12 @@ public class SunshineSyncUtils {
                  * to determine what weather details need to be displayed.
                  */
                 String[] projectionColumns = {WeatherContract.WeatherEntry._ID};
-                String selectionStatement = WeatherContract.WeatherEntry
-                        .getSqlSelectForTodayOnwards();
 
                 /* Here, we perform the query to check to see if we have any weather data */
                 Cursor cursor = context.getContentResolver().query(
                         forecastQueryUri,
                         projectionColumns,
-                        selectionStatement,
+                        null,
                         null,
                         null);
                 /*
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Remembers the validators (ETag and Last-Modified) the weather server sent with the last
+ * forecast we downloaded for each URL, so that the next request for that URL can be made
+ * conditional. If nothing changed, the server answers 304 Not Modified with an empty body and we
+ * can skip parsing and rewriting data we already have.
+ * <p>
+ * Entries are stored as small files in the app's cache directory, one per URL.
+ */
+public final class ForecastResponseCache {
+
+    private static final String TAG = ForecastResponseCache.class.getSimpleName();
+
+    /* Name of the directory, within the app's cache directory, that holds the entries */
+    private static final String CACHE_DIRECTORY_NAME = "forecast_cache";
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private final File mDirectory;
+
+    /**
+     * Creates a cache that stores its entries under the given directory.
+     *
+     * @param directory Directory to store the entries in. It is created when first needed.
+     */
+    public ForecastResponseCache(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * @param context Used to find the app's cache directory
+     * @return The cache used for Sunshine's forecast requests
+     */
+    public static ForecastResponseCache getInstance(Context context) {
+        return new ForecastResponseCache(new File(context.getCacheDir(), CACHE_DIRECTORY_NAME));
+    }
+
+    /**
+     * Makes the request conditional by adding the validators stored for its URL, if we have any.
+     * This must be called before the connection is connected.
+     *
+     * @param urlConnection The connection that is about to be made
+     */
+    public void addValidators(HttpURLConnection urlConnection) {
+        String[] validators = read(urlConnection.getURL());
+        if (validators == null) return;
+
+        if (validators[0].length() > 0) {
+            urlConnection.setRequestProperty(HEADER_IF_NONE_MATCH, validators[0]);
+        }
+        if (validators[1].length() > 0) {
+            urlConnection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, validators[1]);
+        }
+    }
+
+    /**
+     * Stores the validators of a response so the next request for the same URL can be made
+     * conditional. If the response has no validators, any old entry is removed.
+     * <p>
+     * Only store them once the forecast of the response has been parsed and saved: a 304 to the
+     * next request means "you already have this", so storing the validators of a response we
+     * failed to use would keep us from ever downloading it again.
+     *
+     * @param validators The validators of a 200 response, from
+     *                   {@link HttpResponseBuffer#getValidators()}
+     */
+    public void store(Validators validators) {
+        URL url = validators.mUrl;
+        String eTag = validators.mETag;
+        String lastModified = validators.mLastModified;
+
+        if (eTag == null && lastModified == null) {
+            remove(url);
+            return;
+        }
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Unable to create " + mDirectory);
+            return;
+        }
+
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(fileFor(url)));
+            try {
+                out.writeUTF(url.toString());
+                out.writeUTF(eTag == null ? "" : eTag);
+                out.writeUTF(lastModified == null ? "" : lastModified);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to store validators for " + url, e);
+            remove(url);
+        }
+    }
+
+    /**
+     * Forgets the validators stored for a URL, so that the next request for it downloads the
+     * full response.
+     *
+     * @param url The URL whose entry should be removed
+     */
+    public void remove(URL url) {
+        File file = fileFor(url);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Unable to delete " + file);
+        }
+    }
+
+    /**
+     * @param url The URL to look up
+     * @return The ETag and Last-Modified values stored for the URL (either may be empty), or null
+     * if there is no entry for it
+     */
+    private String[] read(URL url) {
+        File file = fileFor(url);
+        if (!file.exists()) return null;
+
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                /* Different URLs may share a file name, so make sure the entry is really ours */
+                if (!url.toString().equals(in.readUTF())) return null;
+                return new String[]{in.readUTF(), in.readUTF()};
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read validators for " + url, e);
+            return null;
+        }
+    }
+
+    private File fileFor(URL url) {
+        return new File(mDirectory, Integer.toHexString(url.toString().hashCode()));
+    }
+
+    /**
+     * The ETag and Last-Modified of a response, either of which may be null, kept until the
+     * response has been used and they can be stored.
+     */
+    public static final class Validators {
+
+        final URL mUrl;
+        final String mETag;
+        final String mLastModified;
+
+        private Validators(URL url, String eTag, String lastModified) {
+            mUrl = url;
+            mETag = eTag;
+            mLastModified = lastModified;
+        }
+
+        /**
+         * @param urlConnection A connection that has received a 200 response
+         * @return The validators of the response
+         */
+        static Validators of(HttpURLConnection urlConnection) {
+            return new Validators(urlConnection.getURL(),
+                    urlConnection.getHeaderField(HEADER_ETAG),
+                    urlConnection.getHeaderField(HEADER_LAST_MODIFIED));
+        }
+    }
+}
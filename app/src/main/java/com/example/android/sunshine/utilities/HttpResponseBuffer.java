@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * Holds the raw bytes of an HTTP response body. Buffers are pooled, so a sync that runs every
+ * few hours reuses the same byte array rather than allocating (and growing) a new one each
+ * time. Obtain a buffer with {@link #obtain(int)} and always hand it back with
+ * {@link #release()} once the body has been consumed.
+ */
+public final class HttpResponseBuffer {
+
+    /* Size used when the server doesn't tell us how long the body is. A 14 day forecast fits. */
+    private static final int DEFAULT_CAPACITY = 16 * 1024;
+
+    /* Buffers larger than this are left for the garbage collector rather than being pooled */
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+
+    /*
+     * The most we size a buffer for up front, whatever the Content-Length says, so a bad header
+     * can't make us allocate a huge array. A longer body still fits; the buffer grows as it reads.
+     */
+    private static final int MAX_EXPECTED_CAPACITY = MAX_POOLED_CAPACITY;
+
+    /* Syncs are serialized, so there is rarely more than one buffer in use at a time */
+    private static final int POOL_SIZE = 2;
+
+    private static final HttpResponseBuffer[] sPool = new HttpResponseBuffer[POOL_SIZE];
+    private static int sPoolCount;
+
+    private byte[] mBytes;
+    private int mLength;
+
+    /* The validators of the response, when it was requested with a ForecastResponseCache */
+    private ForecastResponseCache.Validators mValidators;
+
+    private HttpResponseBuffer(int capacity) {
+        mBytes = new byte[capacity];
+    }
+
+    /**
+     * Returns an empty buffer from the pool, or a new one if the pool is empty.
+     *
+     * @param expectedLength The Content-Length of the response, or -1 if it isn't known. The
+     *                       buffer is sized to hold this many bytes up front, up to 256 KB.
+     * @return An empty buffer
+     */
+    public static HttpResponseBuffer obtain(int expectedLength) {
+        int capacity = expectedLength > 0
+                ? Math.min(expectedLength, MAX_EXPECTED_CAPACITY) : DEFAULT_CAPACITY;
+
+        HttpResponseBuffer buffer = null;
+        synchronized (sPool) {
+            if (sPoolCount > 0) {
+                sPoolCount--;
+                buffer = sPool[sPoolCount];
+                sPool[sPoolCount] = null;
+            }
+        }
+
+        if (buffer == null) {
+            return new HttpResponseBuffer(capacity);
+        }
+
+        buffer.mLength = 0;
+        buffer.mValidators = null;
+        buffer.ensureCapacity(capacity);
+        return buffer;
+    }
+
+    /**
+     * Returns this buffer to the pool. The buffer, and any stream or bytes obtained from it, must
+     * not be used after it has been released.
+     */
+    public void release() {
+        mLength = 0;
+        mValidators = null;
+        if (mBytes.length > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        synchronized (sPool) {
+            if (sPoolCount < POOL_SIZE) {
+                sPool[sPoolCount] = this;
+                sPoolCount++;
+            }
+        }
+    }
+
+    /**
+     * Reads the given stream to its end, appending everything to this buffer. The buffer only
+     * grows when the stream turns out to be longer than the expected length it was obtained with.
+     *
+     * @param in The stream to read. This method does not close it.
+     * @throws IOException Related to stream reading
+     */
+    public void readFrom(InputStream in) throws IOException {
+        while (true) {
+            if (mLength == mBytes.length) {
+                /* A body of exactly the expected length fills the buffer; only grow for more */
+                int nextByte = in.read();
+                if (nextByte == -1) {
+                    return;
+                }
+                ensureCapacity(Math.max(mBytes.length * 2, DEFAULT_CAPACITY));
+                mBytes[mLength++] = (byte) nextByte;
+            }
+            int bytesRead = in.read(mBytes, mLength, mBytes.length - mLength);
+            if (bytesRead == -1) {
+                return;
+            }
+            mLength += bytesRead;
+        }
+    }
+
+    /**
+     * @return The ETag and Last-Modified of the response, to hand to
+     * {@link ForecastResponseCache#store(ForecastResponseCache.Validators)} once the body has been
+     * used, or null if the response wasn't requested with a ForecastResponseCache
+     */
+    public ForecastResponseCache.Validators getValidators() {
+        return mValidators;
+    }
+
+    void setValidators(ForecastResponseCache.Validators validators) {
+        mValidators = validators;
+    }
+
+    /**
+     * @return The number of bytes in the body
+     */
+    public int getLength() {
+        return mLength;
+    }
+
+    /**
+     * Gives direct access to the underlying array. Only the first {@link #getLength()} bytes are
+     * part of the body.
+     *
+     * @return The array backing this buffer
+     */
+    public byte[] getBytes() {
+        return mBytes;
+    }
+
+    /**
+     * @return A stream over the body that reads directly from this buffer without copying it
+     */
+    public InputStream asInputStream() {
+        return new ByteArrayInputStream(mBytes, 0, mLength);
+    }
+
+    /**
+     * Decodes the body into a String.
+     *
+     * @param charsetName The name of the charset the body is encoded with
+     * @return The body as a String
+     * @throws UnsupportedEncodingException If the charset isn't supported
+     */
+    public String toString(String charsetName) throws UnsupportedEncodingException {
+        return new String(mBytes, 0, mLength, charsetName);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (mBytes.length < capacity) {
+            mBytes = Arrays.copyOf(mBytes, capacity);
+        }
+    }
+}
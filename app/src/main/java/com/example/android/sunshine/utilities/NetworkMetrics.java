@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+/**
+ * Keeps count of how much data each sync downloads. For every response NetworkUtils reads, we
+ * record the number of body bytes that came over the wire (possibly compressed) and the number
+ * of bytes they decoded to. Comparing the two tells us how much compression is saving us, and
+ * the wire count is a good proxy for how long the radio has to stay on.
+ * <p>
+ * A sync calls {@link #beginSync()} before its first request and {@link #endSync()} after its
+ * last one. The totals of the most recent completed sync are available from
+ * {@link #getLastSync()}.
+ */
+public final class NetworkMetrics {
+
+    /**
+     * The totals for one sync.
+     */
+    public static final class Snapshot {
+
+        /* Number of HTTP responses received, including 304 Not Modified responses */
+        public final int responseCount;
+        /* Number of body bytes received over the network, before decompression */
+        public final long wireBytes;
+        /* Number of body bytes after decompression */
+        public final long decodedBytes;
+
+        Snapshot(int responseCount, long wireBytes, long decodedBytes) {
+            this.responseCount = responseCount;
+            this.wireBytes = wireBytes;
+            this.decodedBytes = decodedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return responseCount + " responses, " + wireBytes + " bytes on the wire, "
+                    + decodedBytes + " bytes decoded";
+        }
+    }
+
+    private static final Snapshot EMPTY = new Snapshot(0, 0, 0);
+
+    private static final Object sLock = new Object();
+
+    private static int sResponseCount;
+    private static long sWireBytes;
+    private static long sDecodedBytes;
+
+    private static Snapshot sLastSync = EMPTY;
+
+    private NetworkMetrics() {
+    }
+
+    /**
+     * Resets the counters of the current sync.
+     */
+    public static void beginSync() {
+        synchronized (sLock) {
+            sResponseCount = 0;
+            sWireBytes = 0;
+            sDecodedBytes = 0;
+        }
+    }
+
+    /**
+     * Saves the counters of the current sync so they can be read with {@link #getLastSync()}.
+     *
+     * @return The totals of the sync that just ended
+     */
+    public static Snapshot endSync() {
+        synchronized (sLock) {
+            sLastSync = new Snapshot(sResponseCount, sWireBytes, sDecodedBytes);
+            return sLastSync;
+        }
+    }
+
+    /**
+     * @return The totals of the most recent sync that has ended
+     */
+    public static Snapshot getLastSync() {
+        synchronized (sLock) {
+            return sLastSync;
+        }
+    }
+
+    /**
+     * @return The totals of the sync in progress so far
+     */
+    public static Snapshot getCurrentSync() {
+        synchronized (sLock) {
+            return new Snapshot(sResponseCount, sWireBytes, sDecodedBytes);
+        }
+    }
+
+    /**
+     * Adds one response to the counters of the current sync.
+     *
+     * @param wireBytes    Number of body bytes received over the network
+     * @param decodedBytes Number of body bytes after decompression
+     */
+    static void recordResponse(long wireBytes, long decodedBytes) {
+        synchronized (sLock) {
+            sResponseCount++;
+            sWireBytes += wireBytes;
+            sDecodedBytes += decodedBytes;
+        }
+    }
+}
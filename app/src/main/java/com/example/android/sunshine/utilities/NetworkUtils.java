@@ -21,12 +21,14 @@ import android.util.Log;
 
 import com.example.android.sunshine.data.SunshinePreferences;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * These utilities will be used to communicate with the weather servers.
@@ -83,6 +85,22 @@ public final class NetworkUtils {
     /* The days parameter allows us to designate how many days of weather data we want */
     private static final String DAYS_PARAM = "cnt";
 
+    /* The charset the weather server encodes its responses with */
+    private static final String RESPONSE_CHARSET = "UTF-8";
+
+    /*
+     * The compressed encodings we ask the server for. HttpURLConnection would ask for gzip on
+     * its own, but then it decompresses the body behind our back and hides how many bytes were
+     * actually transferred. By asking ourselves, we get the raw stream and decompress it as we
+     * read it, counting the bytes on both sides of the decompression.
+     */
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+    private static final String ENCODING_IDENTITY = "identity";
+
     /**
      * Retrieves the proper URL to query for the weather data. The reason for both this method as
      * well as {@link #buildUrlWithLocationQuery(String)} is two fold.
@@ -102,10 +120,32 @@ public final class NetworkUtils {
             double[] preferredCoordinates = SunshinePreferences.getLocationCoordinates(context);
             double latitude = preferredCoordinates[0];
             double longitude = preferredCoordinates[1];
-            return buildUrlWithLatitudeLongitude(latitude, longitude);
+            return buildUrlWithLatitudeLongitude(FORECAST_BASE_URL, latitude, longitude);
         } else {
             String locationQuery = SunshinePreferences.getPreferredWeatherLocation(context);
-            return buildUrlWithLocationQuery(locationQuery);
+            return buildUrlWithLocationQuery(FORECAST_BASE_URL, locationQuery);
+        }
+    }
+
+    /**
+     * Builds the URL to query for the weather of one of the other locations we keep a forecast
+     * for, rather than the preferred location.
+     *
+     * @param forecastBaseUrl The weather server to ask, or null for the usual one
+     * @param locationQuery   The location as the user entered it
+     * @param coordinates     The latitude and longitude of the location, or null if we don't
+     *                        know them yet
+     * @return URL to query weather service
+     */
+    public static URL getUrlForLocation(String forecastBaseUrl, String locationQuery,
+                                        double[] coordinates) {
+        if (forecastBaseUrl == null) {
+            forecastBaseUrl = FORECAST_BASE_URL;
+        }
+        if (coordinates != null) {
+            return buildUrlWithLatitudeLongitude(forecastBaseUrl, coordinates[0], coordinates[1]);
+        } else {
+            return buildUrlWithLocationQuery(forecastBaseUrl, locationQuery);
         }
     }
 
@@ -113,12 +153,14 @@ public final class NetworkUtils {
      * Builds the URL used to talk to the weather server using latitude and longitude of a
      * location.
      *
-     * @param latitude  The latitude of the location
-     * @param longitude The longitude of the location
+     * @param forecastBaseUrl The weather server to ask
+     * @param latitude        The latitude of the location
+     * @param longitude       The longitude of the location
      * @return The Url to use to query the weather server.
      */
-    private static URL buildUrlWithLatitudeLongitude(Double latitude, Double longitude) {
-        Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
+    private static URL buildUrlWithLatitudeLongitude(String forecastBaseUrl, Double latitude,
+                                                     Double longitude) {
+        Uri weatherQueryUri = Uri.parse(forecastBaseUrl).buildUpon()
                 .appendQueryParameter(LAT_PARAM, String.valueOf(latitude))
                 .appendQueryParameter(LON_PARAM, String.valueOf(longitude))
                 .appendQueryParameter(FORMAT_PARAM, format)
@@ -140,11 +182,12 @@ public final class NetworkUtils {
      * Builds the URL used to talk to the weather server using a location. This location is based
      * on the query capabilities of the weather provider that we are using.
      *
-     * @param locationQuery The location that will be queried for.
+     * @param forecastBaseUrl The weather server to ask
+     * @param locationQuery   The location that will be queried for.
      * @return The URL to use to query the weather server.
      */
-    private static URL buildUrlWithLocationQuery(String locationQuery) {
-        Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
+    private static URL buildUrlWithLocationQuery(String forecastBaseUrl, String locationQuery) {
+        Uri weatherQueryUri = Uri.parse(forecastBaseUrl).buildUpon()
                 .appendQueryParameter(QUERY_PARAM, locationQuery)
                 .appendQueryParameter(FORMAT_PARAM, format)
                 .appendQueryParameter(UNITS_PARAM, units)
@@ -169,22 +212,157 @@ public final class NetworkUtils {
      * @throws IOException Related to network and stream reading
      */
     public static String getResponseFromHttpUrl(URL url) throws IOException {
+        HttpResponseBuffer responseBuffer = getResponseBufferFromHttpUrl(url);
+        try {
+            String response = null;
+            if (responseBuffer.getLength() > 0) {
+                response = responseBuffer.toString(RESPONSE_CHARSET);
+            }
+            return response;
+        } finally {
+            responseBuffer.release();
+        }
+    }
+
+    /**
+     * This method reads the entire body of the HTTP response into a pooled byte buffer. The
+     * buffer is sized from the Content-Length header when the server sends one, and the bytes
+     * are never decoded into a String, so the body can be handed straight to the forecast parser
+     * with {@link HttpResponseBuffer#asInputStream()}. The connection is closed before this method
+     * returns, so the radio can go back to sleep while the response is being parsed.
+     * <p>
+     * The caller owns the returned buffer and must call {@link HttpResponseBuffer#release()} on
+     * it once it is done with the body.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @return A buffer holding the body of the HTTP response, empty if there was no body
+     * @throws IOException Related to network and stream reading
+     */
+    public static HttpResponseBuffer getResponseBufferFromHttpUrl(URL url) throws IOException {
+        return getResponseBufferFromHttpUrl(url, null);
+    }
+
+    /**
+     * Does the same as {@link #getResponseBufferFromHttpUrl(URL)}, but makes the request
+     * conditional using the validators the cache holds for this URL. If the server tells us the
+     * forecast hasn't changed since we last downloaded it (304 Not Modified), no body is read and
+     * null is returned. Otherwise the validators of the new response come with the buffer; they
+     * are not stored, since only the caller knows when the forecast has been parsed and saved.
+     *
+     * @param url           The URL to fetch the HTTP response from.
+     * @param responseCache The cache holding the validators of earlier responses, may be null
+     * @return A buffer holding the body of the HTTP response, or null if the response was
+     * 304 Not Modified
+     * @throws IOException Related to network and stream reading
+     */
+    public static HttpResponseBuffer getResponseBufferFromHttpUrl(
+            URL url, ForecastResponseCache responseCache) throws IOException {
         HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
         try {
-            InputStream in = urlConnection.getInputStream();
+            urlConnection.setRequestProperty(HEADER_ACCEPT_ENCODING, ACCEPTED_ENCODINGS);
+            if (responseCache != null) {
+                responseCache.addValidators(urlConnection);
+                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    NetworkMetrics.recordResponse(0, 0);
+                    return null;
+                }
+            }
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+            CountingInputStream wireStream =
+                    new CountingInputStream(urlConnection.getInputStream());
+            InputStream in = wireStream;
+            HttpResponseBuffer responseBuffer = null;
+            try {
+                in = decodeResponseStream(urlConnection, wireStream);
 
-            boolean hasInput = scanner.hasNext();
-            String response = null;
-            if (hasInput) {
-                response = scanner.next();
+                /*
+                 * Content-Length is the size of the compressed body, which says little about how
+                 * big it will be once decompressed, so only use it when there is no compression.
+                 */
+                int expectedLength = in == wireStream ? urlConnection.getContentLength() : -1;
+                responseBuffer = HttpResponseBuffer.obtain(expectedLength);
+                responseBuffer.readFrom(in);
+
+                NetworkMetrics.recordResponse(wireStream.getCount(), responseBuffer.getLength());
+                if (responseCache != null) {
+                    responseBuffer.setValidators(
+                            ForecastResponseCache.Validators.of(urlConnection));
+                }
+            } catch (IOException e) {
+                if (responseBuffer != null) {
+                    responseBuffer.release();
+                }
+                throw e;
+            } finally {
+                in.close();
             }
-            scanner.close();
-            return response;
+            return responseBuffer;
         } finally {
             urlConnection.disconnect();
         }
     }
+
+    /**
+     * Wraps the raw response stream so that reading from it returns the decompressed body.
+     *
+     * @param urlConnection The connection the response was received on
+     * @param wireStream    The raw body of the response
+     * @return A stream over the decompressed body, or wireStream itself if it isn't compressed
+     * @throws IOException If the body uses an encoding we didn't ask for, or its header is corrupt
+     */
+    private static InputStream decodeResponseStream(HttpURLConnection urlConnection,
+                                                    InputStream wireStream) throws IOException {
+        String contentEncoding = urlConnection.getContentEncoding();
+        if (contentEncoding == null || ENCODING_IDENTITY.equalsIgnoreCase(contentEncoding)) {
+            return wireStream;
+        } else if (ENCODING_GZIP.equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(wireStream);
+        } else if (ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            /* HTTP's "deflate" is the zlib format, which is what InflaterInputStream expects */
+            return new InflaterInputStream(wireStream);
+        } else {
+            throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+        }
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int bytesRead = super.read(buffer, offset, count);
+            if (bytesRead != -1) {
+                mCount += bytesRead;
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long bytesSkipped = super.skip(count);
+            mCount += bytesSkipped;
+            return bytesSkipped;
+        }
+    }
 }
\ No newline at end of file
@@ -17,7 +17,10 @@ package com.example.android.sunshine.utilities;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.util.JsonReader;
+import android.util.JsonToken;
 
+import com.example.android.sunshine.data.ForecastBatch;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 
@@ -25,6 +28,9 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 
 /**
@@ -60,6 +66,22 @@ public final class OpenWeatherJsonUtils {
 
     private static final String OWM_MESSAGE_CODE = "cod";
 
+    /* The charset the forecast server encodes its responses with */
+    private static final String OWM_CHARSET = "UTF-8";
+
+    /*
+     * Bits used by the streaming parser to remember which of the required fields of a day's
+     * forecast it has seen. A day is only valid once every one of these bits has been set.
+     */
+    private static final int DAY_HAS_PRESSURE = 1;
+    private static final int DAY_HAS_HUMIDITY = 1 << 1;
+    private static final int DAY_HAS_WIND_SPEED = 1 << 2;
+    private static final int DAY_HAS_WIND_DIRECTION = 1 << 3;
+    private static final int DAY_HAS_MAX = 1 << 4;
+    private static final int DAY_HAS_MIN = 1 << 5;
+    private static final int DAY_HAS_WEATHER_ID = 1 << 6;
+    private static final int DAY_HAS_ALL_FIELDS = (1 << 7) - 1;
+
     /**
      * This method parses JSON from a web response and returns an array of Strings
      * describing the weather over various days from the forecast.
@@ -77,6 +99,31 @@ public final class OpenWeatherJsonUtils {
     public static ContentValues[] getWeatherContentValuesFromJson(Context context, String forecastJsonStr)
             throws JSONException {
 
+        double[] cityCoord = new double[2];
+        ContentValues[] weatherContentValues =
+                getWeatherContentValuesFromJson(forecastJsonStr, cityCoord);
+        if (weatherContentValues != null) {
+            SunshinePreferences.setLocationDetails(context, cityCoord[0], cityCoord[1]);
+        }
+        return weatherContentValues;
+    }
+
+    /**
+     * Does the same as {@link #getWeatherContentValuesFromJson(Context, String)}, but hands the
+     * city's coordinates back to the caller instead of saving them, so the JSONObject parser can
+     * be compared with the streaming one without a Context.
+     *
+     * @param forecastJsonStr JSON response from server
+     * @param cityCoord       Array of at least two elements that the latitude and longitude of
+     *                        the city are written to
+     *
+     * @return The values of every day, or null if the server replied with an error code
+     *
+     * @throws JSONException If JSON data cannot be properly parsed
+     */
+    public static ContentValues[] getWeatherContentValuesFromJson(String forecastJsonStr,
+            double[] cityCoord) throws JSONException {
+
         JSONObject forecastJson = new JSONObject(forecastJsonStr);
 
         /* Is there an error? */
@@ -99,11 +146,9 @@ public final class OpenWeatherJsonUtils {
 
         JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
 
-        JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-        double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-        double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-        SunshinePreferences.setLocationDetails(context, cityLatitude, cityLongitude);
+        JSONObject cityCoordJson = cityJson.getJSONObject(OWM_COORD);
+        cityCoord[0] = cityCoordJson.getDouble(OWM_LATITUDE);
+        cityCoord[1] = cityCoordJson.getDouble(OWM_LONGITUDE);
 
         ContentValues[] weatherContentValues = new ContentValues[jsonWeatherArray.length()];
 
@@ -181,4 +226,301 @@ public final class OpenWeatherJsonUtils {
 
         return weatherContentValues;
     }
+
+    /**
+     * Streaming counterpart of {@link #getWeatherContentValuesFromJson(Context, String)}. This
+     * simply parses the stream into a {@link ForecastBatch} and converts it, for callers that
+     * still want ContentValues. See {@link #getForecastFromJson(Context, InputStream,
+     * ForecastBatch)}.
+     *
+     * @param context            Used to save the location details to SharedPreferences
+     * @param forecastJsonStream Stream containing the JSON response from the server. This method
+     *                           does not close the stream.
+     *
+     * @return Array of ContentValues holding one day of weather each, null if the server replied
+     * with an error code
+     *
+     * @throws IOException   If the stream cannot be read or does not contain valid JSON
+     * @throws JSONException If a field we need is missing from the JSON
+     */
+    public static ContentValues[] getWeatherContentValuesFromJson(Context context,
+            InputStream forecastJsonStream) throws IOException, JSONException {
+
+        ForecastBatch forecast = new ForecastBatch();
+        if (!getForecastFromJson(context, forecastJsonStream, forecast)) {
+            return null;
+        }
+        return forecast.toContentValuesArray();
+    }
+
+    /**
+     * Parses the forecast straight out of the response stream. Rather than reading the whole
+     * response into a String and building a JSONObject tree out of it, this method pulls one
+     * token at a time from the response and copies each day's forecast into the given batch as
+     * soon as that day has been read. Nothing is boxed on the way, and a batch that is reused
+     * from one sync to the next doesn't allocate at all once it is big enough.
+     * <p>
+     * The same rules apply as for the String based parser: an error "cod" makes this method
+     * return false, the city's coordinates are saved to SunshinePreferences and the days are
+     * assumed to be in order, starting today.
+     *
+     * @param context            Used to save the location details to SharedPreferences
+     * @param forecastJsonStream Stream containing the JSON response from the server. This method
+     *                           does not close the stream.
+     * @param forecast           Batch the days are appended to. Callers will usually want to
+     *                           clear it first. If an error code was returned, the days that
+     *                           were read are left in the batch.
+     *
+     * @return true if the forecast was read, false if the server replied with an error code
+     *
+     * @throws IOException   If the stream cannot be read or does not contain valid JSON
+     * @throws JSONException If a field we need is missing from the JSON
+     */
+    public static boolean getForecastFromJson(Context context, InputStream forecastJsonStream,
+            ForecastBatch forecast) throws IOException, JSONException {
+
+        double[] cityCoord = new double[2];
+        if (!getForecastFromJson(forecastJsonStream, forecast, cityCoord)) {
+            return false;
+        }
+
+        SunshinePreferences.setLocationDetails(context, cityCoord[0], cityCoord[1]);
+
+        return true;
+    }
+
+    /**
+     * Does the same as {@link #getForecastFromJson(Context, InputStream, ForecastBatch)}, but
+     * hands the city's coordinates back to the caller instead of saving them as the preferred
+     * location's. This is what we use for the other locations we keep a forecast for.
+     *
+     * @param forecastJsonStream Stream containing the JSON response from the server. This method
+     *                           does not close the stream.
+     * @param forecast           Batch the days are appended to
+     * @param cityCoord          Array of at least two elements that the latitude and longitude
+     *                           of the city are written to
+     *
+     * @return true if the forecast was read, false if the server replied with an error code
+     *
+     * @throws IOException   If the stream cannot be read or does not contain valid JSON
+     * @throws JSONException If a field we need is missing from the JSON
+     */
+    public static boolean getForecastFromJson(InputStream forecastJsonStream,
+            ForecastBatch forecast, double[] cityCoord) throws IOException, JSONException {
+
+        JsonReader reader = new JsonReader(new InputStreamReader(forecastJsonStream, OWM_CHARSET));
+
+        long normalizedUtcStartDay = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+        boolean hasList = false;
+        double[] readCityCoord = null;
+        int errorCode = HttpURLConnection.HTTP_OK;
+
+        /*
+         * OWM does not promise any particular order for the top level fields, so "cod" may well
+         * show up after "list". We hold on to what we've read and only act on it once the whole
+         * document has been consumed.
+         */
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_MESSAGE_CODE.equals(name)) {
+                errorCode = reader.nextInt();
+            } else if (OWM_CITY.equals(name)) {
+                readCityCoord = readCityCoord(reader);
+            } else if (OWM_LIST.equals(name)) {
+                readWeatherList(reader, normalizedUtcStartDay, forecast);
+                hasList = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        /* Is there an error? */
+        switch (errorCode) {
+            case HttpURLConnection.HTTP_OK:
+                break;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                /* Location invalid */
+                return false;
+            default:
+                /* Server probably down */
+                return false;
+        }
+
+        if (!hasList) {
+            throw new JSONException("No value for " + OWM_LIST);
+        }
+        if (readCityCoord == null) {
+            throw new JSONException("No value for " + OWM_CITY);
+        }
+
+        cityCoord[0] = readCityCoord[0];
+        cityCoord[1] = readCityCoord[1];
+
+        return true;
+    }
+
+    /**
+     * Reads the "city" object and returns its coordinates, skipping everything else.
+     *
+     * @param reader JsonReader positioned at the start of the "city" object
+     *
+     * @return An array holding the latitude and the longitude of the city
+     */
+    private static double[] readCityCoord(JsonReader reader) throws IOException, JSONException {
+        double[] cityCoord = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (OWM_COORD.equals(reader.nextName())) {
+                cityCoord = new double[2];
+                int coordFields = 0;
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (OWM_LATITUDE.equals(name)) {
+                        cityCoord[0] = reader.nextDouble();
+                        coordFields |= 1;
+                    } else if (OWM_LONGITUDE.equals(name)) {
+                        cityCoord[1] = reader.nextDouble();
+                        coordFields |= 2;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+                if (coordFields != 3) {
+                    throw new JSONException("No value for " + OWM_LATITUDE + "/" + OWM_LONGITUDE);
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (cityCoord == null) {
+            throw new JSONException("No value for " + OWM_COORD);
+        }
+        return cityCoord;
+    }
+
+    /**
+     * Reads the "list" array, adding each day's forecast to the batch as soon as it has been
+     * read.
+     *
+     * @param reader                JsonReader positioned at the start of the "list" array
+     * @param normalizedUtcStartDay Normalized UTC date of the first day in the list
+     * @param forecast              Batch the days are appended to
+     */
+    private static void readWeatherList(JsonReader reader, long normalizedUtcStartDay,
+            ForecastBatch forecast) throws IOException, JSONException {
+
+        int dayIndex = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            /*
+             * We ignore all the datetime values embedded in the JSON and assume that
+             * the values are returned in-order by day (which is not guaranteed to be correct).
+             */
+            long dateTimeMillis = normalizedUtcStartDay
+                    + SunshineDateUtils.DAY_IN_MILLIS * dayIndex++;
+
+            readDayForecast(reader, dateTimeMillis, forecast);
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Reads a single day's forecast object from the "list" array.
+     *
+     * @param reader         JsonReader positioned at the start of a day's forecast object
+     * @param dateTimeMillis Normalized UTC date this forecast is for
+     * @param forecast       Batch the day is appended to
+     */
+    private static void readDayForecast(JsonReader reader, long dateTimeMillis,
+            ForecastBatch forecast) throws IOException, JSONException {
+
+        double pressure = 0;
+        int humidity = 0;
+        double windSpeed = 0;
+        double windDirection = 0;
+
+        double high = 0;
+        double low = 0;
+
+        int weatherId = 0;
+
+        int dayFields = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_PRESSURE.equals(name)) {
+                pressure = reader.nextDouble();
+                dayFields |= DAY_HAS_PRESSURE;
+            } else if (OWM_HUMIDITY.equals(name)) {
+                /* Like JSONObject#getInt, truncate rather than reject fractional values */
+                humidity = (int) reader.nextDouble();
+                dayFields |= DAY_HAS_HUMIDITY;
+            } else if (OWM_WINDSPEED.equals(name)) {
+                windSpeed = reader.nextDouble();
+                dayFields |= DAY_HAS_WIND_SPEED;
+            } else if (OWM_WIND_DIRECTION.equals(name)) {
+                windDirection = reader.nextDouble();
+                dayFields |= DAY_HAS_WIND_DIRECTION;
+            } else if (OWM_TEMPERATURE.equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String temperatureName = reader.nextName();
+                    if (OWM_MAX.equals(temperatureName)) {
+                        high = reader.nextDouble();
+                        dayFields |= DAY_HAS_MAX;
+                    } else if (OWM_MIN.equals(temperatureName)) {
+                        low = reader.nextDouble();
+                        dayFields |= DAY_HAS_MIN;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (OWM_WEATHER.equals(name)) {
+                /*
+                 * The "weather" array is 1 element long. Like the String based parser, we only
+                 * look at that first element.
+                 */
+                reader.beginArray();
+                if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (OWM_WEATHER_ID.equals(reader.nextName())) {
+                            weatherId = (int) reader.nextDouble();
+                            dayFields |= DAY_HAS_WEATHER_ID;
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (dayFields != DAY_HAS_ALL_FIELDS) {
+            throw new JSONException("Incomplete forecast for day " + dateTimeMillis);
+        }
+
+        forecast.add(dateTimeMillis, weatherId, low, high, humidity, pressure, windSpeed,
+                windDirection);
+    }
 }
\ No newline at end of file
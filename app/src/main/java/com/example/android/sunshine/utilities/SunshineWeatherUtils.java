@@ -20,6 +20,8 @@ import android.util.Log;
 
 import com.example.android.sunshine.R;
 import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.shared.WeatherConditions;
+import com.example.android.sunshine.shared.WeatherFormat;
 
 /**
  * Contains useful utilities for a weather app, such as conversion between Celsius and Fahrenheit,
@@ -30,17 +32,20 @@ public final class SunshineWeatherUtils {
 
     private static final String LOG_TAG = SunshineWeatherUtils.class.getSimpleName();
 
-    /**
-     * This method will convert a temperature from Celsius to Fahrenheit.
-     *
-     * @param temperatureInCelsius Temperature in degrees Celsius(°C)
-     *
-     * @return Temperature in degrees Fahrenheit (°F)
+    /*
+     * The description of every condition id, indexed by the id minus
+     * WeatherConditions.MIN_CONDITION_ID, and 0 where there is none
      */
-    private static double celsiusToFahrenheit(double temperatureInCelsius) {
-        double temperatureInFahrenheit = (temperatureInCelsius * 1.8) + 32;
-        return temperatureInFahrenheit;
-    }
+    private static final int[] CONDITION_STRING_IDS = buildConditionStringIds();
+
+    /* The art for each of the WeatherConditions.ICON_ constants */
+    private static final int[] SMALL_ART_IDS = iconArt(R.drawable.ic_clear,
+            R.drawable.ic_light_clouds, R.drawable.ic_cloudy, R.drawable.ic_fog,
+            R.drawable.ic_light_rain, R.drawable.ic_rain, R.drawable.ic_snow, R.drawable.ic_storm);
+    private static final int[] LARGE_ART_IDS = iconArt(R.drawable.art_clear,
+            R.drawable.art_light_clouds, R.drawable.art_clouds, R.drawable.art_fog,
+            R.drawable.art_light_rain, R.drawable.art_rain, R.drawable.art_snow,
+            R.drawable.art_storm);
 
     /**
      * Temperature data is stored in Celsius by our app. Depending on the user's preference,
@@ -55,14 +60,10 @@ public final class SunshineWeatherUtils {
      * "21°"
      */
     public static String formatTemperature(Context context, double temperature) {
-        if (!SunshinePreferences.isMetric(context)) {
-            temperature = celsiusToFahrenheit(temperature);
-        }
-
         int temperatureFormatResourceId = R.string.format_temperature;
 
-        /* For presentation, assume the user doesn't care about tenths of a degree. */
-        return String.format(context.getString(temperatureFormatResourceId), temperature);
+        return WeatherFormat.formatTemperature(context.getString(temperatureFormatResourceId),
+                SunshinePreferences.isMetric(context), temperature);
     }
 
     /**
@@ -105,28 +106,7 @@ public final class SunshineWeatherUtils {
             windSpeed = .621371192237334f * windSpeed;
         }
 
-        /*
-         * You know what's fun? Writing really long if/else statements with tons of possible
-         * conditions. Seriously, try it!
-         */
-        String direction = "Unknown";
-        if (degrees >= 337.5 || degrees < 22.5) {
-            direction = "N";
-        } else if (degrees >= 22.5 && degrees < 67.5) {
-            direction = "NE";
-        } else if (degrees >= 67.5 && degrees < 112.5) {
-            direction = "E";
-        } else if (degrees >= 112.5 && degrees < 157.5) {
-            direction = "SE";
-        } else if (degrees >= 157.5 && degrees < 202.5) {
-            direction = "S";
-        } else if (degrees >= 202.5 && degrees < 247.5) {
-            direction = "SW";
-        } else if (degrees >= 247.5 && degrees < 292.5) {
-            direction = "W";
-        } else if (degrees >= 292.5 && degrees < 337.5) {
-            direction = "NW";
-        }
+        String direction = WeatherFormat.getWindDirection(degrees);
 
         return String.format(context.getString(windFormat), windSpeed, direction);
     }
@@ -142,175 +122,24 @@ public final class SunshineWeatherUtils {
      * @return String for the weather condition, null if no relation is found.
      */
     public static String getStringForWeatherCondition(Context context, int weatherId) {
-        int stringId;
-        if (weatherId >= 200 && weatherId <= 232) {
-            stringId = R.string.condition_2xx;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            stringId = R.string.condition_3xx;
-        } else switch (weatherId) {
-            case 500:
-                stringId = R.string.condition_500;
-                break;
-            case 501:
-                stringId = R.string.condition_501;
-                break;
-            case 502:
-                stringId = R.string.condition_502;
-                break;
-            case 503:
-                stringId = R.string.condition_503;
-                break;
-            case 504:
-                stringId = R.string.condition_504;
-                break;
-            case 511:
-                stringId = R.string.condition_511;
-                break;
-            case 520:
-                stringId = R.string.condition_520;
-                break;
-            case 531:
-                stringId = R.string.condition_531;
-                break;
-            case 600:
-                stringId = R.string.condition_600;
-                break;
-            case 601:
-                stringId = R.string.condition_601;
-                break;
-            case 602:
-                stringId = R.string.condition_602;
-                break;
-            case 611:
-                stringId = R.string.condition_611;
-                break;
-            case 612:
-                stringId = R.string.condition_612;
-                break;
-            case 615:
-                stringId = R.string.condition_615;
-                break;
-            case 616:
-                stringId = R.string.condition_616;
-                break;
-            case 620:
-                stringId = R.string.condition_620;
-                break;
-            case 621:
-                stringId = R.string.condition_621;
-                break;
-            case 622:
-                stringId = R.string.condition_622;
-                break;
-            case 701:
-                stringId = R.string.condition_701;
-                break;
-            case 711:
-                stringId = R.string.condition_711;
-                break;
-            case 721:
-                stringId = R.string.condition_721;
-                break;
-            case 731:
-                stringId = R.string.condition_731;
-                break;
-            case 741:
-                stringId = R.string.condition_741;
-                break;
-            case 751:
-                stringId = R.string.condition_751;
-                break;
-            case 761:
-                stringId = R.string.condition_761;
-                break;
-            case 762:
-                stringId = R.string.condition_762;
-                break;
-            case 771:
-                stringId = R.string.condition_771;
-                break;
-            case 781:
-                stringId = R.string.condition_781;
-                break;
-            case 800:
-                stringId = R.string.condition_800;
-                break;
-            case 801:
-                stringId = R.string.condition_801;
-                break;
-            case 802:
-                stringId = R.string.condition_802;
-                break;
-            case 803:
-                stringId = R.string.condition_803;
-                break;
-            case 804:
-                stringId = R.string.condition_804;
-                break;
-            case 900:
-                stringId = R.string.condition_900;
-                break;
-            case 901:
-                stringId = R.string.condition_901;
-                break;
-            case 902:
-                stringId = R.string.condition_902;
-                break;
-            case 903:
-                stringId = R.string.condition_903;
-                break;
-            case 904:
-                stringId = R.string.condition_904;
-                break;
-            case 905:
-                stringId = R.string.condition_905;
-                break;
-            case 906:
-                stringId = R.string.condition_906;
-                break;
-            case 951:
-                stringId = R.string.condition_951;
-                break;
-            case 952:
-                stringId = R.string.condition_952;
-                break;
-            case 953:
-                stringId = R.string.condition_953;
-                break;
-            case 954:
-                stringId = R.string.condition_954;
-                break;
-            case 955:
-                stringId = R.string.condition_955;
-                break;
-            case 956:
-                stringId = R.string.condition_956;
-                break;
-            case 957:
-                stringId = R.string.condition_957;
-                break;
-            case 958:
-                stringId = R.string.condition_958;
-                break;
-            case 959:
-                stringId = R.string.condition_959;
-                break;
-            case 960:
-                stringId = R.string.condition_960;
-                break;
-            case 961:
-                stringId = R.string.condition_961;
-                break;
-            case 962:
-                stringId = R.string.condition_962;
-                break;
-            default:
-                return context.getString(R.string.condition_unknown, weatherId);
+        int stringId = getStringIdForWeatherCondition(weatherId);
+        if (stringId == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
         }
-
         return context.getString(stringId);
     }
 
+    /**
+     * @return The string resource id of the description of the condition, or 0 if there is none
+     */
+    static int getStringIdForWeatherCondition(int weatherId) {
+        int index = weatherId - WeatherConditions.MIN_CONDITION_ID;
+        if (index < 0 || index >= CONDITION_STRING_IDS.length) {
+            return 0;
+        }
+        return CONDITION_STRING_IDS[index];
+    }
+
     /**
      * Helper method to provide the icon resource id according to the weather condition id returned
      * by the OpenWeatherMap call. This method is very similar to
@@ -326,42 +155,12 @@ public final class SunshineWeatherUtils {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getSmallArtResourceIdForWeatherCondition(int weatherId) {
-
-        /*
-         * Based on weather code data for Open Weather Map.
-         */
-        if (weatherId >= 200 && weatherId <= 232) {
+        int icon = WeatherConditions.getArtIcon(weatherId);
+        if (icon == WeatherConditions.ICON_UNKNOWN) {
+            Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
             return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
-        } else if (weatherId >= 900 && weatherId <= 906) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 958 && weatherId <= 962) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 951 && weatherId <= 957) {
-            return R.drawable.ic_clear;
         }
-
-        Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
-        return R.drawable.ic_storm;
+        return SMALL_ART_IDS[icon];
     }
 
     /**
@@ -379,41 +178,102 @@ public final class SunshineWeatherUtils {
      * @return resource ID for the corresponding icon. -1 if no relation is found.
      */
     public static int getLargeArtResourceIdForWeatherCondition(int weatherId) {
-
-        /*
-         * Based on weather code data for Open Weather Map.
-         */
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
-        } else if (weatherId >= 900 && weatherId <= 906) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 958 && weatherId <= 962) {
+        int icon = WeatherConditions.getArtIcon(weatherId);
+        if (icon == WeatherConditions.ICON_UNKNOWN) {
+            Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
             return R.drawable.art_storm;
-        } else if (weatherId >= 951 && weatherId <= 957) {
-            return R.drawable.art_clear;
         }
+        return LARGE_ART_IDS[icon];
+    }
+
+    /**
+     * Spreads the descriptions over every condition id they apply to, so that looking one up is
+     * a single array read. Runs once, when the class is loaded.
+     */
+    private static int[] buildConditionStringIds() {
+        int[][] descriptions = {
+            {200, R.string.condition_2xx},
+            {300, R.string.condition_3xx},
+            {500, R.string.condition_500},
+            {501, R.string.condition_501},
+            {502, R.string.condition_502},
+            {503, R.string.condition_503},
+            {504, R.string.condition_504},
+            {511, R.string.condition_511},
+            {520, R.string.condition_520},
+            {531, R.string.condition_531},
+            {600, R.string.condition_600},
+            {601, R.string.condition_601},
+            {602, R.string.condition_602},
+            {611, R.string.condition_611},
+            {612, R.string.condition_612},
+            {615, R.string.condition_615},
+            {616, R.string.condition_616},
+            {620, R.string.condition_620},
+            {621, R.string.condition_621},
+            {622, R.string.condition_622},
+            {701, R.string.condition_701},
+            {711, R.string.condition_711},
+            {721, R.string.condition_721},
+            {731, R.string.condition_731},
+            {741, R.string.condition_741},
+            {751, R.string.condition_751},
+            {761, R.string.condition_761},
+            {762, R.string.condition_762},
+            {771, R.string.condition_771},
+            {781, R.string.condition_781},
+            {800, R.string.condition_800},
+            {801, R.string.condition_801},
+            {802, R.string.condition_802},
+            {803, R.string.condition_803},
+            {804, R.string.condition_804},
+            {900, R.string.condition_900},
+            {901, R.string.condition_901},
+            {902, R.string.condition_902},
+            {903, R.string.condition_903},
+            {904, R.string.condition_904},
+            {905, R.string.condition_905},
+            {906, R.string.condition_906},
+            {951, R.string.condition_951},
+            {952, R.string.condition_952},
+            {953, R.string.condition_953},
+            {954, R.string.condition_954},
+            {955, R.string.condition_955},
+            {956, R.string.condition_956},
+            {957, R.string.condition_957},
+            {958, R.string.condition_958},
+            {959, R.string.condition_959},
+            {960, R.string.condition_960},
+            {961, R.string.condition_961},
+            {962, R.string.condition_962}
+        };
+
+        int[] stringIds = new int[WeatherConditions.MAX_CONDITION_ID
+                - WeatherConditions.MIN_CONDITION_ID + 1];
+        for (int i = 0; i < stringIds.length; i++) {
+            int descriptionId =
+                    WeatherConditions.getDescriptionId(WeatherConditions.MIN_CONDITION_ID + i);
+            for (int[] description : descriptions) {
+                if (description[0] == descriptionId) {
+                    stringIds[i] = description[1];
+                    break;
+                }
+            }
+        }
+        return stringIds;
+    }
 
-        Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
-        return R.drawable.art_storm;
+    private static int[] iconArt(int clear, int lightClouds, int clouds, int fog, int lightRain,
+                                 int rain, int snow, int storm) {
+        int[] art = new int[WeatherConditions.ICON_COUNT];
+        art[WeatherConditions.ICON_CLEAR] = clear;
+        art[WeatherConditions.ICON_LIGHT_CLOUDS] = lightClouds;
+        art[WeatherConditions.ICON_CLOUDS] = clouds;
+        art[WeatherConditions.ICON_FOG] = fog;
+        art[WeatherConditions.ICON_LIGHT_RAIN] = lightRain;
+        art[WeatherConditions.ICON_RAIN] = rain;
+        art[WeatherConditions.ICON_SNOW] = snow;
+        art[WeatherConditions.ICON_STORM] = storm;
+        return art;
     }
 }
\ No newline at end of file
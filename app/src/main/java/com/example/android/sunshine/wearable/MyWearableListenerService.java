@@ -1,5 +1,6 @@
 package com.example.android.sunshine.wearable;
 
+import com.example.android.sunshine.shared.WatchContract;
 import com.example.android.sunshine.sync.SunshineSyncTask;
 import com.google.android.gms.wearable.DataApi;
 import com.google.android.gms.wearable.MessageEvent;
@@ -9,8 +10,6 @@ public class MyWearableListenerService extends WearableListenerService
         implements DataApi.DataListener {
     private static final String TAG = "Wearable_Listener_Service";
 
-    private static final String KEY_PATH = "/wearable";
-
     @Override
     public void onCreate() {
         super.onCreate();
@@ -27,7 +26,7 @@ public class MyWearableListenerService extends WearableListenerService
         String path = messageEvent.getPath();
 
         // Check to see if the message is to start an activity
-        if (path.equals(KEY_PATH)) {
+        if (path.equals(WatchContract.PATH_WEATHER)) {
             // start the service sending the updated weather data to the wearable
             SunshineSyncTask.syncWeather(getApplicationContext());
         }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Local JVM tests for {@link ForecastBatch}. Besides checking that days go in and come out
+ * unchanged, we measure how many bytes it takes to fill a batch with one sync's worth of weather,
+ * and compare that with building a map of boxed values per day the way ContentValues does.
+ * <p>
+ * Bundle and ContentValues are only stubs on the JVM, so the adapters to and from them are
+ * covered by the instrumented tests instead.
+ */
+public class TestForecastBatch {
+
+    /* The number of days the weather server sends us */
+    private static final int FORECAST_DAYS = 14;
+
+    /* Enough refills for the JIT to have compiled the code we are measuring */
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int MEASURED_ITERATIONS = 10000;
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void testAddAndGet() {
+        ForecastBatch batch = new ForecastBatch();
+        fillForecast(batch, 3);
+
+        assertEquals(FORECAST_DAYS, batch.size());
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            assertEquals(dateOf(i), batch.getDate(i));
+            assertEquals(200 + i, batch.getWeatherId(i));
+            assertEquals(-5.5 + i + 3, batch.getMinTemp(i));
+            assertEquals(10.25 + i + 3, batch.getMaxTemp(i));
+            assertEquals(50.0 + i, batch.getHumidity(i));
+            assertEquals(1013.5 - i, batch.getPressure(i));
+            assertEquals(4.5, batch.getWindSpeed(i));
+            assertEquals(180.0, batch.getDegrees(i));
+        }
+    }
+
+    @Test
+    public void testGrowsPastItsCapacity() {
+        ForecastBatch batch = new ForecastBatch(2);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, batch.add(dateOf(i), i, i, i, i, i, i, i));
+        }
+
+        assertEquals(1000, batch.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(dateOf(i), batch.getDate(i));
+            assertEquals(i, batch.getWeatherId(i));
+            assertEquals((double) i, batch.getDegrees(i));
+        }
+    }
+
+    @Test
+    public void testClearEmptiesTheBatch() {
+        ForecastBatch batch = new ForecastBatch();
+        fillForecast(batch, 0);
+        batch.clear();
+
+        assertEquals(0, batch.size());
+        batch.add(dateOf(7), 800, 1, 2, 3, 4, 5, 6);
+        assertEquals(1, batch.size());
+        assertEquals(dateOf(7), batch.getDate(0));
+        assertEquals(800, batch.getWeatherId(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetPastTheSizeThrows() {
+        ForecastBatch batch = new ForecastBatch();
+        fillForecast(batch, 0);
+        batch.clear();
+
+        /* The arrays still hold the old days, but they are no longer part of the batch */
+        batch.getDate(0);
+    }
+
+    /**
+     * Refilling a batch that is reused from sync to sync must not allocate at all, whereas a
+     * map of boxed values per day allocates for every day. Both numbers are printed so the
+     * difference can be tracked.
+     */
+    @Test
+    public void testRefillingABatchDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean = getAllocationCountingThreadBean();
+        Assume.assumeTrue("This JVM can't count allocated bytes", threadBean != null);
+        long threadId = Thread.currentThread().getId();
+
+        ForecastBatch batch = new ForecastBatch();
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            checksum += refillBatch(batch, i);
+            checksum += fillBoxedForecast(i).length;
+        }
+
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            checksum += refillBatch(batch, i);
+        }
+        long batchBytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+        start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            checksum += fillBoxedForecast(i).length;
+        }
+        long boxedBytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+        System.out.println("Bytes allocated per " + FORECAST_DAYS + " day forecast: ForecastBatch "
+                + batchBytes / MEASURED_ITERATIONS + ", boxed values per day "
+                + boxedBytes / MEASURED_ITERATIONS + " (checksum " + checksum + ")");
+
+        /*
+         * getThreadAllocatedBytes itself may allocate a little, so allow a handful of bytes per
+         * refill rather than demanding exactly zero.
+         */
+        assertTrue("Refilling a batch allocated " + batchBytes + " bytes",
+                batchBytes / MEASURED_ITERATIONS < 8);
+        assertTrue("Boxed values should cost more than a batch", boxedBytes > batchBytes);
+    }
+
+    private static long refillBatch(ForecastBatch batch, int tempOffset) {
+        batch.clear();
+        fillForecast(batch, tempOffset);
+        return batch.getDate(batch.size() - 1);
+    }
+
+    private static void fillForecast(ForecastBatch batch, int tempOffset) {
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            batch.add(dateOf(i), 200 + i, -5.5 + i + tempOffset, 10.25 + i + tempOffset,
+                    50.0 + i, 1013.5 - i, 4.5, 180.0);
+        }
+    }
+
+    /*
+     * The same forecast held the way a ContentValues holds it: a HashMap per day, keyed by
+     * column name, with every value boxed.
+     */
+    private static Map<String, Object>[] fillBoxedForecast(int tempOffset) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object>[] forecast = new Map[FORECAST_DAYS];
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            Map<String, Object> weatherValues = new HashMap<>(8);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateOf(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 200 + i);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                    -5.5 + i + tempOffset);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                    10.25 + i + tempOffset);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 50.0 + i);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1013.5 - i);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 4.5);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 180.0);
+            forecast[i] = weatherValues;
+        }
+        return forecast;
+    }
+
+    private static long dateOf(int day) {
+        /* 1 October 2016, normalized to midnight UTC */
+        return 1475280000000L + day * DAY_IN_MILLIS;
+    }
+
+    private static com.sun.management.ThreadMXBean getAllocationCountingThreadBean() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocationBean =
+                (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        return allocationBean;
+    }
+}
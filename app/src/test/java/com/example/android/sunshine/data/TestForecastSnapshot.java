@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import com.example.android.sunshine.shared.ForecastDay;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Local JVM tests for reading ForecastDays out of a {@link ForecastCache.Snapshot}, which is how
+ * ForecastRepository reads the forecast between syncs. We check the range a read returns, and
+ * measure how long reading a two week forecast takes and how many bytes it allocates: nothing but
+ * the days themselves and the array that holds them.
+ * <p>
+ * Cursor is only a stub on the JVM, so ForecastRepository.readDay is covered by the instrumented
+ * tests instead.
+ */
+public class TestForecastSnapshot {
+
+    /* The number of days the weather server sends us */
+    private static final int FORECAST_DAYS = 14;
+
+    /* Enough reads for the JIT to have compiled the code we are measuring */
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int MEASURED_ITERATIONS = 10000;
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /*
+     * A ForecastDay is an object header, a long, an int and six doubles: 72 bytes with
+     * compressed references and 80 without, rounded up to a multiple of 8.
+     */
+    private static final int MAX_BYTES_PER_DAY = 80;
+
+    @Test
+    public void testSnapshotReadsEveryValue() {
+        ForecastCache.Snapshot snapshot = new ForecastCache.Snapshot(createForecast());
+
+        ForecastDay[] days = snapshot.toForecastDays(dateOf(0), Long.MAX_VALUE, 0);
+
+        assertEquals(FORECAST_DAYS, days.length);
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            assertEquals(dayOf(i), days[i]);
+        }
+    }
+
+    @Test
+    public void testSnapshotReadsTheRange() {
+        ForecastCache.Snapshot snapshot = new ForecastCache.Snapshot(createForecast());
+
+        ForecastDay[] days = snapshot.toForecastDays(dateOf(2), dateOf(5), 0);
+        assertEquals(4, days.length);
+        assertEquals(dateOf(2), days[0].getDate());
+        assertEquals(dateOf(5), days[3].getDate());
+
+        /* A date between two days starts the range at the next one */
+        days = snapshot.toForecastDays(dateOf(2) + 1, dateOf(5), 0);
+        assertEquals(3, days.length);
+        assertEquals(dateOf(3), days[0].getDate());
+
+        days = snapshot.toForecastDays(dateOf(2), Long.MAX_VALUE, 3);
+        assertEquals(3, days.length);
+        assertEquals(dateOf(4), days[2].getDate());
+
+        assertEquals(1, snapshot.toForecastDays(dateOf(7), dateOf(7), 0).length);
+        assertEquals(0, snapshot.toForecastDays(dateOf(5), dateOf(2), 0).length);
+        assertEquals(0, snapshot.toForecastDays(dateOf(FORECAST_DAYS), Long.MAX_VALUE, 0).length);
+    }
+
+    @Test
+    public void testEmptySnapshotReadsNoDays() {
+        ForecastCache.Snapshot snapshot = new ForecastCache.Snapshot(new ForecastBatch());
+
+        assertEquals(0, snapshot.toForecastDays(Long.MIN_VALUE, Long.MAX_VALUE, 0).length);
+    }
+
+    /**
+     * Reading the forecast from a snapshot allocates the days and the array, and nothing else.
+     * The time per read is printed so it can be tracked.
+     */
+    @Test
+    public void testReadingTheForecastOnlyAllocatesTheDays() {
+        com.sun.management.ThreadMXBean threadBean = getAllocationCountingThreadBean();
+        Assume.assumeTrue("This JVM can't count allocated bytes", threadBean != null);
+        long threadId = Thread.currentThread().getId();
+
+        ForecastCache.Snapshot snapshot = new ForecastCache.Snapshot(createForecast());
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            checksum += readForecast(snapshot);
+        }
+
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            checksum += readForecast(snapshot);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long readBytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+        System.out.println("Reading a " + FORECAST_DAYS + " day forecast from a snapshot: "
+                + elapsedNanos / MEASURED_ITERATIONS + " ns and "
+                + readBytes / MEASURED_ITERATIONS + " bytes per read (checksum " + checksum + ")");
+
+        /* The array is a header and one reference per day */
+        long maxBytesPerRead = FORECAST_DAYS * (MAX_BYTES_PER_DAY + 8) + 24;
+        assertTrue("Reading the forecast allocated " + readBytes / MEASURED_ITERATIONS
+                        + " bytes per read",
+                readBytes / MEASURED_ITERATIONS <= maxBytesPerRead);
+    }
+
+    private static long readForecast(ForecastCache.Snapshot snapshot) {
+        ForecastDay[] days = snapshot.toForecastDays(dateOf(0), Long.MAX_VALUE, 0);
+        return days[days.length - 1].getWeatherId();
+    }
+
+    private static ForecastBatch createForecast() {
+        ForecastBatch forecast = new ForecastBatch(FORECAST_DAYS);
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            ForecastDay day = dayOf(i);
+            forecast.add(day.getDate(), day.getWeatherId(), day.getMinTemp(), day.getMaxTemp(),
+                    day.getHumidity(), day.getPressure(), day.getWindSpeed(), day.getDegrees());
+        }
+        return forecast;
+    }
+
+    private static ForecastDay dayOf(int day) {
+        return new ForecastDay(dateOf(day), 200 + day, -5.5 + day, 10.25 + day, 50.0 + day,
+                1013.5 - day, 4.5, 180.0);
+    }
+
+    private static long dateOf(int day) {
+        /* 1 October 2016, normalized to midnight UTC */
+        return 1475280000000L + day * DAY_IN_MILLIS;
+    }
+
+    private static com.sun.management.ThreadMXBean getAllocationCountingThreadBean() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocationBean =
+                (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        return allocationBean;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Local JVM tests for {@link HttpResponseBuffer}: a body of exactly its Content-Length is read
+ * into the array the buffer was sized with, a longer one grows it, and a Content-Length too large
+ * to trust doesn't size the buffer.
+ */
+public class TestHttpResponseBuffer {
+
+    @Test
+    public void testBodyOfTheExpectedLengthIsNotCopied() throws Exception {
+        byte[] body = createBody(5000);
+        HttpResponseBuffer buffer = HttpResponseBuffer.obtain(body.length);
+        byte[] bytes = buffer.getBytes();
+
+        buffer.readFrom(new ByteArrayInputStream(body));
+
+        assertSame(bytes, buffer.getBytes());
+        assertBody(body, buffer);
+        buffer.release();
+    }
+
+    @Test
+    public void testLongerBodyGrowsTheBuffer() throws Exception {
+        byte[] body = createBody(70000);
+        HttpResponseBuffer buffer = HttpResponseBuffer.obtain(1000);
+        byte[] bytes = buffer.getBytes();
+        if (bytes.length >= body.length) {
+            /* The pool handed us a buffer that already fits; make sure ours doesn't */
+            body = createBody(bytes.length + 1);
+        }
+
+        buffer.readFrom(new ByteArrayInputStream(body));
+
+        assertNotSame(bytes, buffer.getBytes());
+        assertBody(body, buffer);
+        buffer.release();
+    }
+
+    @Test
+    public void testContentLengthIsClamped() {
+        HttpResponseBuffer buffer = HttpResponseBuffer.obtain(Integer.MAX_VALUE);
+        assertTrue(buffer.getBytes().length <= 256 * 1024);
+        buffer.release();
+    }
+
+    private static byte[] createBody(int length) {
+        byte[] body = new byte[length];
+        for (int i = 0; i < length; i++) {
+            body[i] = (byte) i;
+        }
+        return body;
+    }
+
+    private static void assertBody(byte[] body, HttpResponseBuffer buffer) {
+        assertEquals(body.length, buffer.getLength());
+        assertTrue(Arrays.equals(body, Arrays.copyOf(buffer.getBytes(), buffer.getLength())));
+    }
+}
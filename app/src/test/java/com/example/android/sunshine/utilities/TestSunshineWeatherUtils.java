@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that every condition WeatherConditions has a description for gets its string in the app,
+ * and that the art of a few conditions is what it always was.
+ */
+public class TestSunshineWeatherUtils {
+
+    @Test
+    public void testEveryDescribedConditionHasAString() {
+        for (int id = WeatherConditions.MIN_CONDITION_ID;
+             id <= WeatherConditions.MAX_CONDITION_ID; id++) {
+            int stringId = SunshineWeatherUtils.getStringIdForWeatherCondition(id);
+            if (WeatherConditions.getDescriptionId(id) == WeatherConditions.DESCRIPTION_UNKNOWN) {
+                assertEquals("String for " + id, 0, stringId);
+            } else {
+                assertTrue("No string for " + id, stringId != 0);
+            }
+        }
+    }
+
+    @Test
+    public void testStrings() {
+        assertEquals(R.string.condition_2xx,
+                SunshineWeatherUtils.getStringIdForWeatherCondition(211));
+        assertEquals(R.string.condition_3xx,
+                SunshineWeatherUtils.getStringIdForWeatherCondition(300));
+        assertEquals(R.string.condition_762,
+                SunshineWeatherUtils.getStringIdForWeatherCondition(762));
+        assertEquals(R.string.condition_962,
+                SunshineWeatherUtils.getStringIdForWeatherCondition(962));
+        assertEquals(0, SunshineWeatherUtils.getStringIdForWeatherCondition(199));
+        assertEquals(0, SunshineWeatherUtils.getStringIdForWeatherCondition(963));
+    }
+
+    @Test
+    public void testArt() {
+        assertEquals(R.drawable.ic_storm,
+                SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(201));
+        assertEquals(R.drawable.art_rain,
+                SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(521));
+        assertEquals(R.drawable.ic_cloudy,
+                SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(803));
+        assertEquals(R.drawable.art_clear,
+                SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(955));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the text of the watch face, as WatchFaceRenderer.setTime does once a minute: the hours
+ * and minutes and the date. The temperatures are formatted once, when a forecast arrives, and
+ * the drawing itself needs a Canvas, so neither is measured here; the allocations of a frame are
+ * counted on a device by the wear module's TestWatchFaceRenderer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WatchFaceTextBenchmark {
+
+    private Calendar mCalendar;
+    private Date mDate;
+    private SimpleDateFormat mDateFormat;
+
+    @Setup
+    public void setUp() {
+        mCalendar = Calendar.getInstance();
+        mDate = new Date();
+        mDateFormat = WatchFaceText.createDateFormat(mCalendar);
+    }
+
+    @Benchmark
+    public void frame(Blackhole blackhole) {
+        long now = System.currentTimeMillis();
+        mCalendar.setTimeInMillis(now);
+        mDate.setTime(now);
+
+        blackhole.consume(WatchFaceText.formatHour(mCalendar.get(Calendar.HOUR_OF_DAY), false));
+        blackhole.consume(WatchFaceText.formatMinute(mCalendar.get(Calendar.MINUTE)));
+        blackhole.consume(WatchFaceText.formatDate(mDateFormat, mDate));
+    }
+
+    @Benchmark
+    public String date() {
+        return WatchFaceText.formatDate(mDateFormat, mDate);
+    }
+
+    @Benchmark
+    public void time(Blackhole blackhole) {
+        blackhole.consume(WatchFaceText.formatHour(mCalendar.get(Calendar.HOUR_OF_DAY), true));
+        blackhole.consume(WatchFaceText.formatMinute(mCalendar.get(Calendar.MINUTE)));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes the forecast the phone sends to the watch with {@link WatchPayload}, and
+ * turns the same days into and back out of the Strings the DataMap used to carry. The old watch
+ * face parsed its Strings on every frame; the payload is decoded once per sync.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WatchPayloadBenchmark {
+
+    /* Today only, as the phone used to send, and the whole forecast */
+    @Param({"1", "14"})
+    public int days;
+
+    private final WatchForecast mForecast = new WatchForecast();
+    private final WatchForecast mDecoded = new WatchForecast();
+    private byte[] mPayload;
+    private double[] mHighTemps;
+    private double[] mLowTemps;
+
+    @Setup
+    public void setUp() {
+        /* A fixed seed, so that every run sends the same days */
+        Random random = new Random(days);
+        long today = NormalizedDates.getNormalizedUtcDateForToday();
+        mHighTemps = new double[days];
+        mLowTemps = new double[days];
+        for (int i = 0; i < days; i++) {
+            mLowTemps[i] = random.nextDouble() * 30 - 10;
+            mHighTemps[i] = mLowTemps[i] + random.nextDouble() * 15;
+            mForecast.add(today + i * NormalizedDates.DAY_IN_MILLIS, 800 + random.nextInt(5),
+                    mHighTemps[i], mLowTemps[i]);
+        }
+        mForecast.setSentAt(System.currentTimeMillis());
+        mPayload = WatchPayload.encode(mForecast);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return WatchPayload.encode(mForecast);
+    }
+
+    @Benchmark
+    public boolean decode() {
+        return WatchPayload.decode(mPayload, mDecoded);
+    }
+
+    @Benchmark
+    public boolean roundTrip() {
+        return WatchPayload.decode(WatchPayload.encode(mForecast), mDecoded);
+    }
+
+    /* What SunshineSyncTask and the watch face did with the temperatures before the payload */
+    @Benchmark
+    public void legacyStrings(Blackhole blackhole) {
+        for (int i = 0; i < days; i++) {
+            blackhole.consume(Float.valueOf(String.valueOf(mHighTemps[i])));
+            blackhole.consume(Float.valueOf(String.valueOf(mLowTemps[i])));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the description and the art of every condition id we know, once through
+ * {@link WeatherConditions} and once through the if/else chain and switch that
+ * SunshineWeatherUtils used to walk on every bind. Run with ./gradlew :benchmark:jmh.
+ * <p>
+ * The ids are looked up in a shuffled order, as a forecast would have them, so the chains can't
+ * lean on the branch predictor having seen the same id the time before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WeatherConditionsBenchmark {
+
+    private int[] mWeatherIds;
+
+    @Setup
+    public void setUp() {
+        int count = 0;
+        int[] weatherIds = new int[WeatherConditions.MAX_CONDITION_ID
+                - WeatherConditions.MIN_CONDITION_ID + 1];
+        for (int id = WeatherConditions.MIN_CONDITION_ID;
+             id <= WeatherConditions.MAX_CONDITION_ID; id++) {
+            if (WeatherConditions.getDescriptionId(id) != WeatherConditions.DESCRIPTION_UNKNOWN) {
+                weatherIds[count++] = id;
+            }
+        }
+
+        /* A fixed seed, so that every run looks the ids up in the same order */
+        Random random = new Random(962);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = weatherIds[i];
+            weatherIds[i] = weatherIds[j];
+            weatherIds[j] = swap;
+        }
+        mWeatherIds = Arrays.copyOf(weatherIds, count);
+    }
+
+    @Benchmark
+    public void tableLookup(Blackhole blackhole) {
+        for (int weatherId : mWeatherIds) {
+            blackhole.consume(WeatherConditions.getDescriptionId(weatherId));
+            blackhole.consume(WeatherConditions.getArtIcon(weatherId));
+        }
+    }
+
+    @Benchmark
+    public void chainLookup(Blackhole blackhole) {
+        for (int weatherId : mWeatherIds) {
+            blackhole.consume(describeWithSwitch(weatherId));
+            blackhole.consume(artIconWithChain(weatherId));
+        }
+    }
+
+    /* The shape of the switch in SunshineWeatherUtils.getStringForWeatherCondition */
+    private static int describeWithSwitch(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return 200;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return 300;
+        } else switch (weatherId) {
+            case 500: case 501: case 502: case 503: case 504: case 511: case 520: case 531:
+            case 600: case 601: case 602: case 611: case 612: case 615: case 616: case 620:
+            case 621: case 622:
+            case 701: case 711: case 721: case 731: case 741: case 751: case 761: case 762:
+            case 771: case 781:
+            case 800: case 801: case 802: case 803: case 804:
+            case 900: case 901: case 902: case 903: case 904: case 905: case 906:
+            case 951: case 952: case 953: case 954: case 955: case 956: case 957: case 958:
+            case 959: case 960: case 961: case 962:
+                return weatherId;
+            default:
+                return WeatherConditions.DESCRIPTION_UNKNOWN;
+        }
+    }
+
+    /* SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition before the table */
+    private static int artIconWithChain(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return WeatherConditions.ICON_STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return WeatherConditions.ICON_LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return WeatherConditions.ICON_RAIN;
+        } else if (weatherId == 511) {
+            return WeatherConditions.ICON_SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return WeatherConditions.ICON_RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return WeatherConditions.ICON_SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return WeatherConditions.ICON_FOG;
+        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
+            return WeatherConditions.ICON_STORM;
+        } else if (weatherId == 800) {
+            return WeatherConditions.ICON_CLEAR;
+        } else if (weatherId == 801) {
+            return WeatherConditions.ICON_LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return WeatherConditions.ICON_CLOUDS;
+        } else if (weatherId >= 900 && weatherId <= 906) {
+            return WeatherConditions.ICON_STORM;
+        } else if (weatherId >= 958 && weatherId <= 962) {
+            return WeatherConditions.ICON_STORM;
+        } else if (weatherId >= 951 && weatherId <= 957) {
+            return WeatherConditions.ICON_CLEAR;
+        }
+        return WeatherConditions.ICON_UNKNOWN;
+    }
+}
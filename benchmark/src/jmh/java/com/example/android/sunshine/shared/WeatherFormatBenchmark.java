@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats a forecast's worth of temperatures, wind directions and dates, as the list and the
+ * detail screen do when they bind a day. The Context lookups around these are left out, since
+ * they need a running app.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WeatherFormatBenchmark {
+
+    /* A forecast of the sync, 14 days */
+    private static final int DAYS = 14;
+
+    /* The format_temperature string of the app, without its xliff tag */
+    private static final String TEMPERATURE_FORMAT = "%1.0f°";
+
+    private final double[] mTemperatures = new double[DAYS];
+    private final float[] mWindDirections = new float[DAYS];
+    private final long[] mDates = new long[DAYS];
+
+    @Setup
+    public void setUp() {
+        /* A fixed seed, so that every run formats the same days */
+        Random random = new Random(14);
+        long today = NormalizedDates.getNormalizedUtcDateForToday();
+        for (int i = 0; i < DAYS; i++) {
+            mTemperatures[i] = random.nextDouble() * 50 - 15;
+            mWindDirections[i] = random.nextFloat() * 360;
+            mDates[i] = today + i * NormalizedDates.DAY_IN_MILLIS
+                    + random.nextInt((int) NormalizedDates.DAY_IN_MILLIS);
+        }
+    }
+
+    @Benchmark
+    public void formatMetricTemperatures(Blackhole blackhole) {
+        for (double temperature : mTemperatures) {
+            blackhole.consume(WeatherFormat.formatTemperature(TEMPERATURE_FORMAT, true,
+                    temperature));
+        }
+    }
+
+    @Benchmark
+    public void formatImperialTemperatures(Blackhole blackhole) {
+        for (double temperature : mTemperatures) {
+            blackhole.consume(WeatherFormat.formatTemperature(TEMPERATURE_FORMAT, false,
+                    temperature));
+        }
+    }
+
+    @Benchmark
+    public void windDirections(Blackhole blackhole) {
+        for (float degrees : mWindDirections) {
+            blackhole.consume(WeatherFormat.getWindDirection(degrees));
+        }
+    }
+
+    @Benchmark
+    public void normalizeDates(Blackhole blackhole) {
+        for (long date : mDates) {
+            blackhole.consume(NormalizedDates.normalizeDate(date));
+        }
+    }
+
+    @Benchmark
+    public long normalizedToday() {
+        return NormalizedDates.getNormalizedUtcDateForToday();
+    }
+}
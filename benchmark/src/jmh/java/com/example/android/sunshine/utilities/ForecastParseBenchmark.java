@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.ContentValues;
+
+import com.example.android.sunshine.data.ForecastBatch;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the OpenWeatherMap responses in src/jmh/resources/fixtures the way the sync does, into
+ * a ForecastBatch that is reused from one parse to the next, and the way it used to, into a
+ * JSONObject tree and then ContentValues, so the two can be compared on payloads from 14 to 200
+ * days. The fixtures are recorded responses, so nothing here touches the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ForecastParseBenchmark {
+
+    /*
+     * The compact response the sync asks for, an indented one with more days, and one far longer
+     * than any the server sends, where the cost of building the whole tree shows
+     */
+    @Param({"forecast_14_days.json", "forecast_16_days_pretty.json", "forecast_200_days.json"})
+    public String fixture;
+
+    private byte[] mResponse;
+    private String mResponseString;
+    private final ForecastBatch mForecast = new ForecastBatch();
+    private final double[] mCityCoord = new double[2];
+
+    @Setup
+    public void setUp() throws IOException {
+        InputStream in = getClass().getResourceAsStream("/fixtures/" + fixture);
+        if (in == null) {
+            throw new IOException("Missing fixture " + fixture);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            mResponse = out.toByteArray();
+            mResponseString = out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public ForecastBatch parse() throws IOException, JSONException {
+        mForecast.clear();
+        if (!OpenWeatherJsonUtils.getForecastFromJson(new ByteArrayInputStream(mResponse),
+                mForecast, mCityCoord)) {
+            throw new IllegalStateException("Could not parse " + fixture);
+        }
+        return mForecast;
+    }
+
+    @Benchmark
+    public ContentValues[] parseJsonObject() throws JSONException {
+        ContentValues[] values =
+                OpenWeatherJsonUtils.getWeatherContentValuesFromJson(mResponseString, mCityCoord);
+        if (values == null) {
+            throw new IllegalStateException("Could not parse " + fixture);
+        }
+        return values;
+    }
+}
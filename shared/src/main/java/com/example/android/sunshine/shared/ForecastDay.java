@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * The forecast for one day, as it is stored in the phone's weather table. Every value is a
+ * primitive and none of them ever change, so a ForecastDay can be handed between threads and kept
+ * around without a Cursor to read it from.
+ * <p>
+ * The app reads these out of its ContentProvider through ForecastRepository. The class lives in
+ * the shared module so that the watch face can describe a day the same way the phone does.
+ */
+public final class ForecastDay {
+
+    private final long mDate;
+    private final int mWeatherId;
+    private final double mMinTemp;
+    private final double mMaxTemp;
+    private final double mHumidity;
+    private final double mPressure;
+    private final double mWindSpeed;
+    private final double mDegrees;
+
+    /**
+     * @param date      The normalized UTC date of the day
+     * @param weatherId Weather ID as returned by the API
+     * @param minTemp   The low, in °C
+     * @param maxTemp   The high, in °C
+     * @param humidity  The humidity, as a percentage
+     * @param pressure  The pressure
+     * @param windSpeed The wind speed
+     * @param degrees   The direction of the wind, in meteorological degrees
+     */
+    public ForecastDay(long date, int weatherId, double minTemp, double maxTemp,
+                       double humidity, double pressure, double windSpeed, double degrees) {
+        mDate = date;
+        mWeatherId = weatherId;
+        mMinTemp = minTemp;
+        mMaxTemp = maxTemp;
+        mHumidity = humidity;
+        mPressure = pressure;
+        mWindSpeed = windSpeed;
+        mDegrees = degrees;
+    }
+
+    public long getDate() {
+        return mDate;
+    }
+
+    public int getWeatherId() {
+        return mWeatherId;
+    }
+
+    public double getMinTemp() {
+        return mMinTemp;
+    }
+
+    public double getMaxTemp() {
+        return mMaxTemp;
+    }
+
+    public double getHumidity() {
+        return mHumidity;
+    }
+
+    public double getPressure() {
+        return mPressure;
+    }
+
+    public double getWindSpeed() {
+        return mWindSpeed;
+    }
+
+    public double getDegrees() {
+        return mDegrees;
+    }
+
+    /*
+     * Two days are equal if every value is. Doubles are compared by their bits, the way
+     * Double.equals does, so that equals agrees with hashCode.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ForecastDay)) {
+            return false;
+        }
+        ForecastDay other = (ForecastDay) o;
+        return mDate == other.mDate
+                && mWeatherId == other.mWeatherId
+                && sameValue(mMinTemp, other.mMinTemp)
+                && sameValue(mMaxTemp, other.mMaxTemp)
+                && sameValue(mHumidity, other.mHumidity)
+                && sameValue(mPressure, other.mPressure)
+                && sameValue(mWindSpeed, other.mWindSpeed)
+                && sameValue(mDegrees, other.mDegrees);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (mDate ^ (mDate >>> 32));
+        result = 31 * result + mWeatherId;
+        result = 31 * result + hashOf(mMinTemp);
+        result = 31 * result + hashOf(mMaxTemp);
+        result = 31 * result + hashOf(mHumidity);
+        result = 31 * result + hashOf(mPressure);
+        result = 31 * result + hashOf(mWindSpeed);
+        result = 31 * result + hashOf(mDegrees);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ForecastDay{date=" + mDate
+                + ", weatherId=" + mWeatherId
+                + ", minTemp=" + mMinTemp
+                + ", maxTemp=" + mMaxTemp
+                + ", humidity=" + mHumidity
+                + ", pressure=" + mPressure
+                + ", windSpeed=" + mWindSpeed
+                + ", degrees=" + mDegrees
+                + "}";
+    }
+
+    private static boolean sameValue(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    private static int hashOf(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return (int) (bits ^ (bits >>> 32));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * What the phone and the watch face agree on to exchange the weather over the Wearable Data
+ * Layer: the paths of the data items the phone puts the forecast in, and the key of their
+ * DataMaps. The watch face sends a message to {@link #PATH_WEATHER} to ask the phone for the
+ * weather.
+ * <p>
+ * Every day of the forecast has a data item of its own, so a sync only puts the days that
+ * changed, and the Data Layer only sends those to the watch. The phone deletes the items of the
+ * days that are over.
+ */
+public final class WatchContract {
+
+    /* The path of the watch face's requests for the weather, and the prefix of every data item */
+    public static final String PATH_WEATHER = "/wearable";
+
+    /* The prefix of the path of a day, followed by its date in days since the epoch */
+    public static final String PATH_DAY_PREFIX = PATH_WEATHER + "/day/";
+
+    /*
+     * A day of the forecast, as a byte array made by WatchPayload. The payload holds the time the
+     * phone sent the day.
+     */
+    public static final String KEY_FORECAST = "forecast";
+
+    /**
+     * @param date The normalized UTC date of a day
+     * @return The path of the data item of that day
+     */
+    public static String getDayPath(long date) {
+        return PATH_DAY_PREFIX + (date / NormalizedDates.DAY_IN_MILLIS);
+    }
+
+    /**
+     * @param path The path of a data item
+     * @return The normalized UTC date of the day the item holds, or -1 if it doesn't hold a day
+     */
+    public static long getDateOfDayPath(String path) {
+        if (path == null || !path.startsWith(PATH_DAY_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(path.substring(PATH_DAY_PREFIX.length()))
+                    * NormalizedDates.DAY_IN_MILLIS;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private WatchContract() {
+    }
+}
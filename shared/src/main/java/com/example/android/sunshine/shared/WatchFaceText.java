@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Builds the text the watch face draws: the hours, the minutes and the date on every frame, and
+ * the temperatures whenever a forecast arrives. None of it needs a Canvas or a Paint, so it lives
+ * here rather than in the wear module, where the benchmarks can run it on the JVM.
+ */
+public final class WatchFaceText {
+
+    /* The date under the time, such as "Sat, Oct 1 2016", before it is upper-cased */
+    private static final String DATE_PATTERN = "EEE, MMM d yyyy";
+
+    private WatchFaceText() {
+    }
+
+    /**
+     * @param calendar Used by the format, so the date is formatted in its time zone
+     * @return The format of the date under the time, for the default locale
+     */
+    public static SimpleDateFormat createDateFormat(Calendar calendar) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_PATTERN, Locale.getDefault());
+        dateFormat.setCalendar(calendar);
+        return dateFormat;
+    }
+
+    /**
+     * @param hourOfDay The hour, from 0 to 23
+     * @param is24Hour  Whether the user wants a 24 hour clock
+     * @return The hour as two digits on a 24 hour clock, or from 1 to 12 on a 12 hour clock
+     */
+    public static String formatHour(int hourOfDay, boolean is24Hour) {
+        if (is24Hour) {
+            return formatTwoDigitNumber(hourOfDay);
+        }
+
+        int hour = hourOfDay % 12;
+        if (hour == 0) {
+            hour = 12;
+        }
+        return String.valueOf(hour);
+    }
+
+    /**
+     * @param minute The minute, from 0 to 59
+     * @return The minute as two digits
+     */
+    public static String formatMinute(int minute) {
+        return formatTwoDigitNumber(minute);
+    }
+
+    /**
+     * @param dateFormat A format made by {@link #createDateFormat(Calendar)}
+     * @param date       The date to show
+     * @return The date, upper-cased
+     */
+    public static String formatDate(SimpleDateFormat dateFormat, Date date) {
+        return dateFormat.format(date).toUpperCase();
+    }
+
+    /**
+     * @param temperatureFormat The format_temperature string
+     * @param temperature       The temperature in °C
+     * @return The temperature rounded to a whole degree, such as "21°"
+     */
+    public static String formatTemperature(String temperatureFormat, double temperature) {
+        return String.format(temperatureFormat, temperature);
+    }
+
+    private static String formatTwoDigitNumber(int number) {
+        return String.format("%02d", number);
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * The days of the forecast the phone sends to the watch face, as {@link WatchPayload} encodes
+ * them: the date, the condition and the high and low of each day, and the time the phone sent
+ * them. Like the phone's ForecastBatch, day i is stored at index i of one primitive array per
+ * field, and a forecast is meant to be cleared and refilled rather than thrown away, so that
+ * neither side allocates per day.
+ * <p>
+ * Temperatures are kept to a tenth of a degree, which is what the payload carries.
+ * <p>
+ * The watch keeps the days the phone has sent in one forecast, merged with
+ * {@link #putAll(WatchForecast)}, so that it can move on to the next day at midnight without
+ * asking the phone.
+ * <p>
+ * A forecast is not thread safe.
+ */
+public final class WatchForecast {
+
+    /* The most days a payload can carry: the 14 days we ask the server for, and a couple more */
+    public static final int MAX_DAYS = 16;
+
+    private long mSentAt;
+    private int mSize;
+
+    private final long[] mDates = new long[MAX_DAYS];
+    private final int[] mWeatherIds = new int[MAX_DAYS];
+    private final short[] mHighTemps = new short[MAX_DAYS];
+    private final short[] mLowTemps = new short[MAX_DAYS];
+
+    /**
+     * @return The time the phone sent the forecast, in milliseconds since the epoch
+     */
+    public long getSentAt() {
+        return mSentAt;
+    }
+
+    public void setSentAt(long sentAt) {
+        mSentAt = sentAt;
+    }
+
+    /**
+     * @return The number of days in the forecast
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Empties the forecast, keeping its arrays so it can be refilled without allocating.
+     */
+    public void clear() {
+        mSize = 0;
+        mSentAt = 0;
+    }
+
+    /**
+     * Appends one day to the forecast.
+     *
+     * @param date      The normalized UTC date of the day
+     * @param weatherId The OpenWeatherMap condition id of the day
+     * @param highTemp  The high of the day in °C, which is rounded to a tenth of a degree
+     * @param lowTemp   The low of the day in °C, which is rounded to a tenth of a degree
+     * @return The index of the day that was added
+     * @throws IllegalArgumentException If the date isn't normalized
+     * @throws IllegalStateException    If the forecast already holds {@link #MAX_DAYS} days
+     */
+    public int add(long date, int weatherId, double highTemp, double lowTemp) {
+        return addTenths(date, weatherId, toTenths(highTemp), toTenths(lowTemp));
+    }
+
+    /* Used by WatchPayload, which reads the temperatures in tenths of a degree */
+    int addTenths(long date, int weatherId, short highTemp, short lowTemp) {
+        if (!NormalizedDates.isDateNormalized(date)) {
+            throw new IllegalArgumentException("Date " + date + " isn't normalized");
+        }
+        if (mSize == MAX_DAYS) {
+            throw new IllegalStateException("A forecast holds at most " + MAX_DAYS + " days");
+        }
+
+        int index = mSize++;
+        mDates[index] = date;
+        mWeatherIds[index] = weatherId;
+        mHighTemps[index] = highTemp;
+        mLowTemps[index] = lowTemp;
+        return index;
+    }
+
+    public long getDate(int index) {
+        checkIndex(index);
+        return mDates[index];
+    }
+
+    public int getWeatherId(int index) {
+        checkIndex(index);
+        return mWeatherIds[index];
+    }
+
+    /**
+     * @return The high of the day in °C, to a tenth of a degree
+     */
+    public double getHighTemp(int index) {
+        return getHighTempTenths(index) / 10.0;
+    }
+
+    /**
+     * @return The low of the day in °C, to a tenth of a degree
+     */
+    public double getLowTemp(int index) {
+        return getLowTempTenths(index) / 10.0;
+    }
+
+    short getHighTempTenths(int index) {
+        checkIndex(index);
+        return mHighTemps[index];
+    }
+
+    short getLowTempTenths(int index) {
+        checkIndex(index);
+        return mLowTemps[index];
+    }
+
+    /**
+     * Adds the days of another forecast, replacing the days that have the same dates. New days go
+     * before the first later day, so a forecast in date order stays in date order. If that makes
+     * more than {@link #MAX_DAYS} days, the latest ones are dropped. The time sent becomes the
+     * latest of the two.
+     *
+     * @param other The days to add, in any order
+     * @return true if a day was added or changed
+     */
+    public boolean putAll(WatchForecast other) {
+        boolean changed = false;
+        for (int i = 0; i < other.mSize; i++) {
+            changed |= put(other.mDates[i], other.mWeatherIds[i], other.mHighTemps[i],
+                    other.mLowTemps[i]);
+        }
+        mSentAt = Math.max(mSentAt, other.mSentAt);
+        return changed;
+    }
+
+    /**
+     * @param date A normalized UTC date
+     * @return true if the forecast had a day with that date
+     */
+    public boolean remove(long date) {
+        int index = indexOf(date);
+        if (index == -1) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Removes the days that are over, such as yesterday's at midnight.
+     *
+     * @param date A normalized UTC date, usually today's
+     * @return The number of days removed
+     */
+    public int removeBefore(long date) {
+        int removed = 0;
+        for (int i = mSize - 1; i >= 0; i--) {
+            if (mDates[i] < date) {
+                removeAt(i);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return true if the day at index has the same date, condition and temperatures as the day
+     * at otherIndex of the other forecast
+     */
+    public boolean isSameDay(int index, WatchForecast other, int otherIndex) {
+        checkIndex(index);
+        other.checkIndex(otherIndex);
+        return mDates[index] == other.mDates[otherIndex]
+                && mWeatherIds[index] == other.mWeatherIds[otherIndex]
+                && mHighTemps[index] == other.mHighTemps[otherIndex]
+                && mLowTemps[index] == other.mLowTemps[otherIndex];
+    }
+
+    /**
+     * @param date A normalized UTC date, usually today's
+     * @return The index of the earliest day on or after that date, or -1 if there is none
+     */
+    public int indexOfFirstDayFrom(long date) {
+        int first = -1;
+        for (int i = 0; i < mSize; i++) {
+            if (mDates[i] >= date && (first == -1 || mDates[i] < mDates[first])) {
+                first = i;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @param date A normalized UTC date
+     * @return The index of the day with that date, or -1 if the forecast doesn't have it
+     */
+    public int indexOf(long date) {
+        for (int i = 0; i < mSize; i++) {
+            if (mDates[i] == date) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* Replaces the day with the same date, or inserts the day before the first later one */
+    private boolean put(long date, int weatherId, short highTemp, short lowTemp) {
+        int index = indexOf(date);
+        if (index != -1) {
+            if (mWeatherIds[index] == weatherId && mHighTemps[index] == highTemp
+                    && mLowTemps[index] == lowTemp) {
+                return false;
+            }
+        } else {
+            index = 0;
+            while (index < mSize && mDates[index] < date) {
+                index++;
+            }
+            if (index == MAX_DAYS) {
+                /* Later than every day of a full forecast */
+                return false;
+            }
+            int moved = Math.min(mSize, MAX_DAYS - 1) - index;
+            System.arraycopy(mDates, index, mDates, index + 1, moved);
+            System.arraycopy(mWeatherIds, index, mWeatherIds, index + 1, moved);
+            System.arraycopy(mHighTemps, index, mHighTemps, index + 1, moved);
+            System.arraycopy(mLowTemps, index, mLowTemps, index + 1, moved);
+            mSize = Math.min(mSize + 1, MAX_DAYS);
+            mDates[index] = date;
+        }
+
+        mWeatherIds[index] = weatherId;
+        mHighTemps[index] = highTemp;
+        mLowTemps[index] = lowTemp;
+        return true;
+    }
+
+    private void removeAt(int index) {
+        int moved = mSize - index - 1;
+        System.arraycopy(mDates, index + 1, mDates, index, moved);
+        System.arraycopy(mWeatherIds, index + 1, mWeatherIds, index, moved);
+        System.arraycopy(mHighTemps, index + 1, mHighTemps, index, moved);
+        System.arraycopy(mLowTemps, index + 1, mLowTemps, index, moved);
+        mSize--;
+    }
+
+    /* Rounds to the nearest tenth of a degree, clamped to what a short can hold */
+    private static short toTenths(double temperature) {
+        long tenths = Math.round(temperature * 10);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, tenths));
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        }
+    }
+}
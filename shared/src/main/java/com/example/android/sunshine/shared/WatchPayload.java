@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Encodes a {@link WatchForecast} into the bytes the phone puts in the weather data item, and
+ * decodes them on the watch. The payload used to be a DataMap of Strings, which the watch face
+ * parsed back into numbers on every frame; this one has a fixed width per day, so a day costs
+ * 10 bytes over Bluetooth and the watch decodes it once, when it arrives.
+ * <p>
+ * The layout, with every number big-endian:
+ * <pre>
+ *   byte   version, {@link #VERSION}
+ *   long   the time the phone sent the forecast, in milliseconds since the epoch
+ *   byte   the number of days, at most {@link WatchForecast#MAX_DAYS}
+ *   and for each day:
+ *     int    the normalized UTC date, in days since the epoch
+ *     short  the OpenWeatherMap condition id
+ *     short  the high, in tenths of a °C
+ *     short  the low, in tenths of a °C
+ * </pre>
+ * A watch that gets a version it doesn't know keeps the forecast it has, so the version has to
+ * change whenever the layout does.
+ */
+public final class WatchPayload {
+
+    public static final int VERSION = 1;
+
+    /* The version, the time sent and the number of days */
+    static final int HEADER_SIZE = 1 + 8 + 1;
+
+    /* The date, the condition id and the two temperatures */
+    static final int DAY_SIZE = 4 + 2 + 2 + 2;
+
+    private WatchPayload() {
+    }
+
+    /**
+     * @param days The number of days in a forecast
+     * @return The size of the payload of a forecast with that many days, in bytes
+     */
+    public static int sizeOf(int days) {
+        return HEADER_SIZE + days * DAY_SIZE;
+    }
+
+    /**
+     * @param forecast The forecast to send to the watch
+     * @return The payload holding it
+     */
+    public static byte[] encode(WatchForecast forecast) {
+        int days = forecast.size();
+        byte[] payload = new byte[sizeOf(days)];
+
+        payload[0] = VERSION;
+        putLong(payload, 1, forecast.getSentAt());
+        payload[9] = (byte) days;
+
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < days; i++) {
+            putInt(payload, offset,
+                    (int) (forecast.getDate(i) / NormalizedDates.DAY_IN_MILLIS));
+            putShort(payload, offset + 4, forecast.getWeatherId(i));
+            putShort(payload, offset + 6, forecast.getHighTempTenths(i));
+            putShort(payload, offset + 8, forecast.getLowTempTenths(i));
+            offset += DAY_SIZE;
+        }
+        return payload;
+    }
+
+    /**
+     * Replaces the days of the forecast with those of the payload. The forecast is left as it
+     * was if the payload can't be decoded.
+     *
+     * @param payload  Bytes made by {@link #encode(WatchForecast)}
+     * @param forecast The forecast to fill
+     * @return false if the payload is of a version we don't know, or is malformed
+     */
+    public static boolean decode(byte[] payload, WatchForecast forecast) {
+        if (payload == null || payload.length < HEADER_SIZE || payload[0] != VERSION) {
+            return false;
+        }
+        int days = payload[9] & 0xff;
+        if (days > WatchForecast.MAX_DAYS || payload.length != sizeOf(days)) {
+            return false;
+        }
+
+        forecast.clear();
+        forecast.setSentAt(getLong(payload, 1));
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < days; i++) {
+            forecast.addTenths(getInt(payload, offset) * NormalizedDates.DAY_IN_MILLIS,
+                    getShort(payload, offset + 4) & 0xffff,
+                    getShort(payload, offset + 6),
+                    getShort(payload, offset + 8));
+            offset += DAY_SIZE;
+        }
+        return true;
+    }
+
+    private static void putShort(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >> 8);
+        bytes[offset + 1] = (byte) value;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        putShort(bytes, offset, value >> 16);
+        putShort(bytes, offset + 2, value);
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        putInt(bytes, offset, (int) (value >> 32));
+        putInt(bytes, offset + 4, (int) value);
+    }
+
+    private static short getShort(byte[] bytes, int offset) {
+        return (short) ((bytes[offset] << 8) | (bytes[offset + 1] & 0xff));
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return (getShort(bytes, offset) << 16) | (getShort(bytes, offset + 2) & 0xffff);
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        return ((long) getInt(bytes, offset) << 32) | (getInt(bytes, offset + 4) & 0xffffffffL);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Maps OpenWeatherMap condition ids to what the phone and the watch show for them: the
+ * description, the art of the phone app and the icon of the watch face. See
+ * http://openweathermap.org/weather-conditions for a list of all ids.
+ * <p>
+ * Every condition id lies between {@link #MIN_CONDITION_ID} and {@link #MAX_CONDITION_ID}, so
+ * the mapping is built once into arrays indexed by the id minus MIN_CONDITION_ID, and a lookup is
+ * a bounds check and an array read. The app and the wear module each have their own resources,
+ * so we hand out icon constants and description ids, and each of them keeps the few resource ids
+ * these map to.
+ */
+public final class WeatherConditions {
+
+    public static final int MIN_CONDITION_ID = 200;
+    public static final int MAX_CONDITION_ID = 962;
+
+    /* The icons the phone and the watch have art for, usable as indices into an array */
+    public static final int ICON_UNKNOWN = -1;
+    public static final int ICON_CLEAR = 0;
+    public static final int ICON_LIGHT_CLOUDS = 1;
+    public static final int ICON_CLOUDS = 2;
+    public static final int ICON_FOG = 3;
+    public static final int ICON_LIGHT_RAIN = 4;
+    public static final int ICON_RAIN = 5;
+    public static final int ICON_SNOW = 6;
+    public static final int ICON_STORM = 7;
+    public static final int ICON_COUNT = 8;
+
+    /* Returned by getDescriptionId for an id we have no description for */
+    public static final int DESCRIPTION_UNKNOWN = -1;
+
+    private static final int TABLE_SIZE = MAX_CONDITION_ID - MIN_CONDITION_ID + 1;
+
+    /*
+     * The conditions that have a description of their own. Every thunderstorm (2xx) shares the
+     * description of 200, and every drizzle (3xx) that of 300.
+     */
+    private static final int[] DESCRIBED_IDS = {
+            200, 300,
+            500, 501, 502, 503, 504, 511, 520, 531,
+            600, 601, 602, 611, 612, 615, 616, 620, 621, 622,
+            701, 711, 721, 731, 741, 751, 761, 762, 771, 781,
+            800, 801, 802, 803, 804,
+            900, 901, 902, 903, 904, 905, 906,
+            951, 952, 953, 954, 955, 956, 957, 958, 959, 960, 961, 962
+    };
+
+    /* Indexed by condition id - MIN_CONDITION_ID. Unknown ids hold -1 everywhere. */
+    private static final short[] sDescriptionIds = new short[TABLE_SIZE];
+    private static final byte[] sArtIcons = new byte[TABLE_SIZE];
+    private static final byte[] sWatchIcons = new byte[TABLE_SIZE];
+
+    static {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            int weatherId = MIN_CONDITION_ID + i;
+            sDescriptionIds[i] = (short) describe(weatherId);
+            sArtIcons[i] = (byte) artIconOf(weatherId);
+            sWatchIcons[i] = (byte) watchIconOf(weatherId);
+        }
+    }
+
+    private WeatherConditions() {
+    }
+
+    /**
+     * @param weatherId An OpenWeatherMap condition id
+     * @return The condition id whose description applies to it, such as 200 for any thunderstorm,
+     * or {@link #DESCRIPTION_UNKNOWN} if we have none
+     */
+    public static int getDescriptionId(int weatherId) {
+        int index = weatherId - MIN_CONDITION_ID;
+        if (index < 0 || index >= TABLE_SIZE) {
+            return DESCRIPTION_UNKNOWN;
+        }
+        return sDescriptionIds[index];
+    }
+
+    /**
+     * @return Every id {@link #getDescriptionId(int)} can return other than DESCRIPTION_UNKNOWN,
+     * in increasing order
+     */
+    public static int[] getDescriptionIds() {
+        return DESCRIBED_IDS.clone();
+    }
+
+    /**
+     * @param weatherId An OpenWeatherMap condition id
+     * @return The ICON_ constant of the phone app's art for the condition, or
+     * {@link #ICON_UNKNOWN}
+     */
+    public static int getArtIcon(int weatherId) {
+        int index = weatherId - MIN_CONDITION_ID;
+        if (index < 0 || index >= TABLE_SIZE) {
+            return ICON_UNKNOWN;
+        }
+        return sArtIcons[index];
+    }
+
+    /**
+     * The watch face has always drawn light rain for 520 to 531, and has no icon of its own for
+     * 771 or for the extreme and additional conditions (9xx), so it may differ from the art of
+     * the phone app.
+     *
+     * @param weatherId An OpenWeatherMap condition id
+     * @return The ICON_ constant of the watch face's icon for the condition, or
+     * {@link #ICON_UNKNOWN}
+     */
+    public static int getWatchIcon(int weatherId) {
+        int index = weatherId - MIN_CONDITION_ID;
+        if (index < 0 || index >= TABLE_SIZE) {
+            return ICON_UNKNOWN;
+        }
+        return sWatchIcons[index];
+    }
+
+    private static int describe(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return 200;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return 300;
+        }
+        for (int describedId : DESCRIBED_IDS) {
+            if (describedId == weatherId) {
+                return weatherId;
+            }
+        }
+        return DESCRIPTION_UNKNOWN;
+    }
+
+    private static int artIconOf(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return ICON_STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return ICON_LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return ICON_RAIN;
+        } else if (weatherId == 511) {
+            return ICON_SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return ICON_RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return ICON_SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return ICON_FOG;
+        } else if (weatherId == 771 || weatherId == 781) {
+            return ICON_STORM;
+        } else if (weatherId == 800) {
+            return ICON_CLEAR;
+        } else if (weatherId == 801) {
+            return ICON_LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return ICON_CLOUDS;
+        } else if (weatherId >= 900 && weatherId <= 906) {
+            return ICON_STORM;
+        } else if (weatherId >= 958 && weatherId <= 962) {
+            return ICON_STORM;
+        } else if (weatherId >= 951 && weatherId <= 957) {
+            return ICON_CLEAR;
+        }
+        return ICON_UNKNOWN;
+    }
+
+    private static int watchIconOf(int weatherId) {
+        if (weatherId >= 520 && weatherId <= 531) {
+            return ICON_LIGHT_RAIN;
+        } else if (weatherId == 771 || weatherId >= 900) {
+            return ICON_UNKNOWN;
+        }
+        return artIconOf(weatherId);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * The part of formatting the weather that needs no Context: converting and formatting a
+ * temperature once its format string and units have been looked up, and turning a wind
+ * direction into a compass point. The app's SunshineWeatherUtils looks up the rest.
+ */
+public final class WeatherFormat {
+
+    private WeatherFormat() {
+    }
+
+    /**
+     * This method will convert a temperature from Celsius to Fahrenheit.
+     *
+     * @param temperatureInCelsius Temperature in degrees Celsius(°C)
+     *
+     * @return Temperature in degrees Fahrenheit (°F)
+     */
+    public static double celsiusToFahrenheit(double temperatureInCelsius) {
+        return (temperatureInCelsius * 1.8) + 32;
+    }
+
+    /**
+     * Formats a temperature so that no decimal points show, such as "21°", converting it to
+     * Fahrenheit first if the user doesn't want Celsius.
+     *
+     * @param temperatureFormat The format_temperature string
+     * @param isMetric          Whether to show the temperature in Celsius
+     * @param temperature       Temperature in degrees Celsius (°C)
+     * @return The formatted temperature
+     */
+    public static String formatTemperature(String temperatureFormat, boolean isMetric,
+                                           double temperature) {
+        if (!isMetric) {
+            temperature = celsiusToFahrenheit(temperature);
+        }
+
+        /* For presentation, assume the user doesn't care about tenths of a degree. */
+        return String.format(temperatureFormat, temperature);
+    }
+
+    /**
+     * @param degrees Degrees as measured on a compass
+     * @return The compass direction, such as "NW"
+     */
+    public static String getWindDirection(float degrees) {
+        /*
+         * You know what's fun? Writing really long if/else statements with tons of possible
+         * conditions. Seriously, try it!
+         */
+        String direction = "Unknown";
+        if (degrees >= 337.5 || degrees < 22.5) {
+            direction = "N";
+        } else if (degrees >= 22.5 && degrees < 67.5) {
+            direction = "NE";
+        } else if (degrees >= 67.5 && degrees < 112.5) {
+            direction = "E";
+        } else if (degrees >= 112.5 && degrees < 157.5) {
+            direction = "SE";
+        } else if (degrees >= 157.5 && degrees < 202.5) {
+            direction = "S";
+        } else if (degrees >= 202.5 && degrees < 247.5) {
+            direction = "SW";
+        } else if (degrees >= 247.5 && degrees < 292.5) {
+            direction = "W";
+        } else if (degrees >= 292.5 && degrees < 337.5) {
+            direction = "NW";
+        }
+
+        return direction;
+    }
+}
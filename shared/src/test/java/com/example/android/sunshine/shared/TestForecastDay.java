@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+/**
+ * Tests that two {@link ForecastDay}s are equal exactly when every value is.
+ */
+public class TestForecastDay {
+
+    @Test
+    public void testEqualDaysAreEqual() {
+        ForecastDay day = dayOf(3);
+        ForecastDay same = dayOf(3);
+
+        assertEquals(day, same);
+        assertEquals(day.hashCode(), same.hashCode());
+        assertEquals(day.toString(), same.toString());
+    }
+
+    @Test
+    public void testDaysThatDifferInOneValueAreNotEqual() {
+        ForecastDay day = dayOf(3);
+
+        assertFalse(day.equals(new ForecastDay(dateOf(4), 203, -2.5, 13.25, 53, 1010.5, 4.5, 180)));
+        assertFalse(day.equals(new ForecastDay(dateOf(3), 800, -2.5, 13.25, 53, 1010.5, 4.5, 180)));
+        assertFalse(day.equals(new ForecastDay(dateOf(3), 203, -2.5, 13.25, 53, 1010.5, 4.5, 190)));
+        assertFalse(day.equals(null));
+    }
+
+    @Test
+    public void testNegativeZeroIsNotZero() {
+        /* equals follows Double.equals, so that it can agree with hashCode */
+        ForecastDay zero = new ForecastDay(dateOf(0), 800, 0.0, 1, 50, 1013, 4.5, 180);
+        ForecastDay negativeZero = new ForecastDay(dateOf(0), 800, -0.0, 1, 50, 1013, 4.5, 180);
+
+        assertFalse(zero.equals(negativeZero));
+    }
+
+    private static ForecastDay dayOf(int day) {
+        return new ForecastDay(dateOf(day), 200 + day, -5.5 + day, 10.25 + day, 50.0 + day,
+                1013.5 - day, 4.5, 180.0);
+    }
+
+    private static long dateOf(int day) {
+        /* 1 October 2016, normalized to midnight UTC */
+        return 1475280000000L + day * NormalizedDates.DAY_IN_MILLIS;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class TestNormalizedDates {
+
+    /* Friday, 9/16/2016, 00:00:00 GMT */
+    private static final long SEPTEMBER_16 = 1473984000000L;
+
+    @Test
+    public void testNormalizeDate() {
+        /* Friday, 9/16/2016, 17:45:15 GMT-4:00 DST */
+        assertEquals(SEPTEMBER_16, NormalizedDates.normalizeDate(1474062315000L));
+        assertEquals(SEPTEMBER_16, NormalizedDates.normalizeDate(SEPTEMBER_16));
+        assertEquals(SEPTEMBER_16,
+                NormalizedDates.normalizeDate(SEPTEMBER_16 + NormalizedDates.DAY_IN_MILLIS - 1));
+    }
+
+    @Test
+    public void testIsDateNormalized() {
+        assertTrue(NormalizedDates.isDateNormalized(SEPTEMBER_16));
+        assertFalse(NormalizedDates.isDateNormalized(SEPTEMBER_16 + 1));
+    }
+
+    @Test
+    public void testTodayIsTheLocalDate() {
+        long today = NormalizedDates.getNormalizedUtcDateForToday();
+        long now = System.currentTimeMillis();
+        long localDate = NormalizedDates.normalizeDate(now + TimeZone.getDefault().getOffset(now));
+
+        assertTrue(NormalizedDates.isDateNormalized(today));
+        /* Unless midnight passed in between */
+        assertTrue(today == localDate || today + NormalizedDates.DAY_IN_MILLIS == localDate);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks how the watch merges the days the phone sends into the forecast it keeps, and drops
+ * them once they are over.
+ */
+public class TestWatchForecast {
+
+    /* Friday, 9/16/2016, 00:00:00 GMT */
+    private static final long SEPTEMBER_16 = 1473984000000L;
+
+    private static long day(int daysAfterSeptember16) {
+        return SEPTEMBER_16 + daysAfterSeptember16 * NormalizedDates.DAY_IN_MILLIS;
+    }
+
+    private static WatchForecast forecastOf(long sentAt, int... daysAfterSeptember16) {
+        WatchForecast forecast = new WatchForecast();
+        forecast.setSentAt(sentAt);
+        for (int days : daysAfterSeptember16) {
+            forecast.add(day(days), 800, 20 + days, 10 + days);
+        }
+        return forecast;
+    }
+
+    @Test
+    public void testPutAllKeepsDateOrder() {
+        WatchForecast forecast = forecastOf(1, 0, 2);
+        assertTrue(forecast.putAll(forecastOf(2, 3, 1)));
+
+        assertEquals(4, forecast.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(day(i), forecast.getDate(i));
+            assertEquals(20.0 + i, forecast.getHighTemp(i), 1e-9);
+        }
+        assertEquals(2, forecast.getSentAt());
+    }
+
+    @Test
+    public void testPutAllReplacesDays() {
+        WatchForecast forecast = forecastOf(1, 0, 1);
+
+        /* The same values again change nothing */
+        assertFalse(forecast.putAll(forecastOf(2, 1)));
+
+        WatchForecast changed = new WatchForecast();
+        changed.add(day(1), 500, -1.5, -4);
+        assertTrue(forecast.putAll(changed));
+
+        assertEquals(2, forecast.size());
+        assertEquals(500, forecast.getWeatherId(1));
+        assertEquals(-1.5, forecast.getHighTemp(1), 1e-9);
+        assertEquals(-4.0, forecast.getLowTemp(1), 1e-9);
+    }
+
+    @Test
+    public void testPutAllDropsTheLatestDaysOfAFullForecast() {
+        WatchForecast forecast = new WatchForecast();
+        for (int i = 1; i <= WatchForecast.MAX_DAYS; i++) {
+            forecast.add(day(i), 800, 0, 0);
+        }
+
+        /* Later than every day, so it doesn't fit */
+        assertFalse(forecast.putAll(forecastOf(0, WatchForecast.MAX_DAYS + 1)));
+
+        assertTrue(forecast.putAll(forecastOf(0, 0)));
+        assertEquals(WatchForecast.MAX_DAYS, forecast.size());
+        assertEquals(day(0), forecast.getDate(0));
+        assertEquals(day(WatchForecast.MAX_DAYS - 1),
+                forecast.getDate(WatchForecast.MAX_DAYS - 1));
+    }
+
+    @Test
+    public void testRollOver() {
+        WatchForecast forecast = forecastOf(1, 0, 1, 2, 3);
+
+        /* Midnight, and September 18 is today */
+        assertEquals(2, forecast.removeBefore(day(2)));
+        assertEquals(2, forecast.size());
+        assertEquals(0, forecast.indexOf(day(2)));
+        assertEquals(22.0, forecast.getHighTemp(0), 1e-9);
+
+        assertEquals(0, forecast.removeBefore(day(2)));
+    }
+
+    @Test
+    public void testRemove() {
+        WatchForecast forecast = forecastOf(1, 0, 1, 2);
+        assertTrue(forecast.remove(day(1)));
+        assertFalse(forecast.remove(day(1)));
+
+        assertEquals(2, forecast.size());
+        assertEquals(day(0), forecast.getDate(0));
+        assertEquals(day(2), forecast.getDate(1));
+    }
+
+    @Test
+    public void testIndexOfFirstDayFrom() {
+        WatchForecast forecast = forecastOf(1, 3, 1);
+        assertEquals(1, forecast.indexOfFirstDayFrom(day(0)));
+        assertEquals(1, forecast.indexOfFirstDayFrom(day(1)));
+        assertEquals(0, forecast.indexOfFirstDayFrom(day(2)));
+        assertEquals(-1, forecast.indexOfFirstDayFrom(day(4)));
+    }
+
+    @Test
+    public void testIsSameDay() {
+        WatchForecast forecast = forecastOf(1, 0, 1);
+        WatchForecast other = forecastOf(2, 1);
+        assertTrue(forecast.isSameDay(1, other, 0));
+        assertFalse(forecast.isSameDay(0, other, 0));
+
+        other.clear();
+        other.add(day(1), 801, 21, 11);
+        assertFalse(forecast.isSameDay(1, other, 0));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class TestWatchPayload {
+
+    /* Friday, 9/16/2016, 00:00:00 GMT */
+    private static final long SEPTEMBER_16 = 1473984000000L;
+
+    /* Friday, 9/16/2016, 17:45:15 GMT-4:00 DST */
+    private static final long SENT_AT = 1474062315000L;
+
+    @Test
+    public void testRoundTrip() {
+        WatchForecast forecast = new WatchForecast();
+        forecast.setSentAt(SENT_AT);
+        forecast.add(SEPTEMBER_16, 800, 21.43, 11.8);
+        forecast.add(SEPTEMBER_16 + NormalizedDates.DAY_IN_MILLIS, 511, -0.04, -12.55);
+        forecast.add(SEPTEMBER_16 + 2 * NormalizedDates.DAY_IN_MILLIS, 962, 45.0, 30.0);
+
+        byte[] payload = WatchPayload.encode(forecast);
+        assertEquals(WatchPayload.sizeOf(3), payload.length);
+        assertEquals(40, payload.length);
+
+        WatchForecast decoded = new WatchForecast();
+        assertTrue(WatchPayload.decode(payload, decoded));
+        assertEquals(SENT_AT, decoded.getSentAt());
+        assertEquals(3, decoded.size());
+
+        assertEquals(SEPTEMBER_16, decoded.getDate(0));
+        assertEquals(800, decoded.getWeatherId(0));
+        assertEquals(21.4, decoded.getHighTemp(0), 1e-9);
+        assertEquals(11.8, decoded.getLowTemp(0), 1e-9);
+
+        assertEquals(SEPTEMBER_16 + NormalizedDates.DAY_IN_MILLIS, decoded.getDate(1));
+        assertEquals(511, decoded.getWeatherId(1));
+        assertEquals(0.0, decoded.getHighTemp(1), 1e-9);
+        assertEquals(-12.5, decoded.getLowTemp(1), 1e-9);
+
+        assertEquals(962, decoded.getWeatherId(2));
+        assertEquals(45.0, decoded.getHighTemp(2), 1e-9);
+    }
+
+    @Test
+    public void testFullForecast() {
+        WatchForecast forecast = new WatchForecast();
+        for (int i = 0; i < WatchForecast.MAX_DAYS; i++) {
+            forecast.add(SEPTEMBER_16 + i * NormalizedDates.DAY_IN_MILLIS, 200 + i, i, -i);
+        }
+
+        WatchForecast decoded = new WatchForecast();
+        assertTrue(WatchPayload.decode(WatchPayload.encode(forecast), decoded));
+        assertEquals(WatchForecast.MAX_DAYS, decoded.size());
+        for (int i = 0; i < WatchForecast.MAX_DAYS; i++) {
+            assertEquals(forecast.getDate(i), decoded.getDate(i));
+            assertEquals(200 + i, decoded.getWeatherId(i));
+            assertEquals(i, decoded.getHighTemp(i), 1e-9);
+            assertEquals(-i, decoded.getLowTemp(i), 1e-9);
+        }
+
+        try {
+            forecast.add(SEPTEMBER_16, 800, 0, 0);
+            fail("Added more than " + WatchForecast.MAX_DAYS + " days");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testEmptyForecast() {
+        WatchForecast forecast = new WatchForecast();
+        forecast.setSentAt(SENT_AT);
+
+        WatchForecast decoded = new WatchForecast();
+        decoded.add(SEPTEMBER_16, 800, 0, 0);
+        assertTrue(WatchPayload.decode(WatchPayload.encode(forecast), decoded));
+        assertEquals(0, decoded.size());
+        assertEquals(SENT_AT, decoded.getSentAt());
+    }
+
+    @Test
+    public void testBadPayloadsLeaveTheForecastAlone() {
+        WatchForecast forecast = new WatchForecast();
+        forecast.setSentAt(SENT_AT);
+        forecast.add(SEPTEMBER_16, 800, 21, 11);
+        byte[] payload = WatchPayload.encode(forecast);
+
+        WatchForecast decoded = new WatchForecast();
+        decoded.add(SEPTEMBER_16, 500, 1, 2);
+
+        byte[] newerVersion = payload.clone();
+        newerVersion[0] = WatchPayload.VERSION + 1;
+        assertFalse(WatchPayload.decode(newerVersion, decoded));
+        assertFalse(WatchPayload.decode(Arrays.copyOf(payload, payload.length - 1), decoded));
+        assertFalse(WatchPayload.decode(Arrays.copyOf(payload, payload.length + 1), decoded));
+        assertFalse(WatchPayload.decode(new byte[0], decoded));
+        assertFalse(WatchPayload.decode(null, decoded));
+
+        assertEquals(1, decoded.size());
+        assertEquals(500, decoded.getWeatherId(0));
+    }
+
+    @Test
+    public void testDatesMustBeNormalized() {
+        try {
+            new WatchForecast().add(SENT_AT, 800, 0, 0);
+            fail("Added a date that isn't normalized");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testIndexOf() {
+        WatchForecast forecast = new WatchForecast();
+        forecast.add(SEPTEMBER_16, 800, 0, 0);
+        forecast.add(SEPTEMBER_16 + NormalizedDates.DAY_IN_MILLIS, 800, 0, 0);
+
+        assertEquals(1, forecast.indexOf(SEPTEMBER_16 + NormalizedDates.DAY_IN_MILLIS));
+        assertEquals(-1, forecast.indexOf(SEPTEMBER_16 - NormalizedDates.DAY_IN_MILLIS));
+    }
+
+    @Test
+    public void testDayPaths() {
+        String path = WatchContract.getDayPath(SEPTEMBER_16);
+        assertTrue(path.startsWith(WatchContract.PATH_WEATHER + "/"));
+        assertEquals(SEPTEMBER_16, WatchContract.getDateOfDayPath(path));
+
+        assertEquals(-1, WatchContract.getDateOfDayPath(WatchContract.PATH_WEATHER));
+        assertEquals(-1, WatchContract.getDateOfDayPath(WatchContract.PATH_DAY_PREFIX + "x"));
+        assertEquals(-1, WatchContract.getDateOfDayPath(null));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static com.example.android.sunshine.shared.WeatherConditions.DESCRIPTION_UNKNOWN;
+import static com.example.android.sunshine.shared.WeatherConditions.ICON_CLEAR;
+import static com.example.android.sunshine.shared.WeatherConditions.ICON_CLOUDS;
+import static com.example.android.sunshine.shared.WeatherConditions.ICON_FOG;
+import static com.example.android.sunshine.shared.WeatherConditions.ICON_LIGHT_CLOUDS;
+import static com.example.android.sunshine.shared.WeatherConditions.ICON_LIGHT_RAIN;
+import static com.example.android.sunshine.shared.WeatherConditions.ICON_RAIN;
+import static com.example.android.sunshine.shared.WeatherConditions.ICON_SNOW;
+import static com.example.android.sunshine.shared.WeatherConditions.ICON_STORM;
+import static com.example.android.sunshine.shared.WeatherConditions.ICON_UNKNOWN;
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Checks the condition table against the if/else chains SunshineWeatherUtils and the watch face
+ * used to walk on every lookup, for every id from well below to well above the ones that exist.
+ */
+public class TestWeatherConditions {
+
+    private static final int FIRST_CHECKED_ID = -1;
+    private static final int LAST_CHECKED_ID = 1100;
+
+    @Test
+    public void testArtIconsMatchTheApp() {
+        for (int id = FIRST_CHECKED_ID; id <= LAST_CHECKED_ID; id++) {
+            assertEquals("Art for " + id, appArtIcon(id), WeatherConditions.getArtIcon(id));
+        }
+    }
+
+    @Test
+    public void testWatchIconsMatchTheWatchFace() {
+        for (int id = FIRST_CHECKED_ID; id <= LAST_CHECKED_ID; id++) {
+            /* The watch face drew the clear sky for anything it didn't know */
+            int icon = WeatherConditions.getWatchIcon(id);
+            assertEquals("Watch icon for " + id, watchFaceIcon(id),
+                    icon == ICON_UNKNOWN ? ICON_CLEAR : icon);
+        }
+    }
+
+    @Test
+    public void testDescriptions() {
+        assertEquals(200, WeatherConditions.getDescriptionId(200));
+        assertEquals(200, WeatherConditions.getDescriptionId(232));
+        assertEquals(300, WeatherConditions.getDescriptionId(321));
+        assertEquals(DESCRIPTION_UNKNOWN, WeatherConditions.getDescriptionId(233));
+        assertEquals(511, WeatherConditions.getDescriptionId(511));
+        assertEquals(DESCRIPTION_UNKNOWN, WeatherConditions.getDescriptionId(512));
+        assertEquals(962, WeatherConditions.getDescriptionId(962));
+        assertEquals(DESCRIPTION_UNKNOWN, WeatherConditions.getDescriptionId(963));
+        assertEquals(DESCRIPTION_UNKNOWN, WeatherConditions.getDescriptionId(-200));
+
+        for (int describedId : WeatherConditions.getDescriptionIds()) {
+            assertEquals(describedId, WeatherConditions.getDescriptionId(describedId));
+        }
+    }
+
+    /* SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition before the table */
+    private static int appArtIcon(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return ICON_STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return ICON_LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return ICON_RAIN;
+        } else if (weatherId == 511) {
+            return ICON_SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return ICON_RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return ICON_SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return ICON_FOG;
+        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
+            return ICON_STORM;
+        } else if (weatherId == 800) {
+            return ICON_CLEAR;
+        } else if (weatherId == 801) {
+            return ICON_LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return ICON_CLOUDS;
+        } else if (weatherId >= 900 && weatherId <= 906) {
+            return ICON_STORM;
+        } else if (weatherId >= 958 && weatherId <= 962) {
+            return ICON_STORM;
+        } else if (weatherId >= 951 && weatherId <= 957) {
+            return ICON_CLEAR;
+        }
+        return ICON_UNKNOWN;
+    }
+
+    /* SunshineWatchFace.getBitmapForWeatherCondition before the table */
+    private static int watchFaceIcon(int weatherId) {
+        int icon = ICON_CLEAR;
+        if (weatherId >= 200 && weatherId <= 232) {
+            icon = ICON_STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            icon = ICON_LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            icon = ICON_RAIN;
+        } else if (weatherId == 511) {
+            icon = ICON_SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            icon = ICON_LIGHT_RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            icon = ICON_SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            icon = ICON_FOG;
+        } else if (weatherId == 761 || weatherId == 781) {
+            icon = ICON_STORM;
+        } else if (weatherId == 800) {
+            icon = ICON_CLEAR;
+        } else if (weatherId == 801) {
+            icon = ICON_LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            icon = ICON_CLOUDS;
+        }
+        return icon;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+
+public class TestWeatherFormat {
+
+    @Test
+    public void testFormatTemperature() {
+        assertEquals("21°", WeatherFormat.formatTemperature("%1.0f°", true, 21.4));
+        assertEquals("-3°", WeatherFormat.formatTemperature("%1.0f°", true, -2.6));
+        assertEquals("71°", WeatherFormat.formatTemperature("%1.0f°", false, 21.4));
+    }
+
+    @Test
+    public void testWindDirection() {
+        assertEquals("N", WeatherFormat.getWindDirection(0));
+        assertEquals("N", WeatherFormat.getWindDirection(350));
+        assertEquals("NE", WeatherFormat.getWindDirection(45));
+        assertEquals("S", WeatherFormat.getWindDirection(180));
+        assertEquals("NW", WeatherFormat.getWindDirection(337));
+    }
+}
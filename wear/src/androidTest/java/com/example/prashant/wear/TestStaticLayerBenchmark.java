@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.prashant.wear;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Draws a simulated day of the watch face into a bitmap the size of a watch's screen, once
+ * keeping the static layer in a bitmap and once drawing every layer on every frame, as the watch
+ * face did before. In every hour of the day the watch is interactive for 5 minutes, drawing a
+ * frame a second, and ambient for the rest, drawing a frame a minute; the forecast changes every
+ * 3 hours, and the day ends at midnight. Logged: the median frame time and the CPU time of the
+ * thread over the whole day, for both.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestStaticLayerBenchmark {
+
+    private static final String TAG = TestStaticLayerBenchmark.class.getSimpleName();
+
+    private static final int SCREEN_SIZE = 320;
+
+    private static final int HOURS = 24;
+    private static final int INTERACTIVE_SECONDS_PER_HOUR = 5 * 60;
+    private static final int AMBIENT_MINUTES_PER_HOUR = 55;
+    private static final int FRAMES_PER_HOUR = INTERACTIVE_SECONDS_PER_HOUR
+            + AMBIENT_MINUTES_PER_HOUR;
+    private static final int WEATHER_HOURS = 3;
+
+    private static final long SECOND_IN_MILLIS = 1000;
+    private static final long MINUTE_IN_MILLIS = 60 * SECOND_IN_MILLIS;
+    private static final long HOUR_IN_MILLIS = 60 * MINUTE_IN_MILLIS;
+
+    private final Rect mBounds = new Rect(0, 0, SCREEN_SIZE, SCREEN_SIZE);
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final Date mDate = new Date();
+
+    private Bitmap mScreen;
+    private Canvas mCanvas;
+    private WatchFaceRenderer mRenderer;
+    private long mMidnight;
+
+    @Before
+    public void setUp() {
+        mScreen = Bitmap.createBitmap(SCREEN_SIZE, SCREEN_SIZE, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mScreen);
+
+        mRenderer = new WatchFaceRenderer(
+                InstrumentationRegistry.getTargetContext().getResources());
+        mRenderer.setTimeZone(TimeZone.getDefault());
+        mRenderer.setRound(true);
+        mRenderer.setScreenWidth(SCREEN_SIZE);
+
+        /* Friday, 9/16/2016, at midnight in the test's time zone */
+        mCalendar.clear();
+        mCalendar.set(2016, Calendar.SEPTEMBER, 16, 0, 0, 0);
+        mMidnight = mCalendar.getTimeInMillis();
+    }
+
+    @After
+    public void tearDown() {
+        mRenderer.release();
+        mScreen.recycle();
+    }
+
+    @Test
+    public void testSimulatedDay() {
+        /* Once to warm up, then measured */
+        drawDay(false, null);
+        drawDay(true, null);
+
+        long[] directFrameNanos = new long[HOURS * FRAMES_PER_HOUR];
+        long directCpuNanos = drawDay(false, directFrameNanos);
+
+        int buildsBefore = mRenderer.getStaticLayerBuilds();
+        long[] layeredFrameNanos = new long[HOURS * FRAMES_PER_HOUR];
+        long layeredCpuNanos = drawDay(true, layeredFrameNanos);
+        int builds = mRenderer.getStaticLayerBuilds() - buildsBefore;
+
+        Log.i(TAG, "Every layer on every frame: median frame " + median(directFrameNanos) / 1000
+                + " us, " + directCpuNanos / 1000000 + " ms of CPU time for the day");
+        Log.i(TAG, "Static layer kept: median frame " + median(layeredFrameNanos) / 1000
+                + " us, " + layeredCpuNanos / 1000000 + " ms of CPU time for the day, "
+                + builds + " layer builds");
+
+        /* Two mode changes an hour, a forecast every 3 hours, and the new day */
+        assertEquals(HOURS * 2 + HOURS / WEATHER_HOURS + 1, builds);
+        assertTrue(layeredCpuNanos < directCpuNanos);
+    }
+
+    /**
+     * Draws the day starting at mMidnight.
+     *
+     * @param layered    Whether to keep the static layer, or draw every layer on every frame
+     * @param frameNanos Filled with the time each frame took, if not null
+     * @return The CPU time the thread spent on the day, in nanoseconds
+     */
+    private long drawDay(boolean layered, long[] frameNanos) {
+        int frame = 0;
+        long startCpuNanos = Debug.threadCpuTimeNanos();
+        for (int hour = 0; hour < HOURS; hour++) {
+            long hourStart = mMidnight + hour * HOUR_IN_MILLIS;
+            mRenderer.setAmbient(false);
+            for (int second = 0; second < INTERACTIVE_SECONDS_PER_HOUR; second++) {
+                if (hour % WEATHER_HOURS == 0 && second == INTERACTIVE_SECONDS_PER_HOUR / 2) {
+                    /* Another forecast, as processItem would deliver */
+                    mRenderer.setWeather(hour % 2 == 0 ? 800 : 501, 15 + hour / 2.0,
+                            5 + hour / 4.0);
+                }
+                long elapsed = drawFrame(hourStart + second * SECOND_IN_MILLIS, layered);
+                if (frameNanos != null) {
+                    frameNanos[frame++] = elapsed;
+                }
+            }
+
+            mRenderer.setAmbient(true);
+            for (int minute = 60 - AMBIENT_MINUTES_PER_HOUR; minute < 60; minute++) {
+                long elapsed = drawFrame(hourStart + minute * MINUTE_IN_MILLIS, layered);
+                if (frameNanos != null) {
+                    frameNanos[frame++] = elapsed;
+                }
+            }
+        }
+
+        /* The first frame of the next day */
+        drawFrame(mMidnight + HOURS * HOUR_IN_MILLIS, layered);
+        return Debug.threadCpuTimeNanos() - startCpuNanos;
+    }
+
+    /**
+     * Does what Engine.onDraw does for a frame at the given time.
+     *
+     * @return The time the frame took, in nanoseconds
+     */
+    private long drawFrame(long now, boolean layered) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        if (mRenderer.isMinuteOver(now)) {
+            mCalendar.setTimeInMillis(now);
+            mDate.setTime(now);
+            mRenderer.setTime(mCalendar, mDate, false);
+        }
+        if (layered) {
+            mRenderer.draw(mCanvas, mBounds);
+        } else {
+            mRenderer.drawWithoutStaticLayer(mCanvas, mBounds);
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.prashant.wear;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Drives the watch face's renderer the way Engine.onDraw does, for 10,000 frames, onto a Canvas
+ * that only counts what it is asked to draw, and counts the objects allocated on the way. Frames
+ * within a minute must allocate nothing, in interactive and in ambient mode; the time is only
+ * formatted again once the minute is over, and the static layer when what it shows changes.
+ * Ambient frames move with burn-in protection.
+ * Logged: the allocations and the time per frame.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWatchFaceRenderer {
+
+    private static final String TAG = TestWatchFaceRenderer.class.getSimpleName();
+
+    private static final int FRAMES = 10000;
+
+    /* Friday, 9/16/2016, 17:45:00 in the test's time zone */
+    private static final int YEAR = 2016;
+    private static final int MONTH = Calendar.SEPTEMBER;
+    private static final int DAY = 16;
+    private static final int HOUR = 17;
+    private static final int MINUTE = 45;
+
+    private static final Rect BOUNDS = new Rect(0, 0, 320, 320);
+
+    /* A Canvas that draws nothing, and counts the calls the renderer makes */
+    private static class FakeCanvas extends Canvas {
+        int mDrawCalls;
+
+        /* Where the last bitmap was drawn */
+        float mBitmapLeft;
+        float mBitmapTop;
+
+        @Override
+        public void drawColor(int color) {
+            mDrawCalls++;
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+            mDrawCalls++;
+        }
+
+        @Override
+        public void drawText(String text, float x, float y, Paint paint) {
+            mDrawCalls++;
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+            mDrawCalls++;
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+            mDrawCalls++;
+            mBitmapLeft = left;
+            mBitmapTop = top;
+        }
+    }
+
+    private final FakeCanvas mCanvas = new FakeCanvas();
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final Date mDate = new Date();
+    private WatchFaceRenderer mRenderer;
+    private long mMinuteStart;
+
+    @Before
+    public void setUp() {
+        mRenderer = new WatchFaceRenderer(
+                InstrumentationRegistry.getTargetContext().getResources());
+        mRenderer.setTimeZone(TimeZone.getDefault());
+        mRenderer.setRound(true);
+        mRenderer.setWeather(800, 21.4, 11.8);
+
+        mCalendar.clear();
+        mCalendar.set(YEAR, MONTH, DAY, HOUR, MINUTE, 0);
+        mMinuteStart = mCalendar.getTimeInMillis();
+    }
+
+    @Test
+    public void testInteractiveFramesAllocateNothing() {
+        mRenderer.setAmbient(false);
+        assertEquals(0, drawMinute("interactive"));
+    }
+
+    @Test
+    public void testAmbientFramesAllocateNothing() {
+        mRenderer.setAmbientProperties(true, true);
+        mRenderer.setAmbient(true);
+        assertEquals(0, drawMinute("ambient"));
+    }
+
+    @Test
+    public void testTimeIsFormattedOncePerMinute() {
+        /* A frame a second, as in interactive mode: 10,000 seconds span 167 minutes */
+        int timeUpdates = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            timeUpdates += drawFrame(mMinuteStart + frame * 1000L);
+        }
+        assertEquals((FRAMES - 1) / 60 + 1, timeUpdates);
+
+        /* The clock going back, say to a time from the network, is a new minute as well */
+        assertEquals(1, drawFrame(mMinuteStart));
+    }
+
+    @Test
+    public void testStaticLayerIsOnlyDrawnWhenItChanges() {
+        drawFrame(mMinuteStart);
+        assertEquals(1, mRenderer.getStaticLayerBuilds());
+
+        /* A new minute of the same day only draws the time again */
+        drawFrame(mMinuteStart + 1000);
+        drawFrame(mMinuteStart + 60 * 1000);
+        assertEquals(1, mRenderer.getStaticLayerBuilds());
+
+        /* The weather shown already, as when another day of the forecast arrives */
+        mRenderer.setWeather(800, 21.4, 11.8);
+        drawFrame(mMinuteStart + 61 * 1000);
+        assertEquals(1, mRenderer.getStaticLayerBuilds());
+
+        mRenderer.setWeather(500, 21.4, 11.8);
+        drawFrame(mMinuteStart + 62 * 1000);
+        assertEquals(2, mRenderer.getStaticLayerBuilds());
+
+        mRenderer.setWeather(500, 19.0, 11.8);
+        drawFrame(mMinuteStart + 63 * 1000);
+        assertEquals(3, mRenderer.getStaticLayerBuilds());
+
+        mRenderer.setAmbient(true);
+        drawFrame(mMinuteStart + 64 * 1000);
+        assertEquals(4, mRenderer.getStaticLayerBuilds());
+
+        /* Midnight changes the date */
+        mCalendar.setTimeInMillis(mMinuteStart);
+        mCalendar.set(Calendar.HOUR_OF_DAY, 23);
+        mCalendar.set(Calendar.MINUTE, 59);
+        long beforeMidnight = mCalendar.getTimeInMillis();
+        drawFrame(beforeMidnight);
+        assertEquals(4, mRenderer.getStaticLayerBuilds());
+        drawFrame(beforeMidnight + 60 * 1000);
+        assertEquals(5, mRenderer.getStaticLayerBuilds());
+
+        /* So does a new size of the screen */
+        mCanvas.mDrawCalls = 0;
+        mRenderer.draw(mCanvas, new Rect(0, 0, 280, 280));
+        assertEquals(6, mRenderer.getStaticLayerBuilds());
+
+        /* What reaches the screen is the static layer and the time, with AM/PM */
+        assertEquals(5, mCanvas.mDrawCalls);
+        mRenderer.release();
+    }
+
+    @Test
+    public void testBurnInProtectionMovesAmbientFrames() {
+        mRenderer.setAmbientProperties(false, true);
+        mRenderer.setAmbient(true);
+
+        /* An ambient frame a minute, for an hour */
+        float lastLeft = Float.NaN;
+        float lastTop = Float.NaN;
+        boolean moved = false;
+        for (int minute = 0; minute < 60; minute++) {
+            drawFrame(mMinuteStart + minute * 60 * 1000L);
+            float left = mCanvas.mBitmapLeft;
+            float top = mCanvas.mBitmapTop;
+            assertTrue(Math.abs(left) <= 4 && Math.abs(top) <= 4);
+            assertFalse(left == lastLeft && top == lastTop);
+            moved |= left != 0 || top != 0;
+            lastLeft = left;
+            lastTop = top;
+        }
+        assertTrue(moved);
+
+        /* Interactive frames stay where they are */
+        mRenderer.setAmbient(false);
+        for (int minute = 0; minute < 60; minute++) {
+            drawFrame(mMinuteStart + minute * 60 * 1000L);
+            assertEquals(0f, mCanvas.mBitmapLeft);
+            assertEquals(0f, mCanvas.mBitmapTop);
+        }
+    }
+
+    /**
+     * Draws FRAMES frames spread over the first 50 seconds of a minute.
+     *
+     * @return The number of objects allocated by the frames
+     */
+    private int drawMinute(String mode) {
+        /* Formats the minute, and warms up the drawing */
+        assertEquals(1, drawFrame(mMinuteStart));
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long start = SystemClock.elapsedRealtimeNanos();
+        int timeUpdates = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            timeUpdates += drawFrame(mMinuteStart + frame * 5);
+        }
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+
+        assertEquals(0, timeUpdates);
+        assertFalse(mCanvas.mDrawCalls == 0);
+        Log.i(TAG, mode + ": " + FRAMES + " frames allocated " + allocations + " objects and took "
+                + elapsed / FRAMES + " ns each, for " + mCanvas.mDrawCalls + " draw calls");
+        return allocations;
+    }
+
+    /**
+     * Does what Engine.onDraw does for a frame at the given time.
+     *
+     * @return 1 if the frame had to format the time, 0 if not
+     */
+    private int drawFrame(long now) {
+        int timeUpdates = 0;
+        if (mRenderer.isMinuteOver(now)) {
+            mCalendar.setTimeInMillis(now);
+            mDate.setTime(now);
+            mRenderer.setTime(mCalendar, mDate, false);
+            timeUpdates = 1;
+        }
+        mRenderer.draw(mCanvas, BOUNDS);
+        return timeUpdates;
+    }
+}
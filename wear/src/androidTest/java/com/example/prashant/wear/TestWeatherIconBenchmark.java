@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.prashant.wear;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Times frames of the watch face drawn into a bitmap the size of a watch's screen, once the way
+ * onDraw used to draw the weather icon, decoding it from resources on every frame and building
+ * a gray filter for it in ambient mode, and once with the renderer and its icon cache. Logged:
+ * the median frame time of each, in interactive and in ambient mode.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherIconBenchmark {
+
+    private static final String TAG = TestWeatherIconBenchmark.class.getSimpleName();
+
+    private static final int WARM_UP_FRAMES = 100;
+    private static final int MEASURED_FRAMES = 1001;
+
+    private static final int SCREEN_SIZE = 320;
+
+    private final Resources mResources =
+            InstrumentationRegistry.getTargetContext().getResources();
+    private final Rect mBounds = new Rect(0, 0, SCREEN_SIZE, SCREEN_SIZE);
+
+    private Bitmap mScreen;
+    private Canvas mCanvas;
+    private WatchFaceRenderer mRenderer;
+    private final Paint mIconPaint = new Paint();
+
+    @Before
+    public void setUp() {
+        mScreen = Bitmap.createBitmap(SCREEN_SIZE, SCREEN_SIZE, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mScreen);
+
+        mRenderer = new WatchFaceRenderer(mResources);
+        mRenderer.setTimeZone(TimeZone.getDefault());
+        mRenderer.setRound(true);
+        mRenderer.setScreenWidth(SCREEN_SIZE);
+        mRenderer.setWeather(501, 12.5, 8.1);
+        Calendar calendar = Calendar.getInstance();
+        mRenderer.setTime(calendar, new Date(calendar.getTimeInMillis()), false);
+    }
+
+    @After
+    public void tearDown() {
+        mRenderer.release();
+        mScreen.recycle();
+    }
+
+    @Test
+    public void testInteractive() {
+        compare("interactive", false);
+    }
+
+    @Test
+    public void testAmbient() {
+        compare("ambient", true);
+    }
+
+    private void compare(String mode, boolean ambient) {
+        mRenderer.setAmbient(ambient);
+
+        long decodedNanos = medianFrameNanos(ambient, true);
+        long cachedNanos = medianFrameNanos(ambient, false);
+
+        Log.i(TAG, mode + ": a frame that decodes its icon takes a median "
+                + decodedNanos / 1000 + " us, one with the cached icon "
+                + cachedNanos / 1000 + " us");
+        assertTrue(cachedNanos < decodedNanos);
+    }
+
+    private long medianFrameNanos(boolean ambient, boolean decodeIcon) {
+        long[] frameNanos = new long[MEASURED_FRAMES];
+        for (int frame = -WARM_UP_FRAMES; frame < MEASURED_FRAMES; frame++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            mRenderer.draw(mCanvas, mBounds);
+            if (decodeIcon) {
+                drawDecodedIcon(ambient);
+            }
+            long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+            if (frame >= 0) {
+                frameNanos[frame] = elapsed;
+            }
+        }
+        Arrays.sort(frameNanos);
+        return frameNanos[MEASURED_FRAMES / 2];
+    }
+
+    /* What onDraw did for the weather icon before the cache, on top of what the renderer draws */
+    private void drawDecodedIcon(boolean ambient) {
+        Bitmap weatherIcon = BitmapFactory.decodeResource(mResources, R.drawable.ic_rain);
+        if (ambient) {
+            ColorMatrix colorMatrix = new ColorMatrix();
+            colorMatrix.setSaturation(0);
+            mIconPaint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
+        } else {
+            mIconPaint.setColorFilter(null);
+        }
+        mCanvas.drawBitmap(weatherIcon, 0, 0, mIconPaint);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.prashant.wear;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.prashant.wear.WeatherIconCache.VARIANT_GRAY;
+import static com.example.prashant.wear.WeatherIconCache.VARIANT_INTERACTIVE;
+import static com.example.prashant.wear.WeatherIconCache.VARIANT_LOW_BIT;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherIconCache {
+
+    private WeatherIconCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new WeatherIconCache(InstrumentationRegistry.getTargetContext().getResources());
+    }
+
+    @After
+    public void tearDown() {
+        mCache.clear();
+    }
+
+    @Test
+    public void testIconsAreDecodedOnce() {
+        Bitmap icon = mCache.get(WeatherConditions.ICON_RAIN, VARIANT_INTERACTIVE);
+        assertSame(icon, mCache.get(WeatherConditions.ICON_RAIN, VARIANT_INTERACTIVE));
+        assertNotSame(icon, mCache.get(WeatherConditions.ICON_RAIN, VARIANT_GRAY));
+    }
+
+    @Test
+    public void testIconsAreScaledToTheScreen() {
+        mCache.setScreenWidth(320);
+        Bitmap icon = mCache.get(WeatherConditions.ICON_CLEAR, VARIANT_INTERACTIVE);
+        assertEquals(60, icon.getWidth());
+        assertEquals(60, icon.getHeight());
+
+        /* A new size drops the icons of the old one */
+        mCache.setScreenWidth(400);
+        assertTrue(icon.isRecycled());
+        icon = mCache.get(WeatherConditions.ICON_CLEAR, VARIANT_GRAY);
+        assertEquals(75, icon.getWidth());
+        assertEquals(75, icon.getHeight());
+    }
+
+    @Test
+    public void testAmbientIconsAreGray() {
+        Bitmap icon = mCache.get(WeatherConditions.ICON_CLEAR, VARIANT_GRAY);
+        for (int y = 0; y < icon.getHeight(); y++) {
+            for (int x = 0; x < icon.getWidth(); x++) {
+                int pixel = icon.getPixel(x, y);
+                if (Color.alpha(pixel) == 255) {
+                    assertTrue("Pixel " + x + "," + y + " has a color",
+                            Math.abs(Color.red(pixel) - Color.green(pixel)) <= 1
+                                    && Math.abs(Color.green(pixel) - Color.blue(pixel)) <= 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLowBitIconsAreWhiteSilhouettes() {
+        Bitmap icon = mCache.get(WeatherConditions.ICON_CLEAR, VARIANT_INTERACTIVE);
+        Bitmap lowBit = mCache.get(WeatherConditions.ICON_CLEAR, VARIANT_LOW_BIT);
+        assertEquals(icon.getWidth(), lowBit.getWidth());
+        assertEquals(icon.getHeight(), lowBit.getHeight());
+
+        int white = 0;
+        for (int y = 0; y < lowBit.getHeight(); y++) {
+            for (int x = 0; x < lowBit.getWidth(); x++) {
+                int pixel = lowBit.getPixel(x, y);
+                boolean opaque = Color.alpha(icon.getPixel(x, y)) >= 128;
+                assertEquals("Pixel " + x + "," + y, opaque ? Color.WHITE : Color.TRANSPARENT,
+                        pixel);
+                if (opaque) {
+                    white++;
+                }
+            }
+        }
+        assertTrue(white > 0);
+    }
+
+    @Test
+    public void testTheCacheIsBounded() {
+        Bitmap first = mCache.get(WeatherConditions.ICON_CLEAR, VARIANT_INTERACTIVE);
+        for (int icon = 0; icon < WeatherConditions.ICON_COUNT; icon++) {
+            mCache.get(icon, VARIANT_INTERACTIVE);
+            mCache.get(icon, VARIANT_GRAY);
+        }
+        assertTrue(first.isRecycled());
+
+        Bitmap last = mCache.get(WeatherConditions.ICON_STORM, VARIANT_GRAY);
+        assertFalse(last.isRecycled());
+        mCache.clear();
+        assertTrue(last.isRecycled());
+    }
+}
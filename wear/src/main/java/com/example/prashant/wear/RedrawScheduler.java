@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.prashant.wear;
+
+/**
+ * Works out when the watch face has to draw its next frame in interactive mode, where nothing but
+ * the face's own timer redraws it. Without seconds, nothing on the face changes between two
+ * minutes, so it sleeps until the next minute starts; with seconds, until the next second does.
+ * <p>
+ * Every time zone in use today is a whole number of minutes off UTC, so a minute starts at the
+ * same instant everywhere, and so does midnight, which moves the face on to the next day. A
+ * forecast arriving from the phone draws a frame of its own right away, and doesn't move the
+ * next one.
+ */
+class RedrawScheduler {
+
+    static final long SECOND_IN_MILLIS = 1000;
+    static final long MINUTE_IN_MILLIS = 60 * SECOND_IN_MILLIS;
+
+    private boolean mShowSeconds;
+
+    /**
+     * @param showSeconds Whether the face shows the seconds, and has to be redrawn every second
+     */
+    void setShowSeconds(boolean showSeconds) {
+        mShowSeconds = showSeconds;
+    }
+
+    boolean isShowingSeconds() {
+        return mShowSeconds;
+    }
+
+    /**
+     * @param now The current time in milliseconds
+     * @return How long to wait before drawing the next frame, in milliseconds: until the start of
+     * the next second if the face shows the seconds, and of the next minute if not
+     */
+    long getDelayToNextRedraw(long now) {
+        long period = mShowSeconds ? SECOND_IN_MILLIS : MINUTE_IN_MILLIS;
+        long intoPeriod = now % period;
+        if (intoPeriod < 0) {
+            intoPeriod += period;
+        }
+        return period - intoPeriod;
+    }
+}
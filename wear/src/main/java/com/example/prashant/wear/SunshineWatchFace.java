@@ -20,19 +20,13 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.wearable.watchface.CanvasWatchFaceService;
@@ -45,7 +39,10 @@ import android.widget.Toast;
 import java.lang.ref.WeakReference;
 import android.text.format.DateFormat;
 
-import com.example.android.sunshine.R;
+import com.example.android.sunshine.shared.NormalizedDates;
+import com.example.android.sunshine.shared.WatchContract;
+import com.example.android.sunshine.shared.WatchForecast;
+import com.example.android.sunshine.shared.WatchPayload;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -59,32 +56,29 @@ import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.MessageApi;
 import com.google.android.gms.wearable.Node;
 import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 
 /**
- * Digital watch face with seconds. In ambient mode, the seconds aren't displayed. On devices with
- * low-bit ambient mode, the text is drawn without anti-aliasing in ambient mode.
+ * Digital watch face, which shows the seconds in interactive mode once the user taps it, until
+ * they tap it again. In ambient mode, the seconds aren't displayed. On devices with low-bit
+ * ambient mode, the text is drawn without anti-aliasing in ambient mode.
  */
 public class SunshineWatchFace extends CanvasWatchFaceService {
-    private static final Typeface NORMAL_TYPEFACE =
-            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
 
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second since seconds are
-     * displayed in interactive mode.
+     * The preference remembering whether the user wants to see the seconds.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final String PREF_SHOW_SECONDS = "show_seconds";
 
     /**
-     * Handler message id for updating the time periodically in interactive mode.
+     * Handler message id for updating the time in interactive mode, when the next minute, or the
+     * next second if the seconds are shown, starts.
      */
     private static final int MSG_UPDATE_TIME = 0;
 
@@ -121,56 +115,40 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
         private static final String TAG = "WatchFace_Service";
 
-        private static final String KEY_HIGH_TEMP = "max_temp";
-        private static final String KEY_LOW_TEMP = "min_temp";
-        private static final String KEY_WEATHER_ID = "weather_id";
-        private static final String KEY_PATH = "/wearable";
-        private static final String KEY_TIME = "current_time";
-
         private GoogleApiClient googleApiClient;
 
-        private int mWeatherId = 0;
-        private String mMaxTemperature = "0";
-        private String mMinTemperature = "0";
-        private long mTimeStamp;
+        /*
+         * Every day the phone has sent, from today on, decoded once when it arrives. At midnight
+         * we move on to the next day from here, without asking the phone.
+         */
+        private final WatchForecast mForecast = new WatchForecast();
+        private final WatchForecast mReceivedDay = new WatchForecast();
+
+        /* Today's normalized UTC date, and the last day we asked the phone for the weather */
+        private long mToday = -1;
+        private long mRequestedDate = -1;
+
+        /* Draws the frames, from what it works out when the time, weather or mode changes */
+        private WatchFaceRenderer mRenderer;
+
+        /* When the next interactive frame is due */
+        private final RedrawScheduler mScheduler = new RedrawScheduler();
 
-        private Paint mBackgroundPaint;
         private Calendar mCalendar;
-        private Paint mHourPaint;
-        private Paint mMinutePaint;
-        private Paint mDatePaint;
-        private Paint mColonPaint;
-        private Paint mMeridiemPaint;
-        private Paint mDividerLinePaint;
-        private Paint mWeatherIconPaint;
-        private Paint mLowTempPaint;
-        private Paint mHighTempPaint;
+        private Date mDate;
 
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
                 mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormat();
+                mRenderer.setTimeZone(TimeZone.getDefault());
                 invalidate();
+
+                // The clock may have been set, which moves the start of the next minute.
+                updateTimer();
             }
         };
 
-        private float mXOffset;
-        private float mYOffset;
-        private float mLineHeight;
-        private String mAmString;
-        private String mPmString;
-
-        private Date mDate;
-        private SimpleDateFormat mDayOfWeekFormat;
-        private Bitmap weatherIcon;
-
-        /**
-         * Whether the display supports fewer bits for each color in ambient mode. When true, we
-         * disable anti-aliasing in ambient mode.
-         */
-        boolean mLowBitAmbient;
-
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
@@ -179,34 +157,15 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_VARIABLE)
                     .setBackgroundVisibility(WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
                     .setShowSystemUiTime(false)
+                    .setAcceptsTapEvents(true)
                     .build());
 
-            Resources resources = SunshineWatchFace.this.getResources();
-            mYOffset = resources.getDimension(R.dimen.digital_y_offset);
-            mXOffset = resources.getDimension(R.dimen.digital_x_offset);
-
-            int timeColor = resources.getColor(R.color.digital_time_color);
-            mAmString = resources.getString(R.string.digital_am);
-            mPmString = resources.getString(R.string.digital_pm);
-            mLineHeight = resources.getDimension(R.dimen.digital_line_height);
-
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(resources.getColor(R.color.background));
+            mRenderer = new WatchFaceRenderer(SunshineWatchFace.this.getResources());
 
-            //mTextPaint = new Paint();
-            //mTextPaint = createTextPaint(resources.getColor(R.color.digital_text));
-            mDatePaint = createTextPaint(resources.getColor(R.color.digital_date_color));
-            mHourPaint = createTextPaint(timeColor);
-            mMinutePaint = createTextPaint(timeColor);
-            mColonPaint = createTextPaint(timeColor);
-            mMeridiemPaint = createTextPaint(resources.getColor(R.color.digital_Meridiem_color));
-
-            mDividerLinePaint = new Paint();
-            mDividerLinePaint.setColor(resources.getColor(R.color.digital_divider_color));
-
-            mWeatherIconPaint = new Paint();
-            mHighTempPaint = createTextPaint(resources.getColor(R.color.digital_high_temp_color));
-            mLowTempPaint = createTextPaint(resources.getColor(R.color.digital_low_temp_color));
+            boolean showSeconds = PreferenceManager.getDefaultSharedPreferences(
+                    SunshineWatchFace.this).getBoolean(PREF_SHOW_SECONDS, false);
+            mScheduler.setShowSeconds(showSeconds);
+            mRenderer.setShowSeconds(showSeconds);
 
             mCalendar = Calendar.getInstance();
             mDate = new Date();
@@ -214,30 +173,16 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             googleApiClient = new GoogleApiClient.Builder(getApplicationContext())
                     .addApi(Wearable.API).addOnConnectionFailedListener(this)
                     .addConnectionCallbacks(this).build();
-
-            initFormat();
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
             releaseGoogleApiClient();
+            mRenderer.release();
             super.onDestroy();
         }
 
-        private Paint createTextPaint(int textColor) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setTypeface(NORMAL_TYPEFACE);
-            paint.setAntiAlias(true);
-            return paint;
-        }
-
-        private void initFormat() {
-            mDayOfWeekFormat = new SimpleDateFormat("EEE, MMM d yyyy", Locale.getDefault());
-            mDayOfWeekFormat.setCalendar(mCalendar);
-        }
-
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
@@ -248,7 +193,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
                 // Update time date and zone in case they changed while we weren't visible.
                 mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormat();
+                mRenderer.setTimeZone(TimeZone.getDefault());
                 invalidate();
             } else {
                 unregisterReceiver();
@@ -272,13 +217,12 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                             for (Node node : nodes) {
                                 Wearable.MessageApi.sendMessage(googleApiClient
                                         , node.getId()
-                                        , KEY_PATH
+                                        , WatchContract.PATH_WEATHER
                                         , new byte[0]).setResultCallback(
                                         new ResultCallback<MessageApi.SendMessageResult>() {
                                             @Override
                                             public void onResult(MessageApi.SendMessageResult sendMessageResult) {
                                                 if (sendMessageResult.getStatus().isSuccess()) {
-                                                    Wearable.DataApi.getDataItems(googleApiClient).setResultCallback(OnConnectedResultCallback);
                                                     Log.d(TAG, "Message Sent Successfully");
                                                 } else {
                                                     Log.d(TAG, "Message sending Failed");
@@ -299,6 +243,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             mRegisteredTimeZoneReceiver = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
             filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+            /* Also sent when the user switches between a 12 and a 24 hour clock */
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
             SunshineWatchFace.this.registerReceiver(mTimeZoneReceiver, filter);
         }
 
@@ -316,32 +262,26 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             super.onApplyWindowInsets(insets);
 
             // Load resources that have alternate values for round watches.
-            Resources resources = SunshineWatchFace.this.getResources();
-            boolean isRound = insets.isRound();
-
-            float textSize = resources.getDimension(isRound
-                    ? R.dimen.digital_text_size_round : R.dimen.digital_text_size);
-
-            float MeridiemSize = resources.getDimension(isRound
-                    ? R.dimen.digital_Meridiem_size_round : R.dimen.digital_Meridiem_size);
-
-            float tempSize = resources.getDimension(isRound
-                    ? R.dimen.digital_temp_size_round : R.dimen.digital_temp_size);
+            mRenderer.setRound(insets.isRound());
+        }
 
-            mDatePaint.setTextSize(resources.getDimension(R.dimen.digital_date_text_size));
-            mHourPaint.setTextSize(textSize);
-            mMinutePaint.setTextSize(textSize);
-            mColonPaint.setTextSize(textSize);
-            mMeridiemPaint.setTextSize(MeridiemSize);
-            mHighTempPaint.setTextSize(tempSize);
-            mLowTempPaint.setTextSize(tempSize);
+        @Override
+        public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+            super.onSurfaceChanged(holder, format, width, height);
 
+            // The insets don't tell us the size of the screen, so the icons are scaled here.
+            mRenderer.setScreenWidth(width);
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
-            mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+
+            // Ambient frames are drawn without anti-aliasing on screens with fewer bits per
+            // color, and move a little every minute on screens that need burn-in protection.
+            mRenderer.setAmbientProperties(
+                    properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false),
+                    properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false));
         }
 
         @Override
@@ -354,38 +294,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
 
-            mMeridiemPaint.setColor(inAmbientMode ?
-                    getResources().getColor(R.color.digital_Meridiem_color_ambient) :
-                    getResources().getColor(R.color.digital_Meridiem_color));
-
-            mDatePaint.setColor(inAmbientMode ?
-                    getResources().getColor(R.color.digital_date_color_ambient) :
-                    getResources().getColor(R.color.digital_date_color));
-
-            mDividerLinePaint.setColor(inAmbientMode ?
-                    getResources().getColor(R.color.digital_divider_color_ambient) :
-                    getResources().getColor(R.color.digital_divider_color));
-
-            mHighTempPaint.setColor(inAmbientMode ?
-                    getResources().getColor(R.color.digital_high_temp_color_ambient) :
-                    getResources().getColor(R.color.digital_high_temp_color));
-
-            mLowTempPaint.setColor(inAmbientMode ?
-                    getResources().getColor(R.color.digital_low_temp_color_ambient) :
-                    getResources().getColor(R.color.digital_low_temp_color));
-
-
-            if (mLowBitAmbient) {
-                mDatePaint.setAntiAlias(!inAmbientMode);
-                mHourPaint.setAntiAlias(!inAmbientMode);
-                mMinutePaint.setAntiAlias(!inAmbientMode);
-                mColonPaint.setAntiAlias(!inAmbientMode);
-                mDividerLinePaint.setAntiAlias(!inAmbientMode);
-                mWeatherIconPaint.setAntiAlias(!inAmbientMode);
-                mHighTempPaint.setAntiAlias(!inAmbientMode);
-                mLowTempPaint.setAntiAlias(!inAmbientMode);
-            }
-
+            mRenderer.setAmbient(inAmbientMode);
             invalidate();
 
             // Whether the timer should be running depends on whether we're visible (as well as
@@ -393,174 +302,97 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             updateTimer();
         }
 
-        private String formatTwoDigitNumber(int hour) {
-            return String.format("%02d", hour);
-        }
-
-        private String getMeridiemString(int Meridiem) {
-            return Meridiem == Calendar.AM ? mAmString : mPmString;
-        }
-
-        private Bitmap getBitmapForWeatherCondition(int weatherId) {
-
-            int weatherIconId = R.drawable.ic_clear;
-
-            if (weatherId >= 200 && weatherId <= 232) {
-                weatherIconId = R.drawable.ic_storm;
-            } else if (weatherId >= 300 && weatherId <= 321) {
-                weatherIconId = R.drawable.ic_light_rain;
-            } else if (weatherId >= 500 && weatherId <= 504) {
-                weatherIconId = R.drawable.ic_rain;
-            } else if (weatherId == 511) {
-                weatherIconId = R.drawable.ic_snow;
-            } else if (weatherId >= 520 && weatherId <= 531) {
-                weatherIconId = R.drawable.ic_light_rain;
-            } else if (weatherId >= 600 && weatherId <= 622) {
-                weatherIconId = R.drawable.ic_snow;
-            } else if (weatherId >= 701 && weatherId <= 761) {
-                weatherIconId = R.drawable.ic_fog;
-            } else if (weatherId == 761 || weatherId == 781) {
-                weatherIconId = R.drawable.ic_storm;
-            } else if (weatherId == 800) {
-                weatherIconId = R.drawable.ic_clear;
-            } else if (weatherId == 801) {
-                weatherIconId = R.drawable.ic_light_clouds;
-            } else if (weatherId >= 802 && weatherId <= 804) {
-                weatherIconId = R.drawable.ic_cloudy;
+        @Override
+        public void onTapCommand(int tapType, int x, int y, long eventTime) {
+            if (tapType != TAP_TYPE_TAP) {
+                return;
             }
 
-            return BitmapFactory.decodeResource(getResources(), weatherIconId);
+            boolean showSeconds = !mScheduler.isShowingSeconds();
+            PreferenceManager.getDefaultSharedPreferences(SunshineWatchFace.this).edit()
+                    .putBoolean(PREF_SHOW_SECONDS, showSeconds).apply();
+            mScheduler.setShowSeconds(showSeconds);
+            mRenderer.setShowSeconds(showSeconds);
+            updateTimer();
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-
             long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-            mDate.setTime(now);
-
-            boolean is24Hour = DateFormat.is24HourFormat(SunshineWatchFace.this);
-
-            // Draw the background.
-            if (isInAmbientMode()) {
-                canvas.drawColor(Color.BLACK);
-            } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
-            }
 
-            int TimeCenterAdjust = 40;
-            int MeridiemAdjust = 20;
-            String colonString =":";
-
-            //onDraw hours
-            String hourString;
-            if (is24Hour) {
-                hourString = formatTwoDigitNumber(mCalendar.get(Calendar.HOUR_OF_DAY));
-            } else {
-                int hour = mCalendar.get(Calendar.HOUR);
-                if (hour == 0) {
-                    hour = 12;
+            /* Once a minute; the frames in between draw what the renderer has */
+            if (mRenderer.isMinuteOver(now)) {
+                mCalendar.setTimeInMillis(now);
+                mDate.setTime(now);
+                mRenderer.setTime(mCalendar, mDate,
+                        DateFormat.is24HourFormat(SunshineWatchFace.this));
+
+                long today = NormalizedDates.normalizeDate(now
+                        + mCalendar.get(Calendar.ZONE_OFFSET) + mCalendar.get(Calendar.DST_OFFSET));
+                if (today != mToday) {
+                    mToday = today;
+                    showToday();
                 }
-
-                hourString = String.valueOf(hour);
             }
-            
-            canvas.drawText(hourString,
-                    bounds.centerX() - (mHourPaint.measureText(hourString) + TimeCenterAdjust),
-                    mYOffset,
-                    mHourPaint);
-
-            //onDraw Colon
-            canvas.drawText(colonString,
-                    bounds.centerX() - TimeCenterAdjust,
-                    mYOffset ,
-                    mColonPaint);
-
-            //onDraw minutes
-            String minuteString = formatTwoDigitNumber(mCalendar.get(Calendar.MINUTE));
-            canvas.drawText(minuteString,
-                    bounds.centerX() + mColonPaint.measureText(colonString) - TimeCenterAdjust,
-                    mYOffset,
-                    mMinutePaint);
-
-            // In unmuted interactive mode, draw a second blinking colon followed by the seconds.
-            // Otherwise, if we're in 12-hour mode, draw AM/PM
-            if (!is24Hour) {
-                canvas.drawText(getMeridiemString(mCalendar.get(Calendar.AM_PM)),
-                        bounds.centerX() + mMinutePaint.measureText(minuteString) - MeridiemAdjust,
-                        mYOffset,
-                        mMeridiemPaint);
+            if (mScheduler.isShowingSeconds()) {
+                mRenderer.setSecond(now);
             }
 
+            mRenderer.draw(canvas, bounds);
+        }
 
-            String formattedDate = mDayOfWeekFormat.format(mDate).toUpperCase();
-            // Day of week
-            canvas.drawText(formattedDate,
-                    bounds.centerX() - (mDatePaint.measureText(formattedDate)) / 2,
-                    mYOffset + mLineHeight,
-                    mDatePaint);
-
-            // onDraw horizontal divider
-            int lineWidth = 70;
-            canvas.drawLine(bounds.centerX() - lineWidth / 2,
-                    mYOffset + (mLineHeight * 1.8f),
-                    bounds.centerX() + lineWidth / 2,
-                    mYOffset + (mLineHeight * 1.8f),
-                    mDividerLinePaint);
-
-            //onDraw weather Icon
-            weatherIcon = getBitmapForWeatherCondition(mWeatherId);
-            float xImage = (bounds.width() / 6 + (bounds.width() / 6 - weatherIcon.getHeight()) / 2);
-            if (isInAmbientMode()) {
-                ColorMatrix colorMatrix = new ColorMatrix();
-                colorMatrix.setSaturation(0);
-                ColorMatrixColorFilter filter = new ColorMatrixColorFilter(colorMatrix);
-                mWeatherIconPaint.setColorFilter(filter);
-                canvas.drawBitmap(weatherIcon, xImage,
-                        mYOffset + (mLineHeight * 2f),
-                        mWeatherIconPaint);
-            } else {
-                mWeatherIconPaint.setColorFilter(null);
-                canvas.drawBitmap(weatherIcon,
-                        xImage,
-                        mYOffset + (mLineHeight * 2f),
-                        mWeatherIconPaint);
+        /**
+         * Adds the day held by a weather data item to our forecast.
+         */
+        public void processItem(DataItem dataItem) {
+            long date = WatchContract.getDateOfDayPath(dataItem.getUri().getPath());
+            if (date == -1) {
+                return;
             }
 
-            Log.d(TAG, "HERE IS HIGH TEMPERAtURE - " + mMaxTemperature);
-            Log.d(TAG, "HERE IS LOW TEMPERAtURE - " + mMinTemperature);
-
-            //onDraw weather detail
-            String highTempText = String.format(getString(R.string.format_temperature),
-                    Float.valueOf(mMaxTemperature));
-            String lowTempText = String.format(getString(R.string.format_temperature),
-                    Float.valueOf(mMinTemperature));
-
-            canvas.drawText(highTempText,
-                    bounds.centerX() - 40,
-                    mYOffset + (mLineHeight * 3.2f),
-                    mHighTempPaint);
+            DataMap map = DataMapItem.fromDataItem(dataItem).getDataMap();
+            if (!WatchPayload.decode(map.getByteArray(WatchContract.KEY_FORECAST),
+                    mReceivedDay)) {
+                Log.w(TAG, "Ignoring a day we can't decode: " + dataItem.getUri());
+                return;
+            }
+            if (mForecast.putAll(mReceivedDay) && mToday != -1) {
+                showToday();
+            }
+        }
 
-            canvas.drawText(lowTempText,
-                    bounds.centerX() + 35,
-                    mYOffset + (mLineHeight * 3.2f),
-                    mLowTempPaint);
+        /**
+         * Drops the day of a weather data item the phone deleted, which it does once the day is
+         * over, and shows what we have for today without it.
+         */
+        private void processDeletedItem(DataItem dataItem) {
+            long date = WatchContract.getDateOfDayPath(dataItem.getUri().getPath());
+            if (date != -1 && mForecast.remove(date) && mToday != -1) {
+                showToday();
+                invalidate();
+            }
         }
 
-        public void processItem(DataItem dataItem) {
-            if(KEY_PATH.equals(dataItem.getUri().getPath())){
-                DataMap map = DataMapItem.fromDataItem(dataItem).getDataMap();
-                mMaxTemperature = map.getString(KEY_HIGH_TEMP);
-                mMinTemperature = map.getString(KEY_LOW_TEMP);
-                mWeatherId = map.getInt(KEY_WEATHER_ID);
-                mTimeStamp = map.getLong(KEY_TIME);
-
-                Log.d(TAG, "here is high temperature - " + mMaxTemperature);
-                Log.d(TAG, "here is low temperature - " + mMinTemperature);
-                Log.d(TAG, "here is weather id temperature - " + mWeatherId);
-                Log.d(TAG, "here is the time stamp - " + mTimeStamp);
+        /**
+         * Shows today's weather, or that of the next day we have if we have none for today, and
+         * asks the phone for the weather if we have nothing from today on. We ask at most once a
+         * day; the phone's syncs send every change anyway.
+         */
+        private void showToday() {
+            mForecast.removeBefore(mToday);
 
+            int index = mForecast.indexOf(mToday);
+            if (index == -1) {
+                index = mForecast.indexOfFirstDayFrom(mToday);
+            }
+
+            if (index != -1) {
+                mRenderer.setWeather(mForecast.getWeatherId(index), mForecast.getHighTemp(index),
+                        mForecast.getLowTemp(index));
                 invalidate();
+            } else if (mRequestedDate != mToday && googleApiClient.isConnected()) {
+                mRequestedDate = mToday;
+                requestWeatherUpdate();
             }
         }
 
@@ -584,14 +416,12 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         }
 
         /**
-         * Handle updating the time periodically in interactive mode.
+         * Handle updating the time in interactive mode, and sleep until the next frame is due.
          */
         private void handleUpdateTimeMessage() {
             invalidate();
             if (shouldTimerBeRunning()) {
-                long timeMs = System.currentTimeMillis();
-                long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                        - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
+                long delayMs = mScheduler.getDelayToNextRedraw(System.currentTimeMillis());
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
             }
         }
@@ -604,8 +434,15 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         @Override
         public void onConnected(@Nullable Bundle bundle) {
             Log.d(TAG, "connected GoogleAPI");
-            requestWeatherUpdate();
             Wearable.DataApi.addListener(googleApiClient, onDataChangedListener);
+
+            /* The Data Layer keeps the days the phone sent on the watch, so this needs no radio */
+            Uri weatherUri = new Uri.Builder()
+                    .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                    .path(WatchContract.PATH_WEATHER)
+                    .build();
+            Wearable.DataApi.getDataItems(googleApiClient, weatherUri, DataApi.FILTER_PREFIX)
+                    .setResultCallback(OnConnectedResultCallback);
         }
 
         @Override
@@ -632,6 +469,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                         DataItem dataItem = dataEvent.getDataItem();
                         Log.d(TAG, "On Data Changed Data Event Details - " + dataEvent.toString());
                         processItem(dataItem);
+                    } else if (dataEvent.getType() == DataEvent.TYPE_DELETED) {
+                        processDeletedItem(dataEvent.getDataItem());
                     }
                 }
 
@@ -651,6 +490,11 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 }
 
                 dataItems.release();
+
+                /* Asks the phone if the watch has nothing from today on */
+                if (mToday != -1) {
+                    showToday();
+                }
                 invalidate();
             }
         };
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.prashant.wear;
+
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import com.example.android.sunshine.R;
+
+/**
+ * The paints the watch face draws with in one mode, interactive or ambient. The watch face keeps
+ * one set for each mode, made once, so entering or leaving ambient mode picks the other set
+ * instead of looking up and setting the color of every paint.
+ */
+class WatchFacePaints {
+
+    private static final Typeface NORMAL_TYPEFACE =
+            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+
+    final Paint mBackgroundPaint;
+    final Paint mHourPaint;
+    final Paint mMinutePaint;
+    final Paint mColonPaint;
+    final Paint mMeridiemPaint;
+    final Paint mDatePaint;
+    final Paint mDividerLinePaint;
+    final Paint mWeatherIconPaint;
+    final Paint mHighTempPaint;
+    final Paint mLowTempPaint;
+
+    /**
+     * @param ambient Whether to make the paints of ambient mode, on a black background
+     */
+    WatchFacePaints(Resources resources, boolean ambient) {
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(ambient ? Color.BLACK : resources.getColor(R.color.background));
+
+        int timeColor = resources.getColor(R.color.digital_time_color);
+        mHourPaint = createTextPaint(timeColor);
+        mMinutePaint = createTextPaint(timeColor);
+        mColonPaint = createTextPaint(timeColor);
+        mMeridiemPaint = createTextPaint(resources.getColor(ambient
+                ? R.color.digital_Meridiem_color_ambient : R.color.digital_Meridiem_color));
+        mDatePaint = createTextPaint(resources.getColor(ambient
+                ? R.color.digital_date_color_ambient : R.color.digital_date_color));
+
+        mDividerLinePaint = new Paint();
+        mDividerLinePaint.setColor(resources.getColor(ambient
+                ? R.color.digital_divider_color_ambient : R.color.digital_divider_color));
+
+        mWeatherIconPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        mHighTempPaint = createTextPaint(resources.getColor(ambient
+                ? R.color.digital_high_temp_color_ambient : R.color.digital_high_temp_color));
+        mLowTempPaint = createTextPaint(resources.getColor(ambient
+                ? R.color.digital_low_temp_color_ambient : R.color.digital_low_temp_color));
+    }
+
+    private static Paint createTextPaint(int textColor) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setTypeface(NORMAL_TYPEFACE);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    /**
+     * @param timeSize     The size of the hours, the minutes and the colon
+     * @param meridiemSize The size of AM/PM
+     * @param dateSize     The size of the date
+     * @param tempSize     The size of the temperatures
+     */
+    void setTextSizes(float timeSize, float meridiemSize, float dateSize, float tempSize) {
+        mHourPaint.setTextSize(timeSize);
+        mMinutePaint.setTextSize(timeSize);
+        mColonPaint.setTextSize(timeSize);
+        mMeridiemPaint.setTextSize(meridiemSize);
+        mDatePaint.setTextSize(dateSize);
+        mHighTempPaint.setTextSize(tempSize);
+        mLowTempPaint.setTextSize(tempSize);
+    }
+
+    /**
+     * Turns anti-aliasing and bitmap filtering on or off, off being for screens with fewer bits
+     * per color in ambient mode.
+     */
+    void setAntiAlias(boolean antiAlias) {
+        mHourPaint.setAntiAlias(antiAlias);
+        mMinutePaint.setAntiAlias(antiAlias);
+        mColonPaint.setAntiAlias(antiAlias);
+        mMeridiemPaint.setAntiAlias(antiAlias);
+        mDatePaint.setAntiAlias(antiAlias);
+        mDividerLinePaint.setAntiAlias(antiAlias);
+        mWeatherIconPaint.setAntiAlias(antiAlias);
+        mWeatherIconPaint.setFilterBitmap(antiAlias);
+        mHighTempPaint.setAntiAlias(antiAlias);
+        mLowTempPaint.setAntiAlias(antiAlias);
+    }
+}
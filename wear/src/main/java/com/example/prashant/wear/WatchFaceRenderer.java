@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.prashant.wear;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.shared.WatchFaceText;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Draws the watch face. Everything a frame needs, the text, its width, the weather icon and the
+ * paints, is worked out when it changes: the weather when a forecast arrives, the date once a
+ * day, and the paints and icon when the size of the screen is known. The paints and icons of both
+ * modes are made once, so entering or leaving ambient mode only picks the other set, and the text
+ * and width of every hour and minute are worked out with the size of the text, so a new minute is
+ * a few array reads. {@link #draw(Canvas, Rect)} then only hands what it has to the Canvas, and
+ * allocates nothing.
+ * <p>
+ * In ambient mode the watch face wakes up once a minute to draw a single frame, which is most of
+ * what it costs in battery over a day, so that frame does as little as it can. On screens that
+ * need burn-in protection, ambient frames move the whole face by a few pixels every minute, so
+ * no pixel stays lit all the time.
+ * <p>
+ * The face is drawn in two layers. The static layer, the background, the date, the divider, the
+ * weather icon and the temperatures, only changes a few times a day, so it is drawn once into an
+ * offscreen bitmap, and drawn again only when the weather, the date, the mode or the size of the
+ * text changes. A frame copies that bitmap to the screen and draws the time over it.
+ * <p>
+ * A renderer is only used from the thread the watch face draws on.
+ */
+class WatchFaceRenderer {
+
+    /* How far the colon sits left of the center, and the AM/PM left of the minutes' end */
+    private static final int TIME_CENTER_ADJUST = 40;
+    private static final int MERIDIEM_ADJUST = 20;
+
+    private static final String COLON = ":";
+
+    /* The width of the divider between the date and the weather */
+    private static final int DIVIDER_WIDTH = 70;
+
+    private static final long MINUTE_IN_MILLIS = 60 * 1000;
+
+    /*
+     * Where ambient frames move the face with burn-in protection, in pixels, one after the other
+     * a minute each. No two neighbors are the same, and none is more than 4 pixels off.
+     */
+    private static final int[] BURN_IN_OFFSETS_X = {0, 4, 2, -2, -4, -2, 2, 4, 0, -4};
+    private static final int[] BURN_IN_OFFSETS_Y = {0, 2, 4, 2, 0, -4, -2, -4, 4, -2};
+
+    private final Resources mResources;
+
+    /* The paints of each mode, and those of the mode the watch is in */
+    private final WatchFacePaints mInteractivePaints;
+    private final WatchFacePaints mAmbientPaints;
+    private WatchFacePaints mPaints;
+
+    /* The weather icons, decoded and scaled once, in each variant */
+    private final WeatherIconCache mIconCache;
+
+    private final float mYOffset;
+    private final float mLineHeight;
+    private final String mAmString;
+    private final String mPmString;
+    private final String mTemperatureFormat;
+
+    /* The hour of the day on each clock, and the minute, as they are shown, and their widths */
+    private final String[] mHourTexts12 = new String[24];
+    private final String[] mHourTexts24 = new String[24];
+    private final String[] mMinuteTexts = new String[60];
+    private final float[] mHourWidths12 = new float[24];
+    private final float[] mHourWidths24 = new float[24];
+    private final float[] mMinuteWidths = new float[60];
+
+    private SimpleDateFormat mDateFormat;
+    private boolean mAmbient;
+
+    /*
+     * Whether the screen has fewer bits per color in ambient mode, in which case we draw without
+     * anti-aliasing, and whether it needs burn-in protection.
+     */
+    private boolean mLowBitAmbient;
+    private boolean mBurnInProtection;
+
+    /* The minute the time is for, from its first millisecond to the next minute's */
+    private long mMinuteStart = Long.MAX_VALUE;
+    private long mMinuteEnd = Long.MIN_VALUE;
+
+    private int mHourOfDay;
+    private int mMinute;
+    private boolean mIs24Hour;
+
+    /* Whether interactive frames show the seconds, and the second of the minute they show */
+    private boolean mShowSeconds;
+    private int mSecond;
+    private int mBurnInOffset;
+
+    /* The day the date text is for, as the year * 1000 + the day of the year, or -1 */
+    private int mDateDay = -1;
+
+    private String mMeridiemText;
+    private String mDateText;
+    private String mHighTempText;
+    private String mLowTempText;
+
+    private float mColonWidth;
+    private float mDateWidth;
+
+    private int mWeatherIcon = WeatherConditions.ICON_UNKNOWN;
+    private Bitmap mWeatherIconBitmap;
+
+    /* The static layer, the Canvas drawing into it, and whether it has to be drawn again */
+    private Bitmap mStaticLayer;
+    private final Canvas mStaticLayerCanvas = new Canvas();
+    private boolean mStaticLayerDirty = true;
+    private int mStaticLayerBuilds;
+
+    WatchFaceRenderer(Resources resources) {
+        mResources = resources;
+
+        mYOffset = resources.getDimension(R.dimen.digital_y_offset);
+        mLineHeight = resources.getDimension(R.dimen.digital_line_height);
+        mAmString = resources.getString(R.string.digital_am);
+        mPmString = resources.getString(R.string.digital_pm);
+        mTemperatureFormat = resources.getString(R.string.format_temperature);
+
+        mInteractivePaints = new WatchFacePaints(resources, false);
+        mAmbientPaints = new WatchFacePaints(resources, true);
+        mPaints = mInteractivePaints;
+
+        for (int hourOfDay = 0; hourOfDay < 24; hourOfDay++) {
+            mHourTexts12[hourOfDay] = WatchFaceText.formatHour(hourOfDay, false);
+            mHourTexts24[hourOfDay] = WatchFaceText.formatHour(hourOfDay, true);
+        }
+        for (int minute = 0; minute < 60; minute++) {
+            mMinuteTexts[minute] = WatchFaceText.formatMinute(minute);
+        }
+
+        mIconCache = new WeatherIconCache(resources);
+
+        mHighTempText = WatchFaceText.formatTemperature(mTemperatureFormat, 0);
+        mLowTempText = mHighTempText;
+        setWeatherIcon(WeatherConditions.ICON_CLEAR);
+
+        measureText();
+        setTimeZone(TimeZone.getDefault());
+    }
+
+    /**
+     * Makes the next {@link #setTime(Calendar, Date, boolean)} format the date in the time zone,
+     * and the next {@link #isMinuteOver(long)} return true.
+     */
+    void setTimeZone(TimeZone timeZone) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        mDateFormat = WatchFaceText.createDateFormat(calendar);
+        mDateDay = -1;
+        mMinuteStart = Long.MAX_VALUE;
+        mMinuteEnd = Long.MIN_VALUE;
+    }
+
+    /**
+     * @param now The current time in milliseconds
+     * @return true if the time shown isn't the minute of now, and
+     * {@link #setTime(Calendar, Date, boolean)} has to be called before the next frame
+     */
+    boolean isMinuteOver(long now) {
+        return now < mMinuteStart || now >= mMinuteEnd;
+    }
+
+    /**
+     * Picks the time shown for the rest of the minute, and formats the date if the day changed.
+     *
+     * @param calendar Set to the current time, in the time zone last given to setTimeZone
+     * @param date     Set to the current time
+     * @param is24Hour Whether the user wants a 24 hour clock
+     */
+    void setTime(Calendar calendar, Date date, boolean is24Hour) {
+        mMinuteStart = calendar.getTimeInMillis() - calendar.get(Calendar.SECOND) * 1000
+                - calendar.get(Calendar.MILLISECOND);
+        mMinuteEnd = mMinuteStart + MINUTE_IN_MILLIS;
+
+        mHourOfDay = calendar.get(Calendar.HOUR_OF_DAY);
+        mMinute = calendar.get(Calendar.MINUTE);
+        mSecond = calendar.get(Calendar.SECOND);
+        mIs24Hour = is24Hour;
+        mMeridiemText = is24Hour ? null
+                : calendar.get(Calendar.AM_PM) == Calendar.AM ? mAmString : mPmString;
+        mBurnInOffset = (int) ((mMinuteStart / MINUTE_IN_MILLIS) % BURN_IN_OFFSETS_X.length);
+
+        /* The date only changes once a day, or with the time zone */
+        int dateDay = calendar.get(Calendar.YEAR) * 1000 + calendar.get(Calendar.DAY_OF_YEAR);
+        if (dateDay != mDateDay) {
+            mDateDay = dateDay;
+            String dateText = WatchFaceText.formatDate(mDateFormat, date);
+            if (!dateText.equals(mDateText)) {
+                mDateText = dateText;
+                mDateWidth = mInteractivePaints.mDatePaint.measureText(mDateText);
+                mStaticLayerDirty = true;
+            }
+        }
+    }
+
+    /**
+     * Picks the second shown by interactive frames, if they show the seconds.
+     *
+     * @param now The current time in milliseconds, within the minute last given to
+     *            {@link #setTime(Calendar, Date, boolean)}
+     */
+    void setSecond(long now) {
+        mSecond = (int) ((now - mMinuteStart) / 1000);
+    }
+
+    /**
+     * @param showSeconds Whether interactive frames show the seconds, next to the minutes, in
+     *                    the size of AM/PM
+     */
+    void setShowSeconds(boolean showSeconds) {
+        mShowSeconds = showSeconds;
+    }
+
+    /**
+     * Formats the temperatures and loads the icon of the weather shown.
+     *
+     * @param weatherId The OpenWeatherMap condition id of the day
+     * @param highTemp  The high of the day, in °C
+     * @param lowTemp   The low of the day, in °C
+     */
+    void setWeather(int weatherId, double highTemp, double lowTemp) {
+        String highTempText = WatchFaceText.formatTemperature(mTemperatureFormat, highTemp);
+        String lowTempText = WatchFaceText.formatTemperature(mTemperatureFormat, lowTemp);
+
+        /* The watch face is told about the same day again whenever any day arrives */
+        if (!highTempText.equals(mHighTempText) || !lowTempText.equals(mLowTempText)) {
+            mHighTempText = highTempText;
+            mLowTempText = lowTempText;
+            mStaticLayerDirty = true;
+        }
+
+        /* We have always drawn the clear sky for the conditions we have no icon for */
+        int icon = WeatherConditions.getWatchIcon(weatherId);
+        setWeatherIcon(icon == WeatherConditions.ICON_UNKNOWN
+                ? WeatherConditions.ICON_CLEAR : icon);
+    }
+
+    private void setWeatherIcon(int icon) {
+        if (icon != mWeatherIcon) {
+            mWeatherIcon = icon;
+            updateWeatherIconBitmap();
+        }
+    }
+
+    private void updateWeatherIconBitmap() {
+        int variant = !mAmbient ? WeatherIconCache.VARIANT_INTERACTIVE
+                : mLowBitAmbient ? WeatherIconCache.VARIANT_LOW_BIT
+                : WeatherIconCache.VARIANT_GRAY;
+        mWeatherIconBitmap = mIconCache.get(mWeatherIcon, variant);
+        mStaticLayerDirty = true;
+    }
+
+    /**
+     * Scales the weather icons to the size of the watch face.
+     *
+     * @param width The width of the watch face in pixels
+     */
+    void setScreenWidth(int width) {
+        mIconCache.setScreenWidth(width);
+        updateWeatherIconBitmap();
+    }
+
+    /**
+     * Recycles the weather icons and the static layer. The renderer must not draw afterwards.
+     */
+    void release() {
+        mWeatherIconBitmap = null;
+        mIconCache.clear();
+        if (mStaticLayer != null) {
+            mStaticLayerCanvas.setBitmap(null);
+            mStaticLayer.recycle();
+            mStaticLayer = null;
+        }
+    }
+
+    /**
+     * @return How many times the static layer has been drawn, to check that frames don't
+     * draw it
+     */
+    int getStaticLayerBuilds() {
+        return mStaticLayerBuilds;
+    }
+
+    /**
+     * Sizes the text for the shape of the screen, and measures every hour and minute.
+     */
+    void setRound(boolean isRound) {
+        float textSize = mResources.getDimension(isRound
+                ? R.dimen.digital_text_size_round : R.dimen.digital_text_size);
+
+        float meridiemSize = mResources.getDimension(isRound
+                ? R.dimen.digital_Meridiem_size_round : R.dimen.digital_Meridiem_size);
+
+        float dateSize = mResources.getDimension(R.dimen.digital_date_text_size);
+
+        float tempSize = mResources.getDimension(isRound
+                ? R.dimen.digital_temp_size_round : R.dimen.digital_temp_size);
+
+        mInteractivePaints.setTextSizes(textSize, meridiemSize, dateSize, tempSize);
+        mAmbientPaints.setTextSizes(textSize, meridiemSize, dateSize, tempSize);
+
+        measureText();
+        mStaticLayerDirty = true;
+    }
+
+    /* Both modes use the same typeface and sizes, so the widths are the same in both */
+    private void measureText() {
+        WatchFacePaints paints = mInteractivePaints;
+        for (int hourOfDay = 0; hourOfDay < 24; hourOfDay++) {
+            mHourWidths12[hourOfDay] = paints.mHourPaint.measureText(mHourTexts12[hourOfDay]);
+            mHourWidths24[hourOfDay] = paints.mHourPaint.measureText(mHourTexts24[hourOfDay]);
+        }
+        for (int minute = 0; minute < 60; minute++) {
+            mMinuteWidths[minute] = paints.mMinutePaint.measureText(mMinuteTexts[minute]);
+        }
+        mColonWidth = paints.mColonPaint.measureText(COLON);
+        if (mDateText != null) {
+            mDateWidth = paints.mDatePaint.measureText(mDateText);
+        }
+    }
+
+    /**
+     * Picks the paints and the weather icon of ambient or interactive mode.
+     *
+     * @param ambient Whether the watch is in ambient mode
+     */
+    void setAmbient(boolean ambient) {
+        if (ambient != mAmbient) {
+            mAmbient = ambient;
+            mPaints = ambient ? mAmbientPaints : mInteractivePaints;
+            updateWeatherIconBitmap();
+        }
+    }
+
+    /**
+     * Prepares ambient mode for the screen.
+     *
+     * @param lowBitAmbient    Whether the screen has fewer bits per color in ambient mode, in
+     *                         which case we draw without anti-aliasing and with a silhouette of
+     *                         the weather icon
+     * @param burnInProtection Whether the screen needs burn-in protection, in which case ambient
+     *                         frames move the face a little every minute
+     */
+    void setAmbientProperties(boolean lowBitAmbient, boolean burnInProtection) {
+        mLowBitAmbient = lowBitAmbient;
+        mBurnInProtection = burnInProtection;
+        mAmbientPaints.setAntiAlias(!lowBitAmbient);
+        if (mAmbient) {
+            updateWeatherIconBitmap();
+        }
+    }
+
+    /**
+     * Draws a frame with what the setters last worked out. Call
+     * {@link #setTime(Calendar, Date, boolean)} first whenever {@link #isMinuteOver(long)}.
+     */
+    void draw(Canvas canvas, Rect bounds) {
+        int width = bounds.width();
+        int height = bounds.height();
+        if (mStaticLayer == null || mStaticLayer.getWidth() != width
+                || mStaticLayer.getHeight() != height) {
+            if (mStaticLayer != null) {
+                mStaticLayer.recycle();
+            }
+            mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mStaticLayerCanvas.setBitmap(mStaticLayer);
+            mStaticLayerDirty = true;
+        }
+        if (mStaticLayerDirty) {
+            drawStaticLayer(mStaticLayerCanvas, width, height);
+            mStaticLayerDirty = false;
+            mStaticLayerBuilds++;
+        }
+
+        int offsetX = 0;
+        int offsetY = 0;
+        if (mAmbient && mBurnInProtection) {
+            offsetX = BURN_IN_OFFSETS_X[mBurnInOffset];
+            offsetY = BURN_IN_OFFSETS_Y[mBurnInOffset];
+            /* The strip the moved layer leaves uncovered */
+            canvas.drawColor(Color.BLACK);
+        }
+
+        canvas.drawBitmap(mStaticLayer, offsetX, offsetY, null);
+        drawTimeLayer(canvas, bounds.centerX() + offsetX, mYOffset + offsetY);
+    }
+
+    /**
+     * Draws both layers straight onto the Canvas, the way every frame was drawn before the static
+     * layer was kept in a bitmap. Only used to measure what keeping it saves.
+     */
+    void drawWithoutStaticLayer(Canvas canvas, Rect bounds) {
+        drawStaticLayer(canvas, bounds.width(), bounds.height());
+        drawTimeLayer(canvas, bounds.centerX(), mYOffset);
+    }
+
+    private void drawStaticLayer(Canvas canvas, int width, int height) {
+        WatchFacePaints paints = mPaints;
+        canvas.drawRect(0, 0, width, height, paints.mBackgroundPaint);
+
+        float centerX = width / 2;
+
+        canvas.drawText(mDateText, centerX - mDateWidth / 2, mYOffset + mLineHeight,
+                paints.mDatePaint);
+
+        float dividerY = mYOffset + mLineHeight * 1.8f;
+        canvas.drawLine(centerX - DIVIDER_WIDTH / 2, dividerY, centerX + DIVIDER_WIDTH / 2,
+                dividerY, paints.mDividerLinePaint);
+
+        float iconX = width / 6 + (width / 6 - mWeatherIconBitmap.getHeight()) / 2;
+        canvas.drawBitmap(mWeatherIconBitmap, iconX, mYOffset + mLineHeight * 2f,
+                paints.mWeatherIconPaint);
+
+        float tempY = mYOffset + mLineHeight * 3.2f;
+        canvas.drawText(mHighTempText, centerX - 40, tempY, paints.mHighTempPaint);
+        canvas.drawText(mLowTempText, centerX + 35, tempY, paints.mLowTempPaint);
+    }
+
+    private void drawTimeLayer(Canvas canvas, float centerX, float y) {
+        WatchFacePaints paints = mPaints;
+        String hourText = mIs24Hour ? mHourTexts24[mHourOfDay] : mHourTexts12[mHourOfDay];
+        float hourWidth = mIs24Hour ? mHourWidths24[mHourOfDay] : mHourWidths12[mHourOfDay];
+
+        canvas.drawText(hourText, centerX - (hourWidth + TIME_CENTER_ADJUST), y,
+                paints.mHourPaint);
+        canvas.drawText(COLON, centerX - TIME_CENTER_ADJUST, y, paints.mColonPaint);
+        canvas.drawText(mMinuteTexts[mMinute], centerX + mColonWidth - TIME_CENTER_ADJUST, y,
+                paints.mMinutePaint);
+
+        /* In 12-hour mode, draw AM/PM, with the seconds above it */
+        float meridiemX = centerX + mMinuteWidths[mMinute] - MERIDIEM_ADJUST;
+        if (mMeridiemText != null) {
+            canvas.drawText(mMeridiemText, meridiemX, y, paints.mMeridiemPaint);
+        }
+        if (mShowSeconds && !mAmbient) {
+            canvas.drawText(mMinuteTexts[mSecond], meridiemX,
+                    y - paints.mMeridiemPaint.getTextSize(), paints.mMeridiemPaint);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.prashant.wear;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.util.LruCache;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+/**
+ * The weather icons of the watch face, decoded once and scaled to the screen, in an
+ * interactive variant and two for ambient mode: a gray one, and a white silhouette for screens
+ * with a single bit per color in ambient mode. Only the last few icons drawn are kept; the watch
+ * face shows one at a time, and changes it at most a few times a day.
+ * <p>
+ * The cache owns its bitmaps and recycles them when they are evicted, when the screen size
+ * changes and on {@link #clear()}, so callers must get the bitmap again after any of those.
+ */
+class WeatherIconCache {
+
+    /* The variants of an icon */
+    static final int VARIANT_INTERACTIVE = 0;
+    static final int VARIANT_GRAY = 1;
+    static final int VARIANT_LOW_BIT = 2;
+    private static final int VARIANT_COUNT = 3;
+
+    /* The pixels at least this opaque are part of the silhouette */
+    private static final int LOW_BIT_ALPHA_THRESHOLD = 128;
+
+    /* The icon of the day shown in the interactive and an ambient variant, and the one before it */
+    private static final int MAX_BITMAPS = 4;
+
+    /* The icons are drawn 60 pixels wide for a screen 320 pixels wide */
+    private static final int ICON_SIZE = 60;
+    private static final int REFERENCE_SCREEN_WIDTH = 320;
+
+    /**
+     * The icon drawn for each of the WeatherConditions.ICON_ constants.
+     */
+    private static final int[] WEATHER_ICON_IDS = new int[WeatherConditions.ICON_COUNT];
+
+    static {
+        WEATHER_ICON_IDS[WeatherConditions.ICON_CLEAR] = R.drawable.ic_clear;
+        WEATHER_ICON_IDS[WeatherConditions.ICON_LIGHT_CLOUDS] = R.drawable.ic_light_clouds;
+        WEATHER_ICON_IDS[WeatherConditions.ICON_CLOUDS] = R.drawable.ic_cloudy;
+        WEATHER_ICON_IDS[WeatherConditions.ICON_FOG] = R.drawable.ic_fog;
+        WEATHER_ICON_IDS[WeatherConditions.ICON_LIGHT_RAIN] = R.drawable.ic_light_rain;
+        WEATHER_ICON_IDS[WeatherConditions.ICON_RAIN] = R.drawable.ic_rain;
+        WEATHER_ICON_IDS[WeatherConditions.ICON_SNOW] = R.drawable.ic_snow;
+        WEATHER_ICON_IDS[WeatherConditions.ICON_STORM] = R.drawable.ic_storm;
+    }
+
+    private final Resources mResources;
+
+    /* Draws an icon in gray, for the ambient variant */
+    private final Paint mGrayscalePaint;
+
+    /* Keyed by icon * VARIANT_COUNT + variant */
+    private final LruCache<Integer, Bitmap> mBitmaps = new LruCache<Integer, Bitmap>(MAX_BITMAPS) {
+        @Override
+        protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue,
+                                    Bitmap newValue) {
+            oldValue.recycle();
+        }
+    };
+
+    /* The size of the icons in pixels, or 0 to keep them as they are decoded */
+    private int mIconSize;
+
+    WeatherIconCache(Resources resources) {
+        mResources = resources;
+
+        ColorMatrix colorMatrix = new ColorMatrix();
+        colorMatrix.setSaturation(0);
+        mGrayscalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        mGrayscalePaint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
+    }
+
+    /**
+     * Scales the icons to a screen of the given width, dropping the ones of the last size.
+     *
+     * @param screenWidth The width of the watch face in pixels
+     */
+    void setScreenWidth(int screenWidth) {
+        int iconSize = Math.max(1, ICON_SIZE * screenWidth / REFERENCE_SCREEN_WIDTH);
+        if (iconSize != mIconSize) {
+            mIconSize = iconSize;
+            mBitmaps.evictAll();
+        }
+    }
+
+    /**
+     * @param icon    One of the WeatherConditions.ICON_ constants, other than ICON_UNKNOWN
+     * @param variant One of the VARIANT_ constants
+     * @return The icon, which stays valid until the cache recycles it
+     */
+    Bitmap get(int icon, int variant) {
+        int key = icon * VARIANT_COUNT + variant;
+        Bitmap bitmap = mBitmaps.get(key);
+        if (bitmap == null) {
+            switch (variant) {
+                case VARIANT_GRAY:
+                    bitmap = createGrayscale(get(icon, VARIANT_INTERACTIVE));
+                    break;
+                case VARIANT_LOW_BIT:
+                    bitmap = createLowBit(get(icon, VARIANT_INTERACTIVE));
+                    break;
+                default:
+                    bitmap = decode(icon);
+            }
+            mBitmaps.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Recycles every bitmap. The cache can still be used afterwards.
+     */
+    void clear() {
+        mBitmaps.evictAll();
+    }
+
+    private Bitmap decode(int icon) {
+        Bitmap decoded = BitmapFactory.decodeResource(mResources, WEATHER_ICON_IDS[icon]);
+        if (mIconSize == 0 || (decoded.getWidth() == mIconSize
+                && decoded.getHeight() == mIconSize)) {
+            return decoded;
+        }
+
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, mIconSize, mIconSize, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    private Bitmap createGrayscale(Bitmap icon) {
+        Bitmap grayscale = Bitmap.createBitmap(icon.getWidth(), icon.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        new Canvas(grayscale).drawBitmap(icon, 0, 0, mGrayscalePaint);
+        return grayscale;
+    }
+
+    /* Opaque white wherever the icon is mostly opaque, and transparent elsewhere */
+    private static Bitmap createLowBit(Bitmap icon) {
+        int width = icon.getWidth();
+        int height = icon.getHeight();
+        int[] pixels = new int[width * height];
+        icon.getPixels(pixels, 0, width, 0, 0, width, height);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = Color.alpha(pixels[i]) >= LOW_BIT_ALPHA_THRESHOLD
+                    ? Color.WHITE : Color.TRANSPARENT;
+        }
+        return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+    }
+}
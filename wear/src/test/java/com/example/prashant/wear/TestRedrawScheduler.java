@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.prashant.wear;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static com.example.prashant.wear.RedrawScheduler.MINUTE_IN_MILLIS;
+import static com.example.prashant.wear.RedrawScheduler.SECOND_IN_MILLIS;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Runs the interactive timer of the watch face on a simulated clock, and counts the frames it
+ * draws in an hour: 60 without the seconds, and 3600 with them, which is what it drew whether it
+ * showed them or not before. Every frame must fall on the start of a minute or second, so the
+ * face never shows the last one for long, and one must fall on midnight.
+ */
+public class TestRedrawScheduler {
+
+    private static final long HOUR_IN_MILLIS = 60 * MINUTE_IN_MILLIS;
+
+    /* Friday, 9/16/2016, 17:45:12.345 UTC, as a timer started at any time would */
+    private static final long START = 1474047912345L;
+
+    private final RedrawScheduler mScheduler = new RedrawScheduler();
+
+    @Test
+    public void testRedrawsPerHourWithoutSeconds() {
+        mScheduler.setShowSeconds(false);
+        assertEquals(60, countRedraws(START, START + HOUR_IN_MILLIS, MINUTE_IN_MILLIS));
+    }
+
+    @Test
+    public void testRedrawsPerHourWithSeconds() {
+        mScheduler.setShowSeconds(true);
+        assertEquals(3600, countRedraws(START, START + HOUR_IN_MILLIS, SECOND_IN_MILLIS));
+    }
+
+    @Test
+    public void testMidnightIsRedrawn() {
+        for (String zone : new String[]{"UTC", "America/Los_Angeles", "Asia/Kolkata",
+                "Asia/Kathmandu", "Pacific/Chatham"}) {
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(zone));
+            calendar.clear();
+            calendar.set(2016, Calendar.SEPTEMBER, 17, 0, 0, 0);
+            long midnight = calendar.getTimeInMillis();
+
+            mScheduler.setShowSeconds(false);
+            long now = midnight - 90 * SECOND_IN_MILLIS + 123;
+            now += mScheduler.getDelayToNextRedraw(now);
+            now += mScheduler.getDelayToNextRedraw(now);
+            assertEquals(zone, midnight, now);
+        }
+    }
+
+    @Test
+    public void testFramesInBetweenDontMoveTheNextOne() {
+        /* A frame drawn because a forecast arrived, or the user switched the seconds on or off */
+        mScheduler.setShowSeconds(false);
+        long minute = START - START % MINUTE_IN_MILLIS;
+        long arrival = minute + 25 * SECOND_IN_MILLIS + 5;
+        assertEquals(minute + MINUTE_IN_MILLIS,
+                arrival + mScheduler.getDelayToNextRedraw(arrival));
+
+        mScheduler.setShowSeconds(true);
+        assertEquals(arrival - 5 + SECOND_IN_MILLIS,
+                arrival + mScheduler.getDelayToNextRedraw(arrival));
+
+        /* A frame on the boundary waits for the next one, rather than drawing again */
+        assertEquals(SECOND_IN_MILLIS, mScheduler.getDelayToNextRedraw(minute));
+        mScheduler.setShowSeconds(false);
+        assertEquals(MINUTE_IN_MILLIS, mScheduler.getDelayToNextRedraw(minute));
+    }
+
+    /**
+     * Runs the timer from start to end, the way handleUpdateTimeMessage does.
+     *
+     * @param period The time between frames the face needs
+     * @return The number of frames drawn after start and before end
+     */
+    private int countRedraws(long start, long end, long period) {
+        int redraws = 0;
+        for (long now = start + mScheduler.getDelayToNextRedraw(start); now < end;
+             now += mScheduler.getDelayToNextRedraw(now)) {
+            assertTrue("Frame at " + now, now % period == 0);
+            redraws++;
+        }
+        return redraws;
+    }
+}